@@ -25,11 +25,14 @@ import exec.BaseExecutor;
 import model.config.GlobalVar;
 import model.stat.DebugInfo;
 import model.stat.FileReaderStat;
+import model.stat.PipelineMetrics;
 import model.stat.SqlStat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.misc.Signal;
+import util.MetricsHttpServer;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -66,6 +69,8 @@ public class BatchTool {
         BaseExecutor commandExecutor = BaseExecutor.getExecutor(command, dataSourceConfig, druid);
         commandExecutor.preCheck();
         logger.info(command.toString());
+        PipelineMetrics.registerMBeans();
+        MetricsHttpServer metricsServer = startMetricsServer();
         try {
             long startTime = System.currentTimeMillis();
             commandExecutor.execute();
@@ -73,12 +78,27 @@ public class BatchTool {
             logger.info("运行耗时： {} s", (endTime - startTime) / 1000F);
         } finally {
             commandExecutor.close();
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
         }
         if (commandExecutor.hasFatalException()) {
             throw new RuntimeException("Fatal exception occurred during batch operation.");
         }
     }
 
+    private MetricsHttpServer startMetricsServer() {
+        if (GlobalVar.METRICS_PORT <= 0) {
+            return null;
+        }
+        try {
+            return MetricsHttpServer.start(GlobalVar.METRICS_PORT);
+        } catch (IOException e) {
+            logger.warn("Failed to start metrics server on port {}: {}", GlobalVar.METRICS_PORT, e.getMessage());
+            return null;
+        }
+    }
+
     private void addHooks() {
         Runtime.getRuntime().addShutdownHook(new Thread(this::destroy));
         try {
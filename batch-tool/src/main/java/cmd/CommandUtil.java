@@ -27,12 +27,14 @@ import model.config.BenchmarkMode;
 import model.config.CompressMode;
 import model.config.ConfigConstant;
 import model.config.DdlMode;
+import model.config.InsertMode;
 import model.config.EncryptionConfig;
 import model.config.ExportConfig;
 import model.config.FileFormat;
 import model.config.FileLineRecord;
 import model.config.GlobalVar;
 import model.config.QuoteEncloseMode;
+import model.config.UpdateMode;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -64,12 +66,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static cmd.ConfigArgOption.ARG_ADAPTIVE_LATENCY;
+import static cmd.ConfigArgOption.ARG_COMPRESS_LEVEL;
 import static cmd.ConfigArgOption.ARG_DDL_PARALLELISM;
 import static cmd.ConfigArgOption.ARG_DDL_RETRY_COUNT;
 import static cmd.ConfigArgOption.ARG_LOG_INTERVAL;
+import static cmd.ConfigArgOption.ARG_METRICS_PORT;
 import static cmd.ConfigArgOption.ARG_NULL_STR;
 import static cmd.ConfigArgOption.ARG_SHORT_BATCH_SIZE;
 import static cmd.ConfigArgOption.ARG_SHORT_BATCH_SIZE_IN_BYTES;
+import static cmd.ConfigArgOption.ARG_INSERT_MODE;
 import static cmd.ConfigArgOption.ARG_SHORT_BENCHMARK;
 import static cmd.ConfigArgOption.ARG_SHORT_CHARSET;
 import static cmd.ConfigArgOption.ARG_SHORT_COLUMNS;
@@ -113,9 +119,13 @@ import static cmd.ConfigArgOption.ARG_SHORT_USERNAME;
 import static cmd.ConfigArgOption.ARG_SHORT_VERSION;
 import static cmd.ConfigArgOption.ARG_SHORT_WHERE;
 import static cmd.ConfigArgOption.ARG_SHORT_WITH_DDL;
+import static cmd.ConfigArgOption.ARG_SORT_MEMORY;
+import static cmd.ConfigArgOption.ARG_TBL_DIR;
 import static cmd.ConfigArgOption.ARG_TBL_PART;
+import static cmd.ConfigArgOption.ARG_UPDATE_MODE;
 import static cmd.FlagOption.ARG_BINARY_AS_HEX;
 import static cmd.FlagOption.ARG_DROP_TABLE_IF_EXISTS;
+import static cmd.FlagOption.ARG_REMOTE_RANGE_READ;
 import static cmd.FlagOption.ARG_SHORT_ENABLE_SHARDING;
 import static cmd.FlagOption.ARG_SHORT_IGNORE_AND_RESUME;
 import static cmd.FlagOption.ARG_SHORT_LOAD_BALANCE;
@@ -130,6 +140,7 @@ import static cmd.FlagOption.ARG_SHORT_WITH_HEADER;
 import static cmd.FlagOption.ARG_SHORT_WITH_LAST_SEP;
 import static cmd.FlagOption.ARG_TRIM_RIGHT;
 import static cmd.FlagOption.ARG_WITH_VIEW;
+import static cmd.FlagOption.ARG_ZERO_COPY;
 
 /**
  * 从命令行输入解析配置
@@ -216,7 +227,10 @@ public class CommandUtil {
             .minConnNumber(getMinConnNum(result))
             .maxWait(getMaxWait(result))
             .connParam(getConnParam(result))
-            .initSqls(getInitSqls(result));
+            .initSqls(getInitSqls(result))
+            .preparedStmtEnabled(getInsertMode(result) == InsertMode.PREPARED
+                || getInsertMode(result) == InsertMode.COMPARE)
+            .loadDataEnabled(getInsertMode(result) == InsertMode.LOAD_DATA);
 
         if (getLoadBalance(result)) {
             configBuilder.loadBalanceEnabled(true);
@@ -318,6 +332,7 @@ public class CommandUtil {
         }
         setBinaryAsHex(result);
         setLogInterval(result);
+        setCompressLevel(result);
     }
 
     private static List<String> getTableNames(ConfigResult result) {
@@ -556,6 +571,9 @@ public class CommandUtil {
                 ConfigConstant.CMD_SEPARATOR));
             exportConfig.setOrderByColumnNameList(columnNameList);
             exportConfig.setParallelMerge(getParaMerge(result));
+            if (result.hasOption(ARG_SORT_MEMORY)) {
+                exportConfig.setSortMemoryInMb(Integer.parseInt(result.getOptionValue(ARG_SORT_MEMORY)));
+            }
         }
     }
 
@@ -634,6 +652,23 @@ public class CommandUtil {
             }
             GlobalVar.LOG_INTERVAL = logInterval;
         }
+        if (result.hasOption(ARG_METRICS_PORT)) {
+            int port = Integer.parseInt(result.getOptionValue(ARG_METRICS_PORT));
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Illegal metrics port: " + port);
+            }
+            GlobalVar.METRICS_PORT = port;
+        }
+    }
+
+    private static void setCompressLevel(ConfigResult result) {
+        if (result.hasOption(ARG_COMPRESS_LEVEL)) {
+            int compressLevel = Integer.parseInt(result.getOptionValue(ARG_COMPRESS_LEVEL));
+            if (compressLevel < 0) {
+                throw new IllegalArgumentException("Illegal compression level: " + compressLevel);
+            }
+            GlobalVar.COMPRESS_LEVEL = compressLevel;
+        }
     }
 
     private static void setBinaryAsHex(ConfigResult result) {
@@ -682,9 +717,12 @@ public class CommandUtil {
         producerExecutionContext.setHistoryFileAndParse(getHistoryFile(result));
         producerExecutionContext.setQuoteEncloseMode(getQuoteEncloseMode(result));
         producerExecutionContext.setTrimRight(getTrimRight(result));
+        producerExecutionContext.setZeroCopyEnabled(getZeroCopyEnabled(result));
+        producerExecutionContext.setRemoteRangeReadEnabled(getRemoteRangeReadEnabled(result));
         producerExecutionContext.setBenchmarkMode(getBenchmarkMode(result));
         producerExecutionContext.setBenchmarkRound(getBenchmarkRound(result));
         producerExecutionContext.setScale(getScale(result));
+        producerExecutionContext.setTpchOutputDir(getTpchOutputDir(result));
 
         producerExecutionContext.validate();
     }
@@ -701,6 +739,8 @@ public class CommandUtil {
         consumerExecutionContext.setTableNames(getTableNames(result));
         consumerExecutionContext.setSqlEscapeEnabled(getSqlEscapeEnabled(result));
         consumerExecutionContext.setReadProcessFileOnly(getReadAndProcessFileOnly(result));
+        consumerExecutionContext.setInsertMode(getInsertMode(result));
+        consumerExecutionContext.setUpdateMode(getUpdateMode(result));
         consumerExecutionContext.setWhereInEnabled(getWhereInEnabled(result));
         consumerExecutionContext.setWithLastSep(getWithLastSep(result));
         consumerExecutionContext.setQuoteEncloseMode(getQuoteEncloseMode(result));
@@ -727,6 +767,20 @@ public class CommandUtil {
         return result.getBooleanFlag(ARG_SHORT_READ_FILE_ONLY);
     }
 
+    private static InsertMode getInsertMode(ConfigResult result) {
+        if (!result.hasOption(ARG_INSERT_MODE)) {
+            return InsertMode.TEXT;
+        }
+        return InsertMode.fromString(result.getOptionValue(ARG_INSERT_MODE));
+    }
+
+    private static UpdateMode getUpdateMode(ConfigResult result) {
+        if (!result.hasOption(ARG_UPDATE_MODE)) {
+            return UpdateMode.ROW;
+        }
+        return UpdateMode.fromString(result.getOptionValue(ARG_UPDATE_MODE));
+    }
+
     private static String getDbName(ConfigResult result) {
         return result.getOptionValue(ARG_SHORT_DBNAME);
     }
@@ -775,6 +829,14 @@ public class CommandUtil {
         return !result.getBooleanFlag(ARG_TRIM_RIGHT);
     }
 
+    private static boolean getZeroCopyEnabled(ConfigResult result) {
+        return result.getBooleanFlag(ARG_ZERO_COPY);
+    }
+
+    private static boolean getRemoteRangeReadEnabled(ConfigResult result) {
+        return result.getBooleanFlag(ARG_REMOTE_RANGE_READ);
+    }
+
     private static BenchmarkMode getBenchmarkMode(ConfigResult result) {
         if (result.hasOption(ARG_SHORT_BENCHMARK)) {
             return BenchmarkMode.parseMode(result.getOptionValue(ARG_SHORT_BENCHMARK));
@@ -799,6 +861,16 @@ public class CommandUtil {
         }
     }
 
+    private static String getTpchOutputDir(ConfigResult result) {
+        if (!result.hasOption(ARG_TBL_DIR)) {
+            return null;
+        }
+        if (getBenchmarkMode(result) != BenchmarkMode.TPCH) {
+            throw new IllegalArgumentException("TPC-H output directory requires -benchmark TPCH");
+        }
+        return result.getOptionValue(ARG_TBL_DIR);
+    }
+
     private static List<FileLineRecord> getDataFileRecordListFromFileStorage(ConfigResult result,
                                                                              FileStorage fileStorage) {
 
@@ -987,6 +1059,10 @@ public class CommandUtil {
             GlobalVar.EMIT_BATCH_SIZE_IN_BYTES = Long.parseLong(
                 result.getOptionValue(ARG_SHORT_BATCH_SIZE_IN_BYTES));
         }
+        if (result.hasOption(ARG_ADAPTIVE_LATENCY)) {
+            GlobalVar.ADAPTIVE_TARGET_P99_MILLIS = Long.parseLong(
+                result.getOptionValue(ARG_ADAPTIVE_LATENCY));
+        }
     }
 
     private static void setPerfMode(ConfigResult result) {
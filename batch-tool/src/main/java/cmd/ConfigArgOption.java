@@ -39,6 +39,9 @@ public class ConfigArgOption {
         of("O", "orderby", "Order by type: asc / desc.", "asc | desc");
     public static final ConfigArgOption ARG_SHORT_ORDER_COLUMN =
         of("OC", "orderCol", "Ordered column names.", "col1;col2;col3");
+    public static final ConfigArgOption ARG_SORT_MEMORY =
+        of("sortMem", "sortMemory", "Memory budget of parallel local merge, spilling sorted runs to "
+            + "local files when exceeded (default 0: buffer all rows in memory).", "size(MB)");
     public static final ConfigArgOption ARG_SHORT_COLUMNS =
         of("col", "columns", "Target columns for export.", "col1;col2;col3");
     public static final ConfigArgOption ARG_SHORT_TABLE =
@@ -79,6 +82,10 @@ public class ConfigArgOption {
         of("batchsize", "batchSize", "Batch size of insert.", "size");
     public static final ConfigArgOption ARG_SHORT_BATCH_SIZE_IN_BYTES =
         of("batchBytes", "batchBytes", "Batch memory size (in bytes) of insert.", "size");
+    public static final ConfigArgOption ARG_ADAPTIVE_LATENCY =
+        of("adaptive", "adaptiveLatency",
+            "Adapt batch size and active consumers to keep p99 sql latency under the target (default 0: disabled).",
+            "p99 ms");
     public static final ConfigArgOption ARG_SHORT_READ_BLOCK_SIZE =
         of("readsize", "readSize", "Read block size.", "size(MB)");
     public static final ConfigArgOption ARG_SHORT_RING_BUFFER_SIZE =
@@ -92,7 +99,10 @@ public class ConfigArgOption {
     public static final ConfigArgOption ARG_SHORT_WITH_DDL =
         of("DDL", "DDL", "Export or import with DDL sql mode (default NONE).", "NONE | ONLY | WITH");
     public static final ConfigArgOption ARG_SHORT_COMPRESS =
-        of("comp", "compress", "Export or import compressed file (default NONE).", "NONE | GZIP");
+        of("comp", "compress", "Export or import compressed file (default NONE).", "NONE | GZIP | ZSTD | LZ4");
+    public static final ConfigArgOption ARG_COMPRESS_LEVEL =
+        of("compLevel", "compressLevel", "Compression level when exporting "
+            + "(default GZIP 6, ZSTD 3, LZ4 0 for fast mode).", "level");
     public static final ConfigArgOption ARG_SHORT_ENCRYPTION =
         of("encrypt", "encrypt", "Export or import with encrypted file (default NONE).", "NONE | AES | SM4");
     public static final ConfigArgOption ARG_SHORT_KEY =
@@ -112,6 +122,9 @@ public class ConfigArgOption {
         of("benchmark", "benchmark", "Fast loading benchmark data (dafault NONE).", "NONE | TPCH");
     public static final ConfigArgOption ARG_SHORT_SCALE =
         of("scale", "scale", "The size scale benchmark data (GB for tpch).", "size");
+    public static final ConfigArgOption ARG_TBL_DIR =
+        of("tblDir", "tblDirectory", "Generate TPC-H .tbl files into this directory instead of the database.",
+            "directory path");
     public static final ConfigArgOption ARG_TBL_PART =
         of("part", "tblPart", "Partitions of the target tables, starting from 0 (both inclusive).", "start:end");
     public static final ConfigArgOption ARG_SHORT_FILE_SYSTEM =
@@ -120,6 +133,16 @@ public class ConfigArgOption {
         of("nullStr", "nullStr", "Treat this value as NULL (default \\N).", "string value");
     public static final ConfigArgOption ARG_LOG_INTERVAL =
         of("logInterval", "logInterval", "Realtime statistics log output interval (default 0, no output).", "seconds");
+    public static final ConfigArgOption ARG_METRICS_PORT =
+        of("metricsPort", "metricsPort",
+            "Serve prometheus metrics at http://127.0.0.1:<port>/metrics (default 0: disabled).", "port");
+    public static final ConfigArgOption ARG_INSERT_MODE =
+        of("insertMode", "insertMode", "Statement used for importing, COMPARE imports the files into temporary tables "
+            + "with both TEXT and PREPARED and reports the cost (default TEXT).", "TEXT | PREPARED | LOAD_DATA | COMPARE");
+    public static final ConfigArgOption ARG_UPDATE_MODE =
+        of("updateMode", "updateMode", "Statement used for updating, BATCH updates a whole batch in one statement, "
+            + "COMPARE updates copies of the table with both ROW and BATCH and reports the cost (default ROW).",
+            "ROW | BATCH | COMPARE");
 
     protected final String argShort;
     protected final String argLong;
@@ -62,6 +62,14 @@ public class FlagOption extends ConfigArgOption {
         of("para", "paraMerge", "Use parallel merge when doing order by export  (default false).", false);
     public static final FlagOption ARG_SHORT_PERF_MODE =
         of("perf", "perfMode", "Use performance mode at the sacrifice of compatibility (default false).", false);
+    public static final FlagOption ARG_ZERO_COPY =
+        of("zeroCopy", "zeroCopy",
+            "Pass file blocks to consumers as byte slices instead of decoded lines for BlockReader, "
+                + "only for UTF-8 files (default false).", false);
+    public static final FlagOption ARG_REMOTE_RANGE_READ =
+        of("rangeRead", "remoteRangeRead",
+            "Read uncompressed files from object storage by block ranges instead of downloading them first "
+                + "(default false).", false);
     public static final FlagOption ARG_TRIM_RIGHT =
         of("trimRight", "trimRight", "Remove trailing whitespaces in a line for BlockReader (default false).", false);
     public static final FlagOption ARG_DROP_TABLE_IF_EXISTS =
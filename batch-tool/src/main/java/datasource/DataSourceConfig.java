@@ -86,6 +86,8 @@ public class DataSourceConfig {
         private boolean loadBalanceEnabled;
         private String connParam;
         private String initSqls;
+        private boolean preparedStmtEnabled;
+        private boolean loadDataEnabled;
 
         public DataSourceConfigBuilder() {
         }
@@ -145,6 +147,16 @@ public class DataSourceConfig {
             return this;
         }
 
+        public DataSourceConfigBuilder preparedStmtEnabled(boolean preparedStmtEnabled) {
+            this.preparedStmtEnabled = preparedStmtEnabled;
+            return this;
+        }
+
+        public DataSourceConfigBuilder loadDataEnabled(boolean loadDataEnabled) {
+            this.loadDataEnabled = loadDataEnabled;
+            return this;
+        }
+
         public DataSourceConfig build() {
             DataSourceConfig dataSourceConfig = new DataSourceConfig();
             dataSourceConfig.username = this.username;
@@ -166,6 +178,12 @@ public class DataSourceConfig {
                 jdbcUrl = String.format(DataSourceUtil.URL_PATTERN,
                     host, port, dbName);
             }
+            if (preparedStmtEnabled) {
+                jdbcUrl = jdbcUrl + "&" + DataSourceUtil.PREPARED_STMT_PARAMS;
+            }
+            if (loadDataEnabled) {
+                jdbcUrl = jdbcUrl + "&" + DataSourceUtil.LOAD_DATA_PARAMS;
+            }
             if (this.connParam != null) {
                 jdbcUrl = jdbcUrl + "&" + connParam;
             }
@@ -32,9 +32,13 @@ import exec.export.ShardingExportExecutor;
 import exec.export.SingleThreadExportExecutor;
 import model.ConsumerExecutionContext;
 import model.ProducerExecutionContext;
+import model.config.BlockEventCounter;
 import model.config.ExportConfig;
 import model.config.FileLineRecord;
 import model.config.GlobalVar;
+import model.stat.LatencyHistogram;
+import model.stat.PipelineMetrics;
+import model.stat.PipelineStage;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -45,7 +49,8 @@ import util.SyncUtil;
 import worker.MyThreadPool;
 import worker.MyWorkerPool;
 import worker.NamedThreadFactory;
-import worker.common.BaseDefaultConsumer;
+import worker.common.AdaptiveBatchController;
+import worker.common.BaseBatchConsumer;
 import worker.common.BaseWorkHandler;
 import worker.common.BatchLineEvent;
 import worker.common.ReadFileProducer;
@@ -56,9 +61,8 @@ import javax.sql.DataSource;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -70,11 +74,17 @@ import java.util.stream.Collectors;
 
 public abstract class BaseExecutor {
     private static final Logger logger = LoggerFactory.getLogger(BaseExecutor.class);
+
+    private static final long ADAPTIVE_ADJUST_INTERVAL_MILLIS = 1000;
     protected final DataSource dataSource;
     protected final BaseOperateCommand command;
     private final DataSourceConfig dataSourceConfig;
     protected AtomicBoolean enableStatLogging = new AtomicBoolean(false);
     private ScheduledExecutorService scheduler = null;
+    /**
+     * 开始处理当前表时各阶段的耗时统计
+     */
+    private Map<PipelineStage, LatencyHistogram.Snapshot> stageSnapshot = null;
 
     public BaseExecutor(DataSourceConfig dataSourceConfig,
                         DataSource dataSource,
@@ -203,10 +213,15 @@ public abstract class BaseExecutor {
     protected void beforeSingleTable(String tableName) {
         startStatLog();
         CountStat.clearDbRowCount();
+        stageSnapshot = PipelineMetrics.snapshot();
     }
 
     protected void afterSingleTable(String tableName) {
         stopStatLog();
+        if (stageSnapshot != null) {
+            PipelineMetrics.logBreakdown(tableName, stageSnapshot);
+            stageSnapshot = null;
+        }
     }
 
     protected abstract void printStatLog();
@@ -234,6 +249,20 @@ public abstract class BaseExecutor {
                                                 ConsumerExecutionContext consumerExecutionContext,
                                                 String tableName,
                                                 boolean usingBlockReader) {
+        configureCommonContextAndRun(clazz, producerExecutionContext, consumerExecutionContext,
+            tableName, tableName, usingBlockReader);
+    }
+
+    /**
+     * @param tableName 用于匹配文件名
+     * @param targetTableName 消费者写入的表
+     */
+    protected void configureCommonContextAndRun(Class<? extends BaseWorkHandler> clazz,
+                                                ProducerExecutionContext producerExecutionContext,
+                                                ConsumerExecutionContext consumerExecutionContext,
+                                                String tableName,
+                                                String targetTableName,
+                                                boolean usingBlockReader) {
         List<FileLineRecord> fileLineRecordList =
             getFileRecordList(producerExecutionContext.getDataFileLineRecordList(), tableName,
                 producerExecutionContext.getFilenamePrefix());
@@ -257,10 +286,8 @@ public abstract class BaseExecutor {
             producerExecutionContext.getParallelism());
         producerExecutionContext.setProducerExecutor(producerThreadPool);
         AtomicInteger emittedDataCounter = SyncUtil.newRemainDataCounter();
-        List<ConcurrentHashMap<Long, AtomicInteger>> eventCounter = new ArrayList<>();
-        for (int i = 0; i < producerExecutionContext.getDataFileLineRecordList().size(); i++) {
-            eventCounter.add(new ConcurrentHashMap<>(16));
-        }
+        BlockEventCounter eventCounter =
+            new BlockEventCounter(producerExecutionContext.getDataFileLineRecordList().size());
         producerExecutionContext.setEmittedDataCounter(emittedDataCounter);
         producerExecutionContext.setCountDownLatch(countDownLatch);
         producerExecutionContext.setEventCounter(eventCounter);
@@ -281,6 +308,21 @@ public abstract class BaseExecutor {
         EventFactory<BatchLineEvent> factory = BatchLineEvent::new;
         RingBuffer<BatchLineEvent> ringBuffer = MyWorkerPool.createRingBuffer(factory);
 
+        // 检查上下文是否一致，确认能否使用上一次的断点继续
+        boolean contextChanged = producerExecutionContext.checkAndSetContextString(
+            producerExecutionContext.toString() + consumerExecutionContext.toString());
+        // 指定历史文件、写入可重复执行且不是测试读性能模式，才按数据块记录断点
+        boolean resumable = usingBlockReader
+            && producerExecutionContext.getHistoryFile() != null
+            && !consumerExecutionContext.isReadProcessFileOnly();
+        if (resumable && !isReplayable()) {
+            logger.warn("写入不可重复执行（导入需开启 -i），不记录断点：续传时未完成数据块中已提交的批次会被重复写入");
+            resumable = false;
+        }
+        if (resumable) {
+            producerExecutionContext.openBlockJournal(contextChanged);
+        }
+
         ReadFileProducer producer;
         if (usingBlockReader) {
             producer = new ReadFileWithBlockProducer(producerExecutionContext, ringBuffer, fileLineRecordList);
@@ -290,9 +332,14 @@ public abstract class BaseExecutor {
 
         consumerExecutionContext.setUseMagicSeparator(producer.useMagicSeparator());
 
-        // 检查上下文是否一致，确认能否使用上一次的断点继续
-        producerExecutionContext.checkAndSetContextString(producerExecutionContext.toString() +
-            consumerExecutionContext.toString());
+        AdaptiveBatchController batchController = null;
+        if (GlobalVar.ADAPTIVE_TARGET_P99_MILLIS > 0) {
+            batchController = new AdaptiveBatchController(GlobalVar.EMIT_BATCH_SIZE,
+                Math.max(1, GlobalVar.EMIT_BATCH_SIZE / 16), GlobalVar.EMIT_BATCH_SIZE * 8, consumerNum,
+                GlobalVar.ADAPTIVE_TARGET_P99_MILLIS, () -> CountStat.getDbRowCount().get());
+            producerExecutionContext.setBatchController(batchController);
+            consumerExecutionContext.setBatchController(batchController);
+        }
 
         BaseWorkHandler[] consumers = new BaseWorkHandler[consumerNum];
         try {
@@ -301,9 +348,12 @@ public abstract class BaseExecutor {
                 consumers[i] = consumer;
                 consumer.setConsumerContext(consumerExecutionContext);
                 consumer.createTpsLimiter(consumerExecutionContext.getBatchTpsLimitPerConsumer());
-                consumer.setTableName(tableName);
-                if (consumer instanceof BaseDefaultConsumer) {
-                    GlobalVar.DEBUG_INFO.addSqlStat(((BaseDefaultConsumer) consumer).getSqlStat());
+                consumer.setTableName(targetTableName);
+                if (consumer instanceof BaseBatchConsumer) {
+                    GlobalVar.DEBUG_INFO.addSqlStat(((BaseBatchConsumer) consumer).getSqlStat());
+                    if (batchController != null) {
+                        batchController.addSqlStat(((BaseBatchConsumer) consumer).getSqlStat());
+                    }
                 }
             }
         } catch (Exception e) {
@@ -317,20 +367,23 @@ public abstract class BaseExecutor {
         // 开启线程工作
         WorkerPool<BatchLineEvent> workerPool = MyWorkerPool.createWorkerPool(ringBuffer, consumers);
         workerPool.start(consumerThreadPool);
+        if (batchController != null) {
+            batchController.start(ADAPTIVE_ADJUST_INTERVAL_MILLIS);
+        }
         try {
             producer.produce();
         } catch (Exception e) {
             logger.error(e.getMessage());
             throw new RuntimeException(e);
         }
-        // 开启断点续传和insert ignore，并且不是测试读性能模式，才开始记录断点
-        if (usingBlockReader
-            && consumerExecutionContext.isInsertIgnoreAndResumeEnabled()
-            && !consumerExecutionContext.isReadProcessFileOnly()) {
+        if (resumable) {
             checkConsumeProgress((ReadFileWithBlockProducer) producer, consumers);
         }
         waitForFinish(countDownLatch, emittedDataCounter, producerExecutionContext, consumerExecutionContext);
         workerPool.drainAndHalt();
+        if (batchController != null) {
+            batchController.stop();
+        }
         producerThreadPool.shutdownNow();
         consumerThreadPool.shutdownNow();
         try {
@@ -391,6 +444,13 @@ public abstract class BaseExecutor {
         }
     }
 
+    /**
+     * 续传时未完成的数据块会整块重新处理, 其中已提交的批次需要能够重复执行
+     */
+    protected boolean isReplayable() {
+        return true;
+    }
+
     protected void checkConsumeProgress(ReadFileWithBlockProducer producers, BaseWorkHandler[] consumers) {
 
     }
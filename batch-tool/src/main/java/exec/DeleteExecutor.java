@@ -29,9 +29,8 @@ import util.CountStat;
 import util.SyncUtil;
 import worker.MyThreadPool;
 import worker.MyWorkerPool;
+import worker.delete.BatchDeleteConsumer;
 import worker.delete.DeleteConsumer;
-import worker.delete.DeleteInConsumer;
-import worker.delete.ShardedDeleteInConsumer;
 import worker.tpch.consumer.TpchDeleteConsumer;
 import worker.tpch.consumer.TpchInsert2Consumer;
 import worker.tpch.model.BatchDeleteSqlEvent;
@@ -228,9 +227,9 @@ public class DeleteExecutor extends WriteDbExecutor {
 
     private void doDefaultDelete(String tableName) {
         if (consumerExecutionContext.isWhereInEnabled()) {
-            // 使用delete ... in (...)
+            // 按主键批量删除
             configureFieldMetaInfo();
-            configureCommonContextAndRun(DeleteInConsumer.class,
+            configureCommonContextAndRun(BatchDeleteConsumer.class,
                 producerExecutionContext, consumerExecutionContext, tableName, useBlockReader());
         } else {
             configurePkList();
@@ -241,9 +240,12 @@ public class DeleteExecutor extends WriteDbExecutor {
 
     private void doShardingDelete(String tableName) {
         configureFieldMetaInfo();
-        configureTopology();
-        configurePartitionKey();
-        configureCommonContextAndRun(ShardedDeleteInConsumer.class,
+        // 删除错路由的后果无法恢复, AUTO 模式表的删除仍由 CN 路由
+        if (!configureShardRouting(tableName, false)) {
+            logger.warn("表 {} 的删除语句不带分片 hint", tableName);
+            consumerExecutionContext.setTopologyList(null);
+        }
+        configureCommonContextAndRun(BatchDeleteConsumer.class,
             producerExecutionContext, consumerExecutionContext, tableName, useBlockReader());
     }
 }
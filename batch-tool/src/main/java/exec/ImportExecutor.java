@@ -23,9 +23,12 @@ import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.WorkerPool;
 import datasource.DataSourceConfig;
 import exception.DatabaseException;
+import model.ProducerExecutionContext;
 import model.config.BenchmarkMode;
 import model.config.ConfigConstant;
 import model.config.DdlMode;
+import model.config.InsertMode;
+import model.db.TableFieldMetaInfo;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,18 +37,26 @@ import util.DbUtil;
 import util.SyncUtil;
 import worker.MyThreadPool;
 import worker.MyWorkerPool;
+import worker.common.BaseWorkHandler;
 import worker.ddl.DdlImportWorker;
 import worker.insert.DirectImportWorker;
 import worker.insert.ImportConsumer;
+import worker.insert.LoadDataImportConsumer;
+import worker.insert.PreparedImportConsumer;
 import worker.insert.ProcessOnlyImportConsumer;
 import worker.insert.ShardedImportConsumer;
 import worker.tpch.consumer.TpchInsertConsumer;
+import worker.tpch.consumer.TpchLoadDataConsumer;
+import worker.tpch.consumer.TpchPreparedInsertConsumer;
 import worker.tpch.model.BatchInsertSqlEvent;
 import worker.tpch.pruducer.TpchImportProducer;
+import worker.util.ImportUtil;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -91,7 +102,9 @@ public class ImportExecutor extends WriteDbExecutor {
                     throw new RuntimeException(e);
                 }
             } else {
-                checkTableExists(command.getTableNames());
+                if (producerExecutionContext.getTpchOutputDir() == null) {
+                    checkTableExists(command.getTableNames());
+                }
                 this.tableNames = command.getTableNames();
             }
         }
@@ -127,6 +140,14 @@ public class ImportExecutor extends WriteDbExecutor {
         }
     }
 
+    /**
+     * 已提交的批次重复插入会产生主键冲突, 需要开启 -i
+     */
+    @Override
+    protected boolean isReplayable() {
+        return consumerExecutionContext.isInsertIgnoreAndResumeEnabled();
+    }
+
     @Override
     public void execute() {
         if (producerExecutionContext.getBenchmarkMode() != BenchmarkMode.NONE) {
@@ -187,6 +208,10 @@ public class ImportExecutor extends WriteDbExecutor {
     }
 
     private void handleTpchImport(List<String> tableNames) {
+        if (producerExecutionContext.getTpchOutputDir() != null) {
+            handleTpchGenerateFiles(tableNames);
+            return;
+        }
         int producerParallelism = producerExecutionContext.getParallelism();
         AtomicInteger emittedDataCounter = SyncUtil.newRemainDataCounter();
 
@@ -204,14 +229,28 @@ public class ImportExecutor extends WriteDbExecutor {
 
         EventFactory<BatchInsertSqlEvent> factory = BatchInsertSqlEvent::new;
         RingBuffer<BatchInsertSqlEvent> ringBuffer = MyWorkerPool.createRingBuffer(factory);
-        TpchImportProducer tpchProducer = new TpchImportProducer(producerExecutionContext, tableNames, ringBuffer);
+        InsertMode insertMode = consumerExecutionContext.getInsertMode();
+        TpchImportProducer tpchProducer = new TpchImportProducer(producerExecutionContext, tableNames,
+            ringBuffer, insertMode);
         CountDownLatch countDownLatch = SyncUtil.newMainCountDownLatch(tpchProducer.getWorkerCount());
         producerExecutionContext.setCountDownLatch(countDownLatch);
 
         TpchInsertConsumer[] consumers = new TpchInsertConsumer[consumerParallelism];
         try {
             for (int i = 0; i < consumerParallelism; i++) {
-                consumers[i] = new TpchInsertConsumer(consumerExecutionContext);
+                switch (insertMode) {
+                case TEXT:
+                    consumers[i] = new TpchInsertConsumer(consumerExecutionContext);
+                    break;
+                case PREPARED:
+                    consumers[i] = new TpchPreparedInsertConsumer(consumerExecutionContext);
+                    break;
+                case LOAD_DATA:
+                    consumers[i] = new TpchLoadDataConsumer(consumerExecutionContext);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Insert mode is not supported in TPC-H: " + insertMode);
+                }
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
@@ -235,6 +274,37 @@ public class ImportExecutor extends WriteDbExecutor {
             workerPool);
     }
 
+    /**
+     * 不写入数据库, 直接生成 .tbl 文件
+     */
+    private void handleTpchGenerateFiles(List<String> tableNames) {
+        File outputDir = new File(producerExecutionContext.getTpchOutputDir());
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalArgumentException("Failed to create directory: " + outputDir.getPath());
+        }
+        ThreadPoolExecutor producerThreadPool = MyThreadPool.createExecutorExact(TpchImportProducer.class.getSimpleName(),
+            producerExecutionContext.getParallelism());
+        producerExecutionContext.setProducerExecutor(producerThreadPool);
+        producerExecutionContext.setEmittedDataCounter(SyncUtil.newRemainDataCounter());
+
+        TpchImportProducer tpchProducer = new TpchImportProducer(producerExecutionContext, tableNames, null);
+        CountDownLatch countDownLatch = SyncUtil.newMainCountDownLatch(tpchProducer.getWorkerCount());
+        producerExecutionContext.setCountDownLatch(countDownLatch);
+        try {
+            tpchProducer.produce();
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            producerThreadPool.shutdown();
+        }
+        if (producerExecutionContext.getException() != null) {
+            throw new RuntimeException(producerExecutionContext.getException());
+        }
+        logger.info("TPC-H 数据文件已生成至 {}", outputDir.getPath());
+    }
+
     /**
      * 同步导入建库建表语句
      */
@@ -267,19 +337,92 @@ public class ImportExecutor extends WriteDbExecutor {
             configureCommonContextAndRun(ProcessOnlyImportConsumer.class,
                 producerExecutionContext, consumerExecutionContext, tableName, false);
         } else {
-            configureCommonContextAndRun(ImportConsumer.class,
-                producerExecutionContext, consumerExecutionContext, tableName,
-                useBlockReader());
+            switch (consumerExecutionContext.getInsertMode()) {
+            case TEXT:
+                configureCommonContextAndRun(ImportConsumer.class,
+                    producerExecutionContext, consumerExecutionContext, tableName,
+                    useBlockReader());
+                break;
+            case PREPARED:
+                configureCommonContextAndRun(PreparedImportConsumer.class,
+                    producerExecutionContext, consumerExecutionContext, tableName,
+                    useBlockReader());
+                break;
+            case LOAD_DATA:
+                // 在启动消费者之前检查
+                ImportUtil.checkLoadDataSupported(consumerExecutionContext.getUseColumns(),
+                    consumerExecutionContext.getTableFieldMetaInfo(tableName).getFieldMetaInfoList());
+                // 整个数据块作为一个事件, 交给服务端切分
+                producerExecutionContext.setWholeBlockSliceEnabled(true);
+                configureCommonContextAndRun(LoadDataImportConsumer.class,
+                    producerExecutionContext, consumerExecutionContext, tableName,
+                    useBlockReader());
+                break;
+            case COMPARE:
+                doCompareInsertMode(tableName);
+                break;
+            default:
+                throw new UnsupportedOperationException("Insert mode is not supported: " +
+                    consumerExecutionContext.getInsertMode());
+            }
+        }
+    }
+
+    /**
+     * 同一批文件依次以文本语句与预编译语句导入到临时表
+     * 输出两者的耗时, 不写入原表, 每次导入使用新的读取上下文
+     */
+    private void doCompareInsertMode(String tableName) {
+        importToBenchTable(tableName, "text", ImportConsumer.class);
+        if (!hasFatalException()) {
+            importToBenchTable(tableName, "prepared", PreparedImportConsumer.class);
+        }
+    }
+
+    private void importToBenchTable(String tableName, String mode, Class<? extends BaseWorkHandler> clazz) {
+        Map<String, TableFieldMetaInfo> tableFieldMetaInfo = consumerExecutionContext.getTableFieldMetaInfo();
+        String benchTableName = tableName + "_bench_" + mode;
+        try (Connection conn = dataSource.getConnection()) {
+            DbUtil.dropTableIfExists(conn, benchTableName);
+            DbUtil.createTableLike(conn, benchTableName, tableName);
+        } catch (SQLException | DatabaseException e) {
+            throw new RuntimeException(e);
+        }
+        tableFieldMetaInfo.put(benchTableName, tableFieldMetaInfo.get(tableName));
+        ProducerExecutionContext originContext = producerExecutionContext;
+        producerExecutionContext = originContext.copyForRerun();
+        try {
+            long startRowCount = CountStat.getDbRowCount().get();
+            long startTime = System.nanoTime();
+            configureCommonContextAndRun(clazz, producerExecutionContext, consumerExecutionContext,
+                tableName, benchTableName, useBlockReader());
+            long costMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+            long rowCount = CountStat.getDbRowCount().get() - startRowCount;
+            logger.info("表 {} 以 {} 方式导入 {} 行, 耗时 {} ms, {} 行/秒", tableName, mode,
+                rowCount, costMillis, rowCount * 1000 / costMillis);
+        } finally {
+            if (producerExecutionContext.getException() != null) {
+                originContext.setException(producerExecutionContext.getException());
+            }
+            producerExecutionContext = originContext;
+            tableFieldMetaInfo.remove(benchTableName);
+            try (Connection conn = dataSource.getConnection()) {
+                DbUtil.dropTableIfExists(conn, benchTableName);
+            } catch (SQLException | DatabaseException e) {
+                logger.warn("Failed to drop table {}: {}", benchTableName, e.getMessage());
+            }
         }
     }
 
     private void doShardingImport(String tableName) {
-        configurePartitionKey();
-        configureTopology();
+        if (!configureShardRouting(tableName, true)) {
+            logger.warn("表 {} 改为普通导入", tableName);
+            doDefaultImport(tableName);
+            return;
+        }
 
         configureCommonContextAndRun(ShardedImportConsumer.class,
             producerExecutionContext, consumerExecutionContext, tableName,
             useBlockReader());
     }
-
 }
@@ -22,11 +22,16 @@ import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.WorkerPool;
 import datasource.DataSourceConfig;
+import exception.DatabaseException;
+import model.ProducerExecutionContext;
 import model.config.BenchmarkMode;
+import model.db.PrimaryKey;
+import model.db.TableFieldMetaInfo;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import util.CountStat;
+import util.DbUtil;
 import util.SyncUtil;
 import worker.MyThreadPool;
 import worker.MyWorkerPool;
@@ -37,6 +42,7 @@ import worker.tpch.model.BatchDeleteSqlEvent;
 import worker.tpch.model.BatchInsertSql2Event;
 import worker.tpch.pruducer.TpchUDeleteProducer;
 import worker.tpch.pruducer.TpchUInsertProducer;
+import worker.update.BatchUpdateConsumer;
 import worker.update.ReplaceConsumer;
 import worker.update.ShardedReplaceConsumer;
 import worker.update.UpdateConsumer;
@@ -44,6 +50,10 @@ import worker.update.UpdateWithFuncConsumer;
 import worker.update.UpdateWithFuncInConsumer;
 import worker.util.UpdateUtil;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -64,6 +74,23 @@ public class UpdateExecutor extends WriteDbExecutor {
             doUpdateWithFunc(tableName);
             return;
         }
+        switch (consumerExecutionContext.getUpdateMode()) {
+        case BATCH:
+            if (configureBatchUpdate(tableName)) {
+                configureCommonContextAndRun(BatchUpdateConsumer.class, producerExecutionContext,
+                    consumerExecutionContext, tableName, useBlockReader());
+                return;
+            }
+            break;
+        case COMPARE:
+            if (configureBatchUpdate(tableName)) {
+                doCompareUpdateMode(tableName);
+                return;
+            }
+            break;
+        default:
+            break;
+        }
         if (!StringUtils.isEmpty(consumerExecutionContext.getWhereCondition())) {
             // 有where子句用默认方法
             doDefaultUpdate(UpdateConsumer.class, tableName);
@@ -78,6 +105,14 @@ public class UpdateExecutor extends WriteDbExecutor {
         }
     }
 
+    /**
+     * 使用函数更新时重复执行会改变结果
+     */
+    @Override
+    protected boolean isReplayable() {
+        return !consumerExecutionContext.isFuncSqlForUpdateEnabled();
+    }
+
     @Override
     public void execute() {
         if (producerExecutionContext.getBenchmarkMode() != BenchmarkMode.NONE) {
@@ -274,4 +309,84 @@ public class UpdateExecutor extends WriteDbExecutor {
         configureCommonContextAndRun(clazz, producerExecutionContext,
             consumerExecutionContext, tableName, useBlockReader());
     }
+
+    /**
+     * @return 无法按批更新时返回 false, 使用逐行更新
+     */
+    private boolean configureBatchUpdate(String tableName) {
+        TableFieldMetaInfo tableFieldMetaInfo = consumerExecutionContext.getTableFieldMetaInfo(tableName);
+        if (consumerExecutionContext.getTablePkList(tableName).isEmpty()) {
+            logger.warn("表 {} 没有主键, 无法按批更新", tableName);
+            return false;
+        }
+        if (UpdateUtil.getUpdatedFields(consumerExecutionContext.getTablePkIndexSet(tableName),
+            tableFieldMetaInfo.getFieldMetaInfoList()).isEmpty()) {
+            logger.warn("表 {} 没有需要更新的字段, 无法按批更新", tableName);
+            return false;
+        }
+        consumerExecutionContext.setToUpdateColumns(UpdateUtil.formatToReplaceColumns(tableFieldMetaInfo));
+        if (!StringUtils.isEmpty(consumerExecutionContext.getWhereCondition())) {
+            try (Connection conn = dataSource.getConnection()) {
+                consumerExecutionContext.setValuesRowSupported(DbUtil.isValuesRowSupported(conn));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            logger.info("表 {} 按批更新使用 {}", tableName,
+                consumerExecutionContext.isValuesRowSupported() ? "VALUES ROW" : "UNION ALL");
+        }
+        return true;
+    }
+
+    /**
+     * 将原表依次复制为临时表, 以逐行与按批方式更新
+     * 输出两者的耗时, 不修改原表
+     * 每次使用不带断点状态的生产者上下文副本, 避免第二次沿用第一次的进度
+     */
+    private void doCompareUpdateMode(String tableName) {
+        updateBenchTable(tableName, "row", UpdateConsumer.class);
+        if (consumerExecutionContext.getException() == null) {
+            updateBenchTable(tableName, "batch", BatchUpdateConsumer.class);
+        }
+    }
+
+    private void updateBenchTable(String tableName, String mode, Class<? extends BaseWorkHandler> clazz) {
+        Map<String, TableFieldMetaInfo> tableFieldMetaInfo = consumerExecutionContext.getTableFieldMetaInfo();
+        Map<String, List<PrimaryKey>> tablePkList = consumerExecutionContext.getTablePkList();
+        String benchTableName = tableName + "_bench_" + mode;
+        try (Connection conn = dataSource.getConnection()) {
+            DbUtil.dropTableIfExists(conn, benchTableName);
+            DbUtil.createTableLike(conn, benchTableName, tableName);
+            DbUtil.copyTableData(conn, benchTableName, tableName);
+        } catch (SQLException | DatabaseException e) {
+            throw new RuntimeException(e);
+        }
+        tableFieldMetaInfo.put(benchTableName, tableFieldMetaInfo.get(tableName));
+        tablePkList.put(benchTableName, tablePkList.get(tableName));
+        consumerExecutionContext.setTablePkList(tablePkList);
+        ProducerExecutionContext originContext = producerExecutionContext;
+        producerExecutionContext = originContext.copyForRerun();
+        try {
+            long startRowCount = CountStat.getDbRowCount().get();
+            long startTime = System.nanoTime();
+            configureCommonContextAndRun(clazz, producerExecutionContext, consumerExecutionContext,
+                tableName, benchTableName, useBlockReader());
+            long costMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+            long rowCount = CountStat.getDbRowCount().get() - startRowCount;
+            logger.info("表 {} 以 {} 方式更新 {} 行, 耗时 {} ms, {} 行/秒", tableName, mode,
+                rowCount, costMillis, rowCount * 1000 / costMillis);
+        } finally {
+            if (producerExecutionContext.getException() != null) {
+                originContext.setException(producerExecutionContext.getException());
+            }
+            producerExecutionContext = originContext;
+            tableFieldMetaInfo.remove(benchTableName);
+            tablePkList.remove(benchTableName);
+            consumerExecutionContext.setTablePkList(tablePkList);
+            try (Connection conn = dataSource.getConnection()) {
+                DbUtil.dropTableIfExists(conn, benchTableName);
+            } catch (SQLException | DatabaseException e) {
+                logger.warn("Failed to drop table {}: {}", benchTableName, e.getMessage());
+            }
+        }
+    }
 }
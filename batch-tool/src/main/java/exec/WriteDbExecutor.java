@@ -24,8 +24,11 @@ import datasource.DataSourceConfig;
 import exception.DatabaseException;
 import model.ConsumerExecutionContext;
 import model.ProducerExecutionContext;
+import model.config.BlockCompletionJournal;
+import model.config.BlockEventCounter;
 import model.config.GlobalVar;
 import model.config.QuoteEncloseMode;
+import model.db.AutoPartitionInfo;
 import model.db.PartitionKey;
 import model.db.PrimaryKey;
 import model.db.TableFieldMetaInfo;
@@ -37,13 +40,14 @@ import util.DbUtil;
 import worker.common.BaseWorkHandler;
 import worker.common.ReadFileWithBlockProducer;
 import worker.tpch.model.TpchTableModel;
+import worker.util.PartitionRouter;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -57,10 +61,18 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class WriteDbExecutor extends BaseExecutor {
     private static final Logger logger = LoggerFactory.getLogger(WriteDbExecutor.class);
 
+    /**
+     * 数据块完成日志的刷盘间隔
+     */
+    private static final long JOURNAL_FLUSH_INTERVAL_MILLIS = 200;
+
     protected ProducerExecutionContext producerExecutionContext;
     protected ConsumerExecutionContext consumerExecutionContext;
     protected List<String> tableNames;
 
+    private ScheduledThreadPoolExecutor progressScheduler = null;
+    private ReadFileWithBlockProducer blockProducer = null;
+
     public WriteDbExecutor(DataSourceConfig dataSourceConfig, DruidDataSource druid,
                            BaseOperateCommand baseCommand) {
         super(dataSourceConfig, druid, baseCommand);
@@ -154,54 +166,133 @@ public abstract class WriteDbExecutor extends BaseExecutor {
         consumerExecutionContext.setTablePartitionKey(tablePartitionKey);
     }
 
+    /**
+     * 配置客户端的分片路由
+     * AUTO 模式表按分区元信息路由, 其余表按划分键路由
+     *
+     * @param usePartitionRouter 为 false 时 AUTO 模式表不在客户端路由
+     * @return 无法在客户端路由时返回 false
+     */
+    protected boolean configureShardRouting(String tableName, boolean usePartitionRouter) {
+        AutoPartitionInfo partitionInfo;
+        try (Connection conn = dataSource.getConnection()) {
+            partitionInfo = DbUtil.getAutoPartitionInfo(conn, getSchemaName(), tableName,
+                consumerExecutionContext.getTableFieldMetaInfo(tableName).getFieldMetaInfoList());
+        } catch (SQLException | DatabaseException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedOperationException e) {
+            logger.warn("表 {} 无法在客户端路由: {}", tableName, e.getMessage());
+            return false;
+        }
+        if (partitionInfo == null) {
+            configurePartitionKey();
+            configureTopology();
+            return true;
+        }
+        if (!usePartitionRouter) {
+            return false;
+        }
+        PartitionRouter router = createPartitionRouter(partitionInfo);
+        if (router == null) {
+            return false;
+        }
+        Map<String, PartitionRouter> tablePartitionRouter = new HashMap<>();
+        tablePartitionRouter.put(tableName, router);
+        consumerExecutionContext.setTablePartitionRouter(tablePartitionRouter);
+        logger.info("表 {} 按 {} 分区在客户端路由至 {} 个物理表", tableName,
+            partitionInfo.getMethod(), router.getTopologyList().size());
+        return true;
+    }
+
+    /**
+     * @return 与服务端路由结果不一致时返回 null
+     */
+    private PartitionRouter createPartitionRouter(AutoPartitionInfo partitionInfo) {
+        String tableName = partitionInfo.getTableName();
+        try (Connection conn = dataSource.getConnection()) {
+            PartitionRouter router = PartitionRouter.create(partitionInfo);
+            if (router.verify(conn)) {
+                return router;
+            }
+            logger.warn("表 {} 的分区计算结果与服务端不一致, 不在客户端路由", tableName);
+        } catch (SQLException e) {
+            logger.warn("表 {} 的分区路由校验失败: {}", tableName, e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            logger.warn("表 {} 无法在客户端路由: {}", tableName, e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * 检查进度，记录断点续传点
+     * 数据块完成日志频繁刷盘, 历史文件中的低水位每分钟更新一次
      */
     @Override
     protected void checkConsumeProgress(ReadFileWithBlockProducer producers, BaseWorkHandler[] consumers) {
-        ScheduledThreadPoolExecutor checkConsumePartFinishScheduler = new ScheduledThreadPoolExecutor(1,
+        this.blockProducer = producers;
+        this.progressScheduler = new ScheduledThreadPoolExecutor(1,
             r -> new Thread(r, "[check-progress-thread]"));
-        checkConsumePartFinishScheduler.scheduleAtFixedRate(() -> {
-            AtomicBoolean[] produceProgress = producers.getFileDoneList();
-            long nextDoBlockIndex;
-            for (int i = producerExecutionContext.getNextFileIndex(); i < produceProgress.length; ++i) {
-                nextDoBlockIndex = Long.MAX_VALUE;
-                ConcurrentHashMap<Long, AtomicInteger> fileDone =
-                    producerExecutionContext.getEventCounter().get(i);
-                for (ConcurrentHashMap.Entry<Long, AtomicInteger> entry : fileDone.entrySet()) {
-                    if (entry.getValue().get() > 0) {
-                        nextDoBlockIndex = nextDoBlockIndex > entry.getKey() ?
-                            entry.getKey() : nextDoBlockIndex;
-                    }
-                }
-                if (nextDoBlockIndex == Long.MAX_VALUE) {
-                    // means now nextDoFileIndex consume over
-                    if (produceProgress[i].get()) {
-                        // means all file consume over
-                        if (i + 1 == produceProgress.length) {
-                            logger.info("所有文件处理完毕");
-                        }
-                    } else {
-                        producerExecutionContext.setNextFileIndex(i);
-                        producerExecutionContext.setNextBlockIndex(0);
-                        break;
+        BlockCompletionJournal journal = producerExecutionContext.getEventCounter().getJournal();
+        progressScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                logger.error("Failed to flush block journal: {}", e.getMessage());
+            }
+        }, JOURNAL_FLUSH_INTERVAL_MILLIS, JOURNAL_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        progressScheduler.scheduleAtFixedRate(() -> {
+            updateResumePoint();
+            producerExecutionContext.saveToHistoryFile(false);
+            logger.info("下一个文件 {}", producerExecutionContext.getNextFileIndex());
+            logger.info("下一数据块 {}", producerExecutionContext.getNextBlockIndex());
+        }, 30, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 之前的数据块均已完成的位置
+     */
+    private void updateResumePoint() {
+        AtomicBoolean[] produceProgress = blockProducer.getFileDoneList();
+        BlockEventCounter eventCounter = producerExecutionContext.getEventCounter();
+        for (int i = producerExecutionContext.getNextFileIndex(); i < produceProgress.length; ++i) {
+            long nextDoBlockIndex = eventCounter.getMinPendingBlockIndex(i);
+            if (nextDoBlockIndex == Long.MAX_VALUE) {
+                // means now nextDoFileIndex consume over
+                if (produceProgress[i].get()) {
+                    // means all file consume over
+                    if (i + 1 == produceProgress.length) {
+                        logger.info("所有文件处理完毕");
                     }
                 } else {
                     producerExecutionContext.setNextFileIndex(i);
-                    producerExecutionContext.setNextBlockIndex(nextDoBlockIndex);
+                    producerExecutionContext.setNextBlockIndex(0);
                     break;
                 }
+            } else {
+                producerExecutionContext.setNextFileIndex(i);
+                producerExecutionContext.setNextBlockIndex(nextDoBlockIndex);
+                break;
             }
-            producerExecutionContext.saveToHistoryFile(false);
-            logger.info("下一个文件 {}", producerExecutionContext.getNextFileIndex());
-            logger.info("下一数据块 {}", producerExecutionContext.getNextBlockIndex());
-        }, 30, 60, TimeUnit.SECONDS);
-        checkConsumePartFinishScheduler.shutdown();
+        }
     }
 
     @Override
     protected void onWorkFinished() {
-        producerExecutionContext.saveToHistoryFile(true);
+        if (progressScheduler != null) {
+            progressScheduler.shutdownNow();
+            progressScheduler = null;
+        }
+        if (hasFatalException()) {
+            // 只记录已完成的部分
+            if (blockProducer != null) {
+                updateResumePoint();
+                producerExecutionContext.saveToHistoryFile(false);
+            }
+        } else {
+            producerExecutionContext.saveToHistoryFile(true);
+        }
+        producerExecutionContext.closeBlockJournal();
+        blockProducer = null;
     }
 
     @Override
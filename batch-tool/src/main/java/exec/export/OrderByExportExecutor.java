@@ -33,6 +33,8 @@ import util.FileUtil;
 import util.SyncUtil;
 import worker.MyThreadPool;
 import worker.export.order.DirectOrderExportWorker;
+import worker.export.order.ExternalMergeExportConsumer;
+import worker.export.order.ExternalSortExportProducer;
 import worker.export.order.LocalOrderByExportProducer;
 import worker.export.order.OrderByExportEvent;
 import worker.export.order.OrderByExportProducer;
@@ -41,8 +43,12 @@ import worker.export.order.ParallelMergeExportConsumer;
 import worker.export.order.ParallelOrderByExportEvent;
 import worker.factory.ExportWorkerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -229,6 +235,77 @@ public class OrderByExportExecutor extends BaseExportExecutor {
         }
     }
 
+    /**
+     * 在本地进行外部排序
+     * 各分片按内存预算将有序段写入临时文件, 再使用败者树多路归并
+     */
+    private void handleExportWithOrderByExternalSort(String tableName) {
+        List<TableTopology> topologyList;
+        List<FieldMetaInfo> orderByColumnInfoList;
+        List<File> runFiles = Collections.synchronizedList(new ArrayList<>());
+        try (Connection connection = dataSource.getConnection()) {
+            String filePathPrefix = FileUtil.getFilePathPrefix(config.getPath(),
+                config.getFilenamePrefix(), tableName);
+            File tmpDir = new File(filePathPrefix).getAbsoluteFile().getParentFile();
+            topologyList = DbUtil.getTopology(connection, tableName);
+            TableFieldMetaInfo tableFieldMetaInfo = DbUtil.getTableFieldMetaInfo(connection,
+                getSchemaName(), tableName);
+            orderByColumnInfoList = DbUtil.getFieldMetaInfoListByColNames(connection, getSchemaName(),
+                tableName, config.getOrderByColumnNameList());
+            long memoryBudget = config.getSortMemoryInMb() * 1024L * 1024L;
+            // 分片数
+            final int shardSize = topologyList.size();
+            ExecutorService executor = MyThreadPool.createExecutorWithEnsure(APP_NAME, shardSize);
+            CountDownLatch countDownLatch = SyncUtil.newMainCountDownLatch(shardSize);
+            AtomicBoolean failed = new AtomicBoolean(false);
+            for (int i = 0; i < shardSize; i++) {
+                ExternalSortExportProducer producer = new ExternalSortExportProducer(dataSource,
+                    topologyList.get(i), tableFieldMetaInfo, config.getOrderByColumnNameList(),
+                    orderByColumnInfoList, memoryBudget / shardSize, tmpDir, runFiles, failed, countDownLatch);
+                executor.submit(producer);
+            }
+            int maxLine;
+            switch (config.getExportWay()) {
+            case MAX_LINE_NUM_IN_SINGLE_FILE:
+                maxLine = config.getLimitNum();
+                break;
+            case FIXED_FILE_NUM:
+                // 固定文件数的情况 先拿到全部的行数
+                double totalRowCount = DbUtil.getTableRowCount(connection, tableName);
+                int fileNum = config.getLimitNum();
+                // 再转为限制单文件行数的形式
+                maxLine = (int) Math.ceil(totalRowCount / fileNum);
+                break;
+            case DEFAULT:
+                maxLine = 0;
+                break;
+            default:
+                throw new RuntimeException("Unsupported export exception");
+            }
+            try {
+                // 等待生产者把有序段全部写入临时文件
+                countDownLatch.await();
+                executor.shutdown();
+                if (failed.get()) {
+                    throw new IllegalStateException("Failed to spill sorted runs of table " + tableName);
+                }
+                ExternalMergeExportConsumer consumer = new ExternalMergeExportConsumer(filePathPrefix,
+                    config.getSeparator(), orderByColumnInfoList, runFiles,
+                    tableFieldMetaInfo.getFieldMetaInfoList().size(), memoryBudget, maxLine);
+                consumer.consume();
+            } catch (InterruptedException e) {
+                logger.error("Interrupted when waiting for finish", e);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to merge sorted runs of table " + tableName, e);
+            }
+            logger.info("导出 {} 数据完成", tableName);
+        } catch (DatabaseException | SQLException e) {
+            logger.error(e.getMessage(), e);
+        } finally {
+            ExternalMergeExportConsumer.deleteRunFiles(runFiles);
+        }
+    }
+
     @Override
     protected void handleSingleTableInner(String tableName) throws Exception {
         if (!config.isLocalMerge()) {
@@ -238,6 +315,10 @@ public class OrderByExportExecutor extends BaseExportExecutor {
 
         // 在本地进行多流归并排序
         if (config.isParallelMerge()) {
+            if (config.getSortMemoryInMb() > 0) {
+                handleExportWithOrderByExternalSort(tableName);
+                return;
+            }
             handleExportWithOrderByParallelMerge(tableName);
         } else {
             doExportWithOrderByLocal(tableName);
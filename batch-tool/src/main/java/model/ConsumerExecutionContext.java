@@ -17,11 +17,17 @@
 package model;
 
 import model.config.BaseConfig;
+import model.config.BlockEventCounter;
 import model.config.ConfigConstant;
+import model.config.InsertMode;
+import model.config.UpdateMode;
 import model.db.PartitionKey;
 import model.db.PrimaryKey;
 import model.db.TableFieldMetaInfo;
 import model.db.TableTopology;
+import util.DbUtil;
+import worker.common.AdaptiveBatchController;
+import worker.util.PartitionRouter;
 
 import javax.sql.DataSource;
 import java.util.HashMap;
@@ -29,7 +35,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -88,6 +93,10 @@ public class ConsumerExecutionContext extends BaseConfig {
      * 划分键
      */
     private Map<String, PartitionKey> tablePartitionKey;
+    /**
+     * AUTO 模式表在客户端计算分区
+     */
+    private Map<String, PartitionRouter> tablePartitionRouter;
     /**
      * update tableName set x=2x,y=2y,str=REVERSE(str) where %s;
      */
@@ -101,6 +110,18 @@ public class ConsumerExecutionContext extends BaseConfig {
      * 只读取与处理文件
      */
     private boolean readProcessFileOnly = false;
+    /**
+     * 导入使用的语句类型
+     */
+    private InsertMode insertMode = InsertMode.TEXT;
+    /**
+     * 更新使用的语句类型
+     */
+    private UpdateMode updateMode = UpdateMode.ROW;
+    /**
+     * 服务端是否支持 VALUES ROW(...) 表值构造器
+     */
+    private boolean valuesRowSupported = false;
     /**
      * 删除和更新时使用
      * where 主键 in (...)
@@ -126,7 +147,9 @@ public class ConsumerExecutionContext extends BaseConfig {
 
     private double batchTpsLimitPerConsumer;
 
-    private List<ConcurrentHashMap<Long, AtomicInteger>> eventCounter;
+    private AdaptiveBatchController batchController = null;
+
+    private BlockEventCounter eventCounter;
 
     private boolean useBlock = true;
 
@@ -145,11 +168,11 @@ public class ConsumerExecutionContext extends BaseConfig {
         super(ConfigConstant.DEFAULT_IMPORT_SHARDING_ENABLED);
     }
 
-    public List<ConcurrentHashMap<Long, AtomicInteger>> getEventCounter() {
+    public BlockEventCounter getEventCounter() {
         return eventCounter;
     }
 
-    public void setEventCounter(List<ConcurrentHashMap<Long, AtomicInteger>> eventCounter) {
+    public void setEventCounter(BlockEventCounter eventCounter) {
         this.eventCounter = eventCounter;
     }
 
@@ -280,6 +303,17 @@ public class ConsumerExecutionContext extends BaseConfig {
         this.tablePartitionKey = tablePartitionKey;
     }
 
+    /**
+     * @return 未配置时返回 null
+     */
+    public PartitionRouter getTablePartitionRouter(String tableName) {
+        return tablePartitionRouter == null ? null : tablePartitionRouter.get(tableName);
+    }
+
+    public void setTablePartitionRouter(Map<String, PartitionRouter> tablePartitionRouter) {
+        this.tablePartitionRouter = tablePartitionRouter;
+    }
+
     public int getTpsLimit() {
         return tpsLimit;
     }
@@ -296,6 +330,14 @@ public class ConsumerExecutionContext extends BaseConfig {
         this.batchTpsLimitPerConsumer = batchTpsLimitPerConsumer;
     }
 
+    public AdaptiveBatchController getBatchController() {
+        return batchController;
+    }
+
+    public void setBatchController(AdaptiveBatchController batchController) {
+        this.batchController = batchController;
+    }
+
     @Override
     public String toString() {
         return "ConsumerExecutionContext{" +
@@ -341,6 +383,30 @@ public class ConsumerExecutionContext extends BaseConfig {
         this.readProcessFileOnly = readProcessFileOnly;
     }
 
+    public InsertMode getInsertMode() {
+        return insertMode;
+    }
+
+    public void setInsertMode(InsertMode insertMode) {
+        this.insertMode = insertMode;
+    }
+
+    public UpdateMode getUpdateMode() {
+        return updateMode;
+    }
+
+    public void setUpdateMode(UpdateMode updateMode) {
+        this.updateMode = updateMode;
+    }
+
+    public boolean isValuesRowSupported() {
+        return valuesRowSupported;
+    }
+
+    public void setValuesRowSupported(boolean valuesRowSupported) {
+        this.valuesRowSupported = valuesRowSupported;
+    }
+
     public boolean isWhereInEnabled() {
         return whereInEnabled;
     }
@@ -428,5 +494,20 @@ public class ConsumerExecutionContext extends BaseConfig {
                 throw new UnsupportedOperationException("Do not support multi-table operation with specified columns");
             }
         }
+        if (insertMode == InsertMode.LOAD_DATA) {
+            // 提前检查字符集能否对应到服务端的字符集
+            DbUtil.getMysqlCharsetName(getCharset());
+        } else if (insertMode != InsertMode.TEXT) {
+            if (!sqlEscapeEnabled) {
+                // 预编译语句直接绑定原始值, 文件中已转义的值无法还原
+                throw new IllegalArgumentException("Insert mode " + insertMode + " does not support disabling sql escape");
+            }
+            if (insertMode == InsertMode.COMPARE && insertIgnoreAndResumeEnabled) {
+                throw new IllegalArgumentException("Insert mode COMPARE does not support resuming");
+            }
+        }
+        if (updateMode == UpdateMode.COMPARE && insertIgnoreAndResumeEnabled) {
+            throw new IllegalArgumentException("Update mode COMPARE does not support resuming");
+        }
     }
 }
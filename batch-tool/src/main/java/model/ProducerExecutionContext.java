@@ -18,10 +18,15 @@ package model;
 
 import model.config.BaseConfig;
 import model.config.BenchmarkMode;
+import model.config.BlockCompletionJournal;
+import model.config.BlockEventCounter;
 import model.config.ConfigConstant;
 import model.config.FileLineRecord;
 import model.config.QuoteEncloseMode;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import worker.common.AdaptiveBatchController;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -30,7 +35,6 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Scanner;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,7 +42,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * 读取文件的工作线程上下文
  */
-public class ProducerExecutionContext extends BaseConfig {
+public class ProducerExecutionContext extends BaseConfig implements Cloneable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProducerExecutionContext.class);
 
     private ThreadPoolExecutor producerExecutor;
 
@@ -52,12 +58,26 @@ public class ProducerExecutionContext extends BaseConfig {
 
     private boolean trimRight = false;
 
+    /**
+     * BlockReader 以字节切片的形式发送数据块
+     */
+    private boolean zeroCopyEnabled = false;
+    /**
+     * BlockReader 将整个数据块作为一个字节切片事件发送
+     * 供 LOAD DATA 使用, 消费者不切分字段, 无字符集限制
+     */
+    private boolean wholeBlockSliceEnabled = false;
+    /**
+     * BlockReader 按数据块范围直接读取对象存储上的未压缩文件, 不先下载到本地
+     */
+    private boolean remoteRangeReadEnabled = false;
+
     /**
      * in MB
      */
     private int readBlockSizeInMb = 2;
 
-    private List<ConcurrentHashMap<Long, AtomicInteger>> eventCounter;
+    private BlockEventCounter eventCounter;
 
     private int nextFileIndex = 0;
     private long nextBlockIndex = 0;
@@ -74,6 +94,11 @@ public class ProducerExecutionContext extends BaseConfig {
 
     private volatile Exception exception;
 
+    /**
+     * 开启自适应批量时由控制器决定每批的行数
+     */
+    private AdaptiveBatchController batchController = null;
+
     protected BenchmarkMode benchmarkMode;
 
     /**
@@ -86,10 +111,39 @@ public class ProducerExecutionContext extends BaseConfig {
      */
     protected int scale;
 
+    /**
+     * 不为空时将 TPC-H 数据生成为该目录下的 .tbl 文件
+     */
+    protected String tpchOutputDir = null;
+
     public ProducerExecutionContext() {
         super(ConfigConstant.DEFAULT_IMPORT_SHARDING_ENABLED);
     }
 
+    /**
+     * 复制配置项, 不包含读取进度、断点与计数等运行状态
+     * 用于将同一批文件再导入一次, 不记录断点
+     */
+    public ProducerExecutionContext copyForRerun() {
+        ProducerExecutionContext context;
+        try {
+            context = (ProducerExecutionContext) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        context.producerExecutor = null;
+        context.eventCounter = null;
+        context.nextFileIndex = 0;
+        context.nextBlockIndex = 0;
+        context.contextString = null;
+        context.historyFile = null;
+        context.emittedDataCounter = null;
+        context.countDownLatch = null;
+        context.exception = null;
+        context.batchController = null;
+        return context;
+    }
+
     public ThreadPoolExecutor getProducerExecutor() {
         return producerExecutor;
     }
@@ -138,11 +192,11 @@ public class ProducerExecutionContext extends BaseConfig {
         this.readBlockSizeInMb = readBlockSizeInMb;
     }
 
-    public List<ConcurrentHashMap<Long, AtomicInteger>> getEventCounter() {
+    public BlockEventCounter getEventCounter() {
         return eventCounter;
     }
 
-    public void setEventCounter(List<ConcurrentHashMap<Long, AtomicInteger>> eventCounter) {
+    public void setEventCounter(BlockEventCounter eventCounter) {
         this.eventCounter = eventCounter;
     }
 
@@ -178,12 +232,17 @@ public class ProducerExecutionContext extends BaseConfig {
         this.contextString = contextString;
     }
 
-    public void checkAndSetContextString(String newContextString) {
+    /**
+     * @return 上下文是否变化, 变化时不能使用之前的断点
+     */
+    public boolean checkAndSetContextString(String newContextString) {
         if (!StringUtils.equals(contextString, newContextString)) {
             setContextString(newContextString);
             setNextFileIndex(0);
             setNextBlockIndex(0);
+            return true;
         }
+        return false;
     }
 
     public String getHistoryFile() {
@@ -246,6 +305,34 @@ public class ProducerExecutionContext extends BaseConfig {
         }
     }
 
+    /**
+     * 数据块完成日志与历史文件放在一起
+     *
+     * @param reset 上下文变化时清空之前的记录
+     */
+    public void openBlockJournal(boolean reset) {
+        String journalFile = historyFile + ConfigConstant.BLOCK_JOURNAL_SUFFIX;
+        try {
+            eventCounter.setJournal(BlockCompletionJournal.open(journalFile,
+                dataFileRecordList.size(), reset));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open block journal " + journalFile, e);
+        }
+    }
+
+    public void closeBlockJournal() {
+        BlockCompletionJournal journal = eventCounter == null ? null : eventCounter.getJournal();
+        if (journal == null) {
+            return;
+        }
+        eventCounter.setJournal(null);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Failed to close block journal: {}", e.getMessage());
+        }
+    }
+
     public CountDownLatch getCountDownLatch() {
         return countDownLatch;
     }
@@ -311,6 +398,56 @@ public class ProducerExecutionContext extends BaseConfig {
         this.trimRight = trimRight;
     }
 
+    public boolean isZeroCopyEnabled() {
+        return zeroCopyEnabled;
+    }
+
+    public void setZeroCopyEnabled(boolean zeroCopyEnabled) {
+        this.zeroCopyEnabled = zeroCopyEnabled;
+    }
+
+    public boolean isRemoteRangeReadEnabled() {
+        return remoteRangeReadEnabled;
+    }
+
+    public void setRemoteRangeReadEnabled(boolean remoteRangeReadEnabled) {
+        this.remoteRangeReadEnabled = remoteRangeReadEnabled;
+    }
+
+    public boolean isWholeBlockSliceEnabled() {
+        return wholeBlockSliceEnabled;
+    }
+
+    public void setWholeBlockSliceEnabled(boolean wholeBlockSliceEnabled) {
+        this.wholeBlockSliceEnabled = wholeBlockSliceEnabled;
+    }
+
+    public AdaptiveBatchController getBatchController() {
+        return batchController;
+    }
+
+    public void setBatchController(AdaptiveBatchController batchController) {
+        this.batchController = batchController;
+    }
+
+    public String getTpchOutputDir() {
+        return tpchOutputDir;
+    }
+
+    public void setTpchOutputDir(String tpchOutputDir) {
+        this.tpchOutputDir = tpchOutputDir;
+    }
+
+    /**
+     * 字节切片模式直接在字节上查找分隔符与引号
+     * 需保证这些单字节字符不会出现在多字节字符的中间
+     */
+    private boolean isByteSplittableCharset() {
+        return this.charset.equals(StandardCharsets.UTF_8)
+            || this.charset.equals(StandardCharsets.US_ASCII)
+            || this.charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
     @Override
     public String toString() {
         return "ProducerExecutionContext{" +
@@ -325,6 +462,9 @@ public class ProducerExecutionContext extends BaseConfig {
     @Override
     public void validate() {
         super.validate();
+        if (zeroCopyEnabled && !isByteSplittableCharset()) {
+            throw new IllegalArgumentException("Zero copy mode does not support charset: " + charset);
+        }
         if (this.quoteEncloseMode == QuoteEncloseMode.FORCE) {
             if (dataFileRecordList != null) {
                 // 指定引号转义模式则采用安全的方式执行
@@ -0,0 +1,227 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按数据块记录的断点续传日志
+ * 每个文件维护一个完成位图, 数据块完成时无锁置位,
+ * 由刷盘线程批量追加 (文件序号, 数据块序号) 记录并 fsync
+ * 续传时跳过已完成的数据块, 未完成的数据块整块重新处理
+ */
+public class BlockCompletionJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockCompletionJournal.class);
+
+    /**
+     * int 文件序号 + long 数据块序号
+     */
+    static final int RECORD_SIZE = 12;
+
+    private static final int FLUSH_BUFFER_RECORDS = 4096;
+
+    private final File file;
+    private final FileChannel channel;
+    private final CompletionBitmap[] bitmaps;
+    /**
+     * 已置位但尚未落盘的数据块
+     */
+    private final ConcurrentLinkedQueue<long[]> pending = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_SIZE * FLUSH_BUFFER_RECORDS);
+    private long completedCount = 0;
+
+    private BlockCompletionJournal(File file, FileChannel channel, int fileCount) {
+        this.file = file;
+        this.channel = channel;
+        this.bitmaps = new CompletionBitmap[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            bitmaps[i] = new CompletionBitmap();
+        }
+    }
+
+    /**
+     * @param reset 上下文变化时清空之前的记录
+     */
+    public static BlockCompletionJournal open(String path, int fileCount, boolean reset) throws IOException {
+        File file = new File(path);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        BlockCompletionJournal journal = new BlockCompletionJournal(file, channel, fileCount);
+        try {
+            if (reset) {
+                channel.truncate(0);
+                channel.force(true);
+            } else {
+                journal.replay();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * 忽略崩溃时写了一半的尾部记录
+     */
+    private void replay() throws IOException {
+        long size = channel.size();
+        long validSize = size - size % RECORD_SIZE;
+        ByteBuffer readBuffer = ByteBuffer.allocate(RECORD_SIZE * FLUSH_BUFFER_RECORDS);
+        long pos = 0;
+        while (pos < validSize) {
+            readBuffer.clear();
+            readBuffer.limit((int) Math.min(readBuffer.capacity(), validSize - pos));
+            while (readBuffer.hasRemaining()) {
+                int n = channel.read(readBuffer, pos + readBuffer.position());
+                if (n < 0) {
+                    throw new IOException("Unexpected end of journal " + file.getPath());
+                }
+            }
+            readBuffer.flip();
+            while (readBuffer.remaining() >= RECORD_SIZE) {
+                int fileIndex = readBuffer.getInt();
+                long blockIndex = readBuffer.getLong();
+                if (fileIndex < 0 || fileIndex >= bitmaps.length || blockIndex < 0) {
+                    throw new IOException("Illegal record in journal " + file.getPath()
+                        + ": file " + fileIndex + ", block " + blockIndex);
+                }
+                if (bitmaps[fileIndex].set(blockIndex)) {
+                    completedCount++;
+                }
+            }
+            pos += readBuffer.limit();
+        }
+        if (validSize != size) {
+            logger.warn("Truncate incomplete record at the end of {}", file.getPath());
+            channel.truncate(validSize);
+        }
+        channel.position(validSize);
+        if (completedCount > 0) {
+            logger.info("从 {} 恢复已完成的数据块数：{}", file.getPath(), completedCount);
+        }
+    }
+
+    public boolean isCompleted(int fileIndex, long blockIndex) {
+        return bitmaps[fileIndex].get(blockIndex);
+    }
+
+    /**
+     * 无锁置位, 记录在下一次 flush 时落盘
+     */
+    public void markCompleted(int fileIndex, long blockIndex) {
+        if (bitmaps[fileIndex].set(blockIndex)) {
+            pending.offer(new long[] {fileIndex, blockIndex});
+        }
+    }
+
+    /**
+     * 追加未落盘的记录并 fsync
+     */
+    public synchronized void flush() throws IOException {
+        if (pending.isEmpty() || !channel.isOpen()) {
+            return;
+        }
+        long[] record;
+        while ((record = pending.poll()) != null) {
+            if (writeBuffer.remaining() < RECORD_SIZE) {
+                writeFully();
+            }
+            writeBuffer.putInt((int) record[0]);
+            writeBuffer.putLong(record[1]);
+            completedCount++;
+        }
+        writeFully();
+        channel.force(false);
+    }
+
+    private void writeFully() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    public synchronized long getCompletedCount() {
+        return completedCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 按页懒加载的位图, 置位与读取均无锁
+     */
+    static class CompletionBitmap {
+        private static final int PAGE_SHIFT = 16;
+        private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+        private static final int MAX_PAGES = 1 << 12;
+
+        private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(MAX_PAGES);
+
+        boolean get(long index) {
+            AtomicLongArray page = pages.get(pageIndex(index));
+            if (page == null) {
+                return false;
+            }
+            int bit = (int) (index & (PAGE_BITS - 1));
+            return (page.get(bit >>> 6) & (1L << bit)) != 0;
+        }
+
+        /**
+         * @return 此前未置位
+         */
+        boolean set(long index) {
+            int pageIndex = pageIndex(index);
+            AtomicLongArray page = pages.get(pageIndex);
+            if (page == null) {
+                pages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_BITS >>> 6));
+                page = pages.get(pageIndex);
+            }
+            int bit = (int) (index & (PAGE_BITS - 1));
+            long mask = 1L << bit;
+            return (page.getAndAccumulate(bit >>> 6, mask, (prev, m) -> prev | m) & mask) == 0;
+        }
+
+        private static int pageIndex(long index) {
+            long pageIndex = index >>> PAGE_SHIFT;
+            if (pageIndex >= MAX_PAGES) {
+                throw new IllegalArgumentException("Block index is too large: " + index);
+            }
+            return (int) pageIndex;
+        }
+    }
+}
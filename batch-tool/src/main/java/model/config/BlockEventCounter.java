@@ -0,0 +1,111 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录每个数据块尚未处理完的事件数
+ * 读取线程处理数据块期间持有一个计数, 计数归零即数据块已完整写入
+ */
+public class BlockEventCounter {
+
+    private final List<ConcurrentHashMap<Long, AtomicInteger>> counters;
+    /**
+     * 有事件失败的数据块, 不计为完成
+     */
+    private final List<Set<Long>> failedBlocks;
+
+    private volatile BlockCompletionJournal journal = null;
+
+    public BlockEventCounter(int fileCount) {
+        this.counters = new ArrayList<>(fileCount);
+        this.failedBlocks = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            counters.add(new ConcurrentHashMap<>(16));
+            failedBlocks.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    public void retain(int fileIndex, long blockIndex) {
+        counters.get(fileIndex).computeIfAbsent(blockIndex, k -> new AtomicInteger(0))
+            .incrementAndGet();
+    }
+
+    public void release(int fileIndex, long blockIndex) {
+        release(fileIndex, blockIndex, true);
+    }
+
+    /**
+     * 读取越过文件末尾的数据块没有数据, 不记为完成
+     */
+    public void releaseEmpty(int fileIndex, long blockIndex) {
+        release(fileIndex, blockIndex, false);
+    }
+
+    private void release(int fileIndex, long blockIndex, boolean journaled) {
+        ConcurrentHashMap<Long, AtomicInteger> fileCounter = counters.get(fileIndex);
+        AtomicInteger counter = fileCounter.get(blockIndex);
+        if (counter.decrementAndGet() == 0) {
+            // 归零后不会再有该数据块的事件
+            fileCounter.remove(blockIndex, counter);
+            BlockCompletionJournal journal = this.journal;
+            if (journaled && journal != null && !failedBlocks.get(fileIndex).contains(blockIndex)) {
+                journal.markCompleted(fileIndex, blockIndex);
+            }
+        }
+    }
+
+    /**
+     * 先记录失败再释放, 保证计数归零时能看到失败标记
+     */
+    public void releaseOnFailure(int fileIndex, long blockIndex) {
+        failedBlocks.get(fileIndex).add(blockIndex);
+        release(fileIndex, blockIndex);
+    }
+
+    /**
+     * @return 该文件中仍在处理的最小数据块序号, 不存在时返回 Long.MAX_VALUE
+     */
+    public long getMinPendingBlockIndex(int fileIndex) {
+        long minBlockIndex = Long.MAX_VALUE;
+        for (Long blockIndex : counters.get(fileIndex).keySet()) {
+            minBlockIndex = Math.min(minBlockIndex, blockIndex);
+        }
+        for (Long blockIndex : failedBlocks.get(fileIndex)) {
+            minBlockIndex = Math.min(minBlockIndex, blockIndex);
+        }
+        return minBlockIndex;
+    }
+
+    public boolean isCompleted(int fileIndex, long blockIndex) {
+        BlockCompletionJournal journal = this.journal;
+        return journal != null && journal.isCompleted(fileIndex, blockIndex);
+    }
+
+    public BlockCompletionJournal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(BlockCompletionJournal journal) {
+        this.journal = journal;
+    }
+}
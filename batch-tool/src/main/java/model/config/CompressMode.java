@@ -17,18 +17,54 @@
 package model.config;
 
 public enum CompressMode {
-    NONE,
-    GZIP;
+    NONE("", -1),
+    GZIP(".gz", 6),
+    /**
+     * 按固定大小分帧压缩, 各帧可独立解压
+     */
+    ZSTD(".zst", 3),
+    /**
+     * 按固定大小分帧压缩, 各帧可独立解压
+     * 级别为 0 时使用快速压缩, 大于 0 时使用高压缩比模式
+     */
+    LZ4(".lz4", 0);
+
+    private final String suffix;
+    private final int defaultLevel;
+
+    CompressMode(String suffix, int defaultLevel) {
+        this.suffix = suffix;
+        this.defaultLevel = defaultLevel;
+    }
 
     public static CompressMode fromString(String compressMode) {
-        // NONE / GZIP
+        // NONE / GZIP / ZSTD / LZ4
         switch (compressMode.toUpperCase()) {
         case "NONE":
             return NONE;
         case "GZIP":
             return GZIP;
+        case "ZSTD":
+            return ZSTD;
+        case "LZ4":
+            return LZ4;
         default:
             throw new IllegalArgumentException("Unrecognized compression mode: " + compressMode);
         }
     }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getDefaultLevel() {
+        return defaultLevel;
+    }
+
+    /**
+     * 未指定压缩级别时使用默认级别
+     */
+    public int getLevel() {
+        return GlobalVar.COMPRESS_LEVEL >= 0 ? GlobalVar.COMPRESS_LEVEL : defaultLevel;
+    }
 }
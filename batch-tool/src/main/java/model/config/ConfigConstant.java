@@ -90,11 +90,21 @@ public class ConfigConstant {
      */
     public static final String DEFAULT_HISTORY_FILE = "history_file";
 
+    /**
+     * 数据块完成日志的文件名后缀, 与历史文件放在一起
+     */
+    public static final String BLOCK_JOURNAL_SUFFIX = ".blocks";
+
     /**
      * DDL语句的文件名后缀
      */
     public static final String DDL_FILE_SUFFIX = ".ddl";
 
+    /**
+     * gzip 成员索引的文件名后缀, 与 bgzip 生成的索引格式相同
+     */
+    public static final String GZIP_INDEX_FILE_SUFFIX = ".gzi";
+
     /**
      * 更新时的整数倍数
      */
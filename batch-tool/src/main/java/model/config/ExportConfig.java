@@ -70,6 +70,11 @@ public class ExportConfig extends BaseConfig {
     private boolean isAscending = true;
     private boolean isLocalMerge = false;
     private boolean isParallelMerge = false;
+    /**
+     * 本地并行归并可使用的内存大小
+     * 大于 0 时使用外部排序, 超出后将有序段写入临时文件
+     */
+    private int sortMemoryInMb = 0;
 
     public enum ExportWay {
         /**
@@ -196,6 +201,17 @@ public class ExportConfig extends BaseConfig {
         isParallelMerge = parallelMerge;
     }
 
+    public int getSortMemoryInMb() {
+        return sortMemoryInMb;
+    }
+
+    public void setSortMemoryInMb(int sortMemoryInMb) {
+        if (sortMemoryInMb < 0) {
+            throw new IllegalArgumentException("Sort memory size cannot be negative: " + sortMemoryInMb);
+        }
+        this.sortMemoryInMb = sortMemoryInMb;
+    }
+
     public int getParallelism() {
         return parallelism;
     }
@@ -242,6 +258,7 @@ public class ExportConfig extends BaseConfig {
             ", isAscending=" + isAscending +
             ", isLocalMerge=" + isLocalMerge +
             ", isParallelMerge=" + isParallelMerge +
+            ", sortMemoryInMb=" + sortMemoryInMb +
             ", parallelism=" + getParallelismConfig() +
             "} " + super.toString();
     }
@@ -31,6 +31,11 @@ public class GlobalVar {
      */
     public static long EMIT_BATCH_SIZE_IN_BYTES = -1;
 
+    /**
+     * 导入时 SQL 耗时 p99 的目标值, 大于 0 时自适应调整每批行数与活跃消费者数
+     */
+    public static long ADAPTIVE_TARGET_P99_MILLIS = 0;
+
     /**
      * RingBuffer 缓冲区大小
      */
@@ -70,6 +75,47 @@ public class GlobalVar {
 
     public static int LOG_INTERVAL = 0;
 
+    /**
+     * 大于 0 时在本机该端口提供 /metrics
+     */
+    public static int METRICS_PORT = 0;
+
+    /**
+     * 导出时的压缩级别, 小于 0 时使用各压缩模式的默认级别
+     */
+    public static int COMPRESS_LEVEL = -1;
+
+    /**
+     * 导出 gzip 文件时共享的压缩线程数
+     */
+    public static int COMPRESS_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 导出至对象存储时每个上传分片的大小
+     * 除最后一个分片外不能小于 5MB
+     */
+    public static int UPLOAD_PART_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * 每个导出文件最多缓存的上传分片数, 均在上传中时写入方等待
+     */
+    public static int UPLOAD_PART_BUFFER_NUM = 4;
+
+    /**
+     * 导出至对象存储时共享的上传线程数
+     */
+    public static int UPLOAD_PARALLELISM = 8;
+
+    /**
+     * 从对象存储按范围读取导入文件时共享的下载线程数
+     */
+    public static int DOWNLOAD_PARALLELISM = 8;
+
+    /**
+     * 从对象存储导入时每个文件预读的数据块数
+     */
+    public static int DOWNLOAD_READ_AHEAD_BLOCKS = 4;
+
     public static void setTpchUpdateBatchSize(int batchSize) {
         if (batchSize >= BaseOrderLineUpdateGenerator.SCALE_BASE) {
             throw new IllegalArgumentException(
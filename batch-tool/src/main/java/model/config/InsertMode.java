@@ -0,0 +1,52 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.config;
+
+public enum InsertMode {
+    /**
+     * 默认 拼接 INSERT ... VALUES (...),(...) 文本语句
+     */
+    TEXT,
+    /**
+     * 预编译语句按字段类型绑定参数后批量执行
+     */
+    PREPARED,
+    /**
+     * 以 LOAD DATA LOCAL INFILE 按数据块流式导入
+     */
+    LOAD_DATA,
+    /**
+     * 同一批文件分别以 TEXT 与 PREPARED 导入临时表并对比耗时
+     */
+    COMPARE;
+
+    public static InsertMode fromString(String insertMode) {
+        switch (insertMode.toUpperCase()) {
+        case "TEXT":
+            return TEXT;
+        case "PREPARED":
+            return PREPARED;
+        case "LOAD":
+        case "LOAD_DATA":
+            return LOAD_DATA;
+        case "COMPARE":
+            return COMPARE;
+        default:
+            throw new IllegalArgumentException("Illegal insert mode: " + insertMode);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.config;
+
+public enum UpdateMode {
+    /**
+     * 默认 每行一条 UPDATE 语句
+     * 未指定 where 条件时使用 REPLACE
+     */
+    ROW,
+    /**
+     * 每批数据一条语句:
+     * 指定 where 条件时使用 UPDATE ... JOIN 派生表, 否则使用 INSERT ... ON DUPLICATE KEY UPDATE
+     */
+    BATCH,
+    /**
+     * 将原表分别复制为临时表, 以 ROW 与 BATCH 方式更新并对比耗时
+     */
+    COMPARE;
+
+    public static UpdateMode fromString(String updateMode) {
+        switch (updateMode.toUpperCase()) {
+        case "ROW":
+            return ROW;
+        case "BATCH":
+            return BATCH;
+        case "COMPARE":
+            return COMPARE;
+        default:
+            throw new IllegalArgumentException("Illegal update mode: " + updateMode);
+        }
+    }
+}
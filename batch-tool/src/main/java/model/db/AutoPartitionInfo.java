@@ -0,0 +1,156 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.db;
+
+import java.util.List;
+
+/**
+ * PolarDB-X 2.0 (AUTO 模式) 表的一级分区信息
+ * 来自 INFORMATION_SCHEMA.PARTITIONS 与 SHOW TOPOLOGY
+ */
+public class AutoPartitionInfo {
+
+    public enum Method {
+        HASH,
+        KEY,
+        RANGE,
+        RANGE_COLUMNS,
+        LIST,
+        LIST_COLUMNS;
+
+        public static Method parse(String method) {
+            return Method.valueOf(method.trim().toUpperCase().replace(' ', '_'));
+        }
+    }
+
+    private final String tableName;
+    private final Method method;
+    /**
+     * 分区键字段, index 为字段在导入数据中的位置
+     */
+    private final List<FieldMetaInfo> keyFields;
+    /**
+     * 与 keyFields 一一对应的列定义
+     */
+    private final List<ColumnType> keyColumnTypes;
+    /**
+     * 按分区序号排列
+     */
+    private final List<Partition> partitions;
+
+    public AutoPartitionInfo(String tableName, Method method, List<FieldMetaInfo> keyFields,
+                             List<ColumnType> keyColumnTypes, List<Partition> partitions) {
+        this.tableName = tableName;
+        this.method = method;
+        this.keyFields = keyFields;
+        this.keyColumnTypes = keyColumnTypes;
+        this.partitions = partitions;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public List<FieldMetaInfo> getKeyFields() {
+        return keyFields;
+    }
+
+    public List<ColumnType> getKeyColumnTypes() {
+        return keyColumnTypes;
+    }
+
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    @Override
+    public String toString() {
+        return "AutoPartitionInfo{" +
+            "tableName='" + tableName + '\'' +
+            ", method=" + method +
+            ", keyFields=" + keyFields +
+            ", keyColumnTypes=" + keyColumnTypes +
+            ", partitionCount=" + partitions.size() +
+            '}';
+    }
+
+    /**
+     * INFORMATION_SCHEMA.COLUMNS 中分区键的类型与排序规则
+     */
+    public static class ColumnType {
+        private final String dataType;
+        private final String collation;
+        /**
+         * DECIMAL 的小数位数或时间类型的秒精度
+         */
+        private final int scale;
+
+        public ColumnType(String dataType, String collation, int scale) {
+            this.dataType = dataType;
+            this.collation = collation;
+            this.scale = scale;
+        }
+
+        public String getDataType() {
+            return dataType;
+        }
+
+        public String getCollation() {
+            return collation;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        @Override
+        public String toString() {
+            return dataType + (collation == null ? "" : " COLLATE " + collation);
+        }
+    }
+
+    public static class Partition {
+        private final String name;
+        /**
+         * 分区的边界描述, 如 RANGE 的上界、LIST 的取值、HASH 空间的上界
+         */
+        private final String description;
+        private final TableTopology topology;
+
+        public Partition(String name, String description, TableTopology topology) {
+            this.name = name;
+            this.description = description;
+            this.topology = topology;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public TableTopology getTopology() {
+            return topology;
+        }
+    }
+}
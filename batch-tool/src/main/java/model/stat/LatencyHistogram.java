@@ -0,0 +1,200 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.stat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的对数线性直方图, 分桶方式同 HdrHistogram
+ * 每个 2 的幂区间再等分为 {@link #SUB_BUCKET_COUNT} 个桶, 相对误差不超过 1/32
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * 覆盖 0 到 Long.MAX_VALUE
+     */
+    static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+    private final AtomicLong maxNanos = new AtomicLong(0);
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * 各计数不是原子地一起读取, 记录过程中的快照可能有少量偏差
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+        return new Snapshot(bucketCounts, count, totalNanos.get(), maxNanos.get());
+    }
+
+    @Override
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    @Override
+    public double getTotalSeconds() {
+        return totalNanos.get() / 1e9;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return snapshot().getMeanMillis();
+    }
+
+    @Override
+    public double getP50Millis() {
+        return snapshot().getPercentileMillis(0.5);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return snapshot().getPercentileMillis(0.99);
+    }
+
+    @Override
+    public double getP999Millis() {
+        return snapshot().getPercentileMillis(0.999);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT * 2) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT * 2) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) ((index & (SUB_BUCKET_COUNT - 1)) + SUB_BUCKET_COUNT) << shift;
+    }
+
+    /**
+     * 桶内取中间值
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKET_COUNT * 2) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return bucketLowerBound(index) + (1L << shift) / 2;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * 两次快照之间的记录, 最大值取最高非空桶
+         */
+        public Snapshot minus(Snapshot previous) {
+            long[] diff = new long[counts.length];
+            long diffCount = 0;
+            long diffMax = 0;
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = counts[i] - previous.counts[i];
+                diffCount += diff[i];
+                if (diff[i] > 0) {
+                    diffMax = Math.min(bucketValue(i), maxNanos);
+                }
+            }
+            return new Snapshot(diff, diffCount, totalNanos - previous.totalNanos, diffMax);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        public double getPercentileMillis(double ratio) {
+            return getPercentileNanos(ratio) / 1e6;
+        }
+
+        public long getPercentileNanos(double ratio) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * ratio));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketValue(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count: %d, total: %.3fs, mean: %.3fms, p50: %.3fms, p99: %.3fms, max: %.3fms",
+                count, TimeUnit.NANOSECONDS.toMillis(totalNanos) / 1e3, getMeanMillis(),
+                getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.stat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 各流水线阶段的耗时直方图, 全局累计
+ * 单表的统计通过前后两次快照相减得到
+ */
+public class PipelineMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineMetrics.class);
+
+    private static final String MBEAN_DOMAIN = "batchtool";
+
+    private static final Map<PipelineStage, LatencyHistogram> HISTOGRAMS = new EnumMap<>(PipelineStage.class);
+
+    static {
+        for (PipelineStage stage : PipelineStage.values()) {
+            HISTOGRAMS.put(stage, new LatencyHistogram());
+        }
+    }
+
+    private static volatile boolean mbeanRegistered = false;
+
+    public static void record(PipelineStage stage, long nanos) {
+        HISTOGRAMS.get(stage).record(nanos);
+    }
+
+    public static LatencyHistogram getHistogram(PipelineStage stage) {
+        return HISTOGRAMS.get(stage);
+    }
+
+    public static Map<PipelineStage, LatencyHistogram.Snapshot> snapshot() {
+        Map<PipelineStage, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(PipelineStage.class);
+        for (Map.Entry<PipelineStage, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 注册为 batchtool:type=PipelineStage,name=xxx
+     */
+    public static synchronized void registerMBeans() {
+        if (mbeanRegistered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Map.Entry<PipelineStage, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+                ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=PipelineStage,name="
+                    + entry.getKey().getMetricName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(entry.getValue(), name);
+                }
+            }
+            mbeanRegistered = true;
+        } catch (Exception e) {
+            logger.warn("Failed to register pipeline metrics mbean: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 输出两次快照之间各阶段的耗时
+     */
+    public static void logBreakdown(String tableName, Map<PipelineStage, LatencyHistogram.Snapshot> before) {
+        Map<PipelineStage, LatencyHistogram.Snapshot> after = snapshot();
+        for (PipelineStage stage : PipelineStage.values()) {
+            LatencyHistogram.Snapshot diff = after.get(stage).minus(before.get(stage));
+            if (diff.getCount() > 0) {
+                logger.info("表 {} {}耗时 {}", tableName, stage.getDesc(), diff);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package model.stat;
+
+/**
+ * 导入流水线的各个阶段
+ */
+public enum PipelineStage {
+    /**
+     * 读取数据块, 包含解压与解密
+     */
+    BLOCK_READ("block_read", "读取数据块"),
+    /**
+     * 生产者等待环形队列的空位
+     */
+    RING_BUFFER_WAIT("ring_buffer_wait", "等待队列"),
+    /**
+     * 切分字段
+     */
+    SPLIT("split", "切分字段"),
+    /**
+     * 拼接 SQL
+     */
+    SQL_BUILD("sql_build", "拼接SQL"),
+    /**
+     * 执行 SQL
+     */
+    EXECUTE("execute", "执行SQL");
+
+    private final String metricName;
+    private final String desc;
+
+    PipelineStage(String metricName, String desc) {
+        this.metricName = metricName;
+        this.desc = desc;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+}
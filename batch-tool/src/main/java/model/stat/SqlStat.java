@@ -16,16 +16,36 @@
 
 package model.stat;
 
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public class SqlStat {
 
+    /**
+     * 最近一段时间内最多保留的耗时样本数
+     */
+    private static final int MAX_RECENT_COUNT = 4096;
+
     private long totalTimeNanos = 0;
     private long count = 0;
+    private final long[] recentTimeNanos = new long[MAX_RECENT_COUNT];
+    private int recentCount = 0;
 
     public synchronized void addTimeNs(long timeNanos) {
+        PipelineMetrics.record(PipelineStage.EXECUTE, timeNanos);
         totalTimeNanos += timeNanos;
         count++;
+        if (recentCount < MAX_RECENT_COUNT) {
+            recentTimeNanos[recentCount] = timeNanos;
+        } else {
+            // 超出后随机替换, 保持均匀采样
+            int index = ThreadLocalRandom.current().nextInt(recentCount + 1);
+            if (index < MAX_RECENT_COUNT) {
+                recentTimeNanos[index] = timeNanos;
+            }
+        }
+        recentCount++;
     }
 
     public synchronized double getAvgTimeMillis() {
@@ -35,4 +55,13 @@ public class SqlStat {
     public long getCount() {
         return count;
     }
+
+    /**
+     * 取出上次调用以来的耗时样本
+     */
+    public synchronized long[] drainRecentTimeNanos() {
+        long[] result = Arrays.copyOf(recentTimeNanos, Math.min(recentCount, MAX_RECENT_COUNT));
+        recentCount = 0;
+        return result;
+    }
 }
@@ -24,6 +24,31 @@ public interface FileStorage {
 
     void get(String targetFile, String localPath);
 
+    long getObjectSize(String targetFile);
+
+    /**
+     * 范围读取, 读取到文件末尾时返回的长度小于 len
+     */
+    int readRange(String targetFile, long pos, byte[] dest, int off, int len);
+
+    /**
+     * 分片上传, 返回 uploadId
+     */
+    String initMultipartUpload(String targetPath);
+
+    /**
+     * @param partNumber 从 1 开始
+     * @return 分片的 ETag
+     */
+    String uploadPart(String targetPath, String uploadId, int partNumber, byte[] data, int len);
+
+    /**
+     * @param partETags 按分片序号排列
+     */
+    void completeMultipartUpload(String targetPath, String uploadId, List<String> partETags);
+
+    void abortMultipartUpload(String targetPath, String uploadId);
+
     void close();
 
     List<String> listFiles(String prefix);
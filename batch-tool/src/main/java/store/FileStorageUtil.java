@@ -29,8 +29,10 @@ import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import exception.S3Exception;
+import model.config.ConfigConstant;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class FileStorageUtil {
 
@@ -128,7 +130,9 @@ public class FileStorageUtil {
     }
 
     public static List<String> listFiles(FileStorage fileStorage, String prefix) {
-        List<String> filenames = fileStorage.listFiles(prefix);
-        return filenames;
+        // 跳过 gzip 成员索引文件
+        return fileStorage.listFiles(prefix).stream()
+            .filter(name -> !name.endsWith(ConfigConstant.GZIP_INDEX_FILE_SUFFIX))
+            .collect(Collectors.toList());
     }
 }
@@ -17,18 +17,27 @@
 package store;
 
 import com.aliyun.oss.OSSClient;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
 import com.aliyun.oss.model.GetObjectRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
 import com.aliyun.oss.model.ListObjectsRequest;
+import com.aliyun.oss.model.OSSObject;
 import com.aliyun.oss.model.OSSObjectSummary;
 import com.aliyun.oss.model.ObjectListing;
+import com.aliyun.oss.model.PartETag;
 import com.aliyun.oss.model.PutObjectRequest;
 import com.aliyun.oss.model.PutObjectResult;
+import com.aliyun.oss.model.UploadPartRequest;
 import com.google.common.base.Preconditions;
 import exception.S3Exception;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -74,6 +83,76 @@ public class OssFileStorage implements FileStorage {
         }
     }
 
+    @Override
+    public long getObjectSize(String targetFile) {
+        try {
+            return ossClient.getObjectMetadata(bucketName, targetFile).getContentLength();
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public int readRange(String targetFile, long pos, byte[] dest, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        GetObjectRequest request = new GetObjectRequest(bucketName, targetFile);
+        request.setRange(pos, pos + len - 1);
+        try (OSSObject object = ossClient.getObject(request);
+            InputStream in = object.getObjectContent()) {
+            return IOUtils.read(in, dest, off, len);
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public String initMultipartUpload(String targetPath) {
+        try {
+            logger.info("开始分片上传至 {}/{}", bucketName, targetPath);
+            return ossClient.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, targetPath))
+                .getUploadId();
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public String uploadPart(String targetPath, String uploadId, int partNumber, byte[] data, int len) {
+        try {
+            UploadPartRequest request = new UploadPartRequest(bucketName, targetPath, uploadId, partNumber,
+                new ByteArrayInputStream(data, 0, len), len);
+            return ossClient.uploadPart(request).getETag();
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String targetPath, String uploadId, List<String> partETags) {
+        List<PartETag> parts = new ArrayList<>(partETags.size());
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(new PartETag(i + 1, partETags.get(i)));
+        }
+        try {
+            ossClient.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(bucketName, targetPath, uploadId, parts));
+            logger.info("文件 {}/{} 分片上传成功, 共 {} 个分片", bucketName, targetPath, parts.size());
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String targetPath, String uploadId) {
+        try {
+            ossClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, targetPath, uploadId));
+        } catch (Exception e) {
+            logger.warn("取消分片上传 {}/{} 失败: {}", bucketName, targetPath, e.getMessage());
+        }
+    }
+
     @Override
     public void close() {
         try {
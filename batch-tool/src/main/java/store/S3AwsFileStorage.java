@@ -17,16 +17,26 @@
 package store;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import exception.S3Exception;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 public class S3AwsFileStorage implements FileStorage {
@@ -69,6 +79,80 @@ public class S3AwsFileStorage implements FileStorage {
         }
     }
 
+    @Override
+    public long getObjectSize(String targetFile) {
+        try {
+            return s3Client.getObjectMetadata(bucketName, targetFile).getContentLength();
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public int readRange(String targetFile, long pos, byte[] dest, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        GetObjectRequest request = new GetObjectRequest(bucketName, targetFile).withRange(pos, pos + len - 1);
+        try (S3Object object = s3Client.getObject(request);
+            S3ObjectInputStream in = object.getObjectContent()) {
+            return IOUtils.read(in, dest, off, len);
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public String initMultipartUpload(String targetPath) {
+        try {
+            logger.info("开始分片上传至 {}/{}", bucketName, targetPath);
+            return s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, targetPath))
+                .getUploadId();
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public String uploadPart(String targetPath, String uploadId, int partNumber, byte[] data, int len) {
+        try {
+            UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucketName)
+                .withKey(targetPath)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withInputStream(new ByteArrayInputStream(data, 0, len))
+                .withPartSize(len);
+            return s3Client.uploadPart(request).getETag();
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String targetPath, String uploadId, List<String> partETags) {
+        List<PartETag> parts = new ArrayList<>(partETags.size());
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(new PartETag(i + 1, partETags.get(i)));
+        }
+        try {
+            s3Client.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(bucketName, targetPath, uploadId, parts));
+            logger.info("文件 {}/{} 分片上传成功, 共 {} 个分片", bucketName, targetPath, parts.size());
+        } catch (Exception e) {
+            throw new S3Exception(e);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String targetPath, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, targetPath, uploadId));
+        } catch (Exception e) {
+            logger.warn("取消分片上传 {}/{} 失败: {}", bucketName, targetPath, e.getMessage());
+        }
+    }
+
     @Override
     public void close() {
 
@@ -80,13 +164,17 @@ public class S3AwsFileStorage implements FileStorage {
         request.setBucketName(bucketName);
         request.setPrefix(prefix);
 
+        List<String> filenames = new ArrayList<>();
         ObjectListing objects = s3Client.listObjects(request);
-        if (objects.isTruncated()) {
-            throw new UnsupportedOperationException("The number of files exceeds " + objects.getMaxKeys());
+        while (true) {
+            for (S3ObjectSummary summary : objects.getObjectSummaries()) {
+                filenames.add(summary.getKey());
+            }
+            if (!objects.isTruncated()) {
+                break;
+            }
+            objects = s3Client.listNextBatchOfObjects(objects);
         }
-        List<String> filenames = objects.getObjectSummaries().stream()
-            .map(S3ObjectSummary::getKey)
-            .collect(java.util.stream.Collectors.toList());
         return filenames;
     }
 }
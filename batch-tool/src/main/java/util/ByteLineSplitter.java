@@ -0,0 +1,273 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 直接在字节切片上按分隔符切分字段
+ * 切分规则与 {@link FileUtil#split(String, String, boolean, boolean)} 保持一致
+ * 普通字节按字批量跳过, 字段边界写入可复用的 int 数组, 取值时才解码
+ * 仅适用于分隔符、引号不会出现在多字节字符中间的字符集 (如 UTF-8)
+ * 非线程安全, 每个消费者持有一个实例
+ */
+public class ByteLineSplitter {
+
+    private static final byte QUOTE = '\"';
+
+    /**
+     * 每个字段依次存放 (起始位置, 结束位置, 标记)
+     */
+    private static final int BOUND_SLOTS = 3;
+    /**
+     * 字段中含有引号, 取值时需去除包围引号并还原转义
+     */
+    private static final int FLAG_QUOTED = 1;
+
+    private final byte[] sep;
+    private final int sepCharLength;
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean withLastSep;
+    private final boolean hasEscapedQuote;
+
+    private int[] fieldBounds = new int[BOUND_SLOTS * 32];
+    private int fieldCount = 0;
+    private byte[] source;
+
+    private byte[] fieldBuffer = new byte[256];
+
+    public ByteLineSplitter(String sep, Charset charset, boolean withLastSep, boolean hasEscapedQuote) {
+        this.sep = sep.getBytes(charset);
+        this.sepCharLength = sep.length();
+        this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.withLastSep = withLastSep;
+        this.hasEscapedQuote = hasEscapedQuote;
+    }
+
+    /**
+     * @param offset 行在 bytes 中的起始位置
+     * @param length 行的字节长度 (不含换行符)
+     */
+    public List<String> split(byte[] bytes, int offset, int length, int estimateCount) {
+        int count = splitFields(bytes, offset, length);
+        ArrayList<String> values = new ArrayList<>(Math.max(count, estimateCount));
+        for (int i = 0; i < count; i++) {
+            values.add(getField(i));
+        }
+        return values;
+    }
+
+    /**
+     * 只记录字段边界, 不生成字符串
+     *
+     * @return 字段个数
+     */
+    public int splitFields(byte[] bytes, int offset, int length) {
+        this.source = bytes;
+        this.fieldCount = 0;
+        final int lineEnd = offset + length;
+        int end = lineEnd;
+        if (withLastSep) {
+            // 结尾有分隔符则忽略
+            end -= sep.length;
+        }
+        final byte sepStart = sep[0];
+        final int last = end - 1;
+        boolean enclosingByQuote = false;
+        boolean endsWithSep = false;
+        int fieldStart = offset;
+        int flags = 0;
+        int i = offset;
+        while (i < end) {
+            if (i < last) {
+                // 跳到下一个分隔符或引号, 最后一个字节单独处理
+                int next;
+                if (hasEscapedQuote) {
+                    next = ByteScanUtil.indexOf(bytes, i, last, sepStart);
+                } else if (enclosingByQuote) {
+                    next = ByteScanUtil.indexOf(bytes, i, last, QUOTE);
+                } else {
+                    next = ByteScanUtil.indexOfAny(bytes, i, last, sepStart, QUOTE);
+                }
+                i = (next < 0) ? last : next;
+            }
+            byte b = bytes[i];
+            if (i == last) {
+                // 最后一个字节
+                if (b == QUOTE) {
+                    addField(fieldStart, hasEscapedQuote ? end : last, flags);
+                    break;
+                }
+                if (!hasEscapedQuote && enclosingByQuote) {
+                    badFormatException("Unclosed quote", bytes, offset, length);
+                }
+                if (sep.length == 1 && b == sepStart) {
+                    endsWithSep = true;
+                    addField(fieldStart, last, flags);
+                } else {
+                    // 说明当前为最后一个字段
+                    addField(fieldStart, end, flags);
+                }
+                break;
+            }
+            if (b == QUOTE && !hasEscapedQuote) {
+                flags = FLAG_QUOTED;
+                if (!enclosingByQuote) {
+                    enclosingByQuote = true;
+                    i++;
+                } else if (bytes[i + 1] == QUOTE) {
+                    // 转义为单个双引号
+                    i += 2;
+                } else {
+                    // 理论上后面只能为分隔符
+                    // 如果最后发现字段数不对 说明该行格式有误
+                    addField(fieldStart, i, flags);
+                    enclosingByQuote = false;
+                    i = skipChars(bytes, i + 1, lineEnd, sepCharLength);
+                    fieldStart = i;
+                    flags = 0;
+                }
+            } else if (b == sepStart && !enclosingByQuote) {
+                // 匹配剩余分隔符字节
+                int j = i + 1;
+                int sepEnd = j + sep.length - 1;
+                for (int k = 1; j < sepEnd && j < lineEnd && bytes[j] == sep[k]; j++, k++) {
+                    // do nothing
+                }
+                if (j == sepEnd) {
+                    addField(fieldStart, i, flags);
+                    i += sep.length - 1;
+                    if (i == last) {
+                        endsWithSep = true;
+                    }
+                    i++;
+                    fieldStart = i;
+                    flags = 0;
+                } else {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        if (endsWithSep && !withLastSep) {
+            addField(end, end, 0);
+        }
+        return fieldCount;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public int getFieldStart(int index) {
+        return fieldBounds[index * BOUND_SLOTS];
+    }
+
+    public int getFieldEnd(int index) {
+        return fieldBounds[index * BOUND_SLOTS + 1];
+    }
+
+    /**
+     * 为 true 时 [start, end) 为原始字节, 需经 {@link #getField(int)} 还原
+     */
+    public boolean isFieldQuoted(int index) {
+        return (fieldBounds[index * BOUND_SLOTS + 2] & FLAG_QUOTED) != 0;
+    }
+
+    public String getField(int index) {
+        int start = getFieldStart(index);
+        int end = getFieldEnd(index);
+        if (!isFieldQuoted(index)) {
+            return new String(source, start, end - start, charset);
+        }
+        int len = unquote(start, end);
+        return new String(fieldBuffer, 0, len, charset);
+    }
+
+    /**
+     * 字段内首个引号为包围引号, 之后成对的引号还原为一个
+     * 字段结尾的包围引号不在 [start, end) 中
+     */
+    private int unquote(int start, int end) {
+        if (fieldBuffer.length < end - start) {
+            fieldBuffer = new byte[Math.max(end - start, fieldBuffer.length * 2)];
+        }
+        int len = 0;
+        boolean enclosingByQuote = false;
+        for (int i = start; i < end; i++) {
+            byte b = source[i];
+            if (b == QUOTE) {
+                if (!enclosingByQuote) {
+                    enclosingByQuote = true;
+                    continue;
+                }
+                i++;
+            }
+            fieldBuffer[len++] = b;
+        }
+        return len;
+    }
+
+    /**
+     * 与按字符切分时一致, 跳过 count 个 UTF-16 字符
+     */
+    private int skipChars(byte[] bytes, int i, int lineEnd, int count) {
+        if (!utf8) {
+            return i + count;
+        }
+        while (count > 0 && i < lineEnd) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0xC0) {
+                i++;
+                count--;
+            } else if (b < 0xE0) {
+                i += 2;
+                count--;
+            } else if (b < 0xF0) {
+                i += 3;
+                count--;
+            } else {
+                // 代理对占两个字符
+                i += 4;
+                count -= 2;
+            }
+        }
+        return count > 0 ? i + count : i;
+    }
+
+    private void addField(int start, int end, int flags) {
+        int pos = fieldCount * BOUND_SLOTS;
+        if (pos + BOUND_SLOTS > fieldBounds.length) {
+            fieldBounds = Arrays.copyOf(fieldBounds, fieldBounds.length * 2);
+        }
+        fieldBounds[pos] = start;
+        fieldBounds[pos + 1] = end;
+        fieldBounds[pos + 2] = flags;
+        fieldCount++;
+    }
+
+    private void badFormatException(String msg, byte[] bytes, int offset, int length) {
+        throw new IllegalArgumentException(msg + " in line: " + new String(bytes, offset, length, charset));
+    }
+}
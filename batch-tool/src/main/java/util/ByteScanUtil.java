@@ -0,0 +1,89 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * 按字(8字节)批量查找字节 (SWAR)
+ * 小端读取时最低位的匹配即为第一个匹配位置
+ */
+public class ByteScanUtil {
+
+    private static final VarHandle LONG_VIEW =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    public static long broadcast(byte b) {
+        return LOW_BITS * (b & 0xFF);
+    }
+
+    /**
+     * 字中等于目标字节的位置置为 0x80
+     * 借位可能使更高位出现误判, 但最低位的匹配总是准确的
+     */
+    private static long matchMask(long word, long pattern) {
+        long x = word ^ pattern;
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+
+    /**
+     * @return [from, to) 中第一个等于 b 的位置, 不存在则返回 -1
+     */
+    public static int indexOf(byte[] bytes, int from, int to, byte b) {
+        long pattern = broadcast(b);
+        int i = from;
+        for (int limit = to - Long.BYTES; i <= limit; i += Long.BYTES) {
+            long found = matchMask((long) LONG_VIEW.get(bytes, i), pattern);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return [from, to) 中第一个等于 b1 或 b2 的位置, 不存在则返回 -1
+     */
+    public static int indexOfAny(byte[] bytes, int from, int to, byte b1, byte b2) {
+        long pattern1 = broadcast(b1);
+        long pattern2 = broadcast(b2);
+        int i = from;
+        for (int limit = to - Long.BYTES; i <= limit; i += Long.BYTES) {
+            long word = (long) LONG_VIEW.get(bytes, i);
+            long found = matchMask(word, pattern1) | matchMask(word, pattern2);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == b1 || bytes[i] == b2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -30,6 +30,14 @@ public class DataSourceUtil {
         + "&socketTimeout=600000&maintainTimeStats=false&zeroDateTimeBehavior=convertToNull"
         + "&useLocalSessionState=true&readOnlyPropagatesToServer=false";
 
+    /**
+     * 2. 预编译批量写入时使用服务端预编译, 按连接缓存语句, 并由驱动改写批量
+     */
+    public static final String PREPARED_STMT_PARAMS = "useServerPrepStmts=true&cachePrepStmts=true"
+        + "&prepStmtCacheSize=64&prepStmtCacheSqlLimit=65535&rewriteBatchedStatements=true";
+
+    public static final String LOAD_DATA_PARAMS = "allowLoadLocalInfile=true";
+
     public static String LOAD_BALANCE_URL_PATTERN = "jdbc:mysql:loadbalance://%s/%s?"
         + "loadBalanceAutoCommitStatementThreshold=5&allowPublicKeyRetrieval=true&useSSL=false&connectTimeout=1000"
         + "&socketTimeout=600000&loadBalanceBlacklistTimeout=900000"
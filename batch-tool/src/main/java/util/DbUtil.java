@@ -18,6 +18,7 @@ package util;
 
 import com.alibaba.druid.util.JdbcUtils;
 import exception.DatabaseException;
+import model.db.AutoPartitionInfo;
 import model.db.FieldMetaInfo;
 import model.db.PartitionKey;
 import model.db.PrimaryKey;
@@ -26,11 +27,16 @@ import model.db.TableTopology;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -64,8 +70,25 @@ public class DbUtil {
 
     private static final String PARTITION_KEY_SQL_PATTERN = "SHOW RULE FROM `%s`;";
 
+    private static final String AUTO_PARTITION_SQL_PATTERN =
+        "SELECT PARTITION_NAME,SUBPARTITION_NAME,PARTITION_METHOD,PARTITION_EXPRESSION,PARTITION_DESCRIPTION "
+            + "FROM INFORMATION_SCHEMA.PARTITIONS WHERE TABLE_SCHEMA='%s' AND TABLE_NAME='%s' "
+            + "ORDER BY PARTITION_ORDINAL_POSITION;";
+
+    private static final String KEY_COLUMN_TYPE_SQL_PATTERN =
+        "SELECT COLUMN_NAME,DATA_TYPE,COLLATION_NAME,NUMERIC_SCALE,DATETIME_PRECISION "
+            + "FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA='%s' AND TABLE_NAME='%s';";
+
     private static final String ROW_COUNT_SQL_PATTERN = "SELECT COUNT(*) FROM `%s`;";
 
+    private static final String CREATE_TABLE_LIKE_SQL_PATTERN = "CREATE TABLE %s LIKE %s;";
+
+    private static final String DROP_TABLE_SQL_PATTERN = "DROP TABLE IF EXISTS %s;";
+
+    private static final String COPY_TABLE_SQL_PATTERN = "INSERT INTO %s SELECT * FROM %s;";
+
+    private static final String VALUES_ROW_TEST_SQL = "SELECT * FROM (VALUES ROW(1)) AS v;";
+
     private static final String PARTITION_KEY_INFO_SQL_PATTERN =
         "SELECT DATA_TYPE,ORDINAL_POSITION from INFORMATION_SCHEMA.COLUMNS WHERE "
             + "TABLE_SCHEMA='%s' and TABLE_NAME='%s' and COLUMN_NAME = '%s'";
@@ -379,6 +402,133 @@ public class DbUtil {
         }
     }
 
+    /**
+     * 获取 AUTO 模式表的一级分区信息
+     *
+     * @param fieldMetaInfoList 导入数据的字段, 用于定位分区键
+     * @return 非 AUTO 模式的分区表时返回 null
+     */
+    public static AutoPartitionInfo getAutoPartitionInfo(Connection conn, String schemaName, String tableName,
+                                                         List<FieldMetaInfo> fieldMetaInfoList)
+        throws DatabaseException {
+        String sql = String.format(AUTO_PARTITION_SQL_PATTERN, schemaName, tableName);
+        List<String> partitionNames = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        String method = null, expression = null;
+        try (Statement stmt = conn.createStatement();
+            ResultSet resultSet = stmt.executeQuery(sql)) {
+            while (resultSet.next()) {
+                if (resultSet.getString("PARTITION_METHOD") == null) {
+                    return null;
+                }
+                if (resultSet.getString("SUBPARTITION_NAME") != null) {
+                    throw new UnsupportedOperationException("Subpartition is not supported: " + tableName);
+                }
+                method = resultSet.getString("PARTITION_METHOD");
+                expression = resultSet.getString("PARTITION_EXPRESSION");
+                partitionNames.add(resultSet.getString("PARTITION_NAME"));
+                descriptions.add(resultSet.getString("PARTITION_DESCRIPTION"));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to get partitions of table " + tableName, e);
+        }
+        if (partitionNames.isEmpty()) {
+            return null;
+        }
+
+        List<FieldMetaInfo> keyFields = new ArrayList<>();
+        for (String column : StringUtils.split(expression, ',')) {
+            column = StringUtils.strip(column.trim(), "`");
+            if (column.indexOf('(') >= 0) {
+                throw new UnsupportedOperationException("Partition expression is not supported: " + expression);
+            }
+            keyFields.add(findKeyField(fieldMetaInfoList, column, tableName));
+        }
+
+        List<AutoPartitionInfo.ColumnType> keyColumnTypes = getKeyColumnTypes(conn, schemaName, tableName, keyFields);
+
+        Map<String, TableTopology> topologyMap = getAutoTopology(conn, tableName);
+        List<AutoPartitionInfo.Partition> partitions = new ArrayList<>(partitionNames.size());
+        for (int i = 0; i < partitionNames.size(); i++) {
+            TableTopology topology = topologyMap.get(partitionNames.get(i).toLowerCase());
+            if (topology == null) {
+                throw new DatabaseException("Unable to get topology of partition " + partitionNames.get(i));
+            }
+            partitions.add(new AutoPartitionInfo.Partition(partitionNames.get(i), descriptions.get(i), topology));
+        }
+        return new AutoPartitionInfo(tableName, AutoPartitionInfo.Method.parse(method), keyFields,
+            keyColumnTypes, partitions);
+    }
+
+    /**
+     * 分区键的实际类型与排序规则, 决定客户端能否按服务端的规则比较取值
+     */
+    private static List<AutoPartitionInfo.ColumnType> getKeyColumnTypes(Connection conn, String schemaName,
+                                                                        String tableName,
+                                                                        List<FieldMetaInfo> keyFields)
+        throws DatabaseException {
+        String sql = String.format(KEY_COLUMN_TYPE_SQL_PATTERN, schemaName, tableName);
+        Map<String, AutoPartitionInfo.ColumnType> columnTypeMap = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+            ResultSet resultSet = stmt.executeQuery(sql)) {
+            while (resultSet.next()) {
+                int scale = resultSet.getInt("NUMERIC_SCALE");
+                if (resultSet.wasNull()) {
+                    scale = resultSet.getInt("DATETIME_PRECISION");
+                }
+                columnTypeMap.put(resultSet.getString("COLUMN_NAME").toLowerCase(),
+                    new AutoPartitionInfo.ColumnType(resultSet.getString("DATA_TYPE").toLowerCase(),
+                        resultSet.getString("COLLATION_NAME"), scale));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to get column types of table " + tableName, e);
+        }
+        List<AutoPartitionInfo.ColumnType> keyColumnTypes = new ArrayList<>(keyFields.size());
+        for (FieldMetaInfo keyField : keyFields) {
+            AutoPartitionInfo.ColumnType columnType = columnTypeMap.get(keyField.getName().toLowerCase());
+            if (columnType == null) {
+                throw new DatabaseException("Unable to get column type of partition key " + keyField.getName());
+            }
+            keyColumnTypes.add(columnType);
+        }
+        return keyColumnTypes;
+    }
+
+    private static FieldMetaInfo findKeyField(List<FieldMetaInfo> fieldMetaInfoList, String column,
+                                              String tableName) {
+        for (int i = 0; i < fieldMetaInfoList.size(); i++) {
+            FieldMetaInfo fieldMetaInfo = fieldMetaInfoList.get(i);
+            if (fieldMetaInfo.getName().equalsIgnoreCase(column)) {
+                FieldMetaInfo keyField = new FieldMetaInfo();
+                keyField.setName(fieldMetaInfo.getName());
+                keyField.setType(fieldMetaInfo.getType());
+                keyField.setIndex(i);
+                return keyField;
+            }
+        }
+        throw new UnsupportedOperationException("Partition key " + column + " of " + tableName
+            + " is not in the imported columns");
+    }
+
+    /**
+     * AUTO 模式下按分区名获取物理表
+     */
+    private static Map<String, TableTopology> getAutoTopology(Connection conn, String tableName)
+        throws DatabaseException {
+        String sql = String.format("SHOW TOPOLOGY FROM `%s`", tableName);
+        Map<String, TableTopology> topologyMap = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+            ResultSet resultSet = stmt.executeQuery(sql)) {
+            while (resultSet.next()) {
+                topologyMap.put(resultSet.getString("PARTITION_NAME").toLowerCase(),
+                    new TableTopology(resultSet.getString("GROUP_NAME"), resultSet.getString("TABLE_NAME")));
+            }
+            return topologyMap;
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to get topology of table " + tableName, e);
+        }
+    }
+
     /**
      * 对于 auto 模式不适用
      */
@@ -573,6 +723,17 @@ public class DbUtil {
         return true;
     }
 
+    /**
+     * 连接层面的错误, 语句可能未被执行, 可以换一个连接重试
+     */
+    public static boolean isConnectionError(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLRecoverableException
+            || e instanceof SQLNonTransientConnectionException
+            || e instanceof SQLTransientConnectionException
+            || (sqlState != null && sqlState.startsWith("08"));
+    }
+
     public static String surroundWithBacktick(String identifier) {
         if (identifier.contains("`")) {
             return "`" + identifier.replaceAll("`", "``") + "`";
@@ -600,6 +761,97 @@ public class DbUtil {
         return stringBuilder.toString();
     }
 
+    /**
+     * INSERT [IGNORE] INTO `table_name` [(columns)] VALUES (?,?, ... ?);
+     *
+     * @param columns 为 null 时不指定列名
+     */
+    public static String getPrepareInsertSql(String tableName, String columns, int fieldCount, boolean ignore) {
+        if (fieldCount <= 0) {
+            throw new IllegalArgumentException("Insert value should be at lease 1");
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("INSERT ");
+        if (ignore) {
+            stringBuilder.append("IGNORE ");
+        }
+        stringBuilder.append("INTO ").append(surroundWithBacktick(tableName)).append(' ');
+        if (columns != null) {
+            stringBuilder.append('(').append(columns).append(") ");
+        }
+        stringBuilder.append("VALUES (?");
+        for (int i = 0; i < fieldCount - 1; i++) {
+            stringBuilder.append(",?");
+        }
+        stringBuilder.append(")");
+        return stringBuilder.toString();
+    }
+
+    public static void createTableLike(Connection conn, String tableName, String likeTableName)
+        throws DatabaseException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(String.format(CREATE_TABLE_LIKE_SQL_PATTERN,
+                surroundWithBacktick(tableName), surroundWithBacktick(likeTableName)));
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to create table: " + tableName, e);
+        }
+    }
+
+    public static void copyTableData(Connection conn, String tableName, String fromTableName)
+        throws DatabaseException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(String.format(COPY_TABLE_SQL_PATTERN,
+                surroundWithBacktick(tableName), surroundWithBacktick(fromTableName)));
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to copy table data to: " + tableName, e);
+        }
+    }
+
+    /**
+     * MySQL 8.0.19 起支持 VALUES ROW(...) 表值构造器
+     */
+    public static boolean isValuesRowSupported(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeQuery(VALUES_ROW_TEST_SQL).close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public static void dropTableIfExists(Connection conn, String tableName) throws DatabaseException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(String.format(DROP_TABLE_SQL_PATTERN, surroundWithBacktick(tableName)));
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to drop table: " + tableName, e);
+        }
+    }
+
+    /**
+     * Java 字符集对应的 MySQL 字符集名称
+     * LOAD DATA 不支持 utf16 等多字节定长字符集
+     */
+    public static String getMysqlCharsetName(Charset charset) {
+        switch (charset.name().toUpperCase()) {
+        case "UTF-8":
+            return "utf8mb4";
+        case "GBK":
+            return "gbk";
+        case "GB18030":
+            return "gb18030";
+        case "GB2312":
+            return "gb2312";
+        case "BIG5":
+            return "big5";
+        case "ISO-8859-1":
+            return "latin1";
+        case "US-ASCII":
+            return "ascii";
+        default:
+            throw new IllegalArgumentException("Unsupported charset for MySQL: " + charset);
+        }
+    }
+
     public static boolean isBroadCast(Connection conn, String tableName) throws DatabaseException {
         String sql = String.format(PARTITION_KEY_SQL_PATTERN, tableName);
         try (Statement stmt = conn.createStatement();
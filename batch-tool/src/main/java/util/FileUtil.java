@@ -368,7 +368,7 @@ public class FileUtil {
 
         final Map<String, List<File>> result = new HashMap<>();
         for (File file : Objects.requireNonNull(dir.listFiles())) {
-            if (!file.isFile()) {
+            if (!file.isFile() || file.getName().endsWith(ConfigConstant.GZIP_INDEX_FILE_SUFFIX)) {
                 continue;
             }
             final String[] items = file.getName().split("\\.");
@@ -393,7 +393,8 @@ public class FileUtil {
         }
         return FileUtils.listFiles(dir, null, false).stream()
             .filter(file -> file.isFile() && file.canRead() &&
-                !file.getName().endsWith(ConfigConstant.DDL_FILE_SUFFIX))
+                !file.getName().endsWith(ConfigConstant.DDL_FILE_SUFFIX) &&
+                !file.getName().endsWith(ConfigConstant.GZIP_INDEX_FILE_SUFFIX))
             .map(File::getAbsolutePath).collect(Collectors.toList());
     }
 
@@ -16,13 +16,22 @@
 
 package util;
 
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import model.config.CompressMode;
 import model.config.ConfigConstant;
+import model.config.GlobalVar;
+import net.jpountz.lz4.LZ4FrameInputStream;
 import org.apache.commons.io.FileUtils;
+import worker.common.writer.Lz4FrameOutputStream;
+import worker.common.writer.ParallelGzipOutputStream;
+import worker.common.writer.ZstdFrameOutputStream;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
@@ -96,15 +105,81 @@ public class IOUtil {
         }
     }
 
-    public static GZIPOutputStream createGzipOutputStream(FileChannel channel) {
+    public static GZIPOutputStream createGzipOutputStream(FileChannel channel, int level) {
+        return createGzipOutputStream(Channels.newOutputStream(channel), level);
+    }
+
+    public static GZIPOutputStream createGzipOutputStream(OutputStream out, int level) {
         try {
-            return new GZIPOutputStream(Channels.newOutputStream(channel), DEFAULT_COMPRESS_BUFFER_SIZE);
+            return new GZIPOutputStream(out, DEFAULT_COMPRESS_BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * gzip 文件由多个线程并行压缩, 并在同目录下写出成员索引
+     */
+    public static OutputStream createCompressOutputStream(String fileName, FileChannel channel,
+                                                          CompressMode compressMode) {
+        File indexFile = null;
+        if (compressMode == CompressMode.GZIP) {
+            indexFile = new File(fileName + ConfigConstant.GZIP_INDEX_FILE_SUFFIX);
+            FileUtils.deleteQuietly(indexFile);
+            try {
+                if (channel.size() > 0) {
+                    // 追加写入已有文件时无法得到完整的成员索引
+                    indexFile = null;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return createCompressOutputStream(Channels.newOutputStream(channel), compressMode, indexFile);
+    }
+
+    /**
+     * @param indexFile 并行压缩 gzip 时写出的成员索引, 为空时不写出
+     */
+    public static OutputStream createCompressOutputStream(OutputStream out, CompressMode compressMode,
+                                                          File indexFile) {
+        switch (compressMode) {
+        case GZIP:
+            if (GlobalVar.COMPRESS_PARALLELISM <= 1) {
+                return createGzipOutputStream(out, compressMode.getLevel());
+            }
+            return new ParallelGzipOutputStream(out, compressMode.getLevel(), indexFile);
+        case ZSTD:
+            return new ZstdFrameOutputStream(out, compressMode.getLevel());
+        case LZ4:
+            return new Lz4FrameOutputStream(out, compressMode.getLevel());
+        default:
+            throw new UnsupportedOperationException("Unsupported compression mode: " + compressMode);
+        }
+    }
+
+    /**
+     * 流式解压, zstd 与 lz4 均支持连续的多个帧
+     */
+    public static InputStream createDecompressInputStream(InputStream in, CompressMode compressMode)
+        throws IOException {
+        switch (compressMode) {
+        case GZIP:
+            return new GZIPInputStream(in, DEFAULT_COMPRESS_BUFFER_SIZE);
+        case ZSTD:
+            return new ZstdInputStreamNoFinalizer(new BufferedInputStream(in, DEFAULT_COMPRESS_BUFFER_SIZE));
+        case LZ4:
+            return new LZ4FrameInputStream(new BufferedInputStream(in, DEFAULT_COMPRESS_BUFFER_SIZE));
+        default:
+            throw new UnsupportedOperationException("Unsupported compression mode: " + compressMode);
+        }
+    }
+
     public static void close(Closeable closeable) {
         if (closeable != null) {
             try {
@@ -0,0 +1,98 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.stat.LatencyHistogram;
+import model.stat.PipelineMetrics;
+import model.stat.PipelineStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import worker.NamedThreadFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * 在本地端口以 Prometheus 文本格式输出运行指标
+ */
+public class MetricsHttpServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final HttpServer server;
+
+    private MetricsHttpServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * 只监听本机回环地址
+     */
+    public static MetricsHttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", MetricsHttpServer::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(new NamedThreadFactory("metrics-http", true)));
+        server.start();
+        logger.info("指标地址: http://127.0.0.1:{}/metrics", port);
+        return new MetricsHttpServer(server);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        byte[] body = format(PipelineMetrics.snapshot()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String format(Map<PipelineStage, LatencyHistogram.Snapshot> snapshots) {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("# HELP batch_tool_stage_latency_seconds Latency of each import pipeline stage.\n");
+        sb.append("# TYPE batch_tool_stage_latency_seconds summary\n");
+        for (Map.Entry<PipelineStage, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            String stage = entry.getKey().getMetricName();
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            for (double quantile : QUANTILES) {
+                sb.append("batch_tool_stage_latency_seconds{stage=\"").append(stage)
+                    .append("\",quantile=\"").append(quantile).append("\"} ")
+                    .append(snapshot.getPercentileNanos(quantile) / 1e9).append('\n');
+            }
+            sb.append("batch_tool_stage_latency_seconds_sum{stage=\"").append(stage).append("\"} ")
+                .append(snapshot.getTotalNanos() / 1e9).append('\n');
+            sb.append("batch_tool_stage_latency_seconds_count{stage=\"").append(stage).append("\"} ")
+                .append(snapshot.getCount()).append('\n');
+        }
+        sb.append("# HELP batch_tool_db_rows Rows written to database for the current table.\n");
+        sb.append("# TYPE batch_tool_db_rows gauge\n");
+        sb.append("batch_tool_db_rows ").append(CountStat.getDbRowCount().get()).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common;
+
+import model.stat.SqlStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import worker.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 根据各消费者 {@link SqlStat} 中的 SQL 耗时, 周期性调整每条语句的行数与同时执行的消费者数
+ * <p>
+ * 采用 AIMD: p99 耗时超过目标时乘性减小批量行数, 批量行数已到下限时减少活跃消费者;
+ * 未超过目标时加性增大批量行数, 已到上限时增加活跃消费者.
+ * 增大后吞吐反而下降时回退这一步, 并在几个周期内保持不变
+ */
+public class AdaptiveBatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchController.class);
+
+    private static final double DECREASE_FACTOR = 0.75;
+    /**
+     * 吞吐下降超过该比例时认为增大无效
+     */
+    private static final double THROUGHPUT_DROP_RATIO = 0.95;
+    private static final int HOLD_ROUNDS = 5;
+    /**
+     * 样本数不足时不做调整
+     */
+    private static final int MIN_SAMPLE_COUNT = 10;
+
+    private enum Action {
+        NONE, INCREASE_BATCH, INCREASE_CONSUMER, DECREASE
+    }
+
+    private final List<SqlStat> sqlStats = new ArrayList<>();
+    private final LongSupplier rowCounter;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int batchSizeStep;
+    private final int maxConsumerNum;
+    private final long targetP99Nanos;
+    private final ResizableSemaphore consumerPermits;
+
+    private volatile int batchSize;
+    private int activeConsumerNum;
+    private Action lastAction = Action.NONE;
+    private int holdRounds = 0;
+    private long lastRowCount;
+    private long lastAdjustNanos;
+    private double lastThroughput = 0;
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * @param rowCounter 已写入的总行数
+     */
+    public AdaptiveBatchController(int initBatchSize, int minBatchSize, int maxBatchSize, int maxConsumerNum,
+                                   long targetP99Millis, LongSupplier rowCounter) {
+        if (minBatchSize <= 0 || minBatchSize > initBatchSize || initBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException(String.format("Illegal batch size bound: %d <= %d <= %d",
+                minBatchSize, initBatchSize, maxBatchSize));
+        }
+        this.batchSize = initBatchSize;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizeStep = Math.max(1, initBatchSize / 10);
+        this.maxConsumerNum = maxConsumerNum;
+        this.activeConsumerNum = maxConsumerNum;
+        this.consumerPermits = new ResizableSemaphore(maxConsumerNum);
+        this.targetP99Nanos = TimeUnit.MILLISECONDS.toNanos(targetP99Millis);
+        this.rowCounter = rowCounter;
+        this.lastRowCount = rowCounter.getAsLong();
+        this.lastAdjustNanos = System.nanoTime();
+    }
+
+    public synchronized void addSqlStat(SqlStat sqlStat) {
+        sqlStats.add(sqlStat);
+    }
+
+    public void start(long intervalMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("adaptive-batch", true));
+        scheduler.scheduleWithFixedDelay(this::adjust, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 当前每条语句的行数
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public synchronized int getActiveConsumerNum() {
+        return activeConsumerNum;
+    }
+
+    /**
+     * 活跃消费者已满时等待
+     */
+    public void acquireConsumer() {
+        consumerPermits.acquireUninterruptibly();
+    }
+
+    public void releaseConsumer() {
+        consumerPermits.release();
+    }
+
+    public synchronized void adjust() {
+        long now = System.nanoTime();
+        long rowCount = rowCounter.getAsLong();
+        double throughput = (rowCount - lastRowCount) * 1e9 / Math.max(now - lastAdjustNanos, 1);
+        lastRowCount = rowCount;
+        lastAdjustNanos = now;
+
+        long[] samples = drainSamples();
+        if (samples.length < MIN_SAMPLE_COUNT) {
+            return;
+        }
+        long p99 = percentile(samples, 0.99);
+        int oldBatchSize = batchSize;
+        int oldConsumerNum = activeConsumerNum;
+        if (p99 > targetP99Nanos) {
+            decrease();
+            holdRounds = 0;
+        } else if (holdRounds > 0) {
+            holdRounds--;
+            lastAction = Action.NONE;
+        } else if (lastAction != Action.NONE && lastAction != Action.DECREASE
+            && throughput < lastThroughput * THROUGHPUT_DROP_RATIO) {
+            // 上一次增大没有带来收益, 回退并保持一段时间
+            revertIncrease();
+            holdRounds = HOLD_ROUNDS;
+        } else {
+            increase();
+        }
+        lastThroughput = throughput;
+        if (oldBatchSize != batchSize || oldConsumerNum != activeConsumerNum) {
+            logger.info("自适应调整: 批量行数 {} -> {}, 活跃消费者 {} -> {}, p99 {} ms, {} 行/s",
+                oldBatchSize, batchSize, oldConsumerNum, activeConsumerNum,
+                TimeUnit.NANOSECONDS.toMillis(p99), (long) throughput);
+        }
+    }
+
+    private void decrease() {
+        lastAction = Action.DECREASE;
+        if (batchSize > minBatchSize) {
+            batchSize = Math.max(minBatchSize, (int) (batchSize * DECREASE_FACTOR));
+        } else if (activeConsumerNum > 1) {
+            setActiveConsumerNum(Math.max(1, (int) (activeConsumerNum * DECREASE_FACTOR)));
+        }
+    }
+
+    private void increase() {
+        if (batchSize < maxBatchSize) {
+            batchSize = Math.min(maxBatchSize, batchSize + batchSizeStep);
+            lastAction = Action.INCREASE_BATCH;
+        } else if (activeConsumerNum < maxConsumerNum) {
+            setActiveConsumerNum(activeConsumerNum + 1);
+            lastAction = Action.INCREASE_CONSUMER;
+        } else {
+            lastAction = Action.NONE;
+        }
+    }
+
+    private void revertIncrease() {
+        if (lastAction == Action.INCREASE_BATCH) {
+            batchSize = Math.max(minBatchSize, batchSize - batchSizeStep);
+        } else if (lastAction == Action.INCREASE_CONSUMER) {
+            setActiveConsumerNum(activeConsumerNum - 1);
+        }
+        lastAction = Action.NONE;
+    }
+
+    private void setActiveConsumerNum(int num) {
+        int delta = num - activeConsumerNum;
+        if (delta > 0) {
+            consumerPermits.release(delta);
+        } else if (delta < 0) {
+            // 正在执行的消费者完成后不再归还多余的许可
+            consumerPermits.reducePermits(-delta);
+        }
+        activeConsumerNum = num;
+    }
+
+    private long[] drainSamples() {
+        long[][] statSamples = new long[sqlStats.size()][];
+        int total = 0;
+        for (int i = 0; i < statSamples.length; i++) {
+            statSamples[i] = sqlStats.get(i).drainRecentTimeNanos();
+            total += statSamples[i].length;
+        }
+        long[] samples = new long[total];
+        int pos = 0;
+        for (long[] statSample : statSamples) {
+            System.arraycopy(statSample, 0, samples, pos, statSample.length);
+            pos += statSample.length;
+        }
+        return samples;
+    }
+
+    static long percentile(long[] samples, double ratio) {
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(samples.length * ratio) - 1;
+        return samples[Math.max(0, Math.min(index, samples.length - 1))];
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common;
+
+import model.stat.SqlStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.CountStat;
+
+import java.sql.SQLException;
+
+/**
+ * 逐批写入且不进行分片处理的消费者
+ * 负责失败后快速结束以及数据块计数的释放, 由子类决定如何写入一批数据
+ */
+public abstract class BaseBatchConsumer extends BaseWorkHandler {
+    private static final Logger logger = LoggerFactory.getLogger(BaseBatchConsumer.class);
+
+    protected final SqlStat sqlStat = new SqlStat();
+    protected int maxRetry = 0;
+
+    protected void initLocalVars() {
+        super.initLocalVars();
+        maxRetry = consumerContext.getMaxRetry();
+    }
+
+    @Override
+    public void onProxyEvent(BatchLineEvent event) {
+        if (consumerContext.getException() != null) {
+            // fail fast on exception
+            consumerContext.getEmittedDataCounter().getAndDecrement();
+            if (consumerContext.isUseBlock()) {
+                consumerContext.getEventCounter().releaseOnFailure(event.getLocalProcessingFileIndex(),
+                    event.getLocalProcessingBlockIndex());
+            }
+            event.releaseByteBlock();
+            return;
+        }
+        initLocalVars();
+        boolean success = false;
+        try {
+            int rowCount = consume(event);
+            if (rowCount > 0) {
+                CountStat.addDbRowCount(rowCount);
+            }
+            success = true;
+        } catch (Exception e) {
+            consumerContext.setException(e);
+            logger.error("Failed in table [{}], due to {}", tableName, e.getMessage());
+            if (e.getStackTrace().length > 0) {
+                logger.error("{}", e.getStackTrace()[0]);
+            }
+            // 认为无法恢复
+            throw new RuntimeException(e);
+        } finally {
+            event.releaseByteBlock();
+            consumerContext.getEmittedDataCounter().getAndDecrement();
+            if (consumerContext.isUseBlock()) {
+                releaseBlockEvent(event, success);
+            }
+        }
+    }
+
+    private void releaseBlockEvent(BatchLineEvent event, boolean success) {
+        if (success) {
+            consumerContext.getEventCounter().release(event.getLocalProcessingFileIndex(),
+                event.getLocalProcessingBlockIndex());
+        } else {
+            consumerContext.getEventCounter().releaseOnFailure(event.getLocalProcessingFileIndex(),
+                event.getLocalProcessingBlockIndex());
+        }
+    }
+
+    /**
+     * 处理一批数据并写入
+     *
+     * @return 写入的行数
+     */
+    protected abstract int consume(BatchLineEvent event) throws SQLException;
+
+    public SqlStat getSqlStat() {
+        return sqlStat;
+    }
+}
@@ -18,10 +18,11 @@ package worker.common;
 
 import com.alibaba.druid.util.JdbcUtils;
 import com.alibaba.druid.util.StringUtils;
-import model.stat.SqlStat;
+import model.stat.PipelineMetrics;
+import model.stat.PipelineStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import util.CountStat;
+import util.ByteLineSplitter;
 import util.FileUtil;
 
 import java.sql.Connection;
@@ -32,76 +33,102 @@ import java.util.List;
 import static model.config.ConfigConstant.END_OF_BATCH_LINES;
 
 /**
- * 不进行分片处理的消费者
+ * 不进行分片处理, 在客户端切分字段并拼接 SQL 的消费者
  */
-public abstract class BaseDefaultConsumer extends BaseWorkHandler {
+public abstract class BaseDefaultConsumer extends BaseBatchConsumer {
     private static final Logger logger = LoggerFactory.getLogger(BaseDefaultConsumer.class);
 
     protected int estimateFieldCount = 16;
-    protected final SqlStat sqlStat = new SqlStat();
-    protected int maxRetry = 0;
-
-    protected void initLocalVars() {
-        super.initLocalVars();
-        maxRetry = consumerContext.getMaxRetry();
-    }
+    /**
+     * 当前批次切分字段的累计耗时
+     */
+    private long splitNanos = 0;
+    /**
+     * 当前批次 {@link #getSql} 的耗时
+     */
+    private long getSqlNanos = 0;
 
+    /**
+     * 处理一批数据并写入
+     *
+     * @return 写入的行数
+     */
     @Override
-    public void onProxyEvent(BatchLineEvent event) {
-        if (consumerContext.getException() != null) {
-            // fail fast on exception
-            consumerContext.getEmittedDataCounter().getAndDecrement();
-            if (consumerContext.isUseBlock()) {
-                consumerContext.getEventCounter().get(event.getLocalProcessingFileIndex()).
-                    get(event.getLocalProcessingBlockIndex()).getAndDecrement();
-            }
-            return;
-        }
-        initLocalVars();
-        try {
+    protected int consume(BatchLineEvent event) throws SQLException {
+        StringBuilder stringBuilder;
+        int rowCount;
+        splitNanos = 0;
+        getSqlNanos = 0;
+        long fillStartNanos = System.nanoTime();
+        if (event.isByteSlice()) {
+            stringBuilder = new StringBuilder(event.getSliceCount() * 10);
+            rowCount = fillBySlices(stringBuilder, event);
+        } else {
             String[] lines = event.getBatchLines();
             int estimateLineSize = 10;
             if (lines.length > 0 && lines[0] != null) {
                 estimateLineSize = Math.min(estimateLineSize, lines[0].length());
             }
-            StringBuilder stringBuilder = new StringBuilder(lines.length * estimateLineSize);
-            int rowCount = 0;
-            for (String line : lines) {
-                if (StringUtils.isEmpty(line)) {
-                    continue;
-                }
-                if (line == END_OF_BATCH_LINES) {
-                    break;
-                }
-                List<String> values = FileUtil.splitWithEstimateCount(line, sep,
-                    consumerContext.isWithLastSep(), estimateFieldCount, hasEscapedQuote);
-                fillLocalBuffer(stringBuilder, values);
-                rowCount++;
-            }
+            stringBuilder = new StringBuilder(lines.length * estimateLineSize);
+            rowCount = fillByLines(stringBuilder, lines);
+        }
 
-            if (stringBuilder.length() > 0) {
-                execSql(stringBuilder);
-                CountStat.addDbRowCount(rowCount);
-            }
-        } catch (Exception e) {
-            consumerContext.setException(e);
-            logger.error("Failed in table [{}], due to {}", tableName, e.getMessage());
-            if (e.getStackTrace().length > 0) {
-                logger.error("{}", e.getStackTrace()[0]);
+        long fillNanos = System.nanoTime() - fillStartNanos;
+
+        if (!hasPendingData(stringBuilder)) {
+            return 0;
+        }
+        execSql(stringBuilder);
+        PipelineMetrics.record(PipelineStage.SPLIT, splitNanos);
+        PipelineMetrics.record(PipelineStage.SQL_BUILD, fillNanos - splitNanos + getSqlNanos);
+        return rowCount;
+    }
+
+    private int fillByLines(StringBuilder stringBuilder, String[] lines) {
+        int rowCount = 0;
+        for (String line : lines) {
+            if (StringUtils.isEmpty(line)) {
+                continue;
             }
-            // 认为无法恢复
-            throw new RuntimeException(e);
-        } finally {
-            consumerContext.getEmittedDataCounter().getAndDecrement();
-            if (consumerContext.isUseBlock()) {
-                consumerContext.getEventCounter().get(event.getLocalProcessingFileIndex()).
-                    get(event.getLocalProcessingBlockIndex()).getAndDecrement();
+            if (line == END_OF_BATCH_LINES) {
+                break;
             }
+            long splitStartNanos = System.nanoTime();
+            List<String> values = FileUtil.splitWithEstimateCount(line, sep,
+                consumerContext.isWithLastSep(), estimateFieldCount, hasEscapedQuote);
+            splitNanos += System.nanoTime() - splitStartNanos;
+            fillLocalBuffer(stringBuilder, values);
+            rowCount++;
+        }
+        return rowCount;
+    }
+
+    /**
+     * 直接在数据块上切分字段
+     */
+    private int fillBySlices(StringBuilder stringBuilder, BatchLineEvent event) {
+        byte[] data = event.getByteBlock().getData();
+        ByteLineSplitter splitter = getByteLineSplitter();
+        int sliceCount = event.getSliceCount();
+        for (int i = 0; i < sliceCount; i++) {
+            long splitStartNanos = System.nanoTime();
+            List<String> values = splitter.split(data, event.getSliceOffset(i), event.getSliceLength(i),
+                estimateFieldCount);
+            splitNanos += System.nanoTime() - splitStartNanos;
+            fillLocalBuffer(stringBuilder, values);
         }
+        return sliceCount;
     }
 
     protected abstract void fillLocalBuffer(StringBuilder stringBuilder, List<String> values);
 
+    /**
+     * 是否有待执行的数据
+     */
+    protected boolean hasPendingData(StringBuilder data) {
+        return data.length() > 0;
+    }
+
     protected abstract String getSql(StringBuilder data);
 
     protected void execSql(StringBuilder data) throws SQLException {
@@ -111,8 +138,10 @@ public abstract class BaseDefaultConsumer extends BaseWorkHandler {
         try {
             conn = consumerContext.getDataSource().getConnection();
             stmt = conn.createStatement();
-            sql = getSql(data);
             long startTime = System.nanoTime();
+            sql = getSql(data);
+            getSqlNanos = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
             for (int i = 0; i <= maxRetry; i++) {
                 try {
                     stmt.execute(sql);
@@ -138,8 +167,4 @@ public abstract class BaseDefaultConsumer extends BaseWorkHandler {
             JdbcUtils.close(conn);
         }
     }
-
-    public SqlStat getSqlStat() {
-        return sqlStat;
-    }
 }
@@ -23,8 +23,10 @@ import model.db.PartitionKey;
 import model.db.TableTopology;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import util.ByteLineSplitter;
 import util.DbUtil;
 import util.FileUtil;
+import worker.util.PartitionRouter;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -47,61 +49,100 @@ public abstract class BaseShardedConsumer extends BaseWorkHandler {
     public void onProxyEvent(BatchLineEvent event) {
         initLocalVars();
         try {
-            List<TableTopology> topologyList = consumerContext.getTopologyList(tableName);
+            PartitionRouter router = consumerContext.getTablePartitionRouter(tableName);
+            List<TableTopology> topologyList = router != null ? router.getTopologyList()
+                : consumerContext.getTopologyList(tableName);
             List<FieldMetaInfo> fieldMetaInfoList = consumerContext.getTableFieldMetaInfo(tableName)
                 .getFieldMetaInfoList();
             int shardCount = topologyList.size();
             // 分片序号
             int partitionIndex;
-            PartitionKey partitionKey = consumerContext.getTablePartitionKey(tableName);
-            StringBuilder[] dataBuffers = new StringBuilder[shardCount];
-            for (int i = 0; i < shardCount; i++) {
+            PartitionKey partitionKey = router != null ? null : consumerContext.getTablePartitionKey(tableName);
+            // 最后一个缓冲区存放无法在客户端路由的数据
+            StringBuilder[] dataBuffers = new StringBuilder[shardCount + 1];
+            for (int i = 0; i <= shardCount; i++) {
                 dataBuffers[i] = new StringBuilder();
             }
             StringBuilder localBuffer = new StringBuilder();
-            String[] lines = event.getBatchLines();
-            String partitionFieldValue;
-            for (String line : lines) {
-                if (StringUtils.isEmpty(line)) {
-                    continue;
-                }
-                if (line == END_OF_BATCH_LINES) {
-                    break;
+            if (event.isByteSlice()) {
+                byte[] data = event.getByteBlock().getData();
+                ByteLineSplitter splitter = getByteLineSplitter();
+                for (int i = 0; i < event.getSliceCount(); i++) {
+                    List<String> values = splitter.split(data, event.getSliceOffset(i),
+                        event.getSliceLength(i), fieldMetaInfoList.size());
+                    partitionIndex = getPartitionIndex(values, router, partitionKey, shardCount);
+
+                    try {
+                        fillLocalBuffer(localBuffer, values, fieldMetaInfoList);
+                    } catch (Throwable e) {
+                        logger.error("{} at line: {}", e.getMessage(), new String(data,
+                            event.getSliceOffset(i), event.getSliceLength(i), consumerContext.getCharset()));
+                        localBuffer.setLength(0);
+                        continue;
+                    }
+                    dataBuffers[partitionIndex].append(localBuffer);
+                    localBuffer.setLength(0);
                 }
-                List<String> values = FileUtil.split(line, sep,
-                    consumerContext.isWithLastSep(), hasEscapedQuote);
-                partitionFieldValue = values.get(partitionKey.getFieldMetaInfo().getIndex());
-                partitionIndex = DbUtil.getPartitionIndex(partitionFieldValue, partitionKey);
+            } else {
+                String[] lines = event.getBatchLines();
+                for (String line : lines) {
+                    if (StringUtils.isEmpty(line)) {
+                        continue;
+                    }
+                    if (line == END_OF_BATCH_LINES) {
+                        break;
+                    }
+                    List<String> values = FileUtil.split(line, sep,
+                        consumerContext.isWithLastSep(), hasEscapedQuote);
+                    partitionIndex = getPartitionIndex(values, router, partitionKey, shardCount);
 
-                try {
-                    fillLocalBuffer(localBuffer, values, fieldMetaInfoList);
-                } catch (Throwable e) {
-                    logger.error("{} at line: {}", e.getMessage(), line);
-                    // 清空 继续处理下一行数据
+                    try {
+                        fillLocalBuffer(localBuffer, values, fieldMetaInfoList);
+                    } catch (Throwable e) {
+                        logger.error("{} at line: {}", e.getMessage(), line);
+                        // 清空 继续处理下一行数据
+                        localBuffer.setLength(0);
+                        continue;
+                    }
+                    dataBuffers[partitionIndex].append(localBuffer);
                     localBuffer.setLength(0);
-                    continue;
                 }
-                dataBuffers[partitionIndex].append(localBuffer);
-                localBuffer.setLength(0);
             }
             for (int i = 0; i < shardCount; i++) {
                 if (dataBuffers[i].length() != 0) {
                     execSqlWithShardingHint(topologyList.get(i), dataBuffers[i]);
                 }
             }
+            if (dataBuffers[shardCount].length() != 0) {
+                execSql(getSqlWithoutHint(dataBuffers[shardCount]));
+            }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             // 认为无法恢复
             System.exit(1);
         } finally {
+            event.releaseByteBlock();
             consumerContext.getEmittedDataCounter().getAndDecrement();
             if (consumerContext.isUseBlock()) {
-                consumerContext.getEventCounter().get(event.getLocalProcessingFileIndex()).
-                    get(event.getLocalProcessingBlockIndex()).getAndDecrement();
+                consumerContext.getEventCounter().release(event.getLocalProcessingFileIndex(),
+                    event.getLocalProcessingBlockIndex());
             }
         }
     }
 
+    /**
+     * @return 分片序号, 无法确定时返回 shardCount
+     */
+    private static int getPartitionIndex(List<String> values, PartitionRouter router,
+                                         PartitionKey partitionKey, int shardCount) {
+        if (router == null) {
+            String partitionFieldValue = values.get(partitionKey.getFieldMetaInfo().getIndex());
+            return DbUtil.getPartitionIndex(partitionFieldValue, partitionKey);
+        }
+        int partitionIndex = router.route(values);
+        return partitionIndex < 0 ? shardCount : partitionIndex;
+    }
+
     /**
      * 根据切分出的字段值
      * 按照格式填充localBuffer
@@ -114,12 +155,15 @@ public abstract class BaseShardedConsumer extends BaseWorkHandler {
      * @param data 根据fillLocalBuffer得到的缓冲区数据
      */
     protected void execSqlWithShardingHint(TableTopology topology, StringBuilder data) {
+        execSql(getSqlWithHint(topology, data));
+    }
+
+    private void execSql(String sql) {
         Connection conn = null;
         Statement stmt = null;
         try {
             conn = consumerContext.getDataSource().getConnection();
             stmt = conn.createStatement();
-            String sql = getSqlWithHint(topology, data);
             stmt.execute(sql);
         } catch (SQLException e) {
             logger.error(e.getMessage(), e);
@@ -136,4 +180,9 @@ public abstract class BaseShardedConsumer extends BaseWorkHandler {
      * @param topology 表的分片逻辑
      */
     protected abstract String getSqlWithHint(TableTopology topology, StringBuilder data);
+
+    /**
+     * 无法在客户端确定分片的数据, 交由 CN 路由
+     */
+    protected abstract String getSqlWithoutHint(StringBuilder data);
 }
@@ -22,6 +22,7 @@ import model.ConsumerExecutionContext;
 import model.config.ConfigConstant;
 import model.config.GlobalVar;
 import model.config.QuoteEncloseMode;
+import util.ByteLineSplitter;
 
 /**
  * 限流代理类
@@ -30,12 +31,20 @@ public abstract class BaseWorkHandler implements WorkHandler<BatchLineEvent> {
 
     protected ConsumerExecutionContext consumerContext;
     private RateLimiter rateLimiter = null;
+    /**
+     * 限流器当前速率对应的每批行数
+     */
+    private int rateBatchSize = GlobalVar.EMIT_BATCH_SIZE;
     protected boolean hasEscapedQuote = false;
     protected String sep;
     /**
      * TODO tableName 从 map 取出的内容cache在独立context中
      */
     protected String tableName;
+    /**
+     * 字节切片模式下使用
+     */
+    private ByteLineSplitter byteLineSplitter;
 
     protected void initLocalVars() {
         if (GlobalVar.IN_PERF_MODE) {
@@ -57,6 +66,17 @@ public abstract class BaseWorkHandler implements WorkHandler<BatchLineEvent> {
         }
     }
 
+    /**
+     * 需在 initLocalVars 之后调用
+     */
+    protected ByteLineSplitter getByteLineSplitter() {
+        if (byteLineSplitter == null) {
+            byteLineSplitter = new ByteLineSplitter(sep, consumerContext.getCharset(),
+                consumerContext.isWithLastSep(), hasEscapedQuote);
+        }
+        return byteLineSplitter;
+    }
+
     public void setConsumerContext(ConsumerExecutionContext consumerContext) {
         this.consumerContext = consumerContext;
     }
@@ -73,11 +93,35 @@ public abstract class BaseWorkHandler implements WorkHandler<BatchLineEvent> {
 
     @Override
     public void onEvent(BatchLineEvent event) {
+        AdaptiveBatchController batchController = consumerContext.getBatchController();
         // 保守起见，使用阻塞锁，不自旋
         if (rateLimiter != null) {
+            if (batchController != null) {
+                adjustRate(batchController.getBatchSize());
+            }
             rateLimiter.acquire(1);
         }
-        onProxyEvent(event);
+        if (batchController == null) {
+            onProxyEvent(event);
+            return;
+        }
+        batchController.acquireConsumer();
+        try {
+            onProxyEvent(event);
+        } finally {
+            batchController.releaseConsumer();
+        }
+    }
+
+    /**
+     * 批量行数变化后保持按行计算的限流不变
+     */
+    private void adjustRate(int batchSize) {
+        if (batchSize != rateBatchSize) {
+            rateLimiter.setRate((double) consumerContext.getTpsLimit()
+                / (consumerContext.getParallelism() * batchSize));
+            rateBatchSize = batchSize;
+        }
     }
 
     /**
@@ -16,12 +16,22 @@
 
 package worker.common;
 
+import worker.common.reader.ByteBlock;
+
 public class BatchLineEvent {
 
     private String[] batchLines;
     private int localProcessingFileIndex = -1;
     private long localProcessingBlockIndex = -1;
 
+    /**
+     * 字节切片模式下 行数据仍在数据块中
+     * lineSlices 依次存放每行的 (offset, length)
+     */
+    private ByteBlock byteBlock;
+    private int[] lineSlices;
+    private int sliceCount;
+
     public String[] getBatchLines() {
         return batchLines;
     }
@@ -44,5 +54,55 @@ public class BatchLineEvent {
 
     public void setBatchLines(String[] batchLines) {
         this.batchLines = batchLines;
+        this.byteBlock = null;
+        this.lineSlices = null;
+        this.sliceCount = 0;
+    }
+
+    /**
+     * @param byteBlock 调用方需已对其 retain
+     */
+    public void setLineSlices(ByteBlock byteBlock, int[] lineSlices, int sliceCount) {
+        this.batchLines = null;
+        this.byteBlock = byteBlock;
+        this.lineSlices = lineSlices;
+        this.sliceCount = sliceCount;
+    }
+
+    public boolean isByteSlice() {
+        return byteBlock != null;
+    }
+
+    public ByteBlock getByteBlock() {
+        return byteBlock;
+    }
+
+    public int[] getLineSlices() {
+        return lineSlices;
+    }
+
+    public int getSliceCount() {
+        return sliceCount;
+    }
+
+    public int getSliceOffset(int index) {
+        return lineSlices[index << 1];
+    }
+
+    public int getSliceLength(int index) {
+        return lineSlices[(index << 1) + 1];
+    }
+
+    /**
+     * 消费完毕后释放对数据块的引用
+     */
+    public void releaseByteBlock() {
+        if (byteBlock != null) {
+            ByteBlock block = this.byteBlock;
+            this.byteBlock = null;
+            this.lineSlices = null;
+            this.sliceCount = 0;
+            block.release();
+        }
     }
 }
@@ -60,7 +60,12 @@ public abstract class ReadFileProducer implements Producer {
      */
     private void initFileList() {
         FileStorage fileStorage = context.getFileStorage();
-        if (fileStorage == null) {
+        if (fileStorage != null && readRemotely()) {
+            // 读取时直接从对象存储按范围获取
+            for (FileLineRecord fileRecord : fileLineRecordList) {
+                this.fileList.add(new File(fileRecord.getFilePath()));
+            }
+        } else if (fileStorage == null) {
             for (FileLineRecord fileRecord : fileLineRecordList) {
                 File file = new File(fileRecord.getFilePath());
                 if (!file.exists()) {
@@ -97,13 +102,21 @@ public abstract class ReadFileProducer implements Producer {
         }
     }
 
+    /**
+     * 是否不下载到本地, 直接从对象存储读取文件
+     * 在构造时调用, 只能依赖 context
+     */
+    protected boolean readRemotely() {
+        return false;
+    }
+
     public boolean useMagicSeparator() {
         return false;
     }
 
     public void close() {
         FileStorage fileStorage = context.getFileStorage();
-        if (fileStorage != null) {
+        if (fileStorage != null && !readRemotely()) {
             // 在 producer 进行临时文件清理, 因为同一个文件可能被多个reader共享
             for (FileLineRecord fileRecord : fileLineRecordList) {
                 File file = new File(fileRecord.getFilePath());
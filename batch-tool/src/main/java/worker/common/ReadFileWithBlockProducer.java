@@ -23,12 +23,20 @@ import model.config.FileBlockListRecord;
 import model.config.FileLineRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import worker.common.reader.BlockDecompressor;
 import worker.common.reader.BlockReader;
+import worker.common.reader.ByteBlockPool;
+import worker.common.reader.CompressedFrameIndex;
+import worker.common.reader.CompressedStreamReader;
+import worker.common.reader.RemoteBlockSource;
+
+import java.io.IOException;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ReadFileWithBlockProducer extends ReadFileProducer {
     private static final Logger logger = LoggerFactory.getLogger(ReadFileWithBlockProducer.class);
@@ -36,6 +44,15 @@ public class ReadFileWithBlockProducer extends ReadFileProducer {
     private final CompressMode compressMode;
     private final FileBlockListRecord fileBlockListRecord;
     private final List<BlockReader> blockReaderList = new ArrayList<>();
+    private final ByteBlockPool blockPool;
+    /**
+     * 压缩文件均可按帧切分时不为空, 否则每个文件流式解压
+     */
+    private final CompressedFrameIndex[] frameIndexes;
+    /**
+     * 从对象存储导入时不为空, 所有 BlockReader 共享每个文件的远程数据源
+     */
+    private final RemoteBlockSource[] remoteSources;
 
     public ReadFileWithBlockProducer(ProducerExecutionContext context,
                                      RingBuffer<BatchLineEvent> ringBuffer,
@@ -44,6 +61,63 @@ public class ReadFileWithBlockProducer extends ReadFileProducer {
         this.compressMode = context.getCompressMode();
         this.fileBlockListRecord = new FileBlockListRecord(fileList, context.getNextFileIndex(),
             context.getNextBlockIndex());
+        if (context.isZeroCopyEnabled() || context.isWholeBlockSliceEnabled()) {
+            this.blockPool = new ByteBlockPool(BlockReader.getBlockCapacity(context),
+                context.getParallelism() * 4);
+        } else {
+            this.blockPool = null;
+        }
+        if (compressMode != CompressMode.NONE) {
+            this.frameIndexes = loadFrameIndexes();
+        } else {
+            this.frameIndexes = null;
+        }
+        if (readRemotely()) {
+            this.remoteSources = createRemoteSources();
+        } else {
+            this.remoteSources = null;
+        }
+    }
+
+    /**
+     * 开启 -rangeRead 时未压缩的文件按数据块范围读取, 压缩文件仍需下载到本地
+     */
+    @Override
+    protected boolean readRemotely() {
+        return context.getFileStorage() != null && context.isRemoteRangeReadEnabled()
+            && context.getCompressMode() == CompressMode.NONE;
+    }
+
+    private RemoteBlockSource[] createRemoteSources() {
+        long readBlockSize = context.getReadBlockSizeInMb() * 1024L * 1024;
+        int blockCapacity = BlockReader.getBlockCapacity(context);
+        RemoteBlockSource[] sources = new RemoteBlockSource[fileList.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new RemoteBlockSource(context.getFileStorage(), fileList.get(i).getName(),
+                readBlockSize, blockCapacity);
+        }
+        return sources;
+    }
+
+    private CompressedFrameIndex[] loadFrameIndexes() {
+        BlockDecompressor decompressor = BlockDecompressor.create(compressMode);
+        CompressedFrameIndex[] indexes = new CompressedFrameIndex[fileList.size()];
+        try {
+            for (int i = 0; i < indexes.length; i++) {
+                try {
+                    indexes[i] = decompressor.buildIndex(fileList.get(i));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to load frame index of " + fileList.get(i).getPath(), e);
+                }
+                if (indexes[i] == null) {
+                    logger.info("{} 无法按帧切分, 使用流式解压", fileList.get(i).getPath());
+                    return null;
+                }
+            }
+        } finally {
+            decompressor.close();
+        }
+        return indexes;
     }
 
     @Override
@@ -51,13 +125,31 @@ public class ReadFileWithBlockProducer extends ReadFileProducer {
         int parallelism = context.getParallelism();
         ThreadPoolExecutor threadPool = context.getProducerExecutor();
         BlockReader readFileWorker = null;
+        AtomicInteger nextFileIndex = new AtomicInteger(fileBlockListRecord.getCurrentFileIndex().get());
         for (int i = 0; i < parallelism; i++) {
-            readFileWorker = new BlockReader(context, fileBlockListRecord, ringBuffer, compressMode);
+            if (compressMode != CompressMode.NONE && frameIndexes == null) {
+                // 每个文件只有一个解压线程, 由多个消费者并行处理
+                readFileWorker = new CompressedStreamReader(context, fileBlockListRecord, ringBuffer,
+                    compressMode, blockPool, nextFileIndex);
+            } else {
+                readFileWorker = new BlockReader(context, fileBlockListRecord, ringBuffer, compressMode,
+                    blockPool, frameIndexes, remoteSources);
+            }
             blockReaderList.add(readFileWorker);
             threadPool.submit(readFileWorker);
         }
     }
 
+    @Override
+    public void close() {
+        super.close();
+        if (remoteSources != null) {
+            for (RemoteBlockSource source : remoteSources) {
+                source.close();
+            }
+        }
+    }
+
     public AtomicBoolean[] getFileDoneList() {
         return fileBlockListRecord.getFileDoneList();
     }
@@ -0,0 +1,70 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import model.config.CompressMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 借助帧索引从解压后的任意位置开始读取压缩文件
+ * 直接解压到调用方给定的内存中, 每个读取线程持有一个实例
+ */
+public abstract class BlockDecompressor {
+
+    public static BlockDecompressor create(CompressMode compressMode) {
+        switch (compressMode) {
+        case GZIP:
+            return new GzipBlockInflater();
+        case ZSTD:
+            return new ZstdBlockDecompressor();
+        case LZ4:
+            return new Lz4BlockDecompressor();
+        default:
+            throw new UnsupportedOperationException("Unsupported compression mode: " + compressMode);
+        }
+    }
+
+    /**
+     * 只读取帧的头部信息, 不解压数据
+     *
+     * @return 不可按帧切分时返回 null
+     */
+    public abstract CompressedFrameIndex buildIndex(File file) throws IOException;
+
+    /**
+     * 读取解压后 [pos, pos + len) 范围内的数据
+     *
+     * @return 实际读取的字节数, pos 超出解压后的文件末尾时返回 -1
+     */
+    public abstract int read(RandomAccessFile raf, CompressedFrameIndex index, long pos,
+                             byte[] dest, int len) throws IOException;
+
+    public void close() {
+    }
+
+    static int readIntLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+            | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    static long readLongLE(byte[] bytes, int offset) {
+        return (readIntLE(bytes, offset) & 0xFFFFFFFFL) | (long) readIntLE(bytes, offset + 4) << 32;
+    }
+}
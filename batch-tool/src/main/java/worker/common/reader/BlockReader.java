@@ -19,21 +19,22 @@ package worker.common.reader;
 import com.lmax.disruptor.RingBuffer;
 import model.ProducerExecutionContext;
 import model.config.CompressMode;
-import model.config.ConfigConstant;
 import model.config.FileBlockListRecord;
 import model.encrypt.BaseCipher;
+import model.stat.PipelineMetrics;
+import model.stat.PipelineStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import util.ByteScanUtil;
 import util.FileUtil;
 import util.IOUtil;
 import worker.common.BatchLineEvent;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPInputStream;
+import java.util.Arrays;
+
+import static model.config.GlobalVar.EMIT_BATCH_SIZE;
 
 public class BlockReader extends FileBufferedBatchReader {
 
@@ -46,42 +47,100 @@ public class BlockReader extends FileBufferedBatchReader {
     /**
      * 默认2MB
      */
-    private final long readBlockSize;
-    private final BaseCipher cipher;
-    private final FileBlockListRecord fileBlockListRecord;
-    private final BlockByteBuffer byteBuffer;
+    final long readBlockSize;
+    final BaseCipher cipher;
+    final FileBlockListRecord fileBlockListRecord;
+    final BlockByteBuffer byteBuffer;
     private final BlockPosMarker posMarker;
-    private final byte[] gzipBuffer;
+    /**
+     * 压缩文件中每个文件的帧索引, 按解压后的位置划分数据块
+     */
+    private final CompressedFrameIndex[] frameIndexes;
+    private final BlockDecompressor decompressor;
+    /**
+     * 不为空时从对象存储按范围读取每个文件
+     */
+    private final RemoteBlockSource[] remoteSources;
+    /**
+     * 不为空时使用字节切片模式
+     * 行数据不再解码为字符串, 以 (offset, length) 的形式随数据块一起发送给消费者
+     */
+    final ByteBlockPool blockPool;
+    ByteBlock curBlock;
+    private int[] lineSlices;
+    /**
+     * 字节切片模式下每个数据块只发送一次
+     */
+    private final boolean wholeBlockSlice;
     private RandomAccessFile curRandomAccessFile;
     private boolean trimRight;
 
     public BlockReader(ProducerExecutionContext context,
                        FileBlockListRecord fileBlockListRecord,
                        RingBuffer<BatchLineEvent> ringBuffer, CompressMode compressMode) {
+        this(context, fileBlockListRecord, ringBuffer, compressMode, null);
+    }
+
+    public BlockReader(ProducerExecutionContext context,
+                       FileBlockListRecord fileBlockListRecord,
+                       RingBuffer<BatchLineEvent> ringBuffer, CompressMode compressMode,
+                       ByteBlockPool blockPool) {
+        this(context, fileBlockListRecord, ringBuffer, compressMode, blockPool, null);
+    }
+
+    /**
+     * @param frameIndexes 压缩模式下每个文件的帧索引
+     */
+    public BlockReader(ProducerExecutionContext context,
+                       FileBlockListRecord fileBlockListRecord,
+                       RingBuffer<BatchLineEvent> ringBuffer, CompressMode compressMode,
+                       ByteBlockPool blockPool, CompressedFrameIndex[] frameIndexes) {
+        this(context, fileBlockListRecord, ringBuffer, compressMode, blockPool, frameIndexes, null);
+    }
+
+    /**
+     * @param remoteSources 从对象存储导入时每个文件的远程数据源
+     */
+    public BlockReader(ProducerExecutionContext context,
+                       FileBlockListRecord fileBlockListRecord,
+                       RingBuffer<BatchLineEvent> ringBuffer, CompressMode compressMode,
+                       ByteBlockPool blockPool, CompressedFrameIndex[] frameIndexes,
+                       RemoteBlockSource[] remoteSources) {
         super(context, fileBlockListRecord.getFileList(), ringBuffer, compressMode);
         this.readBlockSize = context.getReadBlockSizeInMb() * 1024L * 1024;
         // set localProcessingFileIndex and startPosArr[localProcessingFileIndex]
         this.localProcessingFileIndex = fileBlockListRecord.getCurrentFileIndex().get();
         this.fileBlockListRecord = fileBlockListRecord;
         this.cipher = BaseCipher.getCipher(context.getEncryptionConfig(), false);
-        if (this.compressMode != CompressMode.NONE) {
-            this.gzipBuffer = new byte[(int) (readBlockSize + READ_PADDING)];
+        this.frameIndexes = frameIndexes;
+        this.decompressor = frameIndexes != null ? BlockDecompressor.create(compressMode) : null;
+        this.remoteSources = remoteSources;
+        this.blockPool = blockPool;
+        if (blockPool != null) {
+            // 内存由数据块池提供
+            this.byteBuffer = new BlockByteBuffer(0);
+            this.lineSlices = new int[EMIT_BATCH_SIZE * 2];
         } else {
-            this.gzipBuffer = null;
+            this.byteBuffer = new BlockByteBuffer((int) (readBlockSize + READ_PADDING));
         }
-        this.byteBuffer = new BlockByteBuffer((int) (readBlockSize + READ_PADDING));
+        this.wholeBlockSlice = context.isWholeBlockSliceEnabled();
         this.posMarker = new BlockPosMarker();
         this.trimRight = context.isTrimRight();
     }
 
     @Override
     protected void init() {
-        this.curRandomAccessFile = FileUtil.openRafForRead(getLocalFile());
+        openCurFile();
+    }
+
+    private void openCurFile() {
+        if (remoteSources == null) {
+            this.curRandomAccessFile = FileUtil.openRafForRead(getLocalFile());
+        }
     }
 
     @Override
     protected void readData() {
-        int curReadingPos;
         while (true) {
             if (context.getException() != null) {
                 throw new RuntimeException(context.getException());
@@ -89,17 +148,20 @@ public class BlockReader extends FileBufferedBatchReader {
             try {
                 localProcessingBlockIndex =
                     fileBlockListRecord.getStartPosArr()[localProcessingFileIndex].getAndIncrement();
+                if (context.getEventCounter().isCompleted(localProcessingFileIndex, localProcessingBlockIndex)) {
+                    // 上一次已完整写入
+                    continue;
+                }
                 long pos = localProcessingBlockIndex * readBlockSize;
                 // 首次进入该block，开始处理 : counter++
-                context.getEventCounter().get(localProcessingFileIndex)
-                    .putIfAbsent(localProcessingBlockIndex, new AtomicInteger(0));
-                context.getEventCounter().get(localProcessingFileIndex)
-                    .get(localProcessingBlockIndex).incrementAndGet();
+                context.getEventCounter().retain(localProcessingFileIndex, localProcessingBlockIndex);
                 // 跳过第一个换行符
                 boolean skipFirst = (pos != 0);
+                long readStartNanos = System.nanoTime();
                 seekAndRead(pos);
 
                 if (byteBuffer.len == -1) {
+                    releaseCurBlock();
                     if (!nextFile()) {
                         // 没有再下一个要处理的文件了, 结束
                         break;
@@ -107,42 +169,25 @@ public class BlockReader extends FileBufferedBatchReader {
                     continue;
                 }
                 preprocessBuffer();
+                PipelineMetrics.record(PipelineStage.BLOCK_READ, System.nanoTime() - readStartNanos);
+                if (curBlock != null) {
+                    curBlock.reload(byteBuffer.buffer, byteBuffer.len);
+                }
 
-                posMarker.reset();
-                label_reading:
-                while ((curReadingPos = posMarker.getReadingPos()) < byteBuffer.len) {
-                    // 读取行
-                    switch (byteBuffer.buffer[curReadingPos]) {
-                    case '\n':
-                        if (skipFirst) {
-                            skipFirst = false;
-                        } else if (pos == 0 && posMarker.curPos == 0 && context.isWithHeader()) {
-                            // do nothing
-                            // curPos will be updated after skip header
-                        } else {
-                            handleLine(pos == 0);
-                        }
-
-                        posMarker.resetPos(curReadingPos + 1);
-                        if (posMarker.getReadingPos() > readBlockSize) {
-                            // 到达了padding处 停止
-                            break label_reading;
-                        }
-                        break;
-                    default:
-                        posMarker.curLen++;
+                scanLines(pos == 0, skipFirst);
+                if (curBlock != null) {
+                    // 切片不跨数据块, 处理完本block即发送
+                    if (bufferedLineCount != 0) {
+                        emitSliceBuffer();
                     }
-                }
-                curReadingPos = posMarker.getReadingPos();
-                // Dealing last line without '\n'.
-                if (curReadingPos == byteBuffer.len && // Read till EOF.
-                    curReadingPos <= readBlockSize) { // And not in padding.
-                    // Dealing last line.
-                    handleLine(pos == 0);
+                    releaseCurBlock();
+                } else if (bufferedLineCount != 0) {
+                    // 行不跨数据块发送, 保证计数归零时本block的数据均已写入
+                    emitLineBuffer();
+                    renewLineBuffer();
                 }
                 // 正常处理完本block数据 : counter--
-                context.getEventCounter().get(localProcessingFileIndex)
-                    .get(localProcessingBlockIndex).getAndDecrement();
+                context.getEventCounter().release(localProcessingFileIndex, localProcessingBlockIndex);
             } catch (Exception e) {
                 logger.error(e.getMessage(), e);
                 throw new RuntimeException(e);
@@ -154,41 +199,147 @@ public class BlockReader extends FileBufferedBatchReader {
         }
     }
 
+    /**
+     * 切分缓冲区中的行, 读取位置超过 readBlockSize 后的行留给下一个数据块
+     *
+     * @param firstBlock 文件的第一个数据块, 需要处理 BOM 与表头
+     * @param skipFirst 跳过第一个换行符之前的内容
+     */
+    void scanLines(boolean firstBlock, boolean skipFirst) {
+        int curReadingPos;
+        posMarker.reset();
+        while ((curReadingPos = posMarker.getReadingPos()) < byteBuffer.len) {
+            // 按字查找下一个换行符
+            int lfPos = ByteScanUtil.indexOf(byteBuffer.buffer, curReadingPos, byteBuffer.len, (byte) '\n');
+            if (lfPos < 0) {
+                posMarker.curLen += byteBuffer.len - curReadingPos;
+                break;
+            }
+            posMarker.curLen += lfPos - curReadingPos;
+            if (skipFirst) {
+                skipFirst = false;
+            } else if (firstBlock && posMarker.curPos == 0 && context.isWithHeader()) {
+                // do nothing
+                // curPos will be updated after skip header
+            } else {
+                handleLine(firstBlock);
+            }
+
+            posMarker.resetPos(lfPos + 1);
+            if (posMarker.getReadingPos() > readBlockSize) {
+                // 到达了padding处 停止
+                break;
+            }
+        }
+        curReadingPos = posMarker.getReadingPos();
+        // Dealing last line without '\n'.
+        if (curReadingPos == byteBuffer.len && // Read till EOF.
+            curReadingPos <= readBlockSize) { // And not in padding.
+            // Dealing last line.
+            handleLine(firstBlock);
+        }
+    }
+
+    /**
+     * 直接在块内存上定位行的范围, 不做额外拷贝
+     */
     private void handleLine(boolean checkBom) {
         int curReadingPos = posMarker.getReadingPos();
-        byte[] tmpByteBuffer;
-        if (curReadingPos - 1 >= 0 && byteBuffer.buffer[curReadingPos - 1] == '\r') {
+        byte[] buffer = byteBuffer.buffer;
+        int lineLen = posMarker.curLen;
+        if (curReadingPos - 1 >= 0 && buffer[curReadingPos - 1] == '\r') {
             // handle \r\n
-            tmpByteBuffer = new byte[posMarker.curLen - 1];
-            System.arraycopy(byteBuffer.buffer, posMarker.curPos, tmpByteBuffer, 0, posMarker.curLen - 1);
-        } else {
-            tmpByteBuffer = new byte[posMarker.curLen];
-            System.arraycopy(byteBuffer.buffer, posMarker.curPos, tmpByteBuffer, 0, posMarker.curLen);
+            lineLen--;
         }
-        int bytesEnd = tmpByteBuffer.length - 1, bytesOffset = 0;
+        int bytesOffset = posMarker.curPos, bytesEnd = posMarker.curPos + lineLen - 1;
         // remove BOM
-        if (checkBom && bytesEnd >= 2 && context.isUtfCharset()) {
-            if (tmpByteBuffer[0] == (byte) 0xEF && tmpByteBuffer[1] == (byte) 0xBB
-                && tmpByteBuffer[2] == (byte) 0xBF) {
-                bytesOffset = 3;
+        if (checkBom && lineLen >= 3 && context.isUtfCharset()) {
+            if (buffer[bytesOffset] == (byte) 0xEF && buffer[bytesOffset + 1] == (byte) 0xBB
+                && buffer[bytesOffset + 2] == (byte) 0xBF) {
+                bytesOffset += 3;
             }
         }
         // trim right
         while (trimRight && (bytesEnd >= bytesOffset) &&
-            (tmpByteBuffer[bytesEnd] == ' ' || tmpByteBuffer[bytesEnd] == '\t')) {
+            (buffer[bytesEnd] == ' ' || buffer[bytesEnd] == '\t')) {
             bytesEnd--;
         }
         if (bytesEnd < bytesOffset) {
             return;
         }
 
-        String line = new String(tmpByteBuffer, bytesOffset, bytesEnd - bytesOffset + 1,
+        if (blockPool != null) {
+            appendToSliceBuffer(bytesOffset, bytesEnd - bytesOffset + 1);
+            return;
+        }
+        String line = new String(buffer, bytesOffset, bytesEnd - bytesOffset + 1,
             context.getCharset());
         appendToLineBuffer(line);
     }
 
+    public static int getBlockCapacity(ProducerExecutionContext context) {
+        return (int) (context.getReadBlockSizeInMb() * 1024L * 1024 + READ_PADDING);
+    }
+
+    private void appendToSliceBuffer(int offset, int length) {
+        int sliceIndex = bufferedLineCount << 1;
+        if (sliceIndex == lineSlices.length) {
+            lineSlices = Arrays.copyOf(lineSlices, lineSlices.length * 2);
+        }
+        lineSlices[sliceIndex] = offset;
+        lineSlices[sliceIndex + 1] = length;
+        bufferedLineCount++;
+        bufferedLineSize += length;
+        if (!wholeBlockSlice && shouldEmit()) {
+            emitSliceBuffer();
+        }
+        fileReaderStat.increment();
+        currentFileLineCount.incrementAndGet();
+    }
+
+    void emitSliceBuffer() {
+        long sequence = nextSequence();
+        try {
+            BatchLineEvent event = ringBuffer.get(sequence);
+            event.setLineSlices(curBlock.retain(), lineSlices, bufferedLineCount);
+            event.setLocalProcessingFileIndex(localProcessingFileIndex);
+            event.setLocalProcessingBlockIndex(localProcessingBlockIndex);
+        } finally {
+            beforePublish();
+            ringBuffer.publish(sequence);
+        }
+        lineSlices = new int[lineSlices.length];
+        bufferedLineCount = 0;
+        bufferedLineSize = 0;
+    }
+
+    void releaseCurBlock() {
+        if (curBlock != null) {
+            curBlock.release();
+            curBlock = null;
+        }
+    }
+
     private void seekAndRead(long pos) {
         try {
+            if (blockPool != null) {
+                curBlock = blockPool.acquire();
+                byteBuffer.buffer = curBlock.getData();
+            }
+            if (compressMode != CompressMode.NONE) {
+                if (frameIndexes == null) {
+                    throw new IllegalStateException("Compressed file cannot be read by block without frame index");
+                }
+                // 直接解压到数据块中
+                byteBuffer.len = decompressor.read(curRandomAccessFile, frameIndexes[localProcessingFileIndex],
+                    pos, byteBuffer.buffer, byteBuffer.buffer.length);
+                return;
+            }
+            if (remoteSources != null) {
+                byteBuffer.len = remoteSources[localProcessingFileIndex].read(pos, byteBuffer.buffer,
+                    byteBuffer.buffer.length);
+                return;
+            }
             curRandomAccessFile.seek(pos);
             byteBuffer.len = curRandomAccessFile.read(byteBuffer.buffer);
         } catch (IOException e) {
@@ -198,22 +349,10 @@ public class BlockReader extends FileBufferedBatchReader {
     }
 
     /**
-     * 进行解压/解密等预处理
+     * 进行解密等预处理, 解压已在读取时完成
      */
     private void preprocessBuffer() {
         try {
-            if (this.compressMode == CompressMode.GZIP) {
-                // 将buffer的内容解压
-                GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(byteBuffer.buffer),
-                    ConfigConstant.DEFAULT_COMPRESS_BUFFER_SIZE);
-                ByteArrayOutputStream gzipOutputBuffer = new ByteArrayOutputStream(byteBuffer.len * 2);
-                int num = 0;
-                while ((num = gzipInputStream.read(gzipBuffer, 0, byteBuffer.len)) != -1) {
-                    gzipOutputBuffer.write(gzipBuffer, 0, num);
-                }
-                byteBuffer.reload(gzipOutputBuffer.toByteArray());
-                gzipInputStream.close();
-            }
             if (cipher != null) {
                 byteBuffer.reload(cipher.decrypt(byteBuffer.buffer));
             }
@@ -226,11 +365,10 @@ public class BlockReader extends FileBufferedBatchReader {
     private boolean nextFile() {
         if (fileBlockListRecord.getFileDoneList()[localProcessingFileIndex].compareAndSet(false, true)) {
             // 此处不一定实际完成了读取，可能还有几个block正在处理中
-            logger.info("{} 读取完毕", getLocalFile().getPath());
+            logger.info("{} 读取完毕", fileList.get(localProcessingFileIndex).getPath());
         }
-        // 未处理足一个block就进入下一个文件 : counter--
-        context.getEventCounter().get(localProcessingFileIndex)
-            .get(localProcessingBlockIndex).getAndDecrement();
+        // 读取越过文件末尾, 进入下一个文件 : counter--
+        context.getEventCounter().releaseEmpty(localProcessingFileIndex, localProcessingBlockIndex);
         // 进入下一个文件
         if (localProcessingFileIndex < fileList.size() - 1) {
             fileBlockListRecord.getCurrentFileIndex()
@@ -238,7 +376,9 @@ public class BlockReader extends FileBufferedBatchReader {
             // 如果并发很大的话 可以考虑一次性跳过多个文件
             localProcessingFileIndex++;
             localProcessingBlockIndex = -1;
-            curRandomAccessFile = FileUtil.openRafForRead(getLocalFile());
+            IOUtil.close(curRandomAccessFile);
+            curRandomAccessFile = null;
+            openCurFile();
             return true;
         }
         return false;
@@ -247,16 +387,19 @@ public class BlockReader extends FileBufferedBatchReader {
     @Override
     protected void beforePublish() {
         context.getEmittedDataCounter().getAndIncrement();
-        context.getEventCounter().get(localProcessingFileIndex).
-            get(localProcessingBlockIndex).getAndIncrement();
+        context.getEventCounter().retain(localProcessingFileIndex, localProcessingBlockIndex);
     }
 
     @Override
     protected void close() {
+        releaseCurBlock();
         IOUtil.close(this.curRandomAccessFile);
+        if (decompressor != null) {
+            decompressor.close();
+        }
     }
 
-    private static class BlockByteBuffer {
+    static class BlockByteBuffer {
         byte[] buffer;
         int len;
 
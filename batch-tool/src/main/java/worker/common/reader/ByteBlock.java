@@ -0,0 +1,75 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 带引用计数的数据块
+ * 读取线程与消费者共享同一块内存, 引用归零后归还到 {@link ByteBlockPool}
+ */
+public class ByteBlock {
+
+    private final ByteBlockPool pool;
+    private final AtomicInteger refCount = new AtomicInteger(0);
+    private byte[] data;
+    private int len;
+
+    ByteBlock(ByteBlockPool pool, int capacity) {
+        this.pool = pool;
+        this.data = new byte[capacity];
+        this.len = 0;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLen() {
+        return len;
+    }
+
+    void setLen(int len) {
+        this.len = len;
+    }
+
+    /**
+     * 解压/解密后数据不在原有的内存中
+     */
+    void reload(byte[] data, int len) {
+        this.data = data;
+        this.len = len;
+    }
+
+    public ByteBlock retain() {
+        refCount.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int remain = refCount.decrementAndGet();
+        if (remain == 0) {
+            pool.recycle(this);
+        } else if (remain < 0) {
+            throw new IllegalStateException("ByteBlock released more than retained");
+        }
+    }
+
+    void resetRefCount() {
+        refCount.set(1);
+    }
+}
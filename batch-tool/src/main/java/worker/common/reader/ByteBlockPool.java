@@ -0,0 +1,68 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个 BlockReader 共享的数据块池
+ * 池中无空闲块时直接分配新块, 不会阻塞读取线程
+ */
+public class ByteBlockPool {
+
+    private final int blockSize;
+    private final int maxPooledCount;
+    private final ConcurrentLinkedQueue<ByteBlock> freeBlocks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger(0);
+
+    public ByteBlockPool(int blockSize, int maxPooledCount) {
+        this.blockSize = blockSize;
+        this.maxPooledCount = maxPooledCount;
+    }
+
+    /**
+     * 获取的数据块引用计数为1, 由调用方持有
+     */
+    public ByteBlock acquire() {
+        ByteBlock block = freeBlocks.poll();
+        if (block != null) {
+            pooledCount.decrementAndGet();
+        } else {
+            block = new ByteBlock(this, blockSize);
+        }
+        block.setLen(0);
+        block.resetRefCount();
+        return block;
+    }
+
+    void recycle(ByteBlock block) {
+        if (block.getData().length != blockSize) {
+            // 解压等场景下替换过内存 不再复用
+            return;
+        }
+        if (pooledCount.incrementAndGet() > maxPooledCount) {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        freeBlocks.offer(block);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import java.util.Arrays;
+
+/**
+ * 压缩文件中可独立解压的帧 (gzip 成员 / zstd 帧 / lz4 帧) 在压缩前后的起始位置
+ * 可从解压后的任意位置开始解压, 供多个 BlockReader 并行读取同一个文件
+ */
+public class CompressedFrameIndex {
+
+    private final long[] compressedOffsets;
+    private final long[] uncompressedOffsets;
+    /**
+     * 未知时为 -1
+     */
+    private final long compressedLength;
+    private final long uncompressedLength;
+
+    CompressedFrameIndex(long[] compressedOffsets, long[] uncompressedOffsets,
+                         long compressedLength, long uncompressedLength) {
+        this.compressedOffsets = compressedOffsets;
+        this.uncompressedOffsets = uncompressedOffsets;
+        this.compressedLength = compressedLength;
+        this.uncompressedLength = uncompressedLength;
+    }
+
+    /**
+     * @return 包含解压后位置 pos 的帧序号
+     */
+    public int frameOf(long pos) {
+        int index = Arrays.binarySearch(uncompressedOffsets, pos);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // 跳过解压后为空的帧
+        while (index + 1 < uncompressedOffsets.length && uncompressedOffsets[index + 1] == pos) {
+            index++;
+        }
+        return index;
+    }
+
+    public long getCompressedOffset(int frame) {
+        return compressedOffsets[frame];
+    }
+
+    public long getUncompressedOffset(int frame) {
+        return uncompressedOffsets[frame];
+    }
+
+    public long getCompressedEnd(int frame) {
+        return frame + 1 < compressedOffsets.length ? compressedOffsets[frame + 1] : compressedLength;
+    }
+
+    public long getUncompressedEnd(int frame) {
+        return frame + 1 < uncompressedOffsets.length ? uncompressedOffsets[frame + 1] : uncompressedLength;
+    }
+
+    public int getFrameCount() {
+        return compressedOffsets.length;
+    }
+
+    /**
+     * 扫描文件时按顺序添加帧
+     */
+    static class Builder {
+        private long[] compressedOffsets = new long[16];
+        private long[] uncompressedOffsets = new long[16];
+        private int count = 0;
+
+        void addFrame(long compressedOffset, long uncompressedOffset) {
+            if (count == compressedOffsets.length) {
+                compressedOffsets = Arrays.copyOf(compressedOffsets, count * 2);
+                uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, count * 2);
+            }
+            compressedOffsets[count] = compressedOffset;
+            uncompressedOffsets[count] = uncompressedOffset;
+            count++;
+        }
+
+        /**
+         * @return 没有帧时返回 null
+         */
+        CompressedFrameIndex build(long compressedLength, long uncompressedLength) {
+            if (count == 0) {
+                return null;
+            }
+            return new CompressedFrameIndex(Arrays.copyOf(compressedOffsets, count),
+                Arrays.copyOf(uncompressedOffsets, count), compressedLength, uncompressedLength);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import com.lmax.disruptor.RingBuffer;
+import model.ProducerExecutionContext;
+import model.config.BlockEventCounter;
+import model.config.CompressMode;
+import model.config.FileBlockListRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.IOUtil;
+import worker.common.BatchLineEvent;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 无法建立帧索引的压缩文件 (如普通 gzip 文件) 无法随机读取, 每个文件由一个读取线程流式解压
+ * 解压后按 readBlockSize 划分数据块 (在换行符处截断), 数据块序号用于断点续传
+ * 多个读取线程依次领取不同的文件
+ */
+public class CompressedStreamReader extends BlockReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressedStreamReader.class);
+
+    /**
+     * 各读取线程共享的下一个待读取文件序号
+     */
+    private final AtomicInteger nextFileIndex;
+
+    public CompressedStreamReader(ProducerExecutionContext context,
+                                  FileBlockListRecord fileBlockListRecord,
+                                  RingBuffer<BatchLineEvent> ringBuffer, CompressMode compressMode,
+                                  ByteBlockPool blockPool, AtomicInteger nextFileIndex) {
+        super(context, fileBlockListRecord, ringBuffer, compressMode, blockPool);
+        this.nextFileIndex = nextFileIndex;
+    }
+
+    @Override
+    protected void init() {
+        // 在读取时打开文件
+    }
+
+    @Override
+    protected void readData() {
+        int fileIndex;
+        while ((fileIndex = nextFileIndex.getAndIncrement()) < fileList.size()) {
+            if (context.getException() != null) {
+                throw new RuntimeException(context.getException());
+            }
+            if (fileBlockListRecord.getFileDoneList()[fileIndex].get()) {
+                continue;
+            }
+            localProcessingFileIndex = fileIndex;
+            try {
+                readFile(fileIndex);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            } finally {
+                releaseCurBlock();
+            }
+            fileBlockListRecord.getFileDoneList()[fileIndex].set(true);
+            logger.info("{} 读取完毕", getLocalFile().getPath());
+        }
+    }
+
+    private void readFile(int fileIndex) throws Exception {
+        long startBlockIndex = fileBlockListRecord.getStartPosArr()[fileIndex].get();
+        BlockEventCounter eventCounter = context.getEventCounter();
+        try (InputStream in = IOUtil.createDecompressInputStream(new FileInputStream(getLocalFile()),
+            compressMode)) {
+            int tailStart = 0, tailLen = 0;
+            for (long blockIndex = 0; ; blockIndex++) {
+                nextBuffer(tailStart, tailLen);
+                int readLen = (int) readBlockSize - tailLen;
+                int n = readFully(in, byteBuffer.buffer, tailLen, readLen);
+                boolean eof = n < readLen;
+                if (cipher != null && n > 0) {
+                    byte[] plain = cipher.decrypt(byteBuffer.buffer, tailLen, n);
+                    System.arraycopy(plain, 0, byteBuffer.buffer, tailLen, plain.length);
+                }
+                int len = tailLen + n;
+                if (len == 0) {
+                    break;
+                }
+                int end = len;
+                if (!eof) {
+                    end = lastIndexOfLf(byteBuffer.buffer, len) + 1;
+                    if (end == 0) {
+                        throw new IllegalStateException("Line is longer than read block size in "
+                            + getLocalFile().getPath());
+                    }
+                }
+                tailStart = end;
+                tailLen = len - end;
+                if (blockIndex >= startBlockIndex && !eventCounter.isCompleted(fileIndex, blockIndex)) {
+                    localProcessingBlockIndex = blockIndex;
+                    eventCounter.retain(fileIndex, blockIndex);
+                    byteBuffer.len = end;
+                    if (curBlock != null) {
+                        curBlock.setLen(end);
+                    }
+                    scanLines(blockIndex == 0, false);
+                    // 处理完本block即发送, 保证断点记录的准确
+                    if (bufferedLineCount != 0) {
+                        if (curBlock != null) {
+                            emitSliceBuffer();
+                        } else {
+                            emitLineBuffer();
+                            renewLineBuffer();
+                        }
+                    }
+                    eventCounter.release(fileIndex, blockIndex);
+                }
+                if (eof) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 切换到新的数据块, 并将上一块末尾不完整的行拷贝到开头
+     */
+    private void nextBuffer(int tailStart, int tailLen) {
+        if (blockPool == null) {
+            System.arraycopy(byteBuffer.buffer, tailStart, byteBuffer.buffer, 0, tailLen);
+            return;
+        }
+        ByteBlock prevBlock = curBlock;
+        byte[] prevBuffer = byteBuffer.buffer;
+        curBlock = blockPool.acquire();
+        byteBuffer.buffer = curBlock.getData();
+        System.arraycopy(prevBuffer, tailStart, byteBuffer.buffer, 0, tailLen);
+        if (prevBlock != null) {
+            prevBlock.release();
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = in.read(buffer, offset + total, len - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static int lastIndexOfLf(byte[] buffer, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -22,10 +22,14 @@ import model.config.CompressMode;
 import model.config.ConfigConstant;
 import model.config.GlobalVar;
 import model.stat.FileReaderStat;
+import model.stat.PipelineMetrics;
+import model.stat.PipelineStage;
 import store.FileStorage;
+import worker.common.AdaptiveBatchController;
 import worker.common.BatchLineEvent;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -41,6 +45,10 @@ public abstract class FileBufferedBatchReader implements Runnable {
     protected int bufferedLineCount = 0;
     protected long bufferedLineSize = 0;
     protected String[] lineBuffer;
+    /**
+     * 为空时每批固定 {@link GlobalVar#EMIT_BATCH_SIZE} 行
+     */
+    private final AdaptiveBatchController batchController;
     protected volatile int localProcessingFileIndex;
     protected long localProcessingBlockIndex = -1;
     /**
@@ -62,7 +70,8 @@ public abstract class FileBufferedBatchReader implements Runnable {
         this.context = context;
         this.ringBuffer = ringBuffer;
         this.fileList = fileList;
-        this.lineBuffer = new String[EMIT_BATCH_SIZE];
+        this.batchController = context.getBatchController();
+        this.lineBuffer = new String[getBatchSize()];
         this.compressMode = compressMode;
         GlobalVar.DEBUG_INFO.addFileReaderStat(fileReaderStat);
         this.fileStorage = context.getFileStorage();
@@ -73,6 +82,10 @@ public abstract class FileBufferedBatchReader implements Runnable {
     }
 
     protected void appendToLineBuffer(String line) {
+        if (bufferedLineCount == lineBuffer.length) {
+            // 批次大小在本批填充期间调大
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, getBatchSize()));
+        }
         lineBuffer[bufferedLineCount++] = line;
         bufferedLineSize += line.length();
         if (shouldEmit()) {
@@ -83,26 +96,44 @@ public abstract class FileBufferedBatchReader implements Runnable {
         currentFileLineCount.incrementAndGet();
     }
 
-    private void renewLineBuffer() {
-        lineBuffer = new String[EMIT_BATCH_SIZE];
+    /**
+     * 发送后的缓冲区由消费者持有, 按当前的批次大小重新分配
+     */
+    protected void renewLineBuffer() {
+        lineBuffer = new String[getBatchSize()];
         bufferedLineCount = 0;
         bufferedLineSize = 0;
     }
 
-    private boolean shouldEmit() {
+    private int getBatchSize() {
+        return batchController != null ? batchController.getBatchSize() : EMIT_BATCH_SIZE;
+    }
+
+    protected boolean shouldEmit() {
+        int batchSize = getBatchSize();
         if (GlobalVar.EMIT_BATCH_SIZE_IN_BYTES <= 0) {
-            return bufferedLineCount == EMIT_BATCH_SIZE;
+            return bufferedLineCount >= batchSize;
         }
         return bufferedLineSize >= GlobalVar.EMIT_BATCH_SIZE_IN_BYTES
-            || bufferedLineCount == EMIT_BATCH_SIZE;
+            || bufferedLineCount >= batchSize;
     }
 
-    protected void emitLineBuffer() {
+    /**
+     * 队列已满时阻塞, 记录等待耗时
+     */
+    protected long nextSequence() {
+        long startNanos = System.nanoTime();
         long sequence = ringBuffer.next();
+        PipelineMetrics.record(PipelineStage.RING_BUFFER_WAIT, System.nanoTime() - startNanos);
+        return sequence;
+    }
+
+    protected void emitLineBuffer() {
+        long sequence = nextSequence();
         BatchLineEvent event;
         try {
             event = ringBuffer.get(sequence);
-            if (bufferedLineCount < EMIT_BATCH_SIZE) {
+            if (bufferedLineCount < lineBuffer.length) {
                 // 插入结束标志
                 lineBuffer[bufferedLineCount] = ConfigConstant.END_OF_BATCH_LINES;
             }
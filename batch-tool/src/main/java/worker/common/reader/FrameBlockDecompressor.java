@@ -0,0 +1,85 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 帧头部记录了解压后大小的格式 (zstd / lz4), 每次整帧解压
+ * 所需的帧完整落在目标内存中时直接解压到目标内存, 否则经由临时内存拷贝
+ */
+public abstract class FrameBlockDecompressor extends BlockDecompressor {
+
+    private byte[] input = new byte[0];
+    private byte[] scratch = new byte[0];
+
+    /**
+     * 解压一个完整的帧
+     *
+     * @return 解压后的字节数
+     */
+    protected abstract int decodeFrame(byte[] src, int srcLen, byte[] dest, int destOff, int destLen)
+        throws IOException;
+
+    @Override
+    public int read(RandomAccessFile raf, CompressedFrameIndex index, long pos,
+                    byte[] dest, int len) throws IOException {
+        int written = 0;
+        for (int frame = index.frameOf(pos); frame < index.getFrameCount() && written < len; frame++) {
+            long frameStart = index.getUncompressedOffset(frame);
+            int frameLen = (int) (index.getUncompressedEnd(frame) - frameStart);
+            int skip = (int) (pos + written - frameStart);
+            if (frameLen <= skip) {
+                continue;
+            }
+            int srcLen = readFrame(raf, index, frame);
+            int copyLen = Math.min(frameLen - skip, len - written);
+            if (skip == 0 && copyLen == frameLen) {
+                checkFrameLen(frameLen, decodeFrame(input, srcLen, dest, written, frameLen));
+            } else {
+                if (scratch.length < frameLen) {
+                    scratch = new byte[frameLen];
+                }
+                checkFrameLen(frameLen, decodeFrame(input, srcLen, scratch, 0, frameLen));
+                System.arraycopy(scratch, skip, dest, written, copyLen);
+            }
+            written += copyLen;
+        }
+        if (written == 0 && len > 0) {
+            return -1;
+        }
+        return written;
+    }
+
+    private int readFrame(RandomAccessFile raf, CompressedFrameIndex index, int frame) throws IOException {
+        long start = index.getCompressedOffset(frame);
+        int srcLen = (int) (index.getCompressedEnd(frame) - start);
+        if (input.length < srcLen) {
+            input = new byte[srcLen];
+        }
+        raf.seek(start);
+        raf.readFully(input, 0, srcLen);
+        return srcLen;
+    }
+
+    private static void checkFrameLen(int expected, int actual) throws IOException {
+        if (expected != actual) {
+            throw new IOException("Frame content size mismatch, expected " + expected + ", got " + actual);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import model.config.ConfigConstant;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 读取多成员 gzip 文件, 支持 BGZF (成员头部扩展字段 BC 记录了成员大小) 以及带 .gzi 索引的文件
+ * Inflater 与输入缓冲在多次读取之间复用
+ */
+public class GzipBlockInflater extends BlockDecompressor {
+
+    private static final int GZIP_HEADER_LEN = 10;
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[ConfigConstant.DEFAULT_COMPRESS_BUFFER_SIZE];
+    private int inputPos = 0;
+    private int inputLen = 0;
+    private RandomAccessFile raf;
+
+    @Override
+    public CompressedFrameIndex buildIndex(File file) throws IOException {
+        File indexFile = new File(file.getPath() + ConfigConstant.GZIP_INDEX_FILE_SUFFIX);
+        if (indexFile.isFile()) {
+            return loadIndexFile(indexFile);
+        }
+        return scanBgzf(file);
+    }
+
+    /**
+     * bgzip 索引格式: 条目数, 之后每个条目依次为压缩/解压后的偏移
+     * 均为小端 uint64, 不包含起始的 (0, 0)
+     */
+    private static CompressedFrameIndex loadIndexFile(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(indexFile)))) {
+            int count = (int) Long.reverseBytes(in.readLong());
+            CompressedFrameIndex.Builder builder = new CompressedFrameIndex.Builder();
+            builder.addFrame(0, 0);
+            for (int i = 0; i < count; i++) {
+                long compressedOffset = Long.reverseBytes(in.readLong());
+                builder.addFrame(compressedOffset, Long.reverseBytes(in.readLong()));
+            }
+            return builder.build(-1, -1);
+        }
+    }
+
+    /**
+     * 只读取每个成员的头部与尾部的 ISIZE, 不解压数据
+     */
+    private static CompressedFrameIndex scanBgzf(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long fileLen = raf.length();
+            CompressedFrameIndex.Builder builder = new CompressedFrameIndex.Builder();
+            long compressedOffset = 0, uncompressedOffset = 0;
+            byte[] header = new byte[GZIP_HEADER_LEN + 2];
+            while (compressedOffset < fileLen) {
+                raf.seek(compressedOffset);
+                raf.readFully(header);
+                int blockSize = getBgzfBlockSize(raf, header);
+                if (blockSize < 0) {
+                    return null;
+                }
+                builder.addFrame(compressedOffset, uncompressedOffset);
+                long memberEnd = compressedOffset + blockSize;
+                raf.seek(memberEnd - 4);
+                uncompressedOffset += Integer.reverseBytes(raf.readInt()) & 0xFFFFFFFFL;
+                compressedOffset = memberEnd;
+            }
+            return builder.build(fileLen, uncompressedOffset);
+        }
+    }
+
+    /**
+     * @return 成员的压缩后大小, 不是 BGZF 格式返回 -1
+     */
+    private static int getBgzfBlockSize(RandomAccessFile raf, byte[] header) throws IOException {
+        if (header[0] != (byte) 0x1f || header[1] != (byte) 0x8b || header[2] != 8
+            || (header[3] & FLAG_EXTRA) == 0) {
+            return -1;
+        }
+        int extraLen = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+        byte[] extra = new byte[extraLen];
+        raf.readFully(extra);
+        for (int i = 0; i + 4 <= extraLen; ) {
+            int subLen = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subLen == 2 && i + 6 <= extraLen) {
+                return ((extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8) + 1;
+            }
+            i += 4 + subLen;
+        }
+        return -1;
+    }
+
+    @Override
+    public int read(RandomAccessFile raf, CompressedFrameIndex index, long pos,
+                    byte[] dest, int len) throws IOException {
+        this.raf = raf;
+        int member = index.frameOf(pos);
+        raf.seek(index.getCompressedOffset(member));
+        inputPos = 0;
+        inputLen = 0;
+        long skip = pos - index.getUncompressedOffset(member);
+        int written = 0;
+        while (written < len && readHeader()) {
+            inflater.reset();
+            crc.reset();
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        if (inputPos == inputLen && !fill()) {
+                            throw new EOFException("Unexpected end of gzip member");
+                        }
+                        inflater.setInput(input, inputPos, inputLen - inputPos);
+                        inputPos = inputLen;
+                    }
+                    int n;
+                    if (skip > 0) {
+                        // 以目标内存作为临时空间解压并丢弃成员开头的数据
+                        n = inflater.inflate(dest, 0, (int) Math.min(skip, dest.length));
+                        crc.update(dest, 0, n);
+                        skip -= n;
+                    } else {
+                        n = inflater.inflate(dest, written, len - written);
+                        crc.update(dest, written, n);
+                        written += n;
+                        if (written == len) {
+                            // 只读取了成员的一部分
+                            return written;
+                        }
+                    }
+                    if (n == 0 && inflater.needsDictionary()) {
+                        throw new ZipException("Gzip member requires a preset dictionary");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+            inputPos = inputLen - inflater.getRemaining();
+            checkTrailer();
+        }
+        if (skip > 0 || (written == 0 && len > 0)) {
+            return -1;
+        }
+        return written;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+    }
+
+    /**
+     * @return 已到达文件末尾时返回 false
+     */
+    private boolean readHeader() throws IOException {
+        if (inputPos == inputLen && !fill()) {
+            return false;
+        }
+        if (readUByte() != 0x1f || readUByte() != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (readUByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flag = readUByte();
+        // MTIME XFL OS
+        skipBytes(6);
+        if ((flag & FLAG_EXTRA) != 0) {
+            skipBytes(readUByte() | readUByte() << 8);
+        }
+        if ((flag & FLAG_NAME) != 0) {
+            while (readUByte() != 0) {
+            }
+        }
+        if ((flag & FLAG_COMMENT) != 0) {
+            while (readUByte() != 0) {
+            }
+        }
+        if ((flag & FLAG_HEADER_CRC) != 0) {
+            skipBytes(2);
+        }
+        return true;
+    }
+
+    private void checkTrailer() throws IOException {
+        long expectedCrc = readUInt();
+        long expectedSize = readUInt();
+        if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt gzip trailer");
+        }
+    }
+
+    private long readUInt() throws IOException {
+        return (readUByte() | readUByte() << 8 | readUByte() << 16 | (long) readUByte() << 24);
+    }
+
+    private int readUByte() throws IOException {
+        if (inputPos == inputLen && !fill()) {
+            throw new EOFException("Unexpected end of gzip file");
+        }
+        return input[inputPos++] & 0xFF;
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readUByte();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = raf.read(input, 0, input.length);
+        if (n <= 0) {
+            return false;
+        }
+        inputPos = 0;
+        inputLen = n;
+        return true;
+    }
+}
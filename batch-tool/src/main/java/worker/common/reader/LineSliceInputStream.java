@@ -0,0 +1,80 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import java.io.InputStream;
+
+/**
+ * 将数据块中的行切片按顺序拼接为输入流, 每行以 '\n' 结尾
+ * 不拷贝数据块
+ */
+public class LineSliceInputStream extends InputStream {
+
+    private static final byte LINE_END = '\n';
+
+    private final byte[] data;
+    private final int[] lineSlices;
+    private final int sliceCount;
+    private final byte[] singleByte = new byte[1];
+
+    private int curSlice = 0;
+    /**
+     * 当前行已读取的字节数, 等于行长度时下一个字节为换行符
+     */
+    private int curPos = 0;
+
+    /**
+     * @param lineSlices 依次存放每行的 (offset, length)
+     */
+    public LineSliceInputStream(byte[] data, int[] lineSlices, int sliceCount) {
+        this.data = data;
+        this.lineSlices = lineSlices;
+        this.sliceCount = sliceCount;
+    }
+
+    @Override
+    public int read() {
+        return read(singleByte, 0, 1) == -1 ? -1 : (singleByte[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (curSlice >= sliceCount) {
+            return -1;
+        }
+        int written = 0;
+        while (written < len && curSlice < sliceCount) {
+            int sliceOffset = lineSlices[curSlice << 1];
+            int sliceLen = lineSlices[(curSlice << 1) + 1];
+            if (curPos < sliceLen) {
+                int n = Math.min(len - written, sliceLen - curPos);
+                System.arraycopy(data, sliceOffset + curPos, b, off + written, n);
+                curPos += n;
+                written += n;
+            } else {
+                b[off + written] = LINE_END;
+                written++;
+                curSlice++;
+                curPos = 0;
+            }
+        }
+        return written;
+    }
+}
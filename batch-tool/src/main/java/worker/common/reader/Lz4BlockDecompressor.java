@@ -0,0 +1,135 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.ZipException;
+
+/**
+ * 读取由多个 lz4 帧组成的文件
+ * 要求每个帧头部记录了解压后大小 (Content Size) 且帧内各数据块可独立解压 (Block Independence)
+ */
+public class Lz4BlockDecompressor extends FrameBlockDecompressor {
+
+    public static final int MAGIC = 0x184D2204;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+
+    static final int FLG_VERSION = 0x40;
+    static final int FLG_BLOCK_INDEPENDENCE = 0x20;
+    static final int FLG_BLOCK_CHECKSUM = 0x10;
+    static final int FLG_CONTENT_SIZE = 0x08;
+    static final int FLG_CONTENT_CHECKSUM = 0x04;
+    static final int FLG_DICT_ID = 0x01;
+    static final int BLOCK_UNCOMPRESSED_BIT = 0x80000000;
+
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    @Override
+    public CompressedFrameIndex buildIndex(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long fileLen = raf.length();
+            CompressedFrameIndex.Builder builder = new CompressedFrameIndex.Builder();
+            // 魔数 + FLG + BD + Content Size + Dict ID + HC
+            byte[] header = new byte[19];
+            long compressedOffset = 0, uncompressedOffset = 0;
+            while (compressedOffset < fileLen) {
+                raf.seek(compressedOffset);
+                raf.readFully(header, 0, 8);
+                int magic = readIntLE(header, 0);
+                if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                    compressedOffset += 8 + (readIntLE(header, 4) & 0xFFFFFFFFL);
+                    continue;
+                }
+                if (magic != MAGIC) {
+                    // 包括旧版 lz4 格式
+                    return null;
+                }
+                int flg = header[4] & 0xFF;
+                if ((flg & FLG_CONTENT_SIZE) == 0 || (flg & FLG_BLOCK_INDEPENDENCE) == 0) {
+                    return null;
+                }
+                int headerLen = getHeaderLen(flg);
+                raf.seek(compressedOffset);
+                raf.readFully(header, 0, headerLen);
+                long contentSize = readLongLE(header, 6);
+
+                long blockOffset = compressedOffset + headerLen;
+                int blockChecksumLen = (flg & FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0;
+                while (true) {
+                    raf.seek(blockOffset);
+                    int blockSize = Integer.reverseBytes(raf.readInt()) & ~BLOCK_UNCOMPRESSED_BIT;
+                    blockOffset += 4;
+                    if (blockSize == 0) {
+                        break;
+                    }
+                    blockOffset += blockSize + blockChecksumLen;
+                }
+                builder.addFrame(compressedOffset, uncompressedOffset);
+                compressedOffset = blockOffset + ((flg & FLG_CONTENT_CHECKSUM) != 0 ? 4 : 0);
+                uncompressedOffset += contentSize;
+            }
+            return builder.build(fileLen, uncompressedOffset);
+        }
+    }
+
+    static int getHeaderLen(int flg) {
+        return 4 + 2 + ((flg & FLG_CONTENT_SIZE) != 0 ? 8 : 0) + ((flg & FLG_DICT_ID) != 0 ? 4 : 0) + 1;
+    }
+
+    /**
+     * 不校验数据块与帧的 xxhash
+     */
+    @Override
+    protected int decodeFrame(byte[] src, int srcLen, byte[] dest, int destOff, int destLen)
+        throws IOException {
+        int flg = src[4] & 0xFF;
+        int blockChecksumLen = (flg & FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0;
+        int pos = getHeaderLen(flg);
+        int written = 0;
+        try {
+            while (pos + 4 <= srcLen) {
+                int blockHeader = readIntLE(src, pos);
+                pos += 4;
+                if (blockHeader == 0) {
+                    return written;
+                }
+                int blockSize = blockHeader & ~BLOCK_UNCOMPRESSED_BIT;
+                if ((blockHeader & BLOCK_UNCOMPRESSED_BIT) != 0) {
+                    if (blockSize > destLen - written) {
+                        throw new ZipException("Lz4 frame is larger than its content size");
+                    }
+                    System.arraycopy(src, pos, dest, destOff + written, blockSize);
+                    written += blockSize;
+                } else {
+                    written += decompressor.decompress(src, pos, blockSize,
+                        dest, destOff + written, destLen - written);
+                }
+                pos += blockSize + blockChecksumLen;
+            }
+        } catch (LZ4Exception e) {
+            throw new ZipException(e.getMessage());
+        }
+        throw new ZipException("Unexpected end of lz4 frame");
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import model.config.GlobalVar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import store.FileStorage;
+import worker.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按数据块从对象存储范围读取文件, 不下载到本地
+ * 同一文件的所有 BlockReader 共享, 数据块按序号递增分配, 因此按序号预读之后的数据块
+ */
+public class RemoteBlockSource implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteBlockSource.class);
+
+    private static final int MAX_FETCH_RETRY = 3;
+
+    private static volatile ExecutorService fetchExecutor = null;
+
+    private final FileStorage fileStorage;
+    private final String key;
+    /**
+     * 相邻数据块起始位置的间隔
+     */
+    private final long blockSize;
+    /**
+     * 每个数据块读取的长度, 包含与下一个数据块重叠的部分
+     */
+    private final int blockCapacity;
+    private final int readAheadNum;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, Future<byte[]>> prefetchedBlocks = new ConcurrentHashMap<>();
+    private volatile long objectSize = -1;
+    private long nextPrefetchIndex = 0;
+    private volatile boolean closed = false;
+
+    public RemoteBlockSource(FileStorage fileStorage, String key, long blockSize, int blockCapacity) {
+        this(fileStorage, key, blockSize, blockCapacity, GlobalVar.DOWNLOAD_READ_AHEAD_BLOCKS,
+            getFetchExecutor());
+    }
+
+    public RemoteBlockSource(FileStorage fileStorage, String key, long blockSize, int blockCapacity,
+                             int readAheadNum, ExecutorService executor) {
+        this.fileStorage = fileStorage;
+        this.key = key;
+        this.blockSize = blockSize;
+        this.blockCapacity = blockCapacity;
+        this.readAheadNum = readAheadNum;
+        this.executor = executor;
+    }
+
+    private static ExecutorService getFetchExecutor() {
+        if (fetchExecutor == null) {
+            synchronized (RemoteBlockSource.class) {
+                if (fetchExecutor == null) {
+                    int parallelism = Math.max(GlobalVar.DOWNLOAD_PARALLELISM, 1);
+                    fetchExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                        0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                        new NamedThreadFactory("range-fetch", true));
+                }
+            }
+        }
+        return fetchExecutor;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getObjectSize() {
+        if (objectSize < 0) {
+            synchronized (this) {
+                if (objectSize < 0) {
+                    objectSize = fileStorage.getObjectSize(key);
+                }
+            }
+        }
+        return objectSize;
+    }
+
+    /**
+     * 读取从 pos 开始的数据块
+     *
+     * @param pos 数据块的起始位置
+     * @return 已读取到文件末尾时返回 -1
+     */
+    public int read(long pos, byte[] dest, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Remote file " + key + " closed");
+        }
+        long size = getObjectSize();
+        if (pos >= size) {
+            return -1;
+        }
+        int readLen = (int) Math.min(len, size - pos);
+        if (pos % blockSize != 0) {
+            return fetch(pos, dest, readLen);
+        }
+        long blockIndex = pos / blockSize;
+        prefetch(blockIndex, size);
+        Future<byte[]> future = prefetchedBlocks.remove(blockIndex);
+        if (future == null) {
+            return fetch(pos, dest, readLen);
+        }
+        byte[] data;
+        try {
+            data = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read " + key + " at " + pos, e.getCause());
+        }
+        readLen = Math.min(readLen, data.length);
+        System.arraycopy(data, 0, dest, 0, readLen);
+        return readLen;
+    }
+
+    /**
+     * 提交当前数据块之后的预读, 每个数据块至多读取一次
+     */
+    private synchronized void prefetch(long blockIndex, long size) {
+        if (closed) {
+            return;
+        }
+        nextPrefetchIndex = Math.max(nextPrefetchIndex, blockIndex + 1);
+        long blockCount = (size + blockSize - 1) / blockSize;
+        long end = Math.min(blockCount, blockIndex + 1 + readAheadNum);
+        for (; nextPrefetchIndex < end; nextPrefetchIndex++) {
+            final long pos = nextPrefetchIndex * blockSize;
+            final int len = (int) Math.min(blockCapacity, size - pos);
+            prefetchedBlocks.put(nextPrefetchIndex, executor.submit(() -> {
+                byte[] data = new byte[len];
+                int n = fetch(pos, data, len);
+                return n == len ? data : Arrays.copyOf(data, n);
+            }));
+        }
+    }
+
+    private int fetch(long pos, byte[] dest, int len) throws IOException {
+        for (int retry = 1; ; retry++) {
+            try {
+                return fileStorage.readRange(key, pos, dest, 0, len);
+            } catch (RuntimeException e) {
+                if (retry >= MAX_FETCH_RETRY || closed) {
+                    throw new IOException("Failed to read " + key + " at " + pos, e);
+                }
+                logger.warn("读取 {} 位置 {} 失败, 第 {} 次重试: {}", key, pos, retry, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Future<byte[]> future : prefetchedBlocks.values()) {
+            future.cancel(true);
+        }
+        prefetchedBlocks.clear();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.reader;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.ZipException;
+
+/**
+ * 读取由多个 zstd 帧组成的文件, 要求每个帧头部记录了解压后大小 (Frame_Content_Size)
+ */
+public class ZstdBlockDecompressor extends FrameBlockDecompressor {
+
+    private static final int MAGIC = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int BLOCK_TYPE_RLE = 1;
+    private static final int BLOCK_TYPE_RESERVED = 3;
+
+    private final ZstdDecompressCtx decompressCtx = new ZstdDecompressCtx();
+
+    @Override
+    public CompressedFrameIndex buildIndex(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long fileLen = raf.length();
+            CompressedFrameIndex.Builder builder = new CompressedFrameIndex.Builder();
+            // 魔数 + 帧头部最长 14 字节
+            byte[] header = new byte[18];
+            long compressedOffset = 0, uncompressedOffset = 0;
+            while (compressedOffset < fileLen) {
+                raf.seek(compressedOffset);
+                raf.readFully(header, 0, 8);
+                int magic = readIntLE(header, 0);
+                if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                    compressedOffset += 8 + (readIntLE(header, 4) & 0xFFFFFFFFL);
+                    continue;
+                }
+                if (magic != MAGIC) {
+                    throw new ZipException("Not in zstd format: " + file.getPath());
+                }
+                int descriptor = header[4] & 0xFF;
+                int fcsFlag = descriptor >>> 6;
+                boolean singleSegment = (descriptor & 0x20) != 0;
+                boolean checksum = (descriptor & 0x04) != 0;
+                int dictIdSize = (1 << (descriptor & 0x03)) >>> 1;
+                int fcsSize = fcsFlag == 0 ? (singleSegment ? 1 : 0) : 1 << fcsFlag;
+                if (fcsSize == 0) {
+                    // 帧头部未记录解压后大小
+                    return null;
+                }
+                int fcsOffset = 5 + (singleSegment ? 0 : 1) + dictIdSize;
+                int headerLen = fcsOffset + fcsSize;
+                raf.seek(compressedOffset);
+                raf.readFully(header, 0, headerLen);
+                long contentSize = readFrameContentSize(header, fcsOffset, fcsSize);
+
+                long blockOffset = compressedOffset + headerLen;
+                boolean lastBlock = false;
+                while (!lastBlock) {
+                    raf.seek(blockOffset);
+                    raf.readFully(header, 0, 3);
+                    int blockHeader = (header[0] & 0xFF) | (header[1] & 0xFF) << 8 | (header[2] & 0xFF) << 16;
+                    lastBlock = (blockHeader & 1) != 0;
+                    int blockType = (blockHeader >>> 1) & 0x03;
+                    if (blockType == BLOCK_TYPE_RESERVED) {
+                        throw new ZipException("Corrupt zstd block in " + file.getPath());
+                    }
+                    blockOffset += 3 + (blockType == BLOCK_TYPE_RLE ? 1 : blockHeader >>> 3);
+                }
+                builder.addFrame(compressedOffset, uncompressedOffset);
+                compressedOffset = blockOffset + (checksum ? 4 : 0);
+                uncompressedOffset += contentSize;
+            }
+            return builder.build(fileLen, uncompressedOffset);
+        }
+    }
+
+    private static long readFrameContentSize(byte[] header, int offset, int size) {
+        switch (size) {
+        case 1:
+            return header[offset] & 0xFF;
+        case 2:
+            return ((header[offset] & 0xFF) | (header[offset + 1] & 0xFF) << 8) + 256;
+        case 4:
+            return readIntLE(header, offset) & 0xFFFFFFFFL;
+        default:
+            return readLongLE(header, offset);
+        }
+    }
+
+    @Override
+    protected int decodeFrame(byte[] src, int srcLen, byte[] dest, int destOff, int destLen)
+        throws IOException {
+        try {
+            return decompressCtx.decompressByteArray(dest, destOff, destLen, src, 0, srcLen);
+        } catch (ZstdException e) {
+            throw new ZipException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        decompressCtx.close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按固定大小分帧压缩, 每帧可独立解压且头部记录了解压后大小
+ * 导入时可建立帧索引, 由多个读取线程并行解压同一个文件
+ */
+public abstract class FrameCompressOutputStream extends OutputStream {
+
+    /**
+     * 每帧解压后的大小
+     */
+    public static final int FRAME_SIZE = 1024 * 1024;
+
+    protected final OutputStream out;
+    private final byte[] frameBuffer = new byte[FRAME_SIZE];
+    private int frameLen = 0;
+    private boolean frameWritten = false;
+    private boolean closed = false;
+
+    protected FrameCompressOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 压缩并写出一个完整的帧, 返回后 src 会被复用
+     */
+    protected abstract void writeFrame(byte[] src, int len) throws IOException;
+
+    /**
+     * 等待已提交的帧全部写出, 异步压缩时使用
+     */
+    protected void drainFrames() throws IOException {
+    }
+
+    /**
+     * 释放压缩上下文
+     */
+    protected void release() {
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (frameLen == FRAME_SIZE) {
+            flushFrame();
+        }
+        frameBuffer[frameLen++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (frameLen == FRAME_SIZE) {
+                flushFrame();
+            }
+            int n = Math.min(len, FRAME_SIZE - frameLen);
+            System.arraycopy(b, off, frameBuffer, frameLen, n);
+            frameLen += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出未满的帧, 之后仍可继续写入
+     * 没有写入任何数据时写出一个空帧, 保证输出文件的格式合法
+     */
+    public void finish() throws IOException {
+        if (frameLen > 0 || !frameWritten) {
+            flushFrame();
+        }
+        drainFrames();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            finish();
+        } finally {
+            release();
+            out.close();
+        }
+    }
+
+    private void flushFrame() throws IOException {
+        writeFrame(frameBuffer, frameLen);
+        frameLen = 0;
+        frameWritten = true;
+    }
+}
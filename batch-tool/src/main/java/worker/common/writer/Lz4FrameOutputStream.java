@@ -0,0 +1,90 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.writer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 输出由多个 lz4 帧组成的文件, 可由 lz4 命令行工具直接解压
+ * 每帧只包含一个数据块, 头部记录解压后大小, 并带有帧内容的 xxhash 校验
+ * LZ4FrameOutputStream 不支持在头部记录解压后大小, 因此自行写出帧格式
+ */
+public class Lz4FrameOutputStream extends FrameCompressOutputStream {
+
+    private static final int MAGIC = 0x184D2204;
+    /**
+     * 版本 01, 数据块独立, 记录解压后大小, 带帧内容校验
+     */
+    private static final int FLG = 0x40 | 0x20 | 0x08 | 0x04;
+    /**
+     * 数据块最大 1MB, 与帧大小一致
+     */
+    private static final int BD = 6 << 4;
+    private static final int HEADER_LEN = 4 + 2 + 8 + 1;
+    private static final int BLOCK_UNCOMPRESSED_BIT = 0x80000000;
+
+    private final LZ4Compressor compressor;
+    private final XXHash32 hash32 = XXHashFactory.fastestInstance().hash32();
+    private final byte[] compressed;
+
+    public Lz4FrameOutputStream(OutputStream out, int level) {
+        super(out);
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = level > 0 ? factory.highCompressor(level) : factory.fastCompressor();
+        this.compressed = new byte[HEADER_LEN + 4 + compressor.maxCompressedLength(FRAME_SIZE) + 4 + 4];
+    }
+
+    @Override
+    protected void writeFrame(byte[] src, int len) throws IOException {
+        writeIntLE(compressed, 0, MAGIC);
+        compressed[4] = (byte) FLG;
+        compressed[5] = (byte) BD;
+        writeIntLE(compressed, 6, len);
+        writeIntLE(compressed, 10, 0);
+        compressed[14] = (byte) (hash32.hash(compressed, 4, 10, 0) >> 8);
+        int pos = HEADER_LEN;
+        if (len > 0) {
+            int blockLen = compressor.compress(src, 0, len, compressed, pos + 4);
+            if (blockLen >= len) {
+                // 压缩后没有变小时直接存储原始数据
+                System.arraycopy(src, 0, compressed, pos + 4, len);
+                writeIntLE(compressed, pos, len | BLOCK_UNCOMPRESSED_BIT);
+                blockLen = len;
+            } else {
+                writeIntLE(compressed, pos, blockLen);
+            }
+            pos += 4 + blockLen;
+        }
+        // EndMark
+        writeIntLE(compressed, pos, 0);
+        writeIntLE(compressed, pos + 4, hash32.hash(src, 0, len, 0));
+        out.write(compressed, 0, pos + 8);
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
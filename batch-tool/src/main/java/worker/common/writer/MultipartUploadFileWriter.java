@@ -0,0 +1,119 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.writer;
+
+import com.google.common.base.Preconditions;
+import model.config.CompressMode;
+import model.config.ConfigConstant;
+import org.apache.commons.io.FileUtils;
+import store.FileStorage;
+import util.IOUtil;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 导出数据边压缩边分片上传至对象存储, 不再先写入本地文件
+ * 仅并行压缩 gzip 时的成员索引写入本地, 在文件上传完成后再上传
+ */
+@NotThreadSafe
+public class MultipartUploadFileWriter implements IFileWriter {
+
+    private final FileStorage fileStorage;
+    private final CompressMode compressMode;
+    private final Charset charset;
+    private String fileName = null;
+    private MultipartUploadOutputStream uploadOutputStream = null;
+    private OutputStream outputStream = null;
+    private File indexFile = null;
+
+    public MultipartUploadFileWriter(FileStorage fileStorage, CompressMode compressMode, Charset charset) {
+        Preconditions.checkNotNull(fileStorage);
+        this.fileStorage = fileStorage;
+        this.compressMode = compressMode;
+        this.charset = charset;
+    }
+
+    @Override
+    public void nextFile(String fileName) {
+        finishLastFile();
+        this.fileName = fileName;
+        this.uploadOutputStream = new MultipartUploadOutputStream(fileStorage, fileName);
+        if (compressMode == CompressMode.NONE) {
+            this.outputStream = uploadOutputStream;
+        } else {
+            if (compressMode == CompressMode.GZIP) {
+                indexFile = new File(fileName + ConfigConstant.GZIP_INDEX_FILE_SUFFIX);
+                FileUtils.deleteQuietly(indexFile);
+            }
+            this.outputStream = IOUtil.createCompressOutputStream(uploadOutputStream, compressMode, indexFile);
+        }
+    }
+
+    @Override
+    public void write(byte[] data) {
+        if (charset != StandardCharsets.UTF_8) {
+            data = new String(data, StandardCharsets.UTF_8).getBytes(charset);
+        }
+        try {
+            outputStream.write(data);
+        } catch (IOException e) {
+            uploadOutputStream.abort();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean produceByBlock() {
+        return true;
+    }
+
+    /**
+     * 写出剩余数据并完成分片上传
+     */
+    @Override
+    public void finishLastFile() {
+        if (outputStream == null) {
+            return;
+        }
+        try {
+            outputStream.close();
+            if (indexFile != null && indexFile.isFile()) {
+                // 并行压缩时写出的 gzip 成员索引
+                fileStorage.put(indexFile.getPath(), indexFile.getPath());
+            }
+        } catch (IOException | RuntimeException e) {
+            // 压缩流出错时分片上传未关闭
+            uploadOutputStream.abort();
+            throw new RuntimeException("Failed to upload " + fileName, e);
+        } finally {
+            FileUtils.deleteQuietly(indexFile);
+            outputStream = null;
+            uploadOutputStream = null;
+            indexFile = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        finishLastFile();
+    }
+}
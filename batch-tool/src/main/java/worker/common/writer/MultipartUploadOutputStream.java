@@ -0,0 +1,266 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.writer;
+
+import model.config.GlobalVar;
+import store.FileStorage;
+import worker.NamedThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将写入的数据按分片大小切分, 直接分片上传至对象存储, 不在本地落盘
+ * 每个文件最多缓存固定数量的分片, 均在上传中时写入方阻塞等待
+ * 对象存储限制每个文件最多 10000 个分片, 每上传 1000 个分片分片大小翻倍,
+ * 超出限制时尽早失败
+ * 关闭时完成上传, 出错时取消上传
+ */
+public class MultipartUploadOutputStream extends OutputStream {
+
+    static final int MAX_PART_NUM = 10000;
+
+    static final int PART_SIZE_GROW_INTERVAL = 1000;
+
+    static final int MAX_PART_SIZE = 512 * 1024 * 1024;
+
+    private static volatile ExecutorService uploadExecutor = null;
+
+    private final FileStorage fileStorage;
+    private final String targetPath;
+    /**
+     * 当前的分片大小, 随分片数增加而增大
+     */
+    private int partSize;
+    private final int maxBufferNum;
+    private final ExecutorService executor;
+    /**
+     * 上传完毕可复用的分片缓冲区
+     */
+    private final LinkedBlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+    private int allocatedBufferNum = 0;
+    /**
+     * 按分片序号排列的上传任务
+     */
+    private final List<Future<String>> partFutures = new ArrayList<>();
+    private int checkedPartNum = 0;
+    private String uploadId = null;
+    private byte[] partBuffer = null;
+    private int partLen = 0;
+    private boolean closed = false;
+
+    public MultipartUploadOutputStream(FileStorage fileStorage, String targetPath) {
+        this(fileStorage, targetPath, GlobalVar.UPLOAD_PART_SIZE, GlobalVar.UPLOAD_PART_BUFFER_NUM,
+            getUploadExecutor());
+    }
+
+    public MultipartUploadOutputStream(FileStorage fileStorage, String targetPath, int partSize,
+                                       int maxBufferNum, ExecutorService executor) {
+        if (partSize <= 0 || maxBufferNum <= 0) {
+            throw new IllegalArgumentException("Illegal part size " + partSize + " or buffer num " + maxBufferNum);
+        }
+        this.fileStorage = fileStorage;
+        this.targetPath = targetPath;
+        this.partSize = partSize;
+        this.maxBufferNum = maxBufferNum;
+        this.executor = executor;
+    }
+
+    private static ExecutorService getUploadExecutor() {
+        if (uploadExecutor == null) {
+            synchronized (MultipartUploadOutputStream.class) {
+                if (uploadExecutor == null) {
+                    int parallelism = Math.max(GlobalVar.UPLOAD_PARALLELISM, 1);
+                    uploadExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                        0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                        new NamedThreadFactory("multipart-upload", true));
+                }
+            }
+        }
+        return uploadExecutor;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        submitFullPart();
+        ensureBuffer();
+        partBuffer[partLen++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            submitFullPart();
+            ensureBuffer();
+            int n = Math.min(len, partBuffer.length - partLen);
+            System.arraycopy(b, off, partBuffer, partLen, n);
+            partLen += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写满的分片在有后续数据时才上传, 最后一个分片在关闭时上传
+     */
+    private void submitFullPart() throws IOException {
+        if (partBuffer == null || partLen < partBuffer.length) {
+            return;
+        }
+        if (partFutures.size() + 1 >= MAX_PART_NUM) {
+            abort();
+            throw new IOException(String.format("%s exceeds the limit of %d parts, current part size %d bytes, "
+                + "please increase the part size or split the output into more files",
+                targetPath, MAX_PART_NUM, partSize));
+        }
+        submitPart();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (partLen > 0 || partFutures.isEmpty()) {
+                // 空文件也需要上传一个分片
+                ensureBuffer();
+                submitPart();
+            }
+            List<String> partETags = new ArrayList<>(partFutures.size());
+            for (Future<String> future : partFutures) {
+                partETags.add(getPartETag(future));
+            }
+            fileStorage.completeMultipartUpload(targetPath, uploadId, partETags);
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        } finally {
+            partBuffer = null;
+            freeBuffers.clear();
+        }
+    }
+
+    /**
+     * 取消上传, 已上传的分片由对象存储删除
+     */
+    public void abort() {
+        closed = true;
+        for (Future<String> future : partFutures) {
+            future.cancel(false);
+        }
+        if (uploadId != null) {
+            fileStorage.abortMultipartUpload(targetPath, uploadId);
+            uploadId = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * 缓冲区均在上传中时等待其中一个上传完成
+     */
+    private void ensureBuffer() throws IOException {
+        if (partBuffer != null) {
+            return;
+        }
+        byte[] buffer = null;
+        while (buffer == null) {
+            buffer = freeBuffers.poll();
+            if (buffer == null) {
+                if (allocatedBufferNum < maxBufferNum) {
+                    allocatedBufferNum++;
+                    buffer = new byte[partSize];
+                } else {
+                    try {
+                        buffer = freeBuffers.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(e.getMessage());
+                    }
+                }
+            }
+            if (buffer.length < partSize) {
+                // 分片大小增大后丢弃之前的缓冲区
+                allocatedBufferNum--;
+                buffer = null;
+            }
+        }
+        checkFailedParts();
+        partBuffer = buffer;
+        partLen = 0;
+    }
+
+    private void submitPart() {
+        if (uploadId == null) {
+            uploadId = fileStorage.initMultipartUpload(targetPath);
+        }
+        final String curUploadId = uploadId;
+        final int partNumber = partFutures.size() + 1;
+        final byte[] data = partBuffer;
+        final int len = partLen;
+        partFutures.add(executor.submit(() -> {
+            try {
+                return fileStorage.uploadPart(targetPath, curUploadId, partNumber, data, len);
+            } finally {
+                freeBuffers.offer(data);
+            }
+        }));
+        partBuffer = null;
+        partLen = 0;
+        if (partFutures.size() % PART_SIZE_GROW_INTERVAL == 0) {
+            partSize = Math.max(partSize, Math.min(partSize * 2, MAX_PART_SIZE));
+        }
+    }
+
+    /**
+     * 尽早发现上传失败的分片
+     */
+    private void checkFailedParts() throws IOException {
+        while (checkedPartNum < partFutures.size() && partFutures.get(checkedPartNum).isDone()) {
+            getPartETag(partFutures.get(checkedPartNum));
+            checkedPartNum++;
+        }
+    }
+
+    private String getPartETag(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to upload part of " + targetPath, e.getCause());
+        }
+    }
+}
@@ -21,17 +21,17 @@ import util.IOUtil;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.GZIPOutputStream;
 
 @NotThreadSafe
 public class NioFileWriter implements IFileWriter {
 
     private FileChannel appendChannel = null;
-    private GZIPOutputStream gzipOutputStream = null;
+    private OutputStream compressOutputStream = null;
     private final CompressMode compressMode;
     private boolean closed = false;
     private final Charset charset;
@@ -94,8 +94,8 @@ public class NioFileWriter implements IFileWriter {
         } else {
             this.appendChannel = IOUtil.createAppendChannel(fileName);
         }
-        if (compressMode == CompressMode.GZIP) {
-            this.gzipOutputStream = IOUtil.createGzipOutputStream(appendChannel);
+        if (compressMode != CompressMode.NONE) {
+            this.compressOutputStream = IOUtil.createCompressOutputStream(fileName, appendChannel, compressMode);
         }
     }
 
@@ -112,8 +112,8 @@ public class NioFileWriter implements IFileWriter {
                     length = appendChannel.write(src);
                 }
                 break;
-            case GZIP:
-                gzipOutputStream.write(data);
+            default:
+                compressOutputStream.write(data);
                 break;
             }
         } catch (IOException e) {
@@ -126,8 +126,8 @@ public class NioFileWriter implements IFileWriter {
         if (compressMode == CompressMode.NONE) {
             IOUtil.close(appendChannel);
         } else {
-            IOUtil.finish(gzipOutputStream);
-            IOUtil.close(gzipOutputStream);
+            // 关闭时写出剩余的压缩数据
+            IOUtil.close(compressOutputStream);
         }
     }
 }
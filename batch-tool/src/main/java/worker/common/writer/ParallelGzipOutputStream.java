@@ -0,0 +1,202 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.writer;
+
+import model.config.GlobalVar;
+import worker.NamedThreadFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 类似 pigz, 将数据按 {@link #FRAME_SIZE} 切分后在共享的压缩线程池中并行压缩
+ * 每块压缩为一个独立的 gzip 成员, 按顺序写出, 结果仍是标准的 gzip 文件
+ * 同时写出 bgzip 格式的成员索引 (.gzi), 导入时可按成员并行解压
+ */
+public class ParallelGzipOutputStream extends FrameCompressOutputStream {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_LEN = 8;
+
+    private static volatile ExecutorService compressExecutor = null;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(
+        Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
+    private final int level;
+    private final File indexFile;
+    /**
+     * 按提交顺序排列的压缩任务
+     */
+    private final ArrayDeque<Future<byte[]>> pendingMembers = new ArrayDeque<>();
+    private final int maxPendingCount;
+    private long compressedOffset = 0;
+    private long uncompressedOffset = 0;
+    /**
+     * 除第一个成员外每个成员在压缩前后的起始位置
+     */
+    private long[] indexEntries = new long[32];
+    private int indexEntryCount = 0;
+    private int submittedMemberCount = 0;
+    private int writtenMemberCount = 0;
+
+    /**
+     * @param indexFile 为空时不写出索引
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, File indexFile) {
+        super(out);
+        this.level = level;
+        this.indexFile = indexFile;
+        this.maxPendingCount = GlobalVar.COMPRESS_PARALLELISM * 2;
+    }
+
+    private static ExecutorService getCompressExecutor() {
+        if (compressExecutor == null) {
+            synchronized (ParallelGzipOutputStream.class) {
+                if (compressExecutor == null) {
+                    int parallelism = Math.max(GlobalVar.COMPRESS_PARALLELISM, 1);
+                    compressExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                        0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                        new NamedThreadFactory("gzip-compress", true));
+                }
+            }
+        }
+        return compressExecutor;
+    }
+
+    @Override
+    protected void writeFrame(byte[] src, int len) throws IOException {
+        byte[] data = Arrays.copyOf(src, len);
+        pendingMembers.add(getCompressExecutor().submit(() -> compressMember(data, level)));
+        if (submittedMemberCount > 0) {
+            // 第一个成员从 0 开始, 不记录在索引中
+            addIndexEntry(uncompressedOffset);
+        }
+        submittedMemberCount++;
+        uncompressedOffset += len;
+        while (pendingMembers.size() >= maxPendingCount) {
+            writeNextMember();
+        }
+    }
+
+    @Override
+    protected void drainFrames() throws IOException {
+        while (!pendingMembers.isEmpty()) {
+            writeNextMember();
+        }
+    }
+
+    @Override
+    protected void release() {
+        for (Future<byte[]> future : pendingMembers) {
+            future.cancel(false);
+        }
+        pendingMembers.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (indexFile != null) {
+            writeIndexFile();
+        }
+    }
+
+    private void writeNextMember() throws IOException {
+        byte[] member;
+        try {
+            member = pendingMembers.peek().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress gzip member", e.getCause());
+        }
+        pendingMembers.poll();
+        if (writtenMemberCount > 0) {
+            // 解压后的起始位置已在提交时记录
+            indexEntries[(writtenMemberCount - 1) * 2] = compressedOffset;
+        }
+        out.write(member);
+        compressedOffset += member.length;
+        writtenMemberCount++;
+    }
+
+    private void addIndexEntry(long memberUncompressedOffset) {
+        if (indexEntryCount * 2 == indexEntries.length) {
+            indexEntries = Arrays.copyOf(indexEntries, indexEntries.length * 2);
+        }
+        indexEntries[indexEntryCount * 2 + 1] = memberUncompressedOffset;
+        indexEntryCount++;
+    }
+
+    private void writeIndexFile() throws IOException {
+        try (DataOutputStream indexOut = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            indexOut.writeLong(Long.reverseBytes(indexEntryCount));
+            for (int i = 0; i < indexEntryCount * 2; i++) {
+                indexOut.writeLong(Long.reverseBytes(indexEntries[i]));
+            }
+        }
+    }
+
+    private static byte[] compressMember(byte[] data, int level) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] member = new byte[GZIP_HEADER.length + data.length + (data.length >> 3) + 64];
+        System.arraycopy(GZIP_HEADER, 0, member, 0, GZIP_HEADER.length);
+        int pos = GZIP_HEADER.length;
+        while (!deflater.finished()) {
+            if (pos == member.length - GZIP_TRAILER_LEN) {
+                member = Arrays.copyOf(member, member.length * 2);
+            }
+            pos += deflater.deflate(member, pos, member.length - GZIP_TRAILER_LEN - pos);
+        }
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(data);
+        writeIntLE(member, pos, (int) crc.getValue());
+        writeIntLE(member, pos + 4, data.length);
+        return Arrays.copyOf(member, pos + GZIP_TRAILER_LEN);
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
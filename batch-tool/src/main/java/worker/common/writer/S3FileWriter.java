@@ -17,6 +17,7 @@
 package worker.common.writer;
 
 import com.google.common.base.Preconditions;
+import model.config.ConfigConstant;
 import org.apache.commons.io.FileUtils;
 import store.FileStorage;
 
@@ -39,11 +40,17 @@ public class S3FileWriter implements IFileWriter {
 
     @Override
     public void finishLastFile() {
+        File indexFile = new File(fileName + ConfigConstant.GZIP_INDEX_FILE_SUFFIX);
         try {
             fileStorage.put(fileName, fileName);
+            if (indexFile.isFile()) {
+                // 并行压缩时写出的 gzip 成员索引
+                fileStorage.put(indexFile.getPath(), indexFile.getPath());
+            }
         } finally {
             // delete local file even if exception occurs
             FileUtils.deleteQuietly(new File(fileName));
+            FileUtils.deleteQuietly(indexFile);
         }
     }
 
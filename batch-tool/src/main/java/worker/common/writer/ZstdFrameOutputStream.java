@@ -0,0 +1,56 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.common.writer;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 输出由多个 zstd 帧组成的文件, 可由 zstd 命令行工具直接解压
+ */
+public class ZstdFrameOutputStream extends FrameCompressOutputStream {
+
+    private final ZstdCompressCtx compressCtx = new ZstdCompressCtx();
+    private final byte[] compressed = new byte[(int) Zstd.compressBound(FRAME_SIZE)];
+
+    public ZstdFrameOutputStream(OutputStream out, int level) {
+        super(out);
+        compressCtx.setLevel(level);
+        compressCtx.setContentSize(true);
+        compressCtx.setChecksum(true);
+    }
+
+    @Override
+    protected void writeFrame(byte[] src, int len) throws IOException {
+        int n;
+        try {
+            n = compressCtx.compressByteArray(compressed, 0, compressed.length, src, 0, len);
+        } catch (ZstdException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        out.write(compressed, 0, n);
+    }
+
+    @Override
+    protected void release() {
+        compressCtx.close();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.delete;
+
+import model.db.FieldMetaInfo;
+import model.db.PartitionKey;
+import model.db.PrimaryKey;
+import model.db.TableTopology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.DbUtil;
+import worker.common.BaseDefaultConsumer;
+import worker.util.DeleteUtil;
+import worker.util.PartitionRouter;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按主键批量删除
+ * 分片表按物理分片分组后带 hint 发送, 每组主键排序后合并连续区间
+ */
+public class BatchDeleteConsumer extends BaseDefaultConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(BatchDeleteConsumer.class);
+
+    private List<FieldMetaInfo> fieldMetaInfoList;
+    private List<PrimaryKey> pkList;
+    private List<FieldMetaInfo> pkFields;
+    private PartitionRouter router;
+    private PartitionKey partitionKey;
+    /**
+     * 为 null 时不分片
+     */
+    private List<TableTopology> topologyList;
+    /**
+     * 每个分片待删除的主键, 最后一组存放无法在客户端路由的主键
+     */
+    private List<List<String[]>> pendingKeys;
+
+    @Override
+    protected void initLocalVars() {
+        super.initLocalVars();
+        if (pendingKeys != null) {
+            return;
+        }
+        this.fieldMetaInfoList = consumerContext.getTableFieldMetaInfo(tableName).getFieldMetaInfoList();
+        this.pkList = consumerContext.getTablePkList(tableName);
+        this.pkFields = new ArrayList<>(pkList.size());
+        for (PrimaryKey primaryKey : pkList) {
+            pkFields.add(fieldMetaInfoList.get(primaryKey.getOrdinalPosition() - 1));
+        }
+        this.router = consumerContext.getTablePartitionRouter(tableName);
+        if (router != null) {
+            this.topologyList = router.getTopologyList();
+        } else {
+            Map<String, List<TableTopology>> tableTopology = consumerContext.getTopologyList();
+            this.topologyList = tableTopology == null ? null : tableTopology.get(tableName);
+            if (topologyList != null) {
+                this.partitionKey = consumerContext.getTablePartitionKey(tableName);
+                if (partitionKey == null) {
+                    this.topologyList = null;
+                }
+            }
+        }
+        int groupCount = topologyList == null ? 1 : topologyList.size() + 1;
+        this.pendingKeys = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            pendingKeys.add(new ArrayList<>());
+        }
+    }
+
+    @Override
+    protected void fillLocalBuffer(StringBuilder stringBuilder, List<String> values) {
+        String[] key = new String[pkList.size()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = values.get(pkList.get(i).getOrdinalPosition() - 1);
+        }
+        pendingKeys.get(getGroupIndex(values)).add(key);
+    }
+
+    private int getGroupIndex(List<String> values) {
+        if (topologyList == null) {
+            return 0;
+        }
+        int partitionIndex;
+        if (router != null) {
+            partitionIndex = router.route(values);
+        } else {
+            String partitionFieldValue = values.get(partitionKey.getFieldMetaInfo().getIndex());
+            partitionIndex = DbUtil.getPartitionIndex(partitionFieldValue, partitionKey);
+        }
+        return partitionIndex < 0 ? topologyList.size() : partitionIndex;
+    }
+
+    @Override
+    protected boolean hasPendingData(StringBuilder data) {
+        for (List<String[]> keys : pendingKeys) {
+            if (!keys.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 每个分片分别执行一条语句
+     */
+    @Override
+    protected void execSql(StringBuilder data) throws SQLException {
+        while (hasPendingData(data)) {
+            super.execSql(data);
+        }
+    }
+
+    /**
+     * @return 下一个有待删除主键的分片的删除语句
+     */
+    @Override
+    protected String getSql(StringBuilder data) {
+        String where = consumerContext.getWhereCondition();
+        for (int i = 0; i < pendingKeys.size(); i++) {
+            List<String[]> keys = pendingKeys.get(i);
+            if (keys.isEmpty()) {
+                continue;
+            }
+            String sql;
+            if (topologyList == null || i == topologyList.size()) {
+                sql = DeleteUtil.getKeyBatchDeleteSql(null, tableName, pkFields, keys, where);
+            } else {
+                TableTopology topology = topologyList.get(i);
+                sql = DeleteUtil.getKeyBatchDeleteSql(topology.getGroupName(), topology.getTableName(),
+                    pkFields, keys, where);
+            }
+            keys.clear();
+            return sql;
+        }
+        throw new IllegalStateException("No pending keys");
+    }
+}
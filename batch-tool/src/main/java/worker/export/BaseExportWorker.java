@@ -113,6 +113,8 @@ public abstract class BaseExportWorker implements Runnable {
         switch (compressMode) {
         case NONE:
         case GZIP:
+        case ZSTD:
+        case LZ4:
             this.compressMode = compressMode;
             break;
         default:
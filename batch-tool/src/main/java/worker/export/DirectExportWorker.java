@@ -31,6 +31,7 @@ import util.DataSourceUtil;
 import util.FileUtil;
 import worker.common.writer.CipherLineFileWriter;
 import worker.common.writer.IFileWriter;
+import worker.common.writer.MultipartUploadFileWriter;
 import worker.common.writer.NioFileWriter;
 import worker.common.writer.S3FileWriter;
 import worker.common.writer.XlsxFileWriter;
@@ -151,6 +152,10 @@ public class DirectExportWorker extends BaseExportWorker {
             break;
         default:
             if (cipher == null || cipher.supportBlock()) {
+                if (fileStorage != null) {
+                    // 直接分片上传, 不写入本地文件
+                    return new MultipartUploadFileWriter(fileStorage, compressMode, charset);
+                }
                 iFileWriter = new  NioFileWriter(compressMode, charset);
             } else {
                 iFileWriter = new CipherLineFileWriter(cipher, separator, quoteEncloseMode);
@@ -194,9 +199,7 @@ public class DirectExportWorker extends BaseExportWorker {
         if (this.fileFormat != FileFormat.NONE) {
             filenameBuilder.append(fileFormat.getSuffix());
         }
-        if (this.compressMode == CompressMode.GZIP) {
-            filenameBuilder.append(".gz");
-        }
+        filenameBuilder.append(compressMode.getSuffix());
         return filenameBuilder.toString();
     }
 
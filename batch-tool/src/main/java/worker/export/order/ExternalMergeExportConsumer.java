@@ -0,0 +1,147 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.export.order;
+
+import model.db.FieldMetaInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import worker.util.SortKeyEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 使用败者树对任意数量的有序段做多路归并
+ * 每个有序段只在内存中保留一行及读缓冲区
+ */
+public class ExternalMergeExportConsumer extends MergeExportConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalMergeExportConsumer.class);
+
+    private static final int MIN_READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_READ_BUFFER_SIZE = 1024 * 1024;
+
+    private final List<File> runFiles;
+    private final int colNum;
+    private final int readBufferSize;
+
+    /**
+     * 各有序段当前的行, 读取完毕后为 null
+     */
+    private ParallelOrderByExportEvent[] heads;
+    /**
+     * tree[0] 为胜者, 其余节点记录败者; 叶子 i 位于 k + i
+     */
+    private int[] tree;
+
+    public ExternalMergeExportConsumer(String filePath, String separator,
+                                       List<FieldMetaInfo> orderByColumnInfoList,
+                                       List<File> runFiles, int colNum,
+                                       long memoryBudget, int maxLine) {
+        super(orderByColumnInfoList, maxLine, filePath, separator.getBytes());
+        this.runFiles = runFiles;
+        this.colNum = colNum;
+        long perRun = memoryBudget / Math.max(runFiles.size(), 1);
+        this.readBufferSize = (int) Math.max(MIN_READ_BUFFER_SIZE, Math.min(MAX_READ_BUFFER_SIZE, perRun));
+    }
+
+    public void consume() throws IOException {
+        int k = runFiles.size();
+        SortRunReader[] readers = new SortRunReader[k];
+        logger.info("开始归并 {} 个有序段", k);
+        try {
+            heads = new ParallelOrderByExportEvent[k];
+            for (int i = 0; i < k; i++) {
+                readers[i] = new SortRunReader(runFiles.get(i), colNum, readBufferSize);
+                heads[i] = readers[i].next();
+            }
+            if (k > 0) {
+                tree = new int[k];
+                tree[0] = k == 1 ? 0 : build(1, k);
+                while (heads[tree[0]] != null) {
+                    int winner = tree[0];
+                    writeToBuffer(heads[winner].getData());
+                    heads[winner] = readers[winner].next();
+                    replay(winner, k);
+                }
+            }
+            finish();
+        } finally {
+            for (SortRunReader reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+            deleteRunFiles(runFiles);
+        }
+        logger.info("写入文件结束");
+    }
+
+    public static void deleteRunFiles(List<File> runFiles) {
+        for (File runFile : runFiles) {
+            if (runFile.exists() && !runFile.delete()) {
+                logger.warn("Failed to delete sort run file: {}", runFile.getPath());
+            }
+        }
+    }
+
+    /**
+     * 自底向上建树, 返回子树的胜者
+     */
+    private int build(int node, int k) {
+        if (node >= k) {
+            return node - k;
+        }
+        int left = build(node * 2, k);
+        int right = build(node * 2 + 1, k);
+        if (less(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    /**
+     * 胜者读入下一行后沿路径与各节点的败者比较
+     */
+    private void replay(int winner, int k) {
+        for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+            if (less(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /**
+     * 读取完毕的有序段视为无穷大, 相等时按序号保持稳定
+     */
+    private boolean less(int i, int j) {
+        if (heads[i] == null) {
+            return false;
+        }
+        if (heads[j] == null) {
+            return true;
+        }
+        int cmp = SortKeyEncoder.compare(heads[i].getSortKey(), heads[j].getSortKey());
+        return cmp < 0 || (cmp == 0 && i < j);
+    }
+}
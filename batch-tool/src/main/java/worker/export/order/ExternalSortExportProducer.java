@@ -0,0 +1,168 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.export.order;
+
+import model.db.FieldMetaInfo;
+import model.db.TableFieldMetaInfo;
+import model.db.TableTopology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.DataSourceUtil;
+import worker.util.ExportUtil;
+import worker.util.SortKeyEncoder;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 外部排序的生产者
+ * 分片数据在内存中累积到预算大小后排序, 作为一个有序段写入本地临时文件
+ * 交给 {@link ExternalMergeExportConsumer} 做多路归并
+ */
+public class ExternalSortExportProducer implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(ExternalSortExportProducer.class);
+
+    /**
+     * 估算每行及每个字段的对象开销
+     */
+    private static final int ROW_OVERHEAD = 64;
+    private static final int FIELD_OVERHEAD = 16;
+    private static final int RUN_WRITE_BUFFER_SIZE = 256 * 1024;
+
+    private String whereCondition;
+    private final DataSource druid;
+    private final TableTopology topology;
+    private final TableFieldMetaInfo tableFieldMetaInfo;
+    private final List<String> orderByColumnName;
+    private final SortKeyEncoder sortKeyEncoder;
+    private final Comparator<ParallelOrderByExportEvent> comparator;
+    /**
+     * 单个分片可使用的内存大小
+     */
+    private final long memoryBudget;
+    private final File tmpDir;
+    /**
+     * 所有分片写出的有序段文件
+     */
+    private final List<File> runFiles;
+    private final AtomicBoolean failed;
+
+    private final CountDownLatch countDownLatch;
+
+    public ExternalSortExportProducer(DataSource druid, TableTopology topology,
+                                      TableFieldMetaInfo tableFieldMetaInfo,
+                                      List<String> orderByColumnName,
+                                      List<FieldMetaInfo> orderByColumnInfoList,
+                                      long memoryBudget, File tmpDir, List<File> runFiles,
+                                      AtomicBoolean failed, CountDownLatch countDownLatch) {
+        this.druid = druid;
+        this.topology = topology;
+        this.tableFieldMetaInfo = tableFieldMetaInfo;
+        this.orderByColumnName = orderByColumnName;
+        this.sortKeyEncoder = new SortKeyEncoder(orderByColumnInfoList);
+        this.comparator = ExportUtil.getSortKeyComparator(orderByColumnInfoList);
+        this.memoryBudget = memoryBudget;
+        this.tmpDir = tmpDir;
+        this.runFiles = runFiles;
+        this.failed = failed;
+        this.countDownLatch = countDownLatch;
+    }
+
+    public void produceData() {
+        String sql = ExportUtil.getOrderBySql(topology, tableFieldMetaInfo.getFieldMetaInfoList(),
+            orderByColumnName, whereCondition, true);
+        List<ParallelOrderByExportEvent> buffer = new ArrayList<>();
+        long bufferedBytes = 0;
+        int runCount = 0;
+
+        long startTime = System.currentTimeMillis();
+        try (Connection conn = druid.getConnection();
+            Statement stmt = DataSourceUtil.createStreamingStatement(conn);
+            ResultSet resultSet = stmt.executeQuery(sql)) {
+            logger.info("{} 开始获取数据", topology);
+            int colNum = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next() && !failed.get()) {
+                byte[][] data = LocalOrderByExportProducer.getRowBytes(resultSet, colNum);
+                ParallelOrderByExportEvent event = new ParallelOrderByExportEvent(data);
+                byte[] sortKey = sortKeyEncoder.encode(data);
+                event.setSortKey(sortKey);
+                buffer.add(event);
+                bufferedBytes += estimateSize(event);
+                if (bufferedBytes >= memoryBudget) {
+                    spill(buffer);
+                    runCount++;
+                    buffer.clear();
+                    bufferedBytes = 0;
+                }
+            }
+            if (!buffer.isEmpty()) {
+                spill(buffer);
+                runCount++;
+            }
+            long endTime = System.currentTimeMillis();
+            logger.debug("{} 写出 {} 个有序段，耗时 {} s", topology, runCount, (endTime - startTime) / 1000F);
+        } catch (SQLException | IOException e) {
+            failed.set(true);
+            logger.error("{} 获取数据失败: {}", topology, e.getMessage(), e);
+        } finally {
+            countDownLatch.countDown();
+        }
+    }
+
+    /**
+     * 数据库返回的顺序依赖于排序规则, 写出前按排序键重新排序
+     * 数据库已排好序时 TimSort 只需线性时间
+     */
+    private void spill(List<ParallelOrderByExportEvent> buffer) throws IOException {
+        buffer.sort(comparator);
+        File runFile = File.createTempFile("sort-run-", ".tmp", tmpDir);
+        runFile.deleteOnExit();
+        runFiles.add(runFile);
+        try (SortRunWriter writer = new SortRunWriter(runFile, RUN_WRITE_BUFFER_SIZE)) {
+            for (ParallelOrderByExportEvent event : buffer) {
+                writer.write(event.getSortKey(), event.getData());
+            }
+        }
+    }
+
+    private static long estimateSize(ParallelOrderByExportEvent event) {
+        long size = ROW_OVERHEAD + FIELD_OVERHEAD + event.getSortKey().length;
+        for (byte[] field : event.getData()) {
+            size += FIELD_OVERHEAD + field.length;
+        }
+        return size;
+    }
+
+    @Override
+    public void run() {
+        produceData();
+    }
+
+    public void setWhereCondition(String whereCondition) {
+        this.whereCondition = whereCondition;
+    }
+}
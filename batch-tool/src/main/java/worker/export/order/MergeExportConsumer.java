@@ -102,6 +102,18 @@ public abstract class MergeExportConsumer {
         outputStream.write(FileUtil.SYS_NEW_LINE_BYTE);
     }
 
+    /**
+     * 写出缓冲区中剩余的数据并关闭文件
+     */
+    protected void finish() {
+        if (bufferedLineNum != 0) {
+            fileWriter.write(outputStream.toByteArray());
+            outputStream.reset();
+            bufferedLineNum = 0;
+        }
+        fileWriter.close();
+    }
+
     private void createNewPartFile() {
         if (bufferedLineNum != 0) {
             fileWriter.write(outputStream.toByteArray());
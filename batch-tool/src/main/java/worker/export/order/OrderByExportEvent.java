@@ -18,9 +18,10 @@ package worker.export.order;
 
 import java.io.Serializable;
 
-public class OrderByExportEvent implements Serializable {
+public class OrderByExportEvent implements Serializable, OrderBySortable {
     private int queueIndex;
     private byte[][] data;
+    private transient byte[] sortKey;
 
     public OrderByExportEvent(int queueIndex, byte[][] data) {
         this.queueIndex = queueIndex;
@@ -38,10 +39,21 @@ public class OrderByExportEvent implements Serializable {
         this.data = data;
     }
 
+    @Override
     public byte[][] getData() {
         return data;
     }
 
+    @Override
+    public byte[] getSortKey() {
+        return sortKey;
+    }
+
+    @Override
+    public void setSortKey(byte[] sortKey) {
+        this.sortKey = sortKey;
+    }
+
     public int getQueueIndex() {
         return queueIndex;
     }
@@ -56,11 +56,8 @@ public class ParallelMergeExportConsumer extends MergeExportConsumer {
 
     public void consume() throws InterruptedException {
         // 对进行并行归并
-        // 假定分片数是2的整次幂
-        // 从目前的设计上看 只需要偶数就行
-        // 但是暂时假定是2的整次幂
+        // 分片数为奇数时, 最后一个分片直接放入队列等待归并
         int count = orderedLists.length;
-        assert Integer.bitCount(count) == 1;
 
         LinkedBlockingDeque<LinkedList<ParallelOrderByExportEvent>> linkedListQueue =
             new LinkedBlockingDeque<>();
@@ -71,11 +68,14 @@ public class ParallelMergeExportConsumer extends MergeExportConsumer {
 
         logger.info("开始归并");
 
-        for (int i = 0; i < count; i += 2) {
+        for (int i = 0; i + 1 < count; i += 2) {
             MergeThread mergeThread = new MergeThread(orderedLists[i],
                 orderedLists[i + 1], linkedListQueue, runningThreadCount);
             executor.submit(mergeThread);
         }
+        if (count % 2 == 1) {
+            linkedListQueue.offer(orderedLists[count - 1]);
+        }
 
         // 最后归并到只有一个
         while (runningThreadCount.get() + linkedListQueue.size() >= 2) {
@@ -96,6 +96,7 @@ public class ParallelMergeExportConsumer extends MergeExportConsumer {
             for (ParallelOrderByExportEvent parallelOrderByExportEvent : finalResult) {
                 writeToBuffer(parallelOrderByExportEvent.getData());
             }
+            finish();
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
         }
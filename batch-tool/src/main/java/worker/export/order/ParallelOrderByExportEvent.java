@@ -18,8 +18,9 @@ package worker.export.order;
 
 import java.io.Serializable;
 
-public class ParallelOrderByExportEvent implements Serializable {
+public class ParallelOrderByExportEvent implements Serializable, OrderBySortable {
     private byte[][] data;
+    private transient byte[] sortKey;
 
     public ParallelOrderByExportEvent(byte[][] data) {
         this.data = data;
@@ -32,7 +33,18 @@ public class ParallelOrderByExportEvent implements Serializable {
         this.data = data;
     }
 
+    @Override
     public byte[][] getData() {
         return data;
     }
+
+    @Override
+    public byte[] getSortKey() {
+        return sortKey;
+    }
+
+    @Override
+    public void setSortKey(byte[] sortKey) {
+        this.sortKey = sortKey;
+    }
 }
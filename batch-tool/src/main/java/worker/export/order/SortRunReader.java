@@ -0,0 +1,85 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.export.order;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * 顺序读取 {@link SortRunWriter} 写出的临时文件
+ */
+public class SortRunReader implements Closeable {
+
+    private final DataInputStream in;
+    private final int colNum;
+
+    public SortRunReader(File file, int colNum, int bufferSize) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferSize));
+        this.colNum = colNum;
+    }
+
+    /**
+     * @return 已读取完毕时返回 null
+     */
+    public ParallelOrderByExportEvent next() throws IOException {
+        int keyLen = readLength(true);
+        if (keyLen < 0) {
+            return null;
+        }
+        byte[] sortKey = readBytes(keyLen);
+        byte[][] rowData = new byte[colNum][];
+        for (int i = 0; i < colNum; i++) {
+            rowData[i] = readBytes(readLength(false));
+        }
+        ParallelOrderByExportEvent event = new ParallelOrderByExportEvent(rowData);
+        event.setSortKey(sortKey);
+        return event;
+    }
+
+    private byte[] readBytes(int len) throws IOException {
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private int readLength(boolean allowEof) throws IOException {
+        int len = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (allowEof && shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Unexpected end of sort run file");
+            }
+            len |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return len;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.export.order;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 将有序的行写入临时文件
+ * 每行依次为排序键与各字段, 均以 varint 长度开头
+ */
+public class SortRunWriter implements Closeable {
+
+    private final OutputStream out;
+
+    public SortRunWriter(File file, int bufferSize) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file), bufferSize);
+    }
+
+    public void write(byte[] sortKey, byte[][] rowData) throws IOException {
+        writeBytes(sortKey);
+        for (byte[] field : rowData) {
+            writeBytes(field);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int len = bytes.length;
+        while ((len & ~0x7F) != 0) {
+            out.write((len & 0x7F) | 0x80);
+            len >>>= 7;
+        }
+        out.write(len);
+        out.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.insert;
+
+import com.alibaba.druid.util.JdbcUtils;
+import com.alibaba.druid.util.StringUtils;
+import com.mysql.cj.jdbc.JdbcStatement;
+import model.db.FieldMetaInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.DbUtil;
+import worker.common.BaseBatchConsumer;
+import worker.common.BatchLineEvent;
+import worker.common.reader.LineSliceInputStream;
+import worker.util.ImportUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static model.config.ConfigConstant.END_OF_BATCH_LINES;
+
+/**
+ * 使用 LOAD DATA LOCAL INFILE 导入
+ * 数据块原样以流的方式发送给服务端, 由服务端切分字段, 客户端不拼接 SQL
+ */
+public class LoadDataImportConsumer extends BaseBatchConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(LoadDataImportConsumer.class);
+
+    private static final int ER_DUP_ENTRY = 1062;
+
+    private static final int MAX_LOGGED_WARNINGS = 10;
+
+    private String loadDataSql;
+
+    @Override
+    protected void initLocalVars() {
+        super.initLocalVars();
+        if (loadDataSql != null) {
+            return;
+        }
+        List<FieldMetaInfo> fieldMetaInfoList =
+            consumerContext.getTableFieldMetaInfo(tableName).getFieldMetaInfoList();
+        this.loadDataSql = ImportUtil.getLoadDataSql(tableName, consumerContext.getUseColumns(),
+            fieldMetaInfoList, sep,
+            DbUtil.getMysqlCharsetName(consumerContext.getCharset()), !hasEscapedQuote,
+            !consumerContext.isSqlEscapeEnabled(), consumerContext.isWithLastSep(),
+            consumerContext.isInsertIgnoreAndResumeEnabled());
+    }
+
+    @Override
+    protected int consume(BatchLineEvent event) throws SQLException {
+        if (event.isByteSlice()) {
+            int sliceCount = event.getSliceCount();
+            if (sliceCount == 0) {
+                return 0;
+            }
+            byte[] data = event.getByteBlock().getData();
+            int[] lineSlices = event.getLineSlices();
+            executeLoadData(() -> new LineSliceInputStream(data, lineSlices, sliceCount));
+            return sliceCount;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        int rowCount = 0;
+        for (String line : event.getBatchLines()) {
+            if (StringUtils.isEmpty(line)) {
+                continue;
+            }
+            if (line == END_OF_BATCH_LINES) {
+                break;
+            }
+            stringBuilder.append(line).append('\n');
+            rowCount++;
+        }
+        if (rowCount == 0) {
+            return 0;
+        }
+        byte[] bytes = stringBuilder.toString().getBytes(consumerContext.getCharset());
+        executeLoadData(() -> new ByteArrayInputStream(bytes));
+        return rowCount;
+    }
+
+    /**
+     * 只在连接层面出错时重试, 其余错误可能已提交了部分数据
+     * 每次重试都需要新的连接与输入流
+     */
+    private void executeLoadData(Supplier<InputStream> inputStreamSupplier) throws SQLException {
+        long startTime = System.nanoTime();
+        for (int i = 0; ; i++) {
+            try {
+                executeLoadDataOnce(inputStreamSupplier.get());
+                break;
+            } catch (SQLException e) {
+                logger.error("Error executing load data (retry count: {}): {}",
+                    i, e.getMessage());
+                // 如果达到最大重试次数，抛出异常
+                if (i >= maxRetry || !DbUtil.isConnectionError(e)) {
+                    throw e;
+                }
+            }
+        }
+        long endTime = System.nanoTime();
+        sqlStat.addTimeNs(endTime - startTime);
+    }
+
+    private void executeLoadDataOnce(InputStream inputStream) throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        try {
+            conn = consumerContext.getDataSource().getConnection();
+            stmt = conn.createStatement();
+            stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(inputStream);
+            stmt.execute(loadDataSql);
+            checkWarnings(stmt.getWarnings());
+        } finally {
+            JdbcUtils.close(stmt);
+            JdbcUtils.close(conn);
+        }
+    }
+
+    /**
+     * LOCAL 模式下数据错误与主键冲突都只产生 warning
+     * 开启 -i 时忽略主键冲突, 其余 warning 均视为导入失败
+     */
+    private void checkWarnings(SQLWarning warning) throws SQLException {
+        int warningCount = 0;
+        SQLWarning firstWarning = null;
+        for (; warning != null; warning = warning.getNextWarning()) {
+            if (warning.getErrorCode() == ER_DUP_ENTRY && consumerContext.isInsertIgnoreAndResumeEnabled()) {
+                continue;
+            }
+            if (warningCount < MAX_LOGGED_WARNINGS) {
+                logger.warn("Load data warning: {} ({})", warning.getMessage(), warning.getErrorCode());
+            }
+            if (firstWarning == null) {
+                firstWarning = warning;
+            }
+            warningCount++;
+        }
+        if (firstWarning != null) {
+            throw new SQLException(String.format("Load data into %s returned %d warning(s), first: %s",
+                tableName, warningCount, firstWarning.getMessage()), firstWarning);
+        }
+    }
+}
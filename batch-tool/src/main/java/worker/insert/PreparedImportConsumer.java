@@ -0,0 +1,309 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.insert;
+
+import com.alibaba.druid.util.JdbcUtils;
+import model.config.ConfigConstant;
+import model.config.GlobalVar;
+import model.db.FieldMetaInfo;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.DbUtil;
+import util.FileUtil;
+import worker.common.BaseDefaultConsumer;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 使用预编译语句批量写入
+ * 按字段类型绑定参数, 无需拼接和转义 SQL 文本
+ */
+public class PreparedImportConsumer extends BaseDefaultConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(PreparedImportConsumer.class);
+
+    /**
+     * 驱动改写批量后单条语句的占位符上限
+     */
+    private static final int MAX_PLACEHOLDER_COUNT = 65535;
+
+    private static final Pattern INTEGER_LITERAL = Pattern.compile("[-+]?\\d+");
+
+    private List<FieldMetaInfo> fieldMetaInfoList;
+    private String insertSql;
+    /**
+     * 单次 executeBatch 的最大行数
+     */
+    private int maxBatchRows;
+    private final List<List<String>> pendingRows = new ArrayList<>();
+
+    @Override
+    protected void initLocalVars() {
+        super.initLocalVars();
+        pendingRows.clear();
+        if (insertSql != null) {
+            return;
+        }
+        this.fieldMetaInfoList = consumerContext.getTableFieldMetaInfo(tableName).getFieldMetaInfoList();
+        this.estimateFieldCount = fieldMetaInfoList.size();
+        this.insertSql = DbUtil.getPrepareInsertSql(tableName, consumerContext.getUseColumns(),
+            fieldMetaInfoList.size(), consumerContext.isInsertIgnoreAndResumeEnabled());
+        this.maxBatchRows = Math.max(1, MAX_PLACEHOLDER_COUNT / fieldMetaInfoList.size());
+    }
+
+    @Override
+    protected void fillLocalBuffer(StringBuilder stringBuilder, List<String> values) {
+        if (values.size() != fieldMetaInfoList.size()) {
+            // 在split预处理过后仍存在的问题
+            logger.error(StringUtils.join(values, ConfigConstant.MAGIC_CSV_SEP1));
+            throw new RuntimeException(String.format("required field size %d, actual size %d",
+                fieldMetaInfoList.size(), values.size()));
+        }
+        pendingRows.add(values);
+    }
+
+    @Override
+    protected boolean hasPendingData(StringBuilder data) {
+        return !pendingRows.isEmpty();
+    }
+
+    @Override
+    protected String getSql(StringBuilder data) {
+        return insertSql;
+    }
+
+    @Override
+    protected void execSql(StringBuilder data) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = consumerContext.getDataSource().getConnection();
+            // 开启 cachePrepStmts 后关闭语句只归还到连接的缓存中
+            stmt = conn.prepareStatement(insertSql);
+            long startTime = System.nanoTime();
+            for (int from = 0; from < pendingRows.size(); from += maxBatchRows) {
+                int to = Math.min(from + maxBatchRows, pendingRows.size());
+                executeBatchWithRetry(stmt, from, to);
+            }
+            long endTime = System.nanoTime();
+            sqlStat.addTimeNs(endTime - startTime);
+        } finally {
+            pendingRows.clear();
+            JdbcUtils.close(stmt);
+            JdbcUtils.close(conn);
+        }
+    }
+
+    private void executeBatchWithRetry(PreparedStatement stmt, int from, int to) throws SQLException {
+        for (int i = 0; i <= maxRetry; i++) {
+            try {
+                for (int row = from; row < to; row++) {
+                    bindRow(stmt, pendingRows.get(row));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                return;
+            } catch (SQLException e) {
+                logger.error("Error executing batch (retry count: {}): {}",
+                    i, e.getMessage());
+                stmt.clearBatch();
+                // 如果达到最大重试次数，抛出异常
+                if (i >= maxRetry) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 与文本语句的取值规则保持一致
+     */
+    private void bindRow(PreparedStatement stmt, List<String> values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            int paramIndex = i + 1;
+            if (value.equals(FileUtil.NULL_ESC_STR_IN_QUOTE)) {
+                stmt.setNull(paramIndex, Types.NULL);
+                continue;
+            }
+            switch (fieldMetaInfoList.get(i).getType()) {
+            case INT:
+                if (value.isEmpty()) {
+                    stmt.setNull(paramIndex, Types.NULL);
+                } else {
+                    bindLong(stmt, paramIndex, value);
+                }
+                break;
+            case FLOAT:
+                if (value.isEmpty()) {
+                    stmt.setNull(paramIndex, Types.NULL);
+                } else {
+                    // 由服务端按列类型精确转换
+                    stmt.setString(paramIndex, value);
+                }
+                break;
+            case BINARY:
+                bindBinary(stmt, paramIndex, value);
+                break;
+            default:
+                stmt.setString(paramIndex, value);
+            }
+        }
+    }
+
+    /**
+     * 超出 long 范围(如 bigint unsigned)等情况交给服务端转换
+     */
+    private static void bindLong(PreparedStatement stmt, int paramIndex, String value) throws SQLException {
+        try {
+            stmt.setLong(paramIndex, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            stmt.setString(paramIndex, value);
+        }
+    }
+
+    /**
+     * 与 {@link worker.util.ImportUtil#appendInsertBinaryValue} 拼接的文本语句取值一致:
+     * 开启 -hex 时相当于 unhex('...'), 否则文件中的值是 SQL 字面量
+     */
+    public static void bindBinary(PreparedStatement stmt, int paramIndex, String value) throws SQLException {
+        if (GlobalVar.BINARY_AS_HEX) {
+            byte[] bytes = unhex(value);
+            if (bytes == null) {
+                // 与 unhex() 一致, 非法的十六进制视为 NULL
+                stmt.setNull(paramIndex, Types.NULL);
+            } else {
+                stmt.setBytes(paramIndex, bytes);
+            }
+            return;
+        }
+        String literal = value.trim();
+        if (literal.startsWith("0x")) {
+            byte[] bytes = unhex(literal.substring(2));
+            if (bytes != null && bytes.length > 0) {
+                stmt.setBytes(paramIndex, bytes);
+                return;
+            }
+        } else if (literal.length() >= 3 && (literal.charAt(0) == 'x' || literal.charAt(0) == 'X')
+            && literal.charAt(1) == '\'' && literal.endsWith("'") && (literal.length() & 1) == 1) {
+            byte[] bytes = unhex(literal.substring(2, literal.length() - 1));
+            if (bytes != null) {
+                stmt.setBytes(paramIndex, bytes);
+                return;
+            }
+        } else if (literal.length() >= 2 && (literal.charAt(0) == '\'' || literal.charAt(0) == '"')) {
+            String str = unquoteLiteral(literal);
+            if (str != null) {
+                // 与文本语句相同, 按连接的字符集编码
+                stmt.setString(paramIndex, str);
+                return;
+            }
+        } else if (INTEGER_LITERAL.matcher(literal).matches()) {
+            // 数字写入二进制列时转换为十进制字符串
+            stmt.setString(paramIndex, new BigInteger(literal).toString());
+            return;
+        }
+        throw new IllegalArgumentException("Unsupported binary literal for prepared statement: " + value);
+    }
+
+    /**
+     * 按 MySQL 的规则去掉引号并处理转义, 格式不正确时返回 null
+     */
+    private static String unquoteLiteral(String literal) {
+        char quote = literal.charAt(0);
+        StringBuilder sb = new StringBuilder(literal.length());
+        int end = literal.length() - 1;
+        for (int i = 1; i < end; i++) {
+            char c = literal.charAt(i);
+            if (c == '\\') {
+                if (++i == end) {
+                    return null;
+                }
+                char escaped = literal.charAt(i);
+                switch (escaped) {
+                case '0':
+                    sb.append('\0');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'Z':
+                    sb.append('\032');
+                    break;
+                case '%':
+                case '_':
+                    sb.append('\\').append(escaped);
+                    break;
+                default:
+                    sb.append(escaped);
+                }
+            } else if (c == quote) {
+                // 引号内的引号需要连续出现两次
+                if (++i == end || literal.charAt(i) != quote) {
+                    return null;
+                }
+                sb.append(quote);
+            } else {
+                sb.append(c);
+            }
+        }
+        return literal.charAt(end) == quote ? sb.toString() : null;
+    }
+
+    /**
+     * 奇数长度时高位补 0
+     */
+    private static byte[] unhex(String hex) {
+        int len = hex.length();
+        byte[] bytes = new byte[(len + 1) / 2];
+        int charIndex = 0;
+        int byteIndex = 0;
+        if ((len & 1) == 1) {
+            int low = Character.digit(hex.charAt(0), 16);
+            if (low < 0) {
+                return null;
+            }
+            bytes[byteIndex++] = (byte) low;
+            charIndex++;
+        }
+        for (; charIndex < len; charIndex += 2) {
+            int high = Character.digit(hex.charAt(charIndex), 16);
+            int low = Character.digit(hex.charAt(charIndex + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[byteIndex++] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
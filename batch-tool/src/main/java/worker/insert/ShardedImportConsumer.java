@@ -25,7 +25,6 @@ import worker.util.ImportUtil;
 
 import java.util.List;
 
-@Deprecated
 public class ShardedImportConsumer extends BaseShardedConsumer {
     private static final Logger logger = LoggerFactory.getLogger(ShardedImportConsumer.class);
 
@@ -46,4 +45,12 @@ public class ShardedImportConsumer extends BaseShardedConsumer {
         return ImportUtil.getBatchInsertSqlWithHint(topology.getGroupName(),
             topology.getTableName(), data.toString(), consumerContext.isInsertIgnoreAndResumeEnabled());
     }
+
+    @Override
+    protected String getSqlWithoutHint(StringBuilder data) {
+        // 去除最后的逗号
+        data.setLength(data.length() - 1);
+        return ImportUtil.getBatchInsertSql(tableName, data.toString(),
+            consumerContext.isInsertIgnoreAndResumeEnabled());
+    }
 }
@@ -44,11 +44,10 @@ public class TpchInsertConsumer implements WorkHandler<BatchInsertSqlEvent> {
             consumerContext.getEmittedDataCounter().getAndDecrement();
             return;
         }
-        String sql = event.getSql();
-        try (Connection conn = consumerContext.getDataSource().getConnection();
-            Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        try (Connection conn = consumerContext.getDataSource().getConnection()) {
+            execute(conn, event);
         } catch (SQLException e) {
+            String sql = event.getSql();
             if (sql == null) {
                 logger.error(e.getMessage());
             } else {
@@ -64,4 +63,10 @@ public class TpchInsertConsumer implements WorkHandler<BatchInsertSqlEvent> {
             consumerContext.getEmittedDataCounter().decrementAndGet();
         }
     }
+
+    protected void execute(Connection conn, BatchInsertSqlEvent event) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(event.getSql());
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.tpch.consumer;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import model.ConsumerExecutionContext;
+import worker.tpch.model.BatchInsertSqlEvent;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 将一批数据按 .tbl 格式以 LOAD DATA LOCAL INFILE 的流发送
+ */
+public class TpchLoadDataConsumer extends TpchInsertConsumer {
+
+    public TpchLoadDataConsumer(ConsumerExecutionContext consumerContext) {
+        super(consumerContext);
+    }
+
+    static String getLoadDataSql(String tableName) {
+        return "LOAD DATA LOCAL INFILE 'batch-tool' INTO TABLE `" + tableName + "` CHARACTER SET utf8mb4 "
+            + "FIELDS TERMINATED BY '|' ESCAPED BY '' LINES TERMINATED BY '|\\n'";
+    }
+
+    @Override
+    protected void execute(Connection conn, BatchInsertSqlEvent event) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(event.getRowBatch().toTblInputStream());
+            stmt.execute(getLoadDataSql(event.getTableName()));
+        }
+    }
+}
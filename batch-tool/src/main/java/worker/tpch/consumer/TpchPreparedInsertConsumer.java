@@ -0,0 +1,51 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.tpch.consumer;
+
+import model.ConsumerExecutionContext;
+import util.DbUtil;
+import worker.tpch.model.BatchInsertSqlEvent;
+import worker.tpch.model.TpchRowBatch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 按列类型绑定参数后批量执行预编译的 INSERT
+ * 开启 useServerPrepStmts 时以二进制协议发送
+ */
+public class TpchPreparedInsertConsumer extends TpchInsertConsumer {
+
+    public TpchPreparedInsertConsumer(ConsumerExecutionContext consumerContext) {
+        super(consumerContext);
+    }
+
+    @Override
+    protected void execute(Connection conn, BatchInsertSqlEvent event) throws SQLException {
+        TpchRowBatch rowBatch = event.getRowBatch();
+        String sql = DbUtil.getPrepareInsertSql(event.getTableName(), null,
+            rowBatch.getColumnCount(), false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int row = 0; row < rowBatch.getRowCount(); row++) {
+                rowBatch.bindRow(stmt, row);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
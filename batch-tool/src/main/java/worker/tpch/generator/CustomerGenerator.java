@@ -19,13 +19,13 @@ import io.airlift.tpch.RandomBoundedInt;
 import io.airlift.tpch.RandomString;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 import worker.tpch.util.RandomAlphaNumeric;
 import worker.tpch.util.RandomPhoneNumber;
 
 import static io.airlift.tpch.GenerateUtils.calculateRowCount;
 import static io.airlift.tpch.GenerateUtils.calculateStartIndex;
 import static worker.tpch.util.StringBufferUtil.appendCustomerName;
-import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
 
 /**
  * port from io.airlift.tpch
@@ -68,26 +68,23 @@ public class CustomerGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
+    public void nextRow(TpchRowBatch batch) {
 
         long nationKey = nationKeyRandom.nextValue();
         long customerKey = startIndex + index + 1;
 
-        sqlBuffer.append('(').append(customerKey)   // c_custkey
-            .append(",\"");
-
-        appendCustomerName(sqlBuffer, customerKey); // c_name
-
-        sqlBuffer.append("\",\"");
-        addressRandom.appendNextValue(sqlBuffer);   // c_address
-        sqlBuffer.append("\",").append(nationKey).append(",\"");    // c_nationkey
-        phoneRandom.appendNextValue(sqlBuffer, nationKey);  // c_phone
-        sqlBuffer.append("\",");
-
-        appendDecimalWithFrac2(sqlBuffer, accountBalanceRandom.nextValue());    // c_acctbal
-
-        sqlBuffer.append(",\"").append(marketSegmentRandom.nextValue()) // c_mktsegment
-            .append("\",\"").append(commentRandom.nextValue()).append("\"),");  // c_comment
+        batch.putLong(customerKey);    // c_custkey
+        appendCustomerName(batch.beginText(), customerKey);  // c_name
+        batch.endText();
+        addressRandom.appendNextValue(batch.beginText());   // c_address
+        batch.endText();
+        batch.putLong(nationKey);  // c_nationkey
+        phoneRandom.appendNextValue(batch.beginText(), nationKey);  // c_phone
+        batch.endText();
+        batch.putDecimal(accountBalanceRandom.nextValue());    // c_acctbal
+        batch.putText(marketSegmentRandom.nextValue()); // c_mktsegment
+        batch.putText(commentRandom.nextValue());   // c_comment
+        batch.endRow();
 
         addressRandom.rowFinished();
         nationKeyRandom.rowFinished();
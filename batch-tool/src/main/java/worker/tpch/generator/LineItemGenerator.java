@@ -21,6 +21,7 @@ import io.airlift.tpch.RandomBoundedLong;
 import io.airlift.tpch.RandomString;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 import static io.airlift.tpch.GenerateUtils.GENERATED_DATE_EPOCH_OFFSET;
 import static io.airlift.tpch.GenerateUtils.calculateRowCount;
@@ -31,8 +32,6 @@ import static worker.tpch.generator.OrderGenerator.createLineCountRandom;
 import static worker.tpch.generator.OrderGenerator.createOrderDateRandom;
 import static worker.tpch.generator.OrderGenerator.makeOrderKey;
 import static worker.tpch.generator.PartSupplierGenerator.selectPartSupplier;
-import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
-import static worker.tpch.util.StringBufferUtil.formatDateByDays;
 
 /**
  * port from io.airlift.tpch
@@ -155,7 +154,7 @@ public class LineItemGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
+    public void nextRow(TpchRowBatch batch) {
         long orderKey = makeOrderKey(startIndex + index + 1);
         int quantity = quantityRandom.nextValue();
         int discount = discountRandom.nextValue();
@@ -198,31 +197,23 @@ public class LineItemGenerator extends TableRowGenerator {
         String shipMode = shipModeRandom.nextValue();
         String comment = commentRandom.nextValue();
 
-        sqlBuffer.append('(').append(orderKey)
-            .append(',').append(partKey)
-            .append(',').append(supplierKey)
-            .append(',').append(lineNumber + 1)
-            .append(',').append(quantity)
-            .append(",");
-
-        appendDecimalWithFrac2(sqlBuffer, extendedPrice);
-        sqlBuffer.append(',');
-        appendDecimalWithFrac2(sqlBuffer, discount);
-        sqlBuffer.append(',');
-        appendDecimalWithFrac2(sqlBuffer, tax);
-
-        sqlBuffer.append(",\"").append(returnedFlag)
-            .append("\",\"").append(status)
-            .append("\",\"");
-
-        formatDateByDays(sqlBuffer, shipDate);
-        sqlBuffer.append("\",\"");
-        formatDateByDays(sqlBuffer, commitDate);
-        sqlBuffer.append("\",\"");
-        formatDateByDays(sqlBuffer, receiptDate);
-        sqlBuffer.append("\",\"").append(shipInstructions)
-            .append("\",\"").append(shipMode)
-            .append("\",\"").append(comment).append("\"),");
+        batch.putLong(orderKey);
+        batch.putLong(partKey);
+        batch.putLong(supplierKey);
+        batch.putLong(lineNumber + 1);
+        batch.putLong(quantity);
+        batch.putDecimal(extendedPrice);
+        batch.putDecimal(discount);
+        batch.putDecimal(tax);
+        batch.putText(returnedFlag);
+        batch.putText(status);
+        batch.putDate(shipDate);
+        batch.putDate(commitDate);
+        batch.putDate(receiptDate);
+        batch.putText(shipInstructions);
+        batch.putText(shipMode);
+        batch.putText(comment);
+        batch.endRow();
 
         lineNumber++;
 
@@ -18,6 +18,7 @@ import io.airlift.tpch.Distribution;
 import io.airlift.tpch.Distributions;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 /**
  * port from io.airlift.tpch
@@ -40,11 +41,12 @@ public class NationGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
-        sqlBuffer.append('(').append(index)
-            .append(",\"").append(nations.getValue((int) index))
-            .append("\",").append(nations.getWeight((int) index))
-            .append(",\"").append(commentRandom.nextValue()).append("\"),");
+    public void nextRow(TpchRowBatch batch) {
+        batch.putLong(index);
+        batch.putText(nations.getValue((int) index));
+        batch.putLong(nations.getWeight((int) index));
+        batch.putText(commentRandom.nextValue());
+        batch.endRow();
 
         commentRandom.rowFinished();
         index++;
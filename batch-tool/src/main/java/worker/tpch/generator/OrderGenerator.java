@@ -21,6 +21,7 @@ import io.airlift.tpch.RandomBoundedLong;
 import io.airlift.tpch.RandomString;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 import static io.airlift.tpch.GenerateUtils.GENERATED_DATE_EPOCH_OFFSET;
 import static io.airlift.tpch.GenerateUtils.MIN_GENERATE_DATE;
@@ -35,8 +36,6 @@ import static worker.tpch.generator.LineItemGenerator.createShipDateRandom;
 import static worker.tpch.generator.LineItemGenerator.createTaxRandom;
 import static worker.tpch.generator.PartGenerator.calculatePartPrice;
 import static worker.tpch.util.StringBufferUtil.appendClerk;
-import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
-import static worker.tpch.util.StringBufferUtil.formatDateByDays;
 
 /**
  * port from io.airlift.tpch
@@ -129,7 +128,7 @@ public class OrderGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
+    public void nextRow(TpchRowBatch batch) {
         long orderKey = makeOrderKey(startIndex + index + 1);
         int orderDate = orderDateRandom.nextValue();
 
@@ -174,20 +173,18 @@ public class OrderGenerator extends TableRowGenerator {
             orderStatus = 'O';
         }
 
-        sqlBuffer.append('(').append(orderKey)
-            .append(',').append(customerKey)
-            .append(",\"").append(orderStatus)
-            .append("\",");
-
-        appendDecimalWithFrac2(sqlBuffer, totalPrice);
-
-        sqlBuffer.append(",\"");
-        formatDateByDays(sqlBuffer, orderDate - GENERATED_DATE_EPOCH_OFFSET);
-
-        sqlBuffer.append("\",\"").append(orderPriorityRandom.nextValue()).append("\",\"");
-        appendClerk(sqlBuffer, clerkRandom.nextValue());
-        sqlBuffer.append("\",").append(0)
-            .append(",\"").append(commentRandom.nextValue()).append("\"),");
+        batch.putLong(orderKey);
+        batch.putLong(customerKey);
+        batch.beginText().append(orderStatus);
+        batch.endText();
+        batch.putDecimal(totalPrice);
+        batch.putDate(orderDate - GENERATED_DATE_EPOCH_OFFSET);
+        batch.putText(orderPriorityRandom.nextValue());
+        appendClerk(batch.beginText(), clerkRandom.nextValue());
+        batch.endText();
+        batch.putLong(0);
+        batch.putText(commentRandom.nextValue());
+        batch.endRow();
 
         orderDateRandom.rowFinished();
         lineCountRandom.rowFinished();
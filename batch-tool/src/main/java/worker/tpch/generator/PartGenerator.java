@@ -20,10 +20,10 @@ import io.airlift.tpch.RandomString;
 import io.airlift.tpch.RandomStringSequence;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 import static io.airlift.tpch.GenerateUtils.calculateRowCount;
 import static io.airlift.tpch.GenerateUtils.calculateStartIndex;
-import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
 
 /**
  * port from io.airlift.tpch
@@ -75,24 +75,24 @@ public class PartGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
+    public void nextRow(TpchRowBatch batch) {
         long partKey = startIndex + index + 1;
 
         int manufacturer = manufacturerRandom.nextValue();
         int brand = manufacturer * 10 + brandRandom.nextValue();
 
-        sqlBuffer.append('(').append(partKey)
-            .append(",\"").append(nameRandom.nextValue())
-            .append("\",\"Manufacturer#").append(manufacturer)
-            .append("\",\"Brand#").append(brand)
-            .append("\",\"").append(typeRandom.nextValue())
-            .append("\",").append(sizeRandom.nextValue())
-            .append(",\"").append(containerRandom.nextValue())
-            .append("\",");
-
-        appendDecimalWithFrac2(sqlBuffer, calculatePartPrice(partKey));
-
-        sqlBuffer.append(",\"").append(commentRandom.nextValue()).append("\"),");
+        batch.putLong(partKey);
+        batch.putText(nameRandom.nextValue());
+        batch.beginText().append("Manufacturer#").append(manufacturer);
+        batch.endText();
+        batch.beginText().append("Brand#").append(brand);
+        batch.endText();
+        batch.putText(typeRandom.nextValue());
+        batch.putLong(sizeRandom.nextValue());
+        batch.putText(containerRandom.nextValue());
+        batch.putDecimal(calculatePartPrice(partKey));
+        batch.putText(commentRandom.nextValue());
+        batch.endRow();
 
         nameRandom.rowFinished();
         manufacturerRandom.rowFinished();
@@ -17,10 +17,10 @@ package worker.tpch.generator;
 import io.airlift.tpch.RandomBoundedInt;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 import static io.airlift.tpch.GenerateUtils.calculateRowCount;
 import static io.airlift.tpch.GenerateUtils.calculateStartIndex;
-import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
 
 /**
  * port from io.airlift.tpch
@@ -65,17 +65,15 @@ public class PartSupplierGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
+    public void nextRow(TpchRowBatch batch) {
         long partKey = startIndex + index + 1;
 
-        sqlBuffer.append('(').append(partKey)
-            .append(',').append(selectPartSupplier(partKey, partSupplierNumber, scaleFactor))
-            .append(',').append(availableQuantityRandom.nextValue())
-            .append(',');
-
-        appendDecimalWithFrac2(sqlBuffer, supplyCostRandom.nextValue());
-
-        sqlBuffer.append(",\"").append(commentRandom.nextValue()).append("\"),");
+        batch.putLong(partKey);
+        batch.putLong(selectPartSupplier(partKey, partSupplierNumber, scaleFactor));
+        batch.putLong(availableQuantityRandom.nextValue());
+        batch.putDecimal(supplyCostRandom.nextValue());
+        batch.putText(commentRandom.nextValue());
+        batch.endRow();
 
         partSupplierNumber++;
 
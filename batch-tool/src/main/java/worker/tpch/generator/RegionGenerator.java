@@ -18,6 +18,7 @@ import io.airlift.tpch.Distribution;
 import io.airlift.tpch.Distributions;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 /**
  * port from io.airlift.tpch
@@ -41,10 +42,11 @@ public class RegionGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
-        sqlBuffer.append('(').append(index)
-            .append(",\"").append(regions.getValue((int) index))
-            .append("\",\"").append(commentRandom.nextValue()).append("\"),");
+    public void nextRow(TpchRowBatch batch) {
+        batch.putLong(index);
+        batch.putText(regions.getValue((int) index));
+        batch.putText(commentRandom.nextValue());
+        batch.endRow();
 
         commentRandom.rowFinished();
         index++;
@@ -20,11 +20,11 @@ import io.airlift.tpch.RandomBoundedInt;
 import io.airlift.tpch.RandomInt;
 import io.airlift.tpch.RandomText;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 import worker.tpch.util.RandomPhoneNumber;
 
 import static io.airlift.tpch.GenerateUtils.calculateRowCount;
 import static io.airlift.tpch.GenerateUtils.calculateStartIndex;
-import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
 import static worker.tpch.util.StringBufferUtil.appendSupplier;
 
 /**
@@ -78,7 +78,7 @@ public class SupplierGenerator extends TableRowGenerator {
     }
 
     @Override
-    public void appendNextRow(StringBuilder sqlBuffer) {
+    public void nextRow(TpchRowBatch batch) {
         long supplierKey = startIndex + index + 1;
 
         String comment = commentRandom.nextValue();
@@ -112,23 +112,16 @@ public class SupplierGenerator extends TableRowGenerator {
 
         long nationKey = nationKeyRandom.nextValue();
 
-        sqlBuffer.append('(').append(supplierKey).append(",\"");
-
-        appendSupplier(sqlBuffer, supplierKey);
-        sqlBuffer.append("\",\"").append(addressRandom.nextValue())
-            .append("\",").append(nationKey)
-            .append(",\"");
-
-        phoneRandom.appendNextValue(sqlBuffer, nationKey);
-        sqlBuffer.append("\",");
-
-        appendDecimalWithFrac2(sqlBuffer, accountBalanceRandom.nextValue());
-
-        if (commentBuffer == null) {
-            sqlBuffer.append(",\"").append(comment).append("\"),");
-        } else {
-            sqlBuffer.append(",\"").append(commentBuffer).append("\"),");
-        }
+        batch.putLong(supplierKey);
+        appendSupplier(batch.beginText(), supplierKey);
+        batch.endText();
+        batch.putText(addressRandom.nextValue());
+        batch.putLong(nationKey);
+        phoneRandom.appendNextValue(batch.beginText(), nationKey);
+        batch.endText();
+        batch.putDecimal(accountBalanceRandom.nextValue());
+        batch.putText(commentBuffer == null ? comment : commentBuffer);
+        batch.endRow();
 
         addressRandom.rowFinished();
         nationKeyRandom.rowFinished();
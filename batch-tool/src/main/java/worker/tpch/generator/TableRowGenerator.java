@@ -18,6 +18,7 @@ package worker.tpch.generator;
 
 import io.airlift.tpch.Distributions;
 import io.airlift.tpch.TextPool;
+import worker.tpch.model.TpchRowBatch;
 
 public abstract class TableRowGenerator {
 
@@ -41,9 +42,18 @@ public abstract class TableRowGenerator {
     }
 
     /**
-     * 以 sql values 的形式 append 一行
+     * 按列写入一行
      * 尽可能不生成 String 中间对象
      */
-    public abstract void appendNextRow(StringBuilder sqlBuffer);
+    public abstract void nextRow(TpchRowBatch batch);
+
+    /**
+     * 写满一批或生成完毕时返回
+     */
+    public void fillBatch(TpchRowBatch batch) {
+        while (!batch.isFull() && hasNext()) {
+            nextRow(batch);
+        }
+    }
 
 }
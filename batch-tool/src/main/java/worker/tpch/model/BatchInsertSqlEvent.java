@@ -18,6 +18,7 @@ package worker.tpch.model;
 
 /**
  * batch insert SQL
+ * 预编译与 LOAD DATA 模式下传递按列存放的数据, 由消费者完成编码
  */
 public class BatchInsertSqlEvent {
 
@@ -31,4 +32,21 @@ public class BatchInsertSqlEvent {
 
     private String sql;
 
+    private String tableName;
+
+    private TpchRowBatch rowBatch;
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public TpchRowBatch getRowBatch() {
+        return rowBatch;
+    }
+
+    public void setRowBatch(String tableName, TpchRowBatch rowBatch) {
+        this.tableName = tableName;
+        this.rowBatch = rowBatch;
+    }
+
 }
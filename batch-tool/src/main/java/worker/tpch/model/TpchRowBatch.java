@@ -0,0 +1,335 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package worker.tpch.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static worker.tpch.util.StringBufferUtil.appendDecimalWithFrac2;
+import static worker.tpch.util.StringBufferUtil.formatDateByDays;
+import static worker.tpch.util.StringBufferUtil.toPackedDate;
+
+/**
+ * 按列存放的一批 TPC-H 数据
+ * 数值与日期保存在基本类型数组中, 文本列共用一个字符缓冲区并记录每行的结束位置
+ * 生成器按行依次写入各列, 之后可输出为 SQL 文本、.tbl 格式或绑定到预编译语句
+ */
+public class TpchRowBatch {
+
+    public enum ColumnType {
+        /**
+         * 整数
+         */
+        LONG,
+        /**
+         * 两位小数, 保存放大 100 倍后的整数
+         */
+        DECIMAL,
+        /**
+         * 日期, 保存自 1970-01-01 起的天数
+         */
+        DATE,
+        TEXT
+    }
+
+    private final ColumnType[] columnTypes;
+    private final int capacity;
+    private final long[][] longColumns;
+    private final int[][] dateColumns;
+    private final StringBuilder[] textColumns;
+    private final int[][] textEnds;
+
+    private int rowCount = 0;
+    private int curColumn = 0;
+    private byte[] encodeBuffer = null;
+    private int encodedLen = 0;
+
+    public TpchRowBatch(ColumnType[] columnTypes, int capacity) {
+        this.columnTypes = columnTypes;
+        this.capacity = capacity;
+        int columnCount = columnTypes.length;
+        this.longColumns = new long[columnCount][];
+        this.dateColumns = new int[columnCount][];
+        this.textColumns = new StringBuilder[columnCount];
+        this.textEnds = new int[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            switch (columnTypes[i]) {
+            case LONG:
+            case DECIMAL:
+                longColumns[i] = new long[capacity];
+                break;
+            case DATE:
+                dateColumns[i] = new int[capacity];
+                break;
+            case TEXT:
+                textColumns[i] = new StringBuilder(capacity * 16);
+                textEnds[i] = new int[capacity];
+                break;
+            default:
+                throw new UnsupportedOperationException(columnTypes[i].name());
+            }
+        }
+    }
+
+    public TpchRowBatch(TpchTableModel table, int capacity) {
+        this(table.getColumnTypes(), capacity);
+    }
+
+    //region 按行写入
+    public void putLong(long value) {
+        longColumns[curColumn++][rowCount] = value;
+    }
+
+    /**
+     * @param value 放大 100 倍后的值
+     */
+    public void putDecimal(long value) {
+        longColumns[curColumn++][rowCount] = value;
+    }
+
+    /**
+     * @param days 自 1970-01-01 起的天数
+     */
+    public void putDate(int days) {
+        dateColumns[curColumn++][rowCount] = days;
+    }
+
+    public void putText(CharSequence value) {
+        textColumns[curColumn].append(value);
+        endText();
+    }
+
+    /**
+     * 直接在文本列的缓冲区中追加内容, 追加后需调用 {@link #endText()}
+     */
+    public StringBuilder beginText() {
+        return textColumns[curColumn];
+    }
+
+    public void endText() {
+        textEnds[curColumn][rowCount] = textColumns[curColumn].length();
+        curColumn++;
+    }
+
+    public void endRow() {
+        if (curColumn != columnTypes.length) {
+            throw new IllegalStateException("Expected " + columnTypes.length + " columns, actual " + curColumn);
+        }
+        curColumn = 0;
+        rowCount++;
+    }
+    //endregion 按行写入
+
+    public boolean isFull() {
+        return rowCount == capacity;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnTypes.length;
+    }
+
+    public void clear() {
+        for (StringBuilder textColumn : textColumns) {
+            if (textColumn != null) {
+                textColumn.setLength(0);
+            }
+        }
+        rowCount = 0;
+        curColumn = 0;
+    }
+
+    //region 输出
+    /**
+     * 以 (v1,v2,"s3",...) 的形式追加一行
+     */
+    public void appendSqlValues(StringBuilder sqlBuffer, int row) {
+        sqlBuffer.append('(');
+        for (int col = 0; col < columnTypes.length; col++) {
+            if (col > 0) {
+                sqlBuffer.append(',');
+            }
+            switch (columnTypes[col]) {
+            case LONG:
+                sqlBuffer.append(longColumns[col][row]);
+                break;
+            case DECIMAL:
+                appendDecimalWithFrac2(sqlBuffer, longColumns[col][row]);
+                break;
+            case DATE:
+                sqlBuffer.append('"');
+                formatDateByDays(sqlBuffer, dateColumns[col][row]);
+                sqlBuffer.append('"');
+                break;
+            case TEXT:
+                sqlBuffer.append('"')
+                    .append(textColumns[col], textStart(col, row), textEnds[col][row])
+                    .append('"');
+                break;
+            default:
+                throw new UnsupportedOperationException(columnTypes[col].name());
+            }
+        }
+        sqlBuffer.append(')');
+    }
+
+    /**
+     * 与 dbgen 生成的 .tbl 文件格式相同: 每个字段后跟 '|', 行以 '\n' 结尾
+     * TPC-H 数据只包含 ASCII 字符, 直接按字节输出
+     */
+    public void writeTbl(OutputStream out) throws IOException {
+        encodeTbl();
+        out.write(encodeBuffer, 0, encodedLen);
+    }
+
+    public InputStream toTblInputStream() {
+        encodeTbl();
+        return new ByteArrayInputStream(encodeBuffer, 0, encodedLen);
+    }
+
+    /**
+     * 按类型绑定第 row 行的参数
+     */
+    public void bindRow(PreparedStatement stmt, int row) throws SQLException {
+        for (int col = 0; col < columnTypes.length; col++) {
+            int paramIndex = col + 1;
+            switch (columnTypes[col]) {
+            case LONG:
+                stmt.setLong(paramIndex, longColumns[col][row]);
+                break;
+            case DECIMAL:
+                stmt.setBigDecimal(paramIndex, BigDecimal.valueOf(longColumns[col][row], 2));
+                break;
+            case DATE:
+                stmt.setObject(paramIndex, LocalDate.ofEpochDay(dateColumns[col][row]));
+                break;
+            case TEXT:
+                stmt.setString(paramIndex, textColumns[col].substring(textStart(col, row), textEnds[col][row]));
+                break;
+            default:
+                throw new UnsupportedOperationException(columnTypes[col].name());
+            }
+        }
+    }
+    //endregion 输出
+
+    private int textStart(int col, int row) {
+        return row == 0 ? 0 : textEnds[col][row - 1];
+    }
+
+    private void encodeTbl() {
+        int estimateLen = columnTypes.length * 24 * rowCount;
+        for (StringBuilder textColumn : textColumns) {
+            if (textColumn != null) {
+                estimateLen += textColumn.length();
+            }
+        }
+        if (encodeBuffer == null || encodeBuffer.length < estimateLen) {
+            encodeBuffer = new byte[estimateLen];
+        }
+        byte[] buf = encodeBuffer;
+        int pos = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (int col = 0; col < columnTypes.length; col++) {
+                switch (columnTypes[col]) {
+                case LONG:
+                    pos = writeLong(buf, pos, longColumns[col][row]);
+                    break;
+                case DECIMAL:
+                    pos = writeDecimal(buf, pos, longColumns[col][row]);
+                    break;
+                case DATE:
+                    pos = writeDate(buf, pos, dateColumns[col][row]);
+                    break;
+                case TEXT:
+                    StringBuilder text = textColumns[col];
+                    for (int i = textStart(col, row), end = textEnds[col][row]; i < end; i++) {
+                        buf[pos++] = (byte) text.charAt(i);
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException(columnTypes[col].name());
+                }
+                buf[pos++] = '|';
+            }
+            buf[pos++] = '\n';
+        }
+        encodedLen = pos;
+    }
+
+    private static int writeLong(byte[] buf, int pos, long value) {
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int digitCount = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digitCount++;
+        }
+        int end = pos + digitCount;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static int writeDecimal(byte[] buf, int pos, long value) {
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        pos = writeLong(buf, pos, value / 100);
+        int frac = (int) (value % 100);
+        buf[pos++] = '.';
+        buf[pos++] = (byte) ('0' + frac / 10);
+        buf[pos++] = (byte) ('0' + frac % 10);
+        return pos;
+    }
+
+    private static int writeDate(byte[] buf, int pos, int days) {
+        int packed = toPackedDate(days);
+        pos = writeLong(buf, pos, packed / 10000);
+        int month = packed / 100 % 100;
+        int dom = packed % 100;
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + month / 10);
+        buf[pos++] = (byte) ('0' + month % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + dom / 10);
+        buf[pos++] = (byte) ('0' + dom % 10);
+        return pos;
+    }
+
+    @Override
+    public String toString() {
+        return "TpchRowBatch{columnTypes=" + Arrays.toString(columnTypes) + ", rowCount=" + rowCount + '}';
+    }
+}
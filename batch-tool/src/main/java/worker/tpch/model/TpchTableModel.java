@@ -16,19 +16,28 @@
 
 package worker.tpch.model;
 
+import worker.tpch.model.TpchRowBatch.ColumnType;
+
+import static worker.tpch.model.TpchRowBatch.ColumnType.DATE;
+import static worker.tpch.model.TpchRowBatch.ColumnType.DECIMAL;
+import static worker.tpch.model.TpchRowBatch.ColumnType.LONG;
+import static worker.tpch.model.TpchRowBatch.ColumnType.TEXT;
+
 public enum TpchTableModel {
 
-    LINEITEM("lineitem", 16, 160),
-    CUSTOMER("customer", 8, 176),
-    ORDERS("orders", 9, 128),
-    PART("part", 9, 128),
-    SUPPLIER("supplier", 7, 128),
-    PART_SUPP("partsupp", 5, 150),
-    NATION("nation", 4, 90),
-    REGION("region", 3, 135);
+    LINEITEM("lineitem", 160, LONG, LONG, LONG, LONG, LONG, DECIMAL, DECIMAL, DECIMAL,
+        TEXT, TEXT, DATE, DATE, DATE, TEXT, TEXT, TEXT),
+    CUSTOMER("customer", 176, LONG, TEXT, TEXT, LONG, TEXT, DECIMAL, TEXT, TEXT),
+    ORDERS("orders", 128, LONG, LONG, TEXT, DECIMAL, DATE, TEXT, TEXT, LONG, TEXT),
+    PART("part", 128, LONG, TEXT, TEXT, TEXT, TEXT, LONG, TEXT, DECIMAL, TEXT),
+    SUPPLIER("supplier", 128, LONG, TEXT, TEXT, LONG, TEXT, DECIMAL, TEXT),
+    PART_SUPP("partsupp", 150, LONG, LONG, LONG, DECIMAL, TEXT),
+    NATION("nation", 90, LONG, TEXT, LONG, TEXT),
+    REGION("region", 135, LONG, TEXT, TEXT);
 
     private final String name;
     private final int fieldCount;
+    private final ColumnType[] columnTypes;
 
     /**
      * 预计算好的行长度
@@ -36,9 +45,10 @@ public enum TpchTableModel {
      */
     private final int rowStrLen;
 
-    TpchTableModel(String name, int fieldCount, int rowStrLen) {
+    TpchTableModel(String name, int rowStrLen, ColumnType... columnTypes) {
         this.name = name;
-        this.fieldCount = fieldCount;
+        this.fieldCount = columnTypes.length;
+        this.columnTypes = columnTypes;
         this.rowStrLen = rowStrLen;
     }
 
@@ -63,6 +73,10 @@ public enum TpchTableModel {
         return fieldCount;
     }
 
+    public ColumnType[] getColumnTypes() {
+        return columnTypes;
+    }
+
     public int getRowStrLen() {
         return rowStrLen;
     }
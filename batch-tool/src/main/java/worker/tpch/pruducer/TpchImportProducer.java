@@ -18,6 +18,7 @@ package worker.tpch.pruducer;
 
 import com.lmax.disruptor.RingBuffer;
 import model.ProducerExecutionContext;
+import model.config.InsertMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import worker.common.Producer;
@@ -31,8 +32,14 @@ import worker.tpch.generator.RegionGenerator;
 import worker.tpch.generator.SupplierGenerator;
 import worker.tpch.generator.TableRowGenerator;
 import worker.tpch.model.BatchInsertSqlEvent;
+import worker.tpch.model.TpchRowBatch;
 import worker.tpch.model.TpchTableModel;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -44,22 +51,45 @@ import java.util.stream.Collectors;
 
 import static model.config.GlobalVar.EMIT_BATCH_SIZE;
 
+/**
+ * 生成器按列写入一批数据后, 根据导入方式
+ * 拼接为 SQL 文本、交给消费者预编译或 LOAD DATA 写入, 或直接写出 .tbl 文件
+ */
 public class TpchImportProducer implements Producer {
 
     private static final Logger logger = LoggerFactory.getLogger(TpchImportProducer.class);
 
+    private static final int FILE_BUFFER_SIZE = 1024 * 1024;
+
     private final ProducerExecutionContext context;
     private final RingBuffer<BatchInsertSqlEvent> ringBuffer;
+    private final InsertMode insertMode;
+    /**
+     * 不为空时直接生成文件, 不写入数据库
+     */
+    private final File outputDir;
     private final ThreadPoolExecutor executor;
     private final int scale;
+    /**
+     * 大表按 CPU 核数切分
+     */
+    private final int minPartCount;
     private int workerCount;
 
     private Map<TpchTableModel, List<TableRowGenerator>> tableGeneratorsMap;
 
     public TpchImportProducer(ProducerExecutionContext context, List<String> tableNames,
                               RingBuffer<BatchInsertSqlEvent> ringBuffer) {
+        this(context, tableNames, ringBuffer, InsertMode.TEXT);
+    }
+
+    public TpchImportProducer(ProducerExecutionContext context, List<String> tableNames,
+                              RingBuffer<BatchInsertSqlEvent> ringBuffer, InsertMode insertMode) {
         this.context = context;
         this.ringBuffer = ringBuffer;
+        this.insertMode = insertMode;
+        this.outputDir = context.getTpchOutputDir() == null ? null : new File(context.getTpchOutputDir());
+        this.minPartCount = Runtime.getRuntime().availableProcessors();
 
         this.scale = context.getScale();
         if (scale <= 0) {
@@ -128,6 +158,14 @@ public class TpchImportProducer implements Producer {
         return this.workerCount;
     }
 
+    /**
+     * 分片数不少于 CPU 核数
+     * 每个分片的起始行与行数取决于分片数, 只有所有分片的并集与分片数无关
+     */
+    private int getPartCount(int defaultPartCount) {
+        return Math.max(defaultPartCount, minPartCount);
+    }
+
     private void addRegionGenerator() {
         List<TableRowGenerator> regions = new ArrayList<>(1);
         regions.add(new RegionGenerator());
@@ -148,6 +186,7 @@ public class TpchImportProducer implements Producer {
             customerPart = 4;
         }
 
+        customerPart = getPartCount(customerPart);
         List<TableRowGenerator> customers = new ArrayList<>(customerPart);
         for (int i = 1; i <= customerPart; i++) {
             customers.add(new CustomerGenerator(scale, i, customerPart));
@@ -163,6 +202,7 @@ public class TpchImportProducer implements Producer {
             partPart = 5;
         }
 
+        partPart = getPartCount(partPart);
         List<TableRowGenerator> parts = new ArrayList<>(partPart);
         for (int i = 1; i <= partPart; i++) {
             parts.add(new PartGenerator(scale, i, partPart));
@@ -171,7 +211,7 @@ public class TpchImportProducer implements Producer {
     }
 
     private void addSupplierGenerator() {
-        final int supplierPart = 1;
+        final int supplierPart = scale < 10 ? 1 : getPartCount(1);
 
         List<TableRowGenerator> suppliers = new ArrayList<>(supplierPart);
         for (int i = 1; i <= supplierPart; i++) {
@@ -191,6 +231,7 @@ public class TpchImportProducer implements Producer {
             partSuppPart = 10;
         }
 
+        partSuppPart = getPartCount(partSuppPart);
         List<TableRowGenerator> partSupps = new ArrayList<>(partSuppPart);
         for (int i = 1; i <= partSuppPart; i++) {
             partSupps.add(new PartSupplierGenerator(scale, i, partSuppPart));
@@ -209,6 +250,7 @@ public class TpchImportProducer implements Producer {
             ordersPart = 30;
         }
 
+        ordersPart = getPartCount(ordersPart);
         List<TableRowGenerator> orders = new ArrayList<>(ordersPart);
         for (int i = 1; i <= ordersPart; i++) {
             orders.add(new OrderGenerator(scale, i, ordersPart));
@@ -228,6 +270,7 @@ public class TpchImportProducer implements Producer {
             lineitemPart = 60;
         }
 
+        lineitemPart = getPartCount(lineitemPart);
         List<TableRowGenerator> lineitems = new ArrayList<>(lineitemPart);
         for (int i = 1; i <= lineitemPart; i++) {
             lineitems.add(new LineItemGenerator(scale, i, lineitemPart));
@@ -255,8 +298,13 @@ public class TpchImportProducer implements Producer {
                     int part = partMap.getOrDefault(table, 1);
 
                     TableRowGenerator nextGenerator = entry.getValue().next();
-                    TpchTableWorker producer = new TpchTableWorker(ringBuffer,
-                        nextGenerator, table.getName(), table.getRowStrLen(), part);
+                    Runnable producer;
+                    if (outputDir != null) {
+                        producer = new TpchFileWorker(nextGenerator, table, part,
+                            tableGeneratorsMap.get(table).size());
+                    } else {
+                        producer = new TpchTableWorker(ringBuffer, nextGenerator, table, part);
+                    }
                     executor.submit(producer);
 
                     partMap.put(table, part + 1);
@@ -273,36 +321,39 @@ public class TpchImportProducer implements Producer {
         protected final RingBuffer<BatchInsertSqlEvent> ringBuffer;
         protected final StringBuilder sqlBuffer;
         protected final TableRowGenerator rowGenerator;
+        protected final TpchTableModel table;
         protected final String tableName;
-        protected final int estimateRowLen;
         protected final int part;
-        protected int bufferedLineCount = 0;
+        protected TpchRowBatch rowBatch;
 
         TpchTableWorker(RingBuffer<BatchInsertSqlEvent> ringBuffer, TableRowGenerator rowGenerator,
-                        String tableName, int estimateRowLen, int part) {
+                        TpchTableModel table, int part) {
             this.ringBuffer = ringBuffer;
             this.rowGenerator = rowGenerator;
-            this.tableName = tableName;
-            this.estimateRowLen = estimateRowLen;
+            this.table = table;
+            this.tableName = table.getName();
             this.part = part;
+            this.rowBatch = new TpchRowBatch(table, EMIT_BATCH_SIZE);
 
-            this.sqlBuffer = new StringBuilder("INSERT INTO  VALUES ()".length() +
-                this.tableName.length() + EMIT_BATCH_SIZE * (2 + estimateRowLen));
-            refreshBuffer();
+            if (insertMode == InsertMode.TEXT) {
+                this.sqlBuffer = new StringBuilder("INSERT INTO  VALUES ()".length() +
+                    this.tableName.length() + EMIT_BATCH_SIZE * (2 + table.getRowStrLen()));
+            } else {
+                this.sqlBuffer = null;
+            }
         }
 
         @Override
         public void run() {
             try {
                 while (rowGenerator.hasNext()) {
-                    rowGenerator.appendNextRow(sqlBuffer);
-                    bufferedLineCount++;
-                    if (bufferedLineCount >= EMIT_BATCH_SIZE) {
-                        emitLineBuffer();
+                    rowGenerator.fillBatch(rowBatch);
+                    if (rowBatch.isFull()) {
+                        emitRowBatch();
                     }
                 }
-                if (bufferedLineCount != 0) {
-                    emitLineBuffer();
+                if (!rowBatch.isEmpty()) {
+                    emitRowBatch();
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -312,26 +363,78 @@ public class TpchImportProducer implements Producer {
             }
         }
 
-        protected void emitLineBuffer() {
+        protected void emitRowBatch() {
             long sequence = ringBuffer.next();
             BatchInsertSqlEvent event;
             try {
                 event = ringBuffer.get(sequence);
-                // 最后一个逗号替换为分号
-                sqlBuffer.setCharAt(sqlBuffer.length() - 1, ';');
-                String sql = sqlBuffer.toString();
-                event.setSql(sql);
-                refreshBuffer();
+                if (insertMode == InsertMode.TEXT) {
+                    event.setSql(buildInsertSql());
+                    event.setRowBatch(null, null);
+                    rowBatch.clear();
+                } else {
+                    // 由消费者编码, 交出后换用新的缓冲区
+                    event.setSql(null);
+                    event.setRowBatch(tableName, rowBatch);
+                    rowBatch = new TpchRowBatch(table, EMIT_BATCH_SIZE);
+                }
             } finally {
-                bufferedLineCount = 0;
                 context.getEmittedDataCounter().getAndIncrement();
                 ringBuffer.publish(sequence);
             }
         }
 
-        private void refreshBuffer() {
+        private String buildInsertSql() {
             sqlBuffer.setLength(0);
             sqlBuffer.append("INSERT INTO `").append(tableName).append("` VALUES ");
+            for (int row = 0; row < rowBatch.getRowCount(); row++) {
+                if (row > 0) {
+                    sqlBuffer.append(',');
+                }
+                rowBatch.appendSqlValues(sqlBuffer, row);
+            }
+            sqlBuffer.append(';');
+            return sqlBuffer.toString();
+        }
+    }
+
+    /**
+     * 每个分片写出一个与 dbgen 同名的文件: table.tbl 或 table.tbl.分片号
+     */
+    class TpchFileWorker implements Runnable {
+        private final TableRowGenerator rowGenerator;
+        private final TpchTableModel table;
+        private final int part;
+        private final int partCount;
+
+        TpchFileWorker(TableRowGenerator rowGenerator, TpchTableModel table, int part, int partCount) {
+            this.rowGenerator = rowGenerator;
+            this.table = table;
+            this.part = part;
+            this.partCount = partCount;
+        }
+
+        @Override
+        public void run() {
+            String filename = partCount == 1 ? table.getName() + ".tbl" : table.getName() + ".tbl." + part;
+            File file = new File(outputDir, filename);
+            TpchRowBatch rowBatch = new TpchRowBatch(table, EMIT_BATCH_SIZE);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), FILE_BUFFER_SIZE)) {
+                while (rowGenerator.hasNext()) {
+                    rowBatch.clear();
+                    rowGenerator.fillBatch(rowBatch);
+                    rowBatch.writeTbl(out);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to write {}: {}", file.getPath(), e.getMessage());
+                context.setException(e);
+            } catch (Exception e) {
+                context.setException(e);
+                throw e;
+            } finally {
+                context.getCountDownLatch().countDown();
+                logger.info("{} generate done", file.getPath());
+            }
         }
     }
 }
@@ -95,6 +95,27 @@ public class StringBufferUtil {
      * @param days 自从1970-01-01经过的天数
      */
     public static void formatDateByDays(StringBuilder sqlBuffer, int days) {
+        int packed = toPackedDate(days);
+        int year = packed / 10000;
+        int month = packed / 100 % 100;
+        int dom = packed % 100;
+
+        sqlBuffer.append(year).append('-');
+        if (month < 10) {
+            sqlBuffer.append('0');
+        }
+        sqlBuffer.append(month).append('-');
+        if (dom < 10) {
+            sqlBuffer.append('0');
+        }
+        sqlBuffer.append(dom);
+    }
+
+    /**
+     * @param days 自从1970-01-01经过的天数
+     * @return yyyyMMdd 形式的整数
+     */
+    public static int toPackedDate(int days) {
         long zeroDay = days + DAYS_0000_TO_1970 - 60;
         long adjust = 0;
         if (zeroDay < 0) {
@@ -118,16 +139,6 @@ public class StringBufferUtil {
         yearEst += marchMonth0 / 10;
 
         // skip valid check
-        int year = (int) yearEst;
-
-        sqlBuffer.append(year).append('-');
-        if (month < 10) {
-            sqlBuffer.append('0');
-        }
-        sqlBuffer.append(month).append('-');
-        if (dom < 10) {
-            sqlBuffer.append('0');
-        }
-        sqlBuffer.append(dom);
+        return (int) yearEst * 10000 + month * 100 + dom;
     }
 }
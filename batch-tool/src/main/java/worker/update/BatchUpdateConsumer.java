@@ -0,0 +1,136 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.update;
+
+import model.db.FieldMetaInfo;
+import model.db.PrimaryKey;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import worker.common.BaseDefaultConsumer;
+import worker.util.UpdateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 每批数据拼接为一条更新语句
+ * 有 where 条件时与派生表做 UPDATE JOIN, 否则使用 INSERT ... ON DUPLICATE KEY UPDATE
+ */
+public class BatchUpdateConsumer extends BaseDefaultConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(BatchUpdateConsumer.class);
+
+    private Set<Integer> pkIndexSet;
+    private List<FieldMetaInfo> fieldMetaInfoList;
+    private List<FieldMetaInfo> pkFields;
+    private List<FieldMetaInfo> updatedFields;
+    private String where;
+    private boolean useUpsert;
+    private boolean useValuesRow;
+
+    @Override
+    protected void initLocalVars() {
+        super.initLocalVars();
+
+        this.pkIndexSet = consumerContext.getTablePkIndexSet(tableName);
+        this.fieldMetaInfoList = consumerContext.getTableFieldMetaInfo(tableName).getFieldMetaInfoList();
+        this.pkFields = getPkFields(consumerContext.getTablePkList(tableName), fieldMetaInfoList);
+        this.updatedFields = UpdateUtil.getUpdatedFields(pkIndexSet, fieldMetaInfoList);
+        this.where = consumerContext.getWhereCondition();
+        this.useUpsert = StringUtils.isEmpty(where);
+        this.useValuesRow = consumerContext.isValuesRowSupported();
+    }
+
+    private static List<FieldMetaInfo> getPkFields(List<PrimaryKey> pkList, List<FieldMetaInfo> fieldMetaInfoList) {
+        List<FieldMetaInfo> pkFields = new ArrayList<>(pkList.size());
+        for (PrimaryKey primaryKey : pkList) {
+            int pkIndex = primaryKey.getOrdinalPosition() - 1;
+            for (FieldMetaInfo fieldMetaInfo : fieldMetaInfoList) {
+                if (fieldMetaInfo.getIndex() == pkIndex) {
+                    pkFields.add(fieldMetaInfo);
+                    break;
+                }
+            }
+        }
+        return pkFields;
+    }
+
+    @Override
+    protected void fillLocalBuffer(StringBuilder stringBuilder, List<String> values) {
+        if (useUpsert) {
+            stringBuilder.append("(")
+                .append(UpdateUtil.getUpdatedValuesByMetaInfo(pkIndexSet, values, fieldMetaInfoList))
+                .append("),");
+            return;
+        }
+        boolean firstRow = stringBuilder.length() == 0;
+        if (useValuesRow) {
+            stringBuilder.append("ROW(");
+        } else {
+            stringBuilder.append(firstRow ? "SELECT " : " UNION ALL SELECT ");
+        }
+        int column = 0;
+        for (FieldMetaInfo pkField : pkFields) {
+            appendColumn(stringBuilder, formatPkValue(pkField, values.get(pkField.getIndex())), column++, firstRow);
+        }
+        for (FieldMetaInfo field : updatedFields) {
+            appendColumn(stringBuilder, UpdateUtil.formatUpdatedValue(field, values.get(field.getIndex())),
+                column++, firstRow);
+        }
+        if (useValuesRow) {
+            stringBuilder.append("),");
+        }
+    }
+
+    /**
+     * UNION ALL 的第一行需要指定列名
+     */
+    private void appendColumn(StringBuilder stringBuilder, String value, int column, boolean firstRow) {
+        if (column > 0) {
+            stringBuilder.append(',');
+        }
+        stringBuilder.append(value);
+        if (firstRow && !useValuesRow) {
+            stringBuilder.append(" AS ").append(UpdateUtil.getDerivedColumnName(column));
+        }
+    }
+
+    private static String formatPkValue(FieldMetaInfo pkField, String value) {
+        if (pkField.getType() == FieldMetaInfo.Type.INT || pkField.getType() == FieldMetaInfo.Type.FLOAT) {
+            return value;
+        }
+        return "'" + value + "'";
+    }
+
+    @Override
+    protected String getSql(StringBuilder data) {
+        if (useUpsert) {
+            // 去除最后的逗号
+            data.setLength(data.length() - 1);
+            return UpdateUtil.getBatchUpsertSql(tableName, consumerContext.getToUpdateColumns(),
+                updatedFields, data.toString());
+        }
+        if (useValuesRow) {
+            // 去除最后的逗号
+            data.setLength(data.length() - 1);
+            return UpdateUtil.getBatchUpdateJoinSql(tableName, pkFields, updatedFields,
+                "VALUES " + data, where);
+        }
+        return UpdateUtil.getBatchUpdateJoinSql(tableName, pkFields, updatedFields, data.toString(), where);
+    }
+}
@@ -44,4 +44,11 @@ public class ShardedReplaceConsumer extends BaseShardedConsumer {
         return UpdateUtil.getBatchReplaceSqlWithHint(topology.getGroupName(),
             topology.getTableName(), consumerContext.getToUpdateColumns(), data.toString());
     }
+
+    @Override
+    protected String getSqlWithoutHint(StringBuilder data) {
+        // 去除最后的逗号
+        data.setLength(data.length() - 1);
+        return UpdateUtil.getBatchReplaceSql(tableName, consumerContext.getToUpdateColumns(), data.toString());
+    }
 }
@@ -22,6 +22,8 @@ import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import util.DbUtil;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import static worker.util.PolarxHint.DIRECT_NODE_HINT;
@@ -31,6 +33,11 @@ public class DeleteUtil {
     private static final String BATCH_DELETE_HINT_SQL_PATTERN =
         DIRECT_NODE_HINT + "DELETE FROM `%s` WHERE (%s) IN (%s) ";
 
+    /**
+     * 末列连续的整数主键达到该数量时合并为 BETWEEN
+     */
+    private static final int MIN_RANGE_KEY_COUNT = 3;
+
     private static final String BATCH_DELETE_WHERE_HINT_SQL_PATTERN =
         DIRECT_NODE_HINT + "DELETE FROM `%s` WHERE (%s) IN (%s) "
             + "AND %s";
@@ -161,4 +168,159 @@ public class DeleteUtil {
         String deleteSqlPattern = "delete from %s where (%s) in (%s)";
         return String.format(deleteSqlPattern, tableName, pkNames, inPkValues);
     }
+
+    /**
+     * 按主键批量删除
+     * 排序后末列连续的整数主键合并为 BETWEEN, 其余主键使用元组 IN
+     *
+     * @param nodeName 物理分片的 group, 为 null 时不加 hint
+     * @param pkFields 主键字段, 按主键中的顺序
+     * @param keys 主键值, 会被原地排序
+     */
+    public static String getKeyBatchDeleteSql(String nodeName, String tableName, List<FieldMetaInfo> pkFields,
+                                              List<String[]> keys, String where) {
+        StringBuilder sql = new StringBuilder(keys.size() * 16 + 64);
+        if (nodeName != null) {
+            sql.append(String.format(DIRECT_NODE_HINT, nodeName));
+        }
+        sql.append("DELETE FROM `").append(tableName).append("` WHERE (");
+        appendKeyBatchCondition(sql, pkFields, keys);
+        sql.append(')');
+        if (!StringUtils.isEmpty(where)) {
+            sql.append(" AND ").append(where);
+        }
+        return sql.append(';').toString();
+    }
+
+    public static void appendKeyBatchCondition(StringBuilder sql, List<FieldMetaInfo> pkFields,
+                                               List<String[]> keys) {
+        keys.sort(getKeyComparator(pkFields));
+        int lastColumn = pkFields.size() - 1;
+        boolean rangeEnabled = pkFields.get(lastColumn).getType() == FieldMetaInfo.Type.INT;
+        Comparator<String[]> prefixComparator = getKeyComparator(pkFields.subList(0, lastColumn));
+        List<String[]> sparseKeys = new ArrayList<>();
+        boolean hasTerm = false;
+        int runStart = 0;
+        while (runStart < keys.size()) {
+            // 与 runStart 前缀相同且末列连续的最长区间 [runStart, runEnd)
+            int runEnd = runStart + 1;
+            int distinctCount = 1;
+            Long prev = rangeEnabled ? parseLong(keys.get(runStart)[lastColumn]) : null;
+            while (prev != null && runEnd < keys.size()
+                && prefixComparator.compare(keys.get(runStart), keys.get(runEnd)) == 0) {
+                Long cur = parseLong(keys.get(runEnd)[lastColumn]);
+                if (cur == null || (cur != prev + 1 && !cur.equals(prev))) {
+                    break;
+                }
+                if (cur != prev.longValue()) {
+                    distinctCount++;
+                }
+                prev = cur;
+                runEnd++;
+            }
+            if (distinctCount >= MIN_RANGE_KEY_COUNT) {
+                if (hasTerm) {
+                    sql.append(" OR ");
+                }
+                appendRangeTerm(sql, pkFields, keys.get(runStart), keys.get(runEnd - 1));
+                hasTerm = true;
+            } else {
+                sparseKeys.addAll(keys.subList(runStart, runEnd));
+            }
+            runStart = runEnd;
+        }
+        if (!sparseKeys.isEmpty()) {
+            if (hasTerm) {
+                sql.append(" OR ");
+            }
+            appendInTerm(sql, pkFields, sparseKeys);
+        }
+    }
+
+    private static void appendRangeTerm(StringBuilder sql, List<FieldMetaInfo> pkFields,
+                                        String[] lowerKey, String[] upperKey) {
+        int lastColumn = pkFields.size() - 1;
+        sql.append('(');
+        for (int i = 0; i < lastColumn; i++) {
+            sql.append('`').append(pkFields.get(i).getName()).append("`=");
+            appendKeyValue(sql, pkFields.get(i), lowerKey[i]);
+            sql.append(" AND ");
+        }
+        sql.append('`').append(pkFields.get(lastColumn).getName()).append("` BETWEEN ")
+            .append(lowerKey[lastColumn].trim()).append(" AND ").append(upperKey[lastColumn].trim()).append(')');
+    }
+
+    private static void appendInTerm(StringBuilder sql, List<FieldMetaInfo> pkFields, List<String[]> keys) {
+        boolean singleColumn = pkFields.size() == 1;
+        sql.append('(');
+        for (int i = 0; i < pkFields.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append('`').append(pkFields.get(i).getName()).append('`');
+        }
+        sql.append(") IN (");
+        for (int k = 0; k < keys.size(); k++) {
+            if (k > 0) {
+                sql.append(',');
+            }
+            if (!singleColumn) {
+                sql.append('(');
+            }
+            String[] key = keys.get(k);
+            for (int i = 0; i < key.length; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                appendKeyValue(sql, pkFields.get(i), key[i]);
+            }
+            if (!singleColumn) {
+                sql.append(')');
+            }
+        }
+        sql.append(')');
+    }
+
+    private static void appendKeyValue(StringBuilder sql, FieldMetaInfo pkField, String value) {
+        if (pkField.needQuote()) {
+            sql.append('\'').append(StringEscapeUtils.escapeSql(value)).append('\'');
+        } else {
+            sql.append(value);
+        }
+    }
+
+    /**
+     * 整数列按数值比较, 超出 long 范围的值排在最后
+     */
+    private static Comparator<String[]> getKeyComparator(List<FieldMetaInfo> pkFields) {
+        return (a, b) -> {
+            for (int i = 0; i < pkFields.size(); i++) {
+                int cmp;
+                if (pkFields.get(i).getType() == FieldMetaInfo.Type.INT) {
+                    Long x = parseLong(a[i]), y = parseLong(b[i]);
+                    if (x != null && y != null) {
+                        cmp = Long.compare(x, y);
+                    } else if (x == null && y == null) {
+                        cmp = a[i].compareTo(b[i]);
+                    } else {
+                        cmp = x == null ? 1 : -1;
+                    }
+                } else {
+                    cmp = a[i].compareTo(b[i]);
+                }
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
@@ -22,8 +22,8 @@ import model.db.FieldMetaInfo;
 import model.db.TableTopology;
 import org.apache.commons.lang.StringUtils;
 import util.DbUtil;
-import util.FileUtil;
 import worker.export.order.OrderByExportEvent;
+import worker.export.order.OrderBySortable;
 import worker.export.order.ParallelOrderByExportEvent;
 
 import java.util.Comparator;
@@ -185,90 +185,33 @@ public class ExportUtil {
     }
 
     public static Comparator<OrderByExportEvent> getCombinedComparator(List<FieldMetaInfo> orderByColumnInfoList) {
-        Comparator<OrderByExportEvent> comparator = (o1, o2) -> {
-            String val1, val2;
-            int res;
-            for (FieldMetaInfo fieldMetaInfo : orderByColumnInfoList) {
-                val1 = new String(o1.getData()[fieldMetaInfo.getIndex()]);
-                val2 = new String(o2.getData()[fieldMetaInfo.getIndex()]);
-                // NULL值先默认最小
-                if (val1.equals(FileUtil.NULL_ESC_STR)) {
-                    if (val2.equals(FileUtil.NULL_ESC_STR)) {
-                        return 0;
-                    } else {
-                        return -1;
-                    }
-                }
-                if (val2.equals(FileUtil.NULL_ESC_STR)) {
-                    return 1;
-                }
-                switch (fieldMetaInfo.getType()) {
-                case STRING:
-                case OTHER:
-                default:
-                    res = val1.compareTo(val2);
-                    break;
-                case INT:
-                    res = Integer.compare(Integer.parseInt(val1), Integer.parseInt(val2));
-                    break;
-                case FLOAT:
-                    res = Double.compare(Double.parseDouble(val1), Double.parseDouble(val2));
-                    break;
-                }
-                if (res != 0) {
-                    return res;
-                }
-            }
-            return 0;
-        };
-        return comparator;
+        return getSortKeyComparator(orderByColumnInfoList);
     }
 
     public static Comparator<ParallelOrderByExportEvent> getCombinedParallelOrderComparator(
         List<FieldMetaInfo> orderByColumnInfoList) {
-        Comparator<ParallelOrderByExportEvent> comparator = (o1, o2) -> {
-            String val1, val2;
-            int res;
-            for (FieldMetaInfo fieldMetaInfo : orderByColumnInfoList) {
-                val1 = new String(o1.getData()[fieldMetaInfo.getIndex()]);
-                val2 = new String(o2.getData()[fieldMetaInfo.getIndex()]);
-                // NULL值先默认最小
-                if (val1.equals(FileUtil.NULL_ESC_STR)) {
-                    if (val2.equals(FileUtil.NULL_ESC_STR)) {
-                        return 0;
-                    } else {
-                        return -1;
-                    }
-                }
-                if (val2.equals(FileUtil.NULL_ESC_STR)) {
-                    return 1;
-                }
-                switch (fieldMetaInfo.getType()) {
-                case STRING:
-                case OTHER:
-                default:
-                    res = val1.compareTo(val2);
-                    break;
-                case INT:
-                    res = Integer.compare(Integer.parseInt(val1), Integer.parseInt(val2));
-                    break;
-                case FLOAT:
-                    res = Double.compare(Double.parseDouble(val1), Double.parseDouble(val2));
-                    break;
-                }
-                if (res != 0) {
-                    return res;
-                }
-            }
-            return 0;
-        };
-        return comparator;
+        return getSortKeyComparator(orderByColumnInfoList);
     }
 
-    public static String getFilename(String filename, CompressMode compressMode) {
-        if (compressMode == CompressMode.GZIP) {
-            return filename + ".gz";
+    /**
+     * 每行的排序键只编码一次, 之后按字节比较
+     */
+    public static <T extends OrderBySortable> Comparator<T> getSortKeyComparator(
+        List<FieldMetaInfo> orderByColumnInfoList) {
+        SortKeyEncoder encoder = new SortKeyEncoder(orderByColumnInfoList);
+        return (o1, o2) -> SortKeyEncoder.compare(getSortKey(o1, encoder), getSortKey(o2, encoder));
+    }
+
+    private static byte[] getSortKey(OrderBySortable row, SortKeyEncoder encoder) {
+        byte[] sortKey = row.getSortKey();
+        if (sortKey == null) {
+            sortKey = encoder.encode(row.getData());
+            row.setSortKey(sortKey);
         }
-        return filename;
+        return sortKey;
+    }
+
+    public static String getFilename(String filename, CompressMode compressMode) {
+        return filename + compressMode.getSuffix();
     }
 }
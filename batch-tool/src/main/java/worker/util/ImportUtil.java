@@ -20,8 +20,10 @@ import exception.DatabaseException;
 import model.config.GlobalVar;
 import model.db.FieldMetaInfo;
 import org.apache.commons.lang.StringUtils;
+import util.DbUtil;
 import util.FileUtil;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static worker.util.PolarxHint.DIRECT_NODE_HINT;
@@ -46,6 +48,23 @@ public class ImportUtil {
     private static final String BATCH_INSERT_IGNORE_HINT_SQL_PATTERN =
         DIRECT_NODE_HINT + "INSERT IGNORE INTO `%s` VALUES %s;";
 
+    /**
+     * 需转义的 ASCII 字符 -> 反斜杠后的字符, 0 表示无需转义
+     */
+    private static final char[] SQL_ESCAPE_TABLE = new char[128];
+
+    static {
+        SQL_ESCAPE_TABLE['\\'] = '\\';
+        SQL_ESCAPE_TABLE['\b'] = 'b';
+        SQL_ESCAPE_TABLE['\n'] = 'n';
+        SQL_ESCAPE_TABLE['\r'] = 'r';
+        SQL_ESCAPE_TABLE['\t'] = 't';
+        SQL_ESCAPE_TABLE[0x1A] = 'Z';
+        SQL_ESCAPE_TABLE[0x00] = '0';
+        SQL_ESCAPE_TABLE['\''] = '\'';
+        SQL_ESCAPE_TABLE['"'] = '"';
+    }
+
     public static String getBatchInsertSql(String tableName, String values, boolean insertIgnoreEnabled) {
         if (insertIgnoreEnabled) {
             return String.format(BATCH_INSERT_IGNORE_SQL_PATTERN, tableName, values);
@@ -101,32 +120,64 @@ public class ImportUtil {
         }
         if (sqlEscapeEnabled) {
             // 字符串要考虑转义
-            sqlStringBuilder.append("'")
-                .append(escapeSqlSpecialChar(rawValue))
-                .append("'");
+            sqlStringBuilder.append('\'');
+            appendEscapedSqlValue(sqlStringBuilder, rawValue);
+            sqlStringBuilder.append('\'');
         } else {
             sqlStringBuilder.append("'").append(rawValue).append("'");
         }
     }
 
+    private static char escapeOf(char c) {
+        return c < SQL_ESCAPE_TABLE.length ? SQL_ESCAPE_TABLE[c] : 0;
+    }
+
     /**
      * For MySQL
      * don't use StringEscapeUtils.escapeSql
+     * 单次扫描直接追加到 sqlStringBuilder, 无特殊字符时原样追加
      */
-    private static String escapeSqlSpecialChar(String sqlValue) {
-        if (!StringUtils.isEmpty(sqlValue)) {
-            // 先处理反斜杠 \
-            sqlValue = sqlValue.replaceAll("\\\\", "\\\\\\\\")
-                .replaceAll("\b", "\\\\b")
-                .replaceAll("\n", "\\\\n")
-                .replaceAll("\r", "\\\\r")
-                .replaceAll("\t", "\\\\t")
-                .replaceAll("\\x1A", "\\\\Z")
-                .replaceAll("\\x00", "\\\\0")
-                .replaceAll("'", "\\\\'")
-                .replaceAll("\"", "\\\\\"");
-        }
-        return sqlValue;
+    public static void appendEscapedSqlValue(StringBuilder sqlStringBuilder, String sqlValue) {
+        final int len = sqlValue.length();
+        int i = 0;
+        while (i < len && escapeOf(sqlValue.charAt(i)) == 0) {
+            i++;
+        }
+        if (i == len) {
+            sqlStringBuilder.append(sqlValue);
+            return;
+        }
+        sqlStringBuilder.ensureCapacity(sqlStringBuilder.length() + len + 16);
+        int start = 0;
+        for (; i < len; i++) {
+            char escaped = escapeOf(sqlValue.charAt(i));
+            if (escaped != 0) {
+                sqlStringBuilder.append(sqlValue, start, i).append('\\').append(escaped);
+                start = i + 1;
+            }
+        }
+        sqlStringBuilder.append(sqlValue, start, len);
+    }
+
+    /**
+     * 字节版本, 适用于特殊字符不会出现在多字节字符中间的字符集 (如 UTF-8)
+     *
+     * @param dest 从 destOffset 起至少需要 2 * length 的空间
+     * @return 写入后 dest 中的结束位置
+     */
+    public static int escapeSqlSpecialChar(byte[] src, int offset, int length, byte[] dest, int destOffset) {
+        int pos = destOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = src[i];
+            char escaped = b >= 0 ? SQL_ESCAPE_TABLE[b] : 0;
+            if (escaped != 0) {
+                dest[pos++] = '\\';
+                dest[pos++] = (byte) escaped;
+            } else {
+                dest[pos++] = b;
+            }
+        }
+        return pos;
     }
 
     /**
@@ -181,6 +232,115 @@ public class ImportUtil {
         stringBuilder.append(");");
     }
 
+    /**
+     * LOAD DATA LOCAL INFILE ... (@c0,@c1,...) SET `col` = IF(...)
+     * NULL 与空值的处理和文本语句保持一致
+     *
+     * @param columns 指定的列名, 与文件中的字段一一对应, 为 null 时使用全部列
+     * @param enclosedByQuote 字段可能被双引号包围, 两个连续双引号转义为一个
+     * @param escaped 文件中的值已经过反斜杠转义
+     */
+    public static String getLoadDataSql(String tableName, String columns, List<FieldMetaInfo> fieldMetaInfoList,
+                                        String sep, String mysqlCharset, boolean enclosedByQuote,
+                                        boolean escaped, boolean withLastSep, boolean ignore) {
+        if (columns != null) {
+            fieldMetaInfoList = getColumnFieldMetaInfo(columns, fieldMetaInfoList);
+        }
+        checkLoadDataBinaryFields(fieldMetaInfoList);
+        StringBuilder sqlBuilder = new StringBuilder(256);
+        sqlBuilder.append("LOAD DATA LOCAL INFILE 'batch-tool' ");
+        if (ignore) {
+            sqlBuilder.append("IGNORE ");
+        }
+        sqlBuilder.append("INTO TABLE ").append(DbUtil.surroundWithBacktick(tableName))
+            .append(" CHARACTER SET ").append(mysqlCharset)
+            .append(" FIELDS TERMINATED BY '");
+        appendEscapedSqlValue(sqlBuilder, sep);
+        sqlBuilder.append('\'');
+        if (enclosedByQuote) {
+            sqlBuilder.append(" OPTIONALLY ENCLOSED BY '\"'");
+        }
+        sqlBuilder.append(" ESCAPED BY '").append(escaped ? "\\\\" : "").append('\'')
+            .append(" LINES TERMINATED BY '\\n' (");
+        int fieldLen = fieldMetaInfoList.size();
+        for (int i = 0; i < fieldLen; i++) {
+            if (i > 0) {
+                sqlBuilder.append(',');
+            }
+            sqlBuilder.append("@c").append(i);
+        }
+        if (withLastSep) {
+            // 行尾分隔符之后的空字段
+            sqlBuilder.append(",@dummy");
+        }
+        sqlBuilder.append(") SET ");
+        for (int i = 0; i < fieldLen; i++) {
+            FieldMetaInfo fieldMetaInfo = fieldMetaInfoList.get(i);
+            if (i > 0) {
+                sqlBuilder.append(',');
+            }
+            String var = "@c" + i;
+            sqlBuilder.append(DbUtil.surroundWithBacktick(fieldMetaInfo.getName()))
+                .append(" = IF(").append(var).append(" = '");
+            appendEscapedSqlValue(sqlBuilder, FileUtil.NULL_ESC_STR_IN_QUOTE);
+            sqlBuilder.append('\'');
+            if (!fieldMetaInfo.needQuote()) {
+                // 非字符串字段空值视为NULL
+                sqlBuilder.append(" OR ").append(var).append(" = ''");
+            }
+            sqlBuilder.append(", NULL, ");
+            if (fieldMetaInfo.getType() == FieldMetaInfo.Type.BINARY) {
+                sqlBuilder.append("UNHEX(").append(var).append(')');
+            } else {
+                sqlBuilder.append(var);
+            }
+            sqlBuilder.append(')');
+        }
+        return sqlBuilder.toString();
+    }
+
+    /**
+     * 检查 LOAD DATA 能否按与文本语句相同的方式导入二进制字段
+     *
+     * @param columns 指定导入的列, 为 null 时导入所有列
+     */
+    public static void checkLoadDataSupported(String columns, List<FieldMetaInfo> fieldMetaInfoList) {
+        if (columns != null) {
+            fieldMetaInfoList = getColumnFieldMetaInfo(columns, fieldMetaInfoList);
+        }
+        checkLoadDataBinaryFields(fieldMetaInfoList);
+    }
+
+    /**
+     * 关闭 -hex 时文本语句将文件中的二进制值作为 SQL 字面量拼入语句,
+     * LOAD DATA 的字段由服务端原样解析, 无法得到相同的值
+     */
+    private static void checkLoadDataBinaryFields(List<FieldMetaInfo> fieldMetaInfoList) {
+        if (GlobalVar.BINARY_AS_HEX) {
+            return;
+        }
+        for (FieldMetaInfo fieldMetaInfo : fieldMetaInfoList) {
+            if (fieldMetaInfo.getType() == FieldMetaInfo.Type.BINARY) {
+                throw new UnsupportedOperationException("Insert mode LOAD_DATA requires binary values in hex format, "
+                    + "column: " + fieldMetaInfo.getName());
+            }
+        }
+    }
+
+    private static List<FieldMetaInfo> getColumnFieldMetaInfo(String columns,
+                                                             List<FieldMetaInfo> fieldMetaInfoList) {
+        List<FieldMetaInfo> columnMetaInfoList = new ArrayList<>();
+        for (String column : StringUtils.split(columns, ',')) {
+            String name = column.trim();
+            FieldMetaInfo metaInfo = fieldMetaInfoList.stream()
+                .filter(fieldMetaInfo -> fieldMetaInfo.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown column " + name));
+            columnMetaInfoList.add(metaInfo);
+        }
+        return columnMetaInfoList;
+    }
+
     public static String getBatchInsertSqlWithHint(String nodeName, String tableName, String data,
                                                    boolean insertIgnoreEnabled) {
         if (insertIgnoreEnabled) {
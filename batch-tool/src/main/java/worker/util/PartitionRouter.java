@@ -0,0 +1,672 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.util;
+
+import model.db.AutoPartitionInfo;
+import model.db.FieldMetaInfo;
+import model.db.TableTopology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.FileUtil;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 在客户端计算 AUTO 模式表中每行数据所在的分区
+ * 只支持 RANGE / LIST 分区, 且分区键的类型与排序规则能在客户端精确复现
+ * 使用前需通过 {@link #verify(Connection)} 与服务端的路由结果比对
+ */
+public abstract class PartitionRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionRouter.class);
+
+    private static final int MAX_VERIFY_SAMPLES = 16;
+
+    private static final int MAX_VERIFY_PROBES = 128;
+
+    private static final Pattern EXPLAIN_TABLES_PATTERN = Pattern.compile("tables=\"([^\"]+)\"");
+
+    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{4})-(\\d{1,2})-(\\d{1,2})");
+
+    private static final Pattern DATETIME_PATTERN = Pattern.compile(
+        "(\\d{4})-(\\d{1,2})-(\\d{1,2})(?:[ T](\\d{1,2}):(\\d{1,2}):(\\d{1,2})(?:\\.(\\d{1,6}))?)?");
+
+    private static final String MAX_VALUE = "MAXVALUE";
+
+    /**
+     * 分区键在客户端的比较方式
+     */
+    enum KeyKind {
+        INT,
+        DECIMAL,
+        /**
+         * utf8mb4_general_ci 等: ASCII 字符按大写字母的权重比较
+         */
+        STRING_GENERAL_CI,
+        /**
+         * utf8mb4_bin 等: 按码点比较
+         */
+        STRING_BIN,
+        DATE,
+        DATETIME
+    }
+
+    protected final AutoPartitionInfo partitionInfo;
+    protected final int[] keyIndexes;
+    protected final KeyKind[] keyKinds;
+    protected final int[] keyScales;
+    private final List<TableTopology> topologyList;
+
+    protected PartitionRouter(AutoPartitionInfo partitionInfo) {
+        this.partitionInfo = partitionInfo;
+        List<FieldMetaInfo> keyFields = partitionInfo.getKeyFields();
+        List<AutoPartitionInfo.ColumnType> keyColumnTypes = partitionInfo.getKeyColumnTypes();
+        this.keyIndexes = new int[keyFields.size()];
+        this.keyKinds = new KeyKind[keyFields.size()];
+        this.keyScales = new int[keyFields.size()];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            keyIndexes[i] = keyFields.get(i).getIndex();
+            keyKinds[i] = resolveKind(keyFields.get(i), keyColumnTypes.get(i));
+            keyScales[i] = keyColumnTypes.get(i).getScale();
+        }
+        this.topologyList = new ArrayList<>(partitionInfo.getPartitions().size());
+        for (AutoPartitionInfo.Partition partition : partitionInfo.getPartitions()) {
+            topologyList.add(partition.getTopology());
+        }
+    }
+
+    /**
+     * HASH / KEY 分区的哈希函数未在客户端实现, 交由 CN 路由
+     */
+    public static PartitionRouter create(AutoPartitionInfo partitionInfo) {
+        switch (partitionInfo.getMethod()) {
+        case RANGE:
+        case RANGE_COLUMNS:
+            return new RangeRouter(partitionInfo);
+        case LIST:
+        case LIST_COLUMNS:
+            return new ListRouter(partitionInfo);
+        default:
+            throw new UnsupportedOperationException("Partition method is not supported: "
+                + partitionInfo.getMethod());
+        }
+    }
+
+    /**
+     * 其余类型 (浮点数, TIMESTAMP, 其他排序规则等) 的比较规则无法精确复现
+     */
+    static KeyKind resolveKind(FieldMetaInfo keyField, AutoPartitionInfo.ColumnType columnType) {
+        switch (columnType.getDataType()) {
+        case "tinyint":
+        case "smallint":
+        case "mediumint":
+        case "int":
+        case "integer":
+        case "bigint":
+            return KeyKind.INT;
+        case "decimal":
+        case "numeric":
+            return KeyKind.DECIMAL;
+        case "char":
+        case "varchar":
+            String collation = columnType.getCollation() == null ? "" :
+                columnType.getCollation().toLowerCase(Locale.ROOT);
+            switch (collation) {
+            case "utf8mb4_general_ci":
+            case "utf8mb3_general_ci":
+            case "utf8_general_ci":
+                return KeyKind.STRING_GENERAL_CI;
+            case "utf8mb4_bin":
+            case "utf8mb3_bin":
+            case "utf8_bin":
+                return KeyKind.STRING_BIN;
+            default:
+                break;
+            }
+            break;
+        case "date":
+            return KeyKind.DATE;
+        case "datetime":
+            return KeyKind.DATETIME;
+        default:
+            break;
+        }
+        throw new UnsupportedOperationException("Partition key type is not supported: "
+            + keyField.getName() + " " + columnType);
+    }
+
+    /**
+     * 分区序号与 {@link #getTopologyList()} 一一对应
+     */
+    public List<TableTopology> getTopologyList() {
+        return topologyList;
+    }
+
+    /**
+     * @param values 一行数据的所有字段
+     * @return 分区序号, 无法确定时返回 -1, 交由 CN 路由
+     */
+    public int route(List<String> values) {
+        Comparable<?>[] key = new Comparable<?>[keyIndexes.length];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            key[i] = parseValue(values.get(keyIndexes[i]), keyKinds[i], keyScales[i]);
+            if (key[i] == null) {
+                return -1;
+            }
+        }
+        return routeKey(key);
+    }
+
+    protected abstract int routeKey(Comparable<?>[] key);
+
+    /**
+     * 用于校验的分区键取值
+     */
+    protected abstract List<String[]> getSampleKeys();
+
+    /**
+     * 在分区边界及其附近的取值上比对客户端与服务端的路由结果:
+     * 大小写, 末尾空白, 排序规则中位置特殊的字符, 不补零的日期等
+     */
+    List<String[]> getProbeKeys() {
+        List<String[]> samples = getSampleKeys();
+        if (samples.size() > MAX_VERIFY_SAMPLES) {
+            samples = samples.subList(0, MAX_VERIFY_SAMPLES);
+        }
+        List<String[]> probes = new ArrayList<>(samples);
+        for (String[] sample : samples) {
+            for (int i = 0; i < sample.length; i++) {
+                for (String variant : getVariants(sample[i], keyKinds[i], keyScales[i])) {
+                    String[] probe = sample.clone();
+                    probe[i] = variant;
+                    probes.add(probe);
+                }
+            }
+        }
+        return probes.size() > MAX_VERIFY_PROBES ? probes.subList(0, MAX_VERIFY_PROBES) : probes;
+    }
+
+    private static Set<String> getVariants(String value, KeyKind kind, int scale) {
+        Set<String> variants = new LinkedHashSet<>();
+        Comparable<?> parsed = parseValue(value, kind, scale);
+        if (parsed == null) {
+            return variants;
+        }
+        switch (kind) {
+        case INT:
+            long longValue = (Long) parsed;
+            if (longValue > Long.MIN_VALUE) {
+                variants.add(String.valueOf(longValue - 1));
+            }
+            break;
+        case DECIMAL:
+            variants.add(((BigDecimal) parsed).subtract(BigDecimal.ONE.movePointLeft(scale)).toPlainString());
+            break;
+        case STRING_GENERAL_CI:
+        case STRING_BIN:
+            variants.add(value.toUpperCase(Locale.ROOT));
+            variants.add(value.toLowerCase(Locale.ROOT));
+            variants.add(value + " ");
+            variants.add(value + "\t");
+            if (!value.isEmpty()) {
+                String prefix = value.substring(0, value.length() - 1);
+                variants.add(prefix);
+                for (char c : new char[] {'0', '[', '_', '`', '~'}) {
+                    variants.add(prefix + c);
+                }
+            }
+            break;
+        case DATE:
+            LocalDate date = (LocalDate) parsed;
+            variants.add(date.getYear() + "-" + date.getMonthValue() + "-" + date.getDayOfMonth());
+            variants.add(date.minusDays(1).toString());
+            break;
+        case DATETIME:
+            LocalDateTime dateTime = (LocalDateTime) parsed;
+            variants.add(dateTime.getYear() + "-" + dateTime.getMonthValue() + "-" + dateTime.getDayOfMonth()
+                + " " + dateTime.getHour() + ":" + dateTime.getMinute() + ":" + dateTime.getSecond());
+            LocalDateTime before = dateTime.minusSeconds(1);
+            variants.add(before.toLocalDate() + " " + before.toLocalTime().withNano(0));
+            break;
+        default:
+            break;
+        }
+        variants.remove(value);
+        return variants;
+    }
+
+    /**
+     * 用 EXPLAIN 比对样本数据在服务端裁剪后的物理表
+     * 客户端无法路由的样本不参与比对
+     *
+     * @return 全部一致时才能在客户端路由
+     */
+    public boolean verify(Connection conn) throws SQLException {
+        List<FieldMetaInfo> keyFields = partitionInfo.getKeyFields();
+        int checked = 0;
+        try (Statement stmt = conn.createStatement()) {
+            for (String[] sample : getProbeKeys()) {
+                List<String> values = new ArrayList<>();
+                for (int i = 0; i <= Arrays.stream(keyIndexes).max().orElse(0); i++) {
+                    values.add(null);
+                }
+                StringBuilder sql = new StringBuilder("EXPLAIN SELECT 1 FROM `")
+                    .append(partitionInfo.getTableName()).append("` WHERE ");
+                for (int i = 0; i < sample.length; i++) {
+                    values.set(keyIndexes[i], sample[i]);
+                    if (i > 0) {
+                        sql.append(" AND ");
+                    }
+                    sql.append('`').append(keyFields.get(i).getName()).append("`=");
+                    appendLiteral(sql, sample[i], keyKinds[i]);
+                }
+                int partition = route(values);
+                if (partition < 0) {
+                    continue;
+                }
+                String serverTable = getExplainedTable(stmt, sql.toString());
+                String expectedTable = topologyList.get(partition).getTableName();
+                if (!isSameTable(serverTable, expectedTable)) {
+                    logger.warn("表 {} 的分区计算结果与服务端不一致, 样本 {}: 客户端 {}, 服务端 {}",
+                        partitionInfo.getTableName(), Arrays.toString(sample), expectedTable, serverTable);
+                    return false;
+                }
+                checked++;
+            }
+        }
+        if (checked == 0) {
+            logger.warn("表 {} 没有可用于比对分区计算结果的样本", partitionInfo.getTableName());
+            return false;
+        }
+        return true;
+    }
+
+    private static String getExplainedTable(Statement stmt, String sql) throws SQLException {
+        try (ResultSet resultSet = stmt.executeQuery(sql)) {
+            while (resultSet.next()) {
+                Matcher matcher = EXPLAIN_TABLES_PATTERN.matcher(resultSet.getString(1));
+                if (matcher.find()) {
+                    return matcher.group(1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameTable(String serverTable, String expectedTable) {
+        if (serverTable == null) {
+            return false;
+        }
+        serverTable = serverTable.toLowerCase(Locale.ROOT);
+        expectedTable = expectedTable.toLowerCase(Locale.ROOT);
+        return serverTable.equals(expectedTable) || serverTable.endsWith("." + expectedTable);
+    }
+
+    private static void appendLiteral(StringBuilder sql, String value, KeyKind kind) {
+        if (kind == KeyKind.INT || kind == KeyKind.DECIMAL) {
+            sql.append(value);
+            return;
+        }
+        sql.append('\'').append(value.replace("\\", "\\\\").replace("'", "''")).append('\'');
+    }
+
+    /**
+     * 按服务端写入时的转换规则解析分区键
+     * 会被服务端舍入、截断或按其他格式解释的取值一律返回 null
+     *
+     * @param scale DECIMAL 的小数位数或 DATETIME 的秒精度
+     * @return 无法精确解析时返回 null
+     */
+    static Comparable<?> parseValue(String value, KeyKind kind, int scale) {
+        if (value == null || value.equals(FileUtil.NULL_ESC_STR_IN_QUOTE)) {
+            return null;
+        }
+        switch (kind) {
+        case INT:
+            try {
+                return Long.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        case DECIMAL:
+            try {
+                BigDecimal decimal = new BigDecimal(value.trim()).stripTrailingZeros();
+                return decimal.scale() > scale ? null : decimal;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        case STRING_GENERAL_CI:
+        case STRING_BIN:
+            return CollatedString.of(value, kind);
+        case DATE:
+            return parseDate(value);
+        case DATETIME:
+            return parseDateTime(value, scale);
+        default:
+            return null;
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        Matcher matcher = DATE_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            int year = Integer.parseInt(matcher.group(1));
+            // 零日期及 1000 年之前的日期不在客户端处理
+            if (year < 1000) {
+                return null;
+            }
+            return LocalDate.of(year, Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String value, int fsp) {
+        Matcher matcher = DATETIME_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String fraction = matcher.group(7);
+        // 超出列精度的小数秒会被服务端舍入
+        if (fraction != null && fraction.length() > fsp) {
+            return null;
+        }
+        try {
+            int year = Integer.parseInt(matcher.group(1));
+            if (year < 1000) {
+                return null;
+            }
+            LocalDate date = LocalDate.of(year, Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(3)));
+            if (matcher.group(4) == null) {
+                return date.atStartOfDay();
+            }
+            int nanos = 0;
+            if (fraction != null) {
+                nanos = Integer.parseInt((fraction + "000000000").substring(0, 9));
+            }
+            return date.atTime(Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)),
+                Integer.parseInt(matcher.group(6)), nanos);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按排序规则的权重比较的字符串, 比较时较短的一方以空格补齐 (PAD SPACE)
+     */
+    static final class CollatedString implements Comparable<CollatedString> {
+        /**
+         * 去掉末尾空格后的权重
+         */
+        private final int[] weights;
+
+        private CollatedString(int[] weights) {
+            this.weights = weights;
+        }
+
+        /**
+         * general_ci 只处理 ASCII 字符, bin 只处理基本多文种平面内的字符
+         */
+        static CollatedString of(String value, KeyKind kind) {
+            int[] weights = value.codePoints().toArray();
+            int end = weights.length;
+            while (end > 0 && weights[end - 1] == ' ') {
+                end--;
+            }
+            for (int i = 0; i < end; i++) {
+                int c = weights[i];
+                if (kind == KeyKind.STRING_GENERAL_CI) {
+                    if (c >= 128) {
+                        return null;
+                    }
+                    if (c >= 'a' && c <= 'z') {
+                        weights[i] = c - 'a' + 'A';
+                    }
+                } else if (c > 0xFFFF) {
+                    return null;
+                }
+            }
+            return new CollatedString(Arrays.copyOf(weights, end));
+        }
+
+        @Override
+        public int compareTo(CollatedString o) {
+            int n = Math.min(weights.length, o.weights.length);
+            for (int i = 0; i < n; i++) {
+                if (weights[i] != o.weights[i]) {
+                    return Integer.compare(weights[i], o.weights[i]);
+                }
+            }
+            int[] longer = weights.length > n ? weights : o.weights;
+            int sign = weights.length > n ? 1 : -1;
+            for (int i = n; i < longer.length; i++) {
+                if (longer[i] != ' ') {
+                    return longer[i] > ' ' ? sign : -sign;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollatedString && Arrays.equals(weights, ((CollatedString) o).weights);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(weights);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValue(Comparable a, Comparable b) {
+        return a.compareTo(b);
+    }
+
+    /**
+     * 按逗号切分分区描述, 忽略引号与括号内的逗号
+     */
+    static List<String> splitDescription(String description) {
+        List<String> tokens = new ArrayList<>();
+        int depth = 0, start = 0;
+        char quote = 0;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                tokens.add(description.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        tokens.add(description.substring(start).trim());
+        return tokens;
+    }
+
+    static String unquote(String token) {
+        if (token.length() >= 2) {
+            char first = token.charAt(0);
+            if ((first == '\'' || first == '"') && token.charAt(token.length() - 1) == first) {
+                String quote = String.valueOf(first);
+                return token.substring(1, token.length() - 1).replace(quote + quote, quote);
+            }
+        }
+        return token;
+    }
+
+    /**
+     * 解析一组边界值, MAXVALUE 解析为 null
+     */
+    Comparable<?>[] parseBound(List<String> tokens, boolean allowMaxValue) {
+        if (tokens.size() != keyKinds.length) {
+            throw new UnsupportedOperationException("Illegal partition bound of " + partitionInfo.getTableName()
+                + ": " + tokens);
+        }
+        Comparable<?>[] bound = new Comparable<?>[tokens.size()];
+        for (int i = 0; i < bound.length; i++) {
+            String token = tokens.get(i);
+            if (allowMaxValue && MAX_VALUE.equalsIgnoreCase(token)) {
+                continue;
+            }
+            bound[i] = parseValue(unquote(token), keyKinds[i], keyScales[i]);
+            if (bound[i] == null) {
+                throw new UnsupportedOperationException("Illegal partition bound of "
+                    + partitionInfo.getTableName() + ": " + token);
+            }
+        }
+        return bound;
+    }
+
+    static String[] unquoteAll(List<String> tokens) {
+        String[] values = new String[tokens.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = unquote(tokens.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * VALUES LESS THAN, 上界不包含
+     */
+    static class RangeRouter extends PartitionRouter {
+        private final Comparable<?>[][] upperBounds;
+        private final List<String[]> samples = new ArrayList<>();
+
+        RangeRouter(AutoPartitionInfo partitionInfo) {
+            super(partitionInfo);
+            List<AutoPartitionInfo.Partition> partitions = partitionInfo.getPartitions();
+            this.upperBounds = new Comparable<?>[partitions.size()][];
+            for (int i = 0; i < upperBounds.length; i++) {
+                List<String> tokens = splitDescription(partitions.get(i).getDescription());
+                upperBounds[i] = parseBound(tokens, true);
+                if (tokens.stream().noneMatch(MAX_VALUE::equalsIgnoreCase)) {
+                    samples.add(unquoteAll(tokens));
+                }
+            }
+        }
+
+        @Override
+        protected int routeKey(Comparable<?>[] key) {
+            int low = 0, high = upperBounds.length - 1, result = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (compareToBound(key, upperBounds[mid]) < 0) {
+                    result = mid;
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return result;
+        }
+
+        private static int compareToBound(Comparable<?>[] key, Comparable<?>[] bound) {
+            for (int i = 0; i < key.length; i++) {
+                if (bound[i] == null) {
+                    // MAXVALUE
+                    return -1;
+                }
+                int cmp = compareValue(key[i], bound[i]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        protected List<String[]> getSampleKeys() {
+            return samples;
+        }
+    }
+
+    /**
+     * VALUES IN, 未命中时使用 DEFAULT 分区
+     */
+    static class ListRouter extends PartitionRouter {
+        private final Map<List<Comparable<?>>, Integer> valueMap = new HashMap<>();
+        private final List<String[]> samples = new ArrayList<>();
+        private int defaultPartition = -1;
+
+        ListRouter(AutoPartitionInfo partitionInfo) {
+            super(partitionInfo);
+            List<AutoPartitionInfo.Partition> partitions = partitionInfo.getPartitions();
+            for (int i = 0; i < partitions.size(); i++) {
+                String description = partitions.get(i).getDescription().trim();
+                if ("DEFAULT".equalsIgnoreCase(description)) {
+                    defaultPartition = i;
+                    continue;
+                }
+                boolean firstValue = true;
+                for (String element : splitDescription(description)) {
+                    if ("NULL".equalsIgnoreCase(element)) {
+                        continue;
+                    }
+                    if (element.startsWith("(") && element.endsWith(")")) {
+                        element = element.substring(1, element.length() - 1);
+                    }
+                    List<String> tokens = keyKinds.length == 1 ? Arrays.asList(element) : splitDescription(element);
+                    valueMap.put(Arrays.asList(parseBound(tokens, false)), i);
+                    if (firstValue) {
+                        samples.add(unquoteAll(tokens));
+                        firstValue = false;
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected int routeKey(Comparable<?>[] key) {
+            Integer partition = valueMap.get(Arrays.asList(key));
+            return partition != null ? partition : defaultPartition;
+        }
+
+        @Override
+        protected List<String[]> getSampleKeys() {
+            return samples;
+        }
+    }
+}
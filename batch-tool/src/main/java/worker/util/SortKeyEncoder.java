@@ -0,0 +1,261 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package worker.util;
+
+import model.db.FieldMetaInfo;
+import util.FileUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 将一行数据的排序字段编码为一个字节数组, 编码结果按无符号字节序比较即为排序结果
+ * 每行只编码一次, 归并时的比较不再解析字段值
+ * <p>
+ * 每个字段以一个标记字节开头, NULL 值只有标记字节且排在最前
+ * 整数与小数统一编码为 (符号, 十进制指数, 有效数字), 精确比较 BIGINT 与 DECIMAL
+ * TIME 编码为微秒数, 其余类型按原始字节比较
+ */
+public class SortKeyEncoder {
+
+    private static final byte TAG_NULL = 0x00;
+    private static final byte TAG_NOT_NULL = 0x01;
+    private static final byte TAG_NEGATIVE = 0x01;
+    private static final byte TAG_ZERO = 0x02;
+    private static final byte TAG_POSITIVE = 0x03;
+
+    private final int[] columnIndexes;
+    private final FieldMetaInfo.Type[] columnTypes;
+
+    public SortKeyEncoder(List<FieldMetaInfo> orderByColumnInfoList) {
+        int columnCount = orderByColumnInfoList.size();
+        this.columnIndexes = new int[columnCount];
+        this.columnTypes = new FieldMetaInfo.Type[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnIndexes[i] = orderByColumnInfoList.get(i).getIndex();
+            columnTypes[i] = orderByColumnInfoList.get(i).getType();
+        }
+    }
+
+    /**
+     * 线程安全
+     */
+    public byte[] encode(byte[][] rowData) {
+        int capacity = 0;
+        for (int index : columnIndexes) {
+            capacity += rowData[index].length * 2 + 16;
+        }
+        KeyBuilder builder = new KeyBuilder(capacity);
+        for (int i = 0; i < columnIndexes.length; i++) {
+            byte[] value = rowData[columnIndexes[i]];
+            if (Arrays.equals(value, FileUtil.NULL_ESC_BYTE)) {
+                builder.put(TAG_NULL);
+                continue;
+            }
+            switch (columnTypes[i]) {
+            case INT:
+            case FLOAT:
+                encodeDecimal(builder, value);
+                break;
+            case DATE:
+            case DATETIME:
+                if (isTime(value)) {
+                    builder.put(TAG_NOT_NULL);
+                    builder.putLong(parseTimeMicros(value));
+                } else {
+                    encodeBytes(builder, value);
+                }
+                break;
+            default:
+                encodeBytes(builder, value);
+                break;
+            }
+        }
+        return builder.toByteArray();
+    }
+
+    public static int compare(byte[] key1, byte[] key2) {
+        return Arrays.compareUnsigned(key1, key2);
+    }
+
+    /**
+     * 0x00 转义为 0x00 0xFF, 以 0x00 0x00 结尾, 保证多个字段拼接后的比较结果正确
+     */
+    private static void encodeBytes(KeyBuilder builder, byte[] value) {
+        builder.put(TAG_NOT_NULL);
+        for (byte b : value) {
+            builder.put(b);
+            if (b == 0) {
+                builder.put((byte) 0xFF);
+            }
+        }
+        builder.put((byte) 0);
+        builder.put((byte) 0);
+    }
+
+    /**
+     * 数值表示为 0.d1d2...dn * 10^E (d1 不为 0, dn 不为 0)
+     * 正数依次写入 E 与各位数字, 并以 0x00 结尾; 负数写入的字节按位取反
+     */
+    private static void encodeDecimal(KeyBuilder builder, byte[] value) {
+        int pos = 0, len = value.length;
+        boolean negative = false;
+        if (pos < len && (value[pos] == '-' || value[pos] == '+')) {
+            negative = value[pos] == '-';
+            pos++;
+        }
+        byte[] digits = new byte[len];
+        int digitCount = 0;
+        int pointPos = -1;
+        long exponent = 0;
+        for (; pos < len; pos++) {
+            byte b = value[pos];
+            if (b >= '0' && b <= '9') {
+                if (digitCount == 0 && b == '0') {
+                    // 去掉开头的 0
+                    if (pointPos >= 0) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                digits[digitCount++] = b;
+                if (pointPos < 0) {
+                    exponent++;
+                }
+            } else if (b == '.' && pointPos < 0) {
+                pointPos = pos;
+            } else if (b == 'e' || b == 'E') {
+                exponent += parseExponent(value, pos + 1);
+                break;
+            } else {
+                throw new IllegalArgumentException("Illegal numeric value: " + new String(value));
+            }
+        }
+        while (digitCount > 0 && digits[digitCount - 1] == '0') {
+            digitCount--;
+        }
+        if (digitCount == 0) {
+            builder.put(TAG_ZERO);
+            return;
+        }
+        builder.put(negative ? TAG_NEGATIVE : TAG_POSITIVE);
+        int mask = negative ? 0xFF : 0;
+        int biasedExponent = (int) exponent ^ Integer.MIN_VALUE;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            builder.put((byte) ((biasedExponent >>> shift) ^ mask));
+        }
+        for (int i = 0; i < digitCount; i++) {
+            builder.put((byte) (digits[i] ^ mask));
+        }
+        builder.put((byte) mask);
+    }
+
+    private static int parseExponent(byte[] value, int pos) {
+        boolean negative = false;
+        if (pos < value.length && (value[pos] == '-' || value[pos] == '+')) {
+            negative = value[pos] == '-';
+            pos++;
+        }
+        if (pos == value.length) {
+            throw new IllegalArgumentException("Illegal numeric value: " + new String(value));
+        }
+        int exponent = 0;
+        for (; pos < value.length; pos++) {
+            byte b = value[pos];
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("Illegal numeric value: " + new String(value));
+            }
+            exponent = exponent * 10 + (b - '0');
+        }
+        return negative ? -exponent : exponent;
+    }
+
+    /**
+     * TIME 类型的取值范围为 -838:59:59 到 838:59:59, 不能直接按字节比较
+     */
+    private static boolean isTime(byte[] value) {
+        boolean hasColon = false;
+        for (int i = 0; i < value.length; i++) {
+            byte b = value[i];
+            if (b == ':') {
+                hasColon = true;
+            } else if ((b == '-' && i > 0) || b == ' ') {
+                return false;
+            }
+        }
+        return hasColon;
+    }
+
+    private static long parseTimeMicros(byte[] value) {
+        int pos = 0;
+        boolean negative = value[0] == '-';
+        if (negative) {
+            pos++;
+        }
+        long seconds = 0;
+        long part = 0;
+        for (; pos < value.length && value[pos] != '.'; pos++) {
+            if (value[pos] == ':') {
+                seconds = (seconds + part) * 60;
+                part = 0;
+            } else {
+                part = part * 10 + (value[pos] - '0');
+            }
+        }
+        seconds += part;
+        long micros = 0;
+        int fractionDigits = 0;
+        for (pos++; pos < value.length && fractionDigits < 6; pos++, fractionDigits++) {
+            micros = micros * 10 + (value[pos] - '0');
+        }
+        for (; fractionDigits < 6; fractionDigits++) {
+            micros *= 10;
+        }
+        micros += seconds * 1000_000L;
+        return negative ? -micros : micros;
+    }
+
+    private static class KeyBuilder {
+        private byte[] buf;
+        private int len = 0;
+
+        KeyBuilder(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        void put(byte b) {
+            if (len == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            buf[len++] = b;
+        }
+
+        /**
+         * 翻转符号位后按大端序写入
+         */
+        void putLong(long value) {
+            value ^= Long.MIN_VALUE;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                put((byte) (value >>> shift));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+    }
+}
@@ -180,45 +180,124 @@ public class UpdateUtil {
                                                 List<FieldMetaInfo> fieldMetaInfoList,
                                                 List<String> values) {
         List<String> updatedValueList = new ArrayList<>(fieldMetaInfoList.size() - pkIndexSet.size());
-        String fieldValue;
-        int fieldIntValue;
-        float fieldFloatValue;
+        String updatedValue;
         for (FieldMetaInfo fieldMetaInfo : fieldMetaInfoList) {
-            fieldValue = values.get(fieldMetaInfo.getIndex());
             if (pkIndexSet.contains(fieldMetaInfo.getIndex())) {
                 // 主键不在set的值里面
                 continue;
             }
-            if (fieldValue.equals(FileUtil.NULL_ESC_STR)) {
-                // NULL值不变
-                updatedValueList.add(fieldMetaInfo.getName() + "=" + FileUtil.NULL_STR);
+            updatedValue = formatUpdatedValue(fieldMetaInfo, values.get(fieldMetaInfo.getIndex()));
+            if (updatedValue != null) {
+                updatedValueList.add(fieldMetaInfo.getName() + "=" + updatedValue);
+            }
+        }
+        return StringUtils.join(updatedValueList, ",");
+    }
+
+    /**
+     * @return 更新后的值, 该类型的字段不更新时返回 null
+     */
+    public static String formatUpdatedValue(FieldMetaInfo fieldMetaInfo, String fieldValue) {
+        if (fieldValue.equals(FileUtil.NULL_ESC_STR)) {
+            // NULL值不变
+            return FileUtil.NULL_STR;
+        }
+        // 更新数据
+        switch (fieldMetaInfo.getType()) {
+        case STRING:
+            // 反转字符串
+            return "'" + StringUtils.reverse(fieldValue) + "'";
+        case INT:
+            // 整型直接乘2 不考虑溢出
+            return String.valueOf(Integer.parseInt(fieldValue) * INT_UPDATE_MULTIPLICAND);
+        case FLOAT:
+            // 使用float 不用BigDecimal
+            return String.valueOf(Float.parseFloat(fieldValue) * FLOAT_UPDATE_MULTIPLICAND);
+        default:
+            // 默认不变
+            return null;
+        }
+    }
+
+    /**
+     * 会被更新的非主键字段
+     */
+    public static List<FieldMetaInfo> getUpdatedFields(Set<Integer> pkIndexSet,
+                                                       List<FieldMetaInfo> fieldMetaInfoList) {
+        List<FieldMetaInfo> updatedFields = new ArrayList<>(fieldMetaInfoList.size());
+        for (FieldMetaInfo fieldMetaInfo : fieldMetaInfoList) {
+            if (pkIndexSet.contains(fieldMetaInfo.getIndex())) {
                 continue;
             }
-            // 更新数据
             switch (fieldMetaInfo.getType()) {
             case STRING:
-                // 反转字符串
-                updatedValueList.add(fieldMetaInfo.getName() + "='"
-                    + StringUtils.reverse(fieldValue) + "'");
-                break;
             case INT:
-                // 整型直接乘2 不考虑溢出
-                fieldIntValue = Integer.parseInt(fieldValue);
-                updatedValueList.add(fieldMetaInfo.getName() + "=" +
-                    fieldIntValue * INT_UPDATE_MULTIPLICAND);
-                break;
             case FLOAT:
-                // 使用float 不用BigDecimal
-                fieldFloatValue = Float.parseFloat(fieldValue);
-                updatedValueList.add(fieldMetaInfo.getName() + "=" +
-                    fieldFloatValue * FLOAT_UPDATE_MULTIPLICAND);
+                updatedFields.add(fieldMetaInfo);
                 break;
             default:
-                // 默认不变
                 break;
             }
         }
-        return StringUtils.join(updatedValueList, ",");
+        return updatedFields;
+    }
+
+    /**
+     * UPDATE `t` JOIN (派生表) AS v ON `t`.pk1=v.column_0 ... SET `t`.col1=v.column_n ... WHERE ...
+     * 派生表的列依次为主键与 updatedFields
+     *
+     * @param derivedTable VALUES ROW(...),... 或 SELECT ... UNION ALL SELECT ...
+     */
+    public static String getBatchUpdateJoinSql(String tableName, List<FieldMetaInfo> pkFields,
+                                               List<FieldMetaInfo> updatedFields, String derivedTable,
+                                               String where) {
+        StringBuilder sql = new StringBuilder(derivedTable.length() + 128);
+        sql.append("UPDATE `").append(tableName).append("` JOIN (").append(derivedTable).append(") AS v ON ");
+        int column = 0;
+        for (FieldMetaInfo pkField : pkFields) {
+            if (column > 0) {
+                sql.append(" AND ");
+            }
+            sql.append('`').append(tableName).append("`.`").append(pkField.getName())
+                .append("`=v.").append(getDerivedColumnName(column++));
+        }
+        sql.append(" SET ");
+        for (int i = 0; i < updatedFields.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append('`').append(tableName).append("`.`").append(updatedFields.get(i).getName())
+                .append("`=v.").append(getDerivedColumnName(column++));
+        }
+        if (!StringUtils.isEmpty(where)) {
+            sql.append(" WHERE ").append(where);
+        }
+        return sql.append(';').toString();
+    }
+
+    /**
+     * 与 VALUES 语句默认的列名一致
+     */
+    public static String getDerivedColumnName(int column) {
+        return "column_" + column;
+    }
+
+    /**
+     * INSERT INTO `t`(cols) VALUES (...),... ON DUPLICATE KEY UPDATE col1=VALUES(col1),...
+     */
+    public static String getBatchUpsertSql(String tableName, String columns,
+                                           List<FieldMetaInfo> updatedFields, String data) {
+        StringBuilder sql = new StringBuilder(data.length() + 128);
+        sql.append("INSERT INTO `").append(tableName).append("`(").append(columns).append(") VALUES ")
+            .append(data).append(" ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < updatedFields.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            String name = updatedFields.get(i).getName();
+            sql.append('`').append(name).append("`=VALUES(`").append(name).append("`)");
+        }
+        return sql.append(';').toString();
     }
 
     public static String getUpdateWithFuncSql(String updateWithFuncPattern, List<PrimaryKey> pkList,
@@ -0,0 +1,161 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import com.lmax.disruptor.RingBuffer;
+import model.ProducerExecutionContext;
+import model.stat.SqlStat;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.MyWorkerPool;
+import worker.common.AdaptiveBatchController;
+import worker.common.BatchLineEvent;
+import worker.common.reader.FileBufferedBatchReader;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveBatchTest {
+
+    @Test
+    public void decreaseThenIncreaseTest() {
+        SqlStat sqlStat = new SqlStat();
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 10, 200, 4, 50, () -> 0);
+        controller.addSqlStat(sqlStat);
+
+        // 样本不足时不调整
+        addSamples(sqlStat, 5, 100);
+        controller.adjust();
+        Assert.assertEquals(100, controller.getBatchSize());
+
+        addSamples(sqlStat, 100, 100);
+        controller.adjust();
+        Assert.assertEquals(75, controller.getBatchSize());
+        for (int i = 0; i < 20; i++) {
+            addSamples(sqlStat, 100, 100);
+            controller.adjust();
+        }
+        // 批量行数到下限后减少活跃消费者
+        Assert.assertEquals(10, controller.getBatchSize());
+        Assert.assertEquals(1, controller.getActiveConsumerNum());
+
+        addSamples(sqlStat, 100, 10);
+        controller.adjust();
+        Assert.assertEquals(20, controller.getBatchSize());
+        for (int i = 0; i < 30; i++) {
+            addSamples(sqlStat, 100, 10);
+            controller.adjust();
+        }
+        // 批量行数到上限后恢复活跃消费者
+        Assert.assertEquals(200, controller.getBatchSize());
+        Assert.assertEquals(4, controller.getActiveConsumerNum());
+    }
+
+    @Test
+    public void consumerPermitTest() throws InterruptedException {
+        SqlStat sqlStat = new SqlStat();
+        AdaptiveBatchController controller = new AdaptiveBatchController(1, 1, 1, 2, 50, () -> 0);
+        controller.addSqlStat(sqlStat);
+        addSamples(sqlStat, 100, 100);
+        controller.adjust();
+        Assert.assertEquals(1, controller.getActiveConsumerNum());
+
+        controller.acquireConsumer();
+        Thread waiter = new Thread(() -> {
+            controller.acquireConsumer();
+            controller.releaseConsumer();
+        });
+        waiter.start();
+        waiter.join(200);
+        Assert.assertTrue(waiter.isAlive());
+        controller.releaseConsumer();
+        waiter.join(5000);
+        Assert.assertFalse(waiter.isAlive());
+    }
+
+    /**
+     * 行缓冲区按当前批次大小分配, 批次调大时按需扩容
+     */
+    @Test
+    public void lineBufferSizeTest() {
+        SqlStat sqlStat = new SqlStat();
+        AdaptiveBatchController controller = new AdaptiveBatchController(10, 1, 80, 1, 50, () -> 0);
+        controller.addSqlStat(sqlStat);
+        ProducerExecutionContext context = new ProducerExecutionContext();
+        context.setBatchController(controller);
+        RingBuffer<BatchLineEvent> ringBuffer = MyWorkerPool.createRingBuffer(BatchLineEvent::new, 16);
+        LineReader reader = new LineReader(context, ringBuffer);
+
+        for (int i = 0; i < 15; i++) {
+            reader.append("line" + i);
+        }
+        Assert.assertEquals(0, ringBuffer.getCursor());
+        Assert.assertEquals(10, ringBuffer.get(0).getBatchLines().length);
+        Assert.assertEquals(10, reader.getLineBuffer().length);
+
+        addSamples(sqlStat, 100, 10);
+        controller.adjust();
+        Assert.assertEquals(11, controller.getBatchSize());
+        for (int i = 15; i < 21; i++) {
+            reader.append("line" + i);
+        }
+        // 填充期间批次调大, 第 11 行时扩容后发送
+        Assert.assertEquals(1, ringBuffer.getCursor());
+        String[] lines = ringBuffer.get(1).getBatchLines();
+        Assert.assertEquals("line10", lines[0]);
+        Assert.assertEquals("line20", lines[10]);
+        Assert.assertEquals(20, lines.length);
+        Assert.assertEquals(11, reader.getLineBuffer().length);
+    }
+
+    private static class LineReader extends FileBufferedBatchReader {
+
+        LineReader(ProducerExecutionContext context, RingBuffer<BatchLineEvent> ringBuffer) {
+            super(context, Collections.emptyList(), ringBuffer);
+        }
+
+        void append(String line) {
+            appendToLineBuffer(line);
+        }
+
+        String[] getLineBuffer() {
+            return lineBuffer;
+        }
+
+        @Override
+        protected void init() {
+        }
+
+        @Override
+        protected void readData() {
+        }
+
+        @Override
+        protected void close() {
+        }
+
+        @Override
+        protected void beforePublish() {
+        }
+    }
+
+    private static void addSamples(SqlStat sqlStat, int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            sqlStat.addTimeNs(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.db.FieldMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.util.UpdateUtil;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class BatchUpdateSqlTest {
+
+    private static FieldMetaInfo field(String name, FieldMetaInfo.Type type, int index) {
+        FieldMetaInfo fieldMetaInfo = new FieldMetaInfo();
+        fieldMetaInfo.setName(name);
+        fieldMetaInfo.setType(type);
+        fieldMetaInfo.setIndex(index);
+        return fieldMetaInfo;
+    }
+
+    @Test
+    public void updateJoinTest() {
+        FieldMetaInfo id = field("id", FieldMetaInfo.Type.INT, 0);
+        List<FieldMetaInfo> fields = Arrays.asList(id, field("k", FieldMetaInfo.Type.INT, 1),
+            field("c", FieldMetaInfo.Type.STRING, 2), field("t", FieldMetaInfo.Type.DATETIME, 3));
+        List<FieldMetaInfo> updatedFields = UpdateUtil.getUpdatedFields(new HashSet<>(Collections.singletonList(0)),
+            fields);
+        Assert.assertEquals(2, updatedFields.size());
+
+        String sql = UpdateUtil.getBatchUpdateJoinSql("t1", Collections.singletonList(id), updatedFields,
+            "VALUES ROW(1,4,'ba'),ROW(2,6,'dc')", "k > 0");
+        Assert.assertEquals("UPDATE `t1` JOIN (VALUES ROW(1,4,'ba'),ROW(2,6,'dc')) AS v "
+            + "ON `t1`.`id`=v.column_0 SET `t1`.`k`=v.column_1,`t1`.`c`=v.column_2 WHERE k > 0;", sql);
+    }
+
+    @Test
+    public void upsertTest() {
+        List<FieldMetaInfo> updatedFields = Collections.singletonList(field("c", FieldMetaInfo.Type.STRING, 1));
+        String sql = UpdateUtil.getBatchUpsertSql("t1", "id,c", updatedFields, "(1,'ba'),(2,'dc')");
+        Assert.assertEquals("INSERT INTO `t1`(id,c) VALUES (1,'ba'),(2,'dc') "
+            + "ON DUPLICATE KEY UPDATE `c`=VALUES(`c`);", sql);
+    }
+
+    @Test
+    public void updatedValueTest() {
+        Assert.assertEquals("'cba'", UpdateUtil.formatUpdatedValue(field("c", FieldMetaInfo.Type.STRING, 0), "abc"));
+        Assert.assertEquals("NULL", UpdateUtil.formatUpdatedValue(field("c", FieldMetaInfo.Type.INT, 0), "\\N"));
+        Assert.assertNull(UpdateUtil.formatUpdatedValue(field("c", FieldMetaInfo.Type.DATE, 0), "2020-01-01"));
+    }
+}
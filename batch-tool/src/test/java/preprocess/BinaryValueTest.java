@@ -0,0 +1,105 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.config.GlobalVar;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.insert.PreparedImportConsumer;
+import worker.util.ImportUtil;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 二进制字段在文本语句与预编译语句中的取值需一致
+ */
+public class BinaryValueTest {
+
+    private final boolean binaryAsHex = GlobalVar.BINARY_AS_HEX;
+
+    @After
+    public void restore() {
+        GlobalVar.BINARY_AS_HEX = binaryAsHex;
+    }
+
+    @Test
+    public void hexModeTest() throws SQLException {
+        GlobalVar.BINARY_AS_HEX = true;
+        assertBinary("414243", "unhex('414243')", new byte[] {0x41, 0x42, 0x43});
+        assertBinary("a0f", "unhex('a0f')", new byte[] {0x0a, 0x0f});
+        assertBinary("", "unhex('')", new byte[0]);
+        // 非法的十六进制在服务端得到 NULL
+        assertBinary("4G", "unhex('4G')", null);
+    }
+
+    @Test
+    public void literalModeTest() throws SQLException {
+        GlobalVar.BINARY_AS_HEX = false;
+        assertBinary("0x414243", "0x414243", new byte[] {0x41, 0x42, 0x43});
+        assertBinary("0xa0f", "0xa0f", new byte[] {0x0a, 0x0f});
+        assertBinary("X'00ff'", "X'00ff'", new byte[] {0x00, (byte) 0xff});
+        assertBinary("'it''s\\n中'", "'it''s\\n中'", "it's\n中");
+        assertBinary("\"a\\%\"", "\"a\\%\"", "a\\%");
+        assertBinary("-012", "-012", "-12");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedLiteralTest() throws SQLException {
+        GlobalVar.BINARY_AS_HEX = false;
+        PreparedImportConsumer.bindBinary(newStatement(new Object[1]), 1, "abc");
+    }
+
+    /**
+     * @param expected byte[] 表示绑定二进制, String 表示按连接字符集绑定字符串, null 表示 NULL
+     */
+    private static void assertBinary(String value, String expectedSql, Object expected) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        ImportUtil.appendInsertBinaryValue(sql, value, true);
+        Assert.assertEquals(expectedSql, sql.toString());
+
+        Object[] bound = new Object[1];
+        PreparedImportConsumer.bindBinary(newStatement(bound), 1, value);
+        if (expected instanceof byte[]) {
+            Assert.assertArrayEquals((byte[]) expected, (byte[]) bound[0]);
+        } else {
+            Assert.assertEquals(expected, bound[0]);
+        }
+    }
+
+    /**
+     * 只记录绑定的参数值
+     */
+    private static PreparedStatement newStatement(Object[] bound) {
+        return (PreparedStatement) Proxy.newProxyInstance(BinaryValueTest.class.getClassLoader(),
+            new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "setBytes":
+                case "setString":
+                    bound[0] = args[1];
+                    return null;
+                case "setNull":
+                    bound[0] = null;
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
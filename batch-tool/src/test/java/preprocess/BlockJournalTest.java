@@ -0,0 +1,107 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.config.BlockCompletionJournal;
+import model.config.BlockEventCounter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class BlockJournalTest {
+
+    @Test
+    public void reopenTest() throws IOException {
+        File file = newJournalFile();
+        try (BlockCompletionJournal journal = BlockCompletionJournal.open(file.getPath(), 2, false)) {
+            journal.markCompleted(0, 3);
+            journal.markCompleted(1, 0);
+            journal.markCompleted(1, 200000);
+            journal.markCompleted(0, 3);
+            journal.flush();
+            Assert.assertEquals(3, journal.getCompletedCount());
+        }
+        // 模拟崩溃时写了一半的记录
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[] {0, 0, 0});
+        }
+        try (BlockCompletionJournal journal = BlockCompletionJournal.open(file.getPath(), 2, false)) {
+            Assert.assertEquals(3, journal.getCompletedCount());
+            Assert.assertTrue(journal.isCompleted(0, 3));
+            Assert.assertTrue(journal.isCompleted(1, 0));
+            Assert.assertTrue(journal.isCompleted(1, 200000));
+            Assert.assertFalse(journal.isCompleted(0, 0));
+            Assert.assertFalse(journal.isCompleted(1, 3));
+            journal.markCompleted(0, 4);
+        }
+        try (BlockCompletionJournal journal = BlockCompletionJournal.open(file.getPath(), 2, false)) {
+            Assert.assertEquals(4, journal.getCompletedCount());
+            Assert.assertTrue(journal.isCompleted(0, 4));
+        }
+        try (BlockCompletionJournal journal = BlockCompletionJournal.open(file.getPath(), 2, true)) {
+            Assert.assertEquals(0, journal.getCompletedCount());
+            Assert.assertFalse(journal.isCompleted(0, 3));
+        }
+    }
+
+    @Test
+    public void counterTest() throws IOException {
+        File file = newJournalFile();
+        BlockEventCounter counter = new BlockEventCounter(1);
+        try (BlockCompletionJournal journal = BlockCompletionJournal.open(file.getPath(), 1, false)) {
+            counter.setJournal(journal);
+            // 读取线程持有的计数
+            counter.retain(0, 0);
+            counter.retain(0, 1);
+            // 两个事件
+            counter.retain(0, 0);
+            counter.retain(0, 0);
+            counter.retain(0, 1);
+            counter.release(0, 0);
+            Assert.assertEquals(0, counter.getMinPendingBlockIndex(0));
+            counter.release(0, 0);
+            counter.release(0, 1);
+            Assert.assertFalse(counter.isCompleted(0, 0));
+            counter.release(0, 0);
+            Assert.assertTrue(counter.isCompleted(0, 0));
+            Assert.assertEquals(1, counter.getMinPendingBlockIndex(0));
+
+            counter.releaseOnFailure(0, 1);
+            Assert.assertFalse(counter.isCompleted(0, 1));
+            Assert.assertEquals(1, counter.getMinPendingBlockIndex(0));
+
+            // 越过文件末尾的读取
+            counter.retain(0, 2);
+            counter.releaseEmpty(0, 2);
+            Assert.assertFalse(counter.isCompleted(0, 2));
+        }
+        try (BlockCompletionJournal journal = BlockCompletionJournal.open(file.getPath(), 1, false)) {
+            Assert.assertEquals(1, journal.getCompletedCount());
+            Assert.assertTrue(journal.isCompleted(0, 0));
+        }
+    }
+
+    private static File newJournalFile() throws IOException {
+        File file = File.createTempFile("history-", ".blocks");
+        file.deleteOnExit();
+        return file;
+    }
+}
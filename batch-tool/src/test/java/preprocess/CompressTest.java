@@ -0,0 +1,232 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.common.reader.BlockDecompressor;
+import worker.common.reader.CompressedFrameIndex;
+import worker.common.reader.GzipBlockInflater;
+import worker.common.reader.Lz4BlockDecompressor;
+import worker.common.reader.ZstdBlockDecompressor;
+import worker.common.writer.FrameCompressOutputStream;
+import worker.common.writer.Lz4FrameOutputStream;
+import worker.common.writer.ParallelGzipOutputStream;
+import worker.common.writer.ZstdFrameOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressTest {
+
+    private static final int MEMBER_SIZE = 10000;
+
+    @Test
+    public void bgzfRandomReadTest() throws IOException {
+        byte[] data = genData(20000);
+        File file = File.createTempFile("bgzf", ".gz");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (int off = 0; off < data.length; off += MEMBER_SIZE) {
+                out.write(bgzfMember(data, off, Math.min(MEMBER_SIZE, data.length - off)));
+            }
+            // BGZF 文件末尾的空成员
+            out.write(bgzfMember(data, 0, 0));
+        }
+        GzipBlockInflater inflater = new GzipBlockInflater();
+        CompressedFrameIndex index = inflater.buildIndex(file);
+        Assert.assertNotNull(index);
+        Assert.assertEquals((data.length + MEMBER_SIZE - 1) / MEMBER_SIZE + 1, index.getFrameCount());
+        checkRandomRead(inflater, index, file, data, 30000);
+    }
+
+    @Test
+    public void parallelGzipTest() throws IOException {
+        byte[] data = genData(250000);
+        File file = File.createTempFile("parallel", ".gz");
+        File indexFile = new File(file.getPath() + ".gzi");
+        file.deleteOnExit();
+        indexFile.deleteOnExit();
+        try (OutputStream out = new ParallelGzipOutputStream(new FileOutputStream(file), 6, indexFile)) {
+            // 按小块写入, 跨越成员边界
+            for (int off = 0; off < data.length; off += 7777) {
+                out.write(data, off, Math.min(7777, data.length - off));
+            }
+        }
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+        GzipBlockInflater inflater = new GzipBlockInflater();
+        CompressedFrameIndex index = inflater.buildIndex(file);
+        Assert.assertNotNull(index);
+        Assert.assertEquals((data.length + FrameCompressOutputStream.FRAME_SIZE - 1)
+            / FrameCompressOutputStream.FRAME_SIZE, index.getFrameCount());
+        checkRandomRead(inflater, index, file, data, 3 * 1024 * 1024);
+    }
+
+    @Test
+    public void zstdFrameRandomReadTest() throws IOException {
+        byte[] data = genData(250000);
+        File file = File.createTempFile("frame", ".zst");
+        file.deleteOnExit();
+        try (OutputStream out = new ZstdFrameOutputStream(new FileOutputStream(file), 3)) {
+            out.write(data);
+        }
+        // 可由标准的流式解压读取
+        try (InputStream in = new ZstdInputStream(new FileInputStream(file))) {
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+        BlockDecompressor decompressor = new ZstdBlockDecompressor();
+        CompressedFrameIndex index = decompressor.buildIndex(file);
+        Assert.assertNotNull(index);
+        Assert.assertEquals((data.length + FrameCompressOutputStream.FRAME_SIZE - 1)
+            / FrameCompressOutputStream.FRAME_SIZE, index.getFrameCount());
+        checkRandomRead(decompressor, index, file, data, 3 * 1024 * 1024);
+    }
+
+    @Test
+    public void lz4FrameRandomReadTest() throws IOException {
+        byte[] data = genData(250000);
+        for (int level : new int[] {0, 9}) {
+            File file = File.createTempFile("frame", ".lz4");
+            file.deleteOnExit();
+            try (OutputStream out = new Lz4FrameOutputStream(new FileOutputStream(file), level)) {
+                out.write(data);
+            }
+            try (InputStream in = new LZ4FrameInputStream(new FileInputStream(file))) {
+                Assert.assertArrayEquals(data, IOUtils.toByteArray(in));
+            }
+            BlockDecompressor decompressor = new Lz4BlockDecompressor();
+            CompressedFrameIndex index = decompressor.buildIndex(file);
+            Assert.assertNotNull(index);
+            Assert.assertEquals((data.length + FrameCompressOutputStream.FRAME_SIZE - 1)
+                / FrameCompressOutputStream.FRAME_SIZE, index.getFrameCount());
+            checkRandomRead(decompressor, index, file, data, 3 * 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void emptyFrameFileTest() throws IOException {
+        File file = File.createTempFile("empty", ".lz4");
+        file.deleteOnExit();
+        new Lz4FrameOutputStream(new FileOutputStream(file), 0).close();
+        try (InputStream in = new LZ4FrameInputStream(new FileInputStream(file))) {
+            Assert.assertEquals(-1, in.read());
+        }
+        CompressedFrameIndex index = new Lz4BlockDecompressor().buildIndex(file);
+        Assert.assertNotNull(index);
+        Assert.assertEquals(1, index.getFrameCount());
+    }
+
+    @Test
+    public void zstdStreamNotSplittableTest() throws IOException {
+        File file = File.createTempFile("stream", ".zst");
+        file.deleteOnExit();
+        try (OutputStream out = new ZstdOutputStream(new FileOutputStream(file))) {
+            out.write(genData(20000));
+        }
+        Assert.assertNull(new ZstdBlockDecompressor().buildIndex(file));
+    }
+
+    @Test
+    public void plainGzipNotSplittableTest() throws IOException {
+        File file = File.createTempFile("plain", ".gz");
+        file.deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(genData(20000));
+        }
+        Assert.assertNull(new GzipBlockInflater().buildIndex(file));
+    }
+
+    private static void checkRandomRead(BlockDecompressor decompressor, CompressedFrameIndex index,
+                                        File file, byte[] data, int maxLen) throws IOException {
+        Random random = new Random(0);
+        byte[] dest = new byte[maxLen];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (int i = 0; i < 200; i++) {
+                long pos = random.nextInt(data.length);
+                int len = 1 + random.nextInt(dest.length);
+                int n = decompressor.read(raf, index, pos, dest, len);
+                int expectedLen = (int) Math.min(len, data.length - pos);
+                Assert.assertEquals(expectedLen, n);
+                Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) pos, (int) pos + n),
+                    Arrays.copyOf(dest, n));
+            }
+            // 从帧的边界开始读取整帧
+            int n = decompressor.read(raf, index, 0, dest, dest.length);
+            Assert.assertEquals(Math.min(dest.length, data.length), n);
+            Assert.assertArrayEquals(Arrays.copyOf(data, n), Arrays.copyOf(dest, n));
+            Assert.assertEquals(-1, decompressor.read(raf, index, data.length, dest, dest.length));
+        } finally {
+            decompressor.close();
+        }
+    }
+
+    private static byte[] genData(int lineCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            sb.append(i).append("|中文").append(i * 7).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bgzfMember(byte[] data, int off, int len) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data, off, len);
+        deflater.finish();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        while (!deflater.finished()) {
+            body.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data, off, len);
+        int blockSize = 18 + body.size() + 8 - 1;
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        member.write(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0,
+            'B', 'C', 2, 0, (byte) blockSize, (byte) (blockSize >> 8)}, 0, 18);
+        member.write(body.toByteArray(), 0, body.size());
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, len);
+        return member.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import org.junit.Assert;
+import org.junit.Test;
+import worker.util.ImportUtil;
+
+import java.nio.charset.StandardCharsets;
+
+public class EscapeTest {
+
+    private static final String[] VALUES = {
+        "", "abc", "\u4e2d\u6587", "a'b", "\"quoted\"", "C:\\dir\\file", "line1\nline2\r\n",
+        "tab\there", "\0nul", "ctrl\u001Az", "back\bspace", "'\\\"\n\r\t\b\0\u001A", "\u4e2d'\u6587\\"};
+
+    @Test
+    public void escapeSameAsRegexTest() {
+        for (String value : VALUES) {
+            StringBuilder sb = new StringBuilder("x");
+            ImportUtil.appendEscapedSqlValue(sb, value);
+            Assert.assertEquals(value, "x" + regexEscape(value), sb.toString());
+        }
+    }
+
+    @Test
+    public void escapeBytesTest() {
+        for (String value : VALUES) {
+            byte[] src = ("#" + value + "#").getBytes(StandardCharsets.UTF_8);
+            byte[] dest = new byte[src.length * 2];
+            int end = ImportUtil.escapeSqlSpecialChar(src, 1, src.length - 2, dest, 0);
+            Assert.assertEquals(value, regexEscape(value), new String(dest, 0, end, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 原有的逐个正则替换实现
+     */
+    private static String regexEscape(String sqlValue) {
+        return sqlValue.replaceAll("\\\\", "\\\\\\\\")
+            .replaceAll("\b", "\\\\b")
+            .replaceAll("\n", "\\\\n")
+            .replaceAll("\r", "\\\\r")
+            .replaceAll("\t", "\\\\t")
+            .replaceAll("\\x1A", "\\\\Z")
+            .replaceAll("\\x00", "\\\\0")
+            .replaceAll("'", "\\\\'")
+            .replaceAll("\"", "\\\\\"");
+    }
+}
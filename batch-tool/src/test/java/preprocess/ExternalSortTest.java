@@ -0,0 +1,124 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.db.FieldMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import util.FileUtil;
+import worker.export.order.ExternalMergeExportConsumer;
+import worker.export.order.ParallelOrderByExportEvent;
+import worker.export.order.SortRunReader;
+import worker.export.order.SortRunWriter;
+import worker.util.SortKeyEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ExternalSortTest {
+
+    private final SortKeyEncoder encoder = new SortKeyEncoder(Collections.singletonList(intField()));
+
+    @Test
+    public void sortRunTest() throws IOException {
+        File runFile = File.createTempFile("sort-run-", ".tmp");
+        runFile.deleteOnExit();
+        byte[][] row1 = row(1, "a,b");
+        byte[][] row2 = {"2".getBytes(), FileUtil.NULL_ESC_BYTE};
+        byte[][] row3 = row(3, new String(new char[300]).replace('\0', 'x'));
+        try (SortRunWriter writer = new SortRunWriter(runFile, 16)) {
+            for (byte[][] row : Arrays.asList(row1, row2, row3)) {
+                writer.write(encoder.encode(row), row);
+            }
+        }
+        try (SortRunReader reader = new SortRunReader(runFile, 2, 16)) {
+            for (byte[][] row : Arrays.asList(row1, row2, row3)) {
+                ParallelOrderByExportEvent event = reader.next();
+                Assert.assertArrayEquals(encoder.encode(row), event.getSortKey());
+                Assert.assertArrayEquals(row, event.getData());
+            }
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    /**
+     * 有序段数量不是 2 的整次幂, 且包含空的有序段
+     */
+    @Test
+    public void loserTreeMergeTest() throws IOException {
+        Random random = new Random(0);
+        List<Integer> expected = new ArrayList<>();
+        List<File> runFiles = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            int rowCount = i == 3 ? 0 : random.nextInt(500);
+            List<Integer> values = new ArrayList<>();
+            for (int j = 0; j < rowCount; j++) {
+                values.add(random.nextInt(2000) - 1000);
+            }
+            Collections.sort(values);
+            expected.addAll(values);
+            File runFile = File.createTempFile("sort-run-", ".tmp");
+            runFile.deleteOnExit();
+            runFiles.add(runFile);
+            try (SortRunWriter writer = new SortRunWriter(runFile, 1024)) {
+                for (int value : values) {
+                    byte[][] row = row(value, "v" + value);
+                    writer.write(encoder.encode(row), row);
+                }
+            }
+        }
+        Collections.sort(expected);
+
+        File outDir = Files.createTempDirectory("external-sort").toFile();
+        String filePathPrefix = outDir.getPath() + File.separator + "out_";
+        new ExternalMergeExportConsumer(filePathPrefix, ",", Collections.singletonList(intField()),
+            runFiles, 2, 1024 * 1024, 1000).consume();
+
+        List<String> lines = new ArrayList<>();
+        for (int seq = 0; new File(filePathPrefix + seq).exists(); seq++) {
+            File outFile = new File(filePathPrefix + seq);
+            lines.addAll(Files.readAllLines(outFile.toPath(), StandardCharsets.UTF_8));
+            outFile.delete();
+        }
+        outDir.delete();
+        Assert.assertEquals(expected.size(), lines.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i) + ",v" + expected.get(i), lines.get(i));
+        }
+        for (File runFile : runFiles) {
+            Assert.assertFalse(runFile.exists());
+        }
+    }
+
+    private static byte[][] row(int key, String value) {
+        return new byte[][] {String.valueOf(key).getBytes(), value.getBytes(StandardCharsets.UTF_8)};
+    }
+
+    private static FieldMetaInfo intField() {
+        FieldMetaInfo fieldMetaInfo = new FieldMetaInfo();
+        fieldMetaInfo.setType(FieldMetaInfo.Type.INT);
+        fieldMetaInfo.setIndex(0);
+        return fieldMetaInfo;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import org.junit.Assert;
+import store.FileStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存中的对象存储
+ */
+class InMemoryFileStorage implements FileStorage {
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    final AtomicInteger uploadIdSeq = new AtomicInteger();
+    final AtomicInteger concurrentUploads = new AtomicInteger();
+    final AtomicInteger maxConcurrentUploads = new AtomicInteger();
+    final AtomicInteger completedPartNum = new AtomicInteger();
+    final AtomicInteger rangeReadCount = new AtomicInteger();
+    final AtomicInteger failRangeReadCount = new AtomicInteger();
+    volatile int failPartNumber = -1;
+
+    @Override
+    public void put(String localFile, String targetPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void get(String targetFile, String localPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getObjectSize(String targetFile) {
+        byte[] data = objects.get(targetFile);
+        if (data == null) {
+            throw new IllegalArgumentException("No such object: " + targetFile);
+        }
+        return data.length;
+    }
+
+    @Override
+    public int readRange(String targetFile, long pos, byte[] dest, int off, int len) {
+        rangeReadCount.incrementAndGet();
+        if (failRangeReadCount.getAndDecrement() > 0) {
+            throw new IllegalStateException("Mock read failure");
+        }
+        byte[] data = objects.get(targetFile);
+        int n = (int) Math.max(0, Math.min(len, data.length - pos));
+        System.arraycopy(data, (int) pos, dest, off, n);
+        return n;
+    }
+
+    @Override
+    public String initMultipartUpload(String targetPath) {
+        String uploadId = targetPath + "#" + uploadIdSeq.incrementAndGet();
+        uploads.put(uploadId, new ConcurrentHashMap<>());
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String targetPath, String uploadId, int partNumber, byte[] data, int len) {
+        int cur = concurrentUploads.incrementAndGet();
+        maxConcurrentUploads.accumulateAndGet(cur, Math::max);
+        try {
+            Thread.sleep(2);
+            if (partNumber == failPartNumber) {
+                throw new IllegalStateException("Mock upload failure");
+            }
+            uploads.get(uploadId).put(partNumber, Arrays.copyOf(data, len));
+            return "etag-" + partNumber;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            concurrentUploads.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String targetPath, String uploadId, List<String> partETags) {
+        TreeMap<Integer, byte[]> parts = new TreeMap<>(uploads.remove(uploadId));
+        Assert.assertEquals(partETags.size(), parts.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int partNumber = 1;
+        for (Map.Entry<Integer, byte[]> part : parts.entrySet()) {
+            Assert.assertEquals(partNumber, (int) part.getKey());
+            Assert.assertEquals("etag-" + partNumber, partETags.get(partNumber - 1));
+            out.write(part.getValue(), 0, part.getValue().length);
+            partNumber++;
+        }
+        completedPartNum.addAndGet(parts.size());
+        objects.put(targetPath, out.toByteArray());
+    }
+
+    @Override
+    public void abortMultipartUpload(String targetPath, String uploadId) {
+        uploads.remove(uploadId);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.db.FieldMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.util.DeleteUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class KeyBatchDeleteTest {
+
+    private static FieldMetaInfo field(String name, FieldMetaInfo.Type type) {
+        FieldMetaInfo fieldMetaInfo = new FieldMetaInfo();
+        fieldMetaInfo.setName(name);
+        fieldMetaInfo.setType(type);
+        return fieldMetaInfo;
+    }
+
+    private static List<String[]> keys(String... keys) {
+        List<String[]> keyList = new ArrayList<>();
+        for (String key : keys) {
+            keyList.add(key.split(","));
+        }
+        return keyList;
+    }
+
+    @Test
+    public void singleIntKeyTest() {
+        List<FieldMetaInfo> pkFields = Collections.singletonList(field("id", FieldMetaInfo.Type.INT));
+        String sql = DeleteUtil.getKeyBatchDeleteSql(null, "t1", pkFields,
+            keys("5", "3", "4", "10", "4", "6", "20", "21"), null);
+        Assert.assertEquals("DELETE FROM `t1` WHERE ((`id` BETWEEN 3 AND 6) OR (`id`) IN (10,20,21));", sql);
+    }
+
+    @Test
+    public void compositeKeyTest() {
+        List<FieldMetaInfo> pkFields = Arrays.asList(field("tenant", FieldMetaInfo.Type.STRING),
+            field("seq", FieldMetaInfo.Type.INT));
+        String sql = DeleteUtil.getKeyBatchDeleteSql("g0", "t1_00", pkFields,
+            keys("b,1", "a,2", "a,1", "a,3", "b,3", "c'd,9"), "k > 0");
+        Assert.assertEquals("/*+TDDL:node='g0'*/ DELETE FROM `t1_00` WHERE "
+            + "((`tenant`='a' AND `seq` BETWEEN 1 AND 3) OR (`tenant`,`seq`) IN (('b',1),('b',3),('c''d',9))) "
+            + "AND k > 0;", sql);
+    }
+
+    @Test
+    public void stringKeyTest() {
+        List<FieldMetaInfo> pkFields = Collections.singletonList(field("name", FieldMetaInfo.Type.STRING));
+        String sql = DeleteUtil.getKeyBatchDeleteSql(null, "t1", pkFields, keys("3", "1", "2"), null);
+        Assert.assertEquals("DELETE FROM `t1` WHERE ((`name`) IN ('1','2','3'));", sql);
+    }
+}
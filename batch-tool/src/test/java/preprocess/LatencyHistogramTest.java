@@ -0,0 +1,97 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.stat.LatencyHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(10000, snapshot.getCount());
+        assertClose(5_000_000, snapshot.getPercentileNanos(0.5));
+        assertClose(9_900_000, snapshot.getPercentileNanos(0.99));
+        Assert.assertEquals(10.0, snapshot.getMaxMillis(), 1e-9);
+        Assert.assertEquals(5.0005, snapshot.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void extremeValueTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(3, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getPercentileNanos(0.5));
+        assertClose(Long.MAX_VALUE, snapshot.getPercentileNanos(1));
+    }
+
+    @Test
+    public void snapshotMinusTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(50_000_000);
+        }
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot diff = histogram.snapshot().minus(before);
+        Assert.assertEquals(100, diff.getCount());
+        Assert.assertEquals(1.0, diff.getMeanMillis(), 1e-9);
+        assertClose(1_000_000, diff.getPercentileNanos(0.99));
+        assertClose(1_000_000, (long) (diff.getMaxMillis() * 1e6));
+    }
+
+    @Test
+    public void concurrentRecordTest() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 100000; i++) {
+                    histogram.record(random.nextInt(1_000_000_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(400000, histogram.getCount());
+        Assert.assertEquals(400000, histogram.snapshot().getCount());
+    }
+
+    /**
+     * 相对误差不超过 1/32
+     */
+    private static void assertClose(long expected, long actual) {
+        Assert.assertTrue(expected + " vs " + actual, Math.abs(expected - actual) <= expected / 32);
+    }
+}
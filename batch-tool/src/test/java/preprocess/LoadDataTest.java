@@ -0,0 +1,135 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.config.GlobalVar;
+import model.db.FieldMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.common.reader.LineSliceInputStream;
+import worker.util.ImportUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoadDataTest {
+
+    @Test
+    public void lineSliceStreamTest() throws IOException {
+        byte[] data = "xxaa|b\r\nyyc|dd\n\nzz".getBytes(StandardCharsets.UTF_8);
+        int[] lineSlices = {2, 4, 10, 4, 16, 0, 0, 0};
+        String expected = "aa|b\nc|dd\n\n";
+        for (int bufSize : new int[] {1, 3, 64}) {
+            InputStream in = new LineSliceInputStream(data, lineSlices, 3);
+            Assert.assertEquals(expected, readAll(in, bufSize));
+            Assert.assertEquals(-1, in.read());
+        }
+        Assert.assertEquals(-1, new LineSliceInputStream(data, lineSlices, 0).read());
+    }
+
+    @Test
+    public void loadDataSqlTest() {
+        List<FieldMetaInfo> fieldMetaInfoList = new ArrayList<>();
+        fieldMetaInfoList.add(field("id", "int"));
+        fieldMetaInfoList.add(field("name", "varchar"));
+        String sql = ImportUtil.getLoadDataSql("t1", null, fieldMetaInfoList, "|", "utf8mb4",
+            true, false, true, true);
+        Assert.assertEquals("LOAD DATA LOCAL INFILE 'batch-tool' IGNORE INTO TABLE `t1` CHARACTER SET utf8mb4 "
+            + "FIELDS TERMINATED BY '|' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '' LINES TERMINATED BY '\\n' "
+            + "(@c0,@c1,@dummy) SET `id` = IF(@c0 = '\\\\N' OR @c0 = '', NULL, @c0),"
+            + "`name` = IF(@c1 = '\\\\N', NULL, @c1)", sql);
+
+        sql = ImportUtil.getLoadDataSql("t1", null, fieldMetaInfoList, "'", "gbk",
+            false, true, false, false);
+        Assert.assertTrue(sql, sql.startsWith("LOAD DATA LOCAL INFILE 'batch-tool' INTO TABLE `t1` "
+            + "CHARACTER SET gbk FIELDS TERMINATED BY '\\'' ESCAPED BY '\\\\' "));
+        Assert.assertTrue(sql, sql.contains("(@c0,@c1) SET "));
+
+        // 指定列时按指定的顺序
+        sql = ImportUtil.getLoadDataSql("t1", "name,id", fieldMetaInfoList, "|", "utf8mb4",
+            false, false, false, false);
+        Assert.assertTrue(sql, sql.endsWith("(@c0,@c1) SET `name` = IF(@c0 = '\\\\N', NULL, @c0),"
+            + "`id` = IF(@c1 = '\\\\N' OR @c1 = '', NULL, @c1)"));
+    }
+
+    /**
+     * 二进制字段与文本语句一样按十六进制解码, 关闭 -hex 时不支持
+     */
+    @Test
+    public void binaryLoadDataSqlTest() {
+        List<FieldMetaInfo> fieldMetaInfoList = new ArrayList<>();
+        fieldMetaInfoList.add(field("id", "int"));
+        fieldMetaInfoList.add(field("data", "varbinary"));
+        boolean binaryAsHex = GlobalVar.BINARY_AS_HEX;
+        try {
+            GlobalVar.BINARY_AS_HEX = true;
+            StringBuilder textValue = new StringBuilder();
+            ImportUtil.appendInsertBinaryValue(textValue, "1F2A", true);
+            Assert.assertEquals("unhex('1F2A')", textValue.toString());
+            String sql = ImportUtil.getLoadDataSql("t1", null, fieldMetaInfoList, "|", "utf8mb4",
+                false, false, false, false);
+            Assert.assertTrue(sql, sql.endsWith("`data` = IF(@c1 = '\\\\N', NULL, UNHEX(@c1))"));
+            ImportUtil.checkLoadDataSupported(null, fieldMetaInfoList);
+
+            GlobalVar.BINARY_AS_HEX = false;
+            textValue.setLength(0);
+            ImportUtil.appendInsertBinaryValue(textValue, "X'1F2A'", true);
+            Assert.assertEquals("X'1F2A'", textValue.toString());
+            try {
+                ImportUtil.getLoadDataSql("t1", null, fieldMetaInfoList, "|", "utf8mb4",
+                    false, false, false, false);
+                Assert.fail();
+            } catch (UnsupportedOperationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("data"));
+            }
+            try {
+                ImportUtil.checkLoadDataSupported(null, fieldMetaInfoList);
+                Assert.fail();
+            } catch (UnsupportedOperationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("data"));
+            }
+            // 不导入二进制字段时不受影响
+            ImportUtil.checkLoadDataSupported("id", fieldMetaInfoList);
+            sql = ImportUtil.getLoadDataSql("t1", "id", fieldMetaInfoList, "|", "utf8mb4",
+                false, false, false, false);
+            Assert.assertTrue(sql, sql.endsWith("(@c0) SET `id` = IF(@c0 = '\\\\N' OR @c0 = '', NULL, @c0)"));
+        } finally {
+            GlobalVar.BINARY_AS_HEX = binaryAsHex;
+        }
+    }
+
+    private static FieldMetaInfo field(String name, String type) {
+        FieldMetaInfo fieldMetaInfo = new FieldMetaInfo();
+        fieldMetaInfo.setName(name);
+        fieldMetaInfo.setType(type);
+        return fieldMetaInfo;
+    }
+
+    private static String readAll(InputStream in, int bufSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[bufSize];
+        int n;
+        while ((n = in.read(buf, 0, bufSize)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
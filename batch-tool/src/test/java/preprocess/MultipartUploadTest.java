@@ -0,0 +1,138 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.config.CompressMode;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import util.IOUtil;
+import worker.common.writer.MultipartUploadFileWriter;
+import worker.common.writer.MultipartUploadOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class MultipartUploadTest {
+
+    @Test
+    public void uploadPartsTest() throws IOException {
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        byte[] data = new byte[10000];
+        new Random(0).nextBytes(data);
+        try (MultipartUploadOutputStream out = new MultipartUploadOutputStream(storage, "t1", 1000, 2, executor)) {
+            for (int off = 0; off < data.length; off += 333) {
+                out.write(data, off, Math.min(333, data.length - off));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertArrayEquals(data, storage.objects.get("t1"));
+        Assert.assertEquals(10, storage.completedPartNum.get());
+        // 缓冲区数量限制了同时上传的分片数
+        Assert.assertTrue(storage.maxConcurrentUploads.get() <= 2);
+    }
+
+    @Test
+    public void partLimitTest() throws IOException {
+        // 分片大小从 1 开始, 每 1000 个分片翻倍, 10000 个分片最多容纳 1000 * (2^10 - 1) 字节
+        int maxLen = 1000 * 1023;
+        byte[] data = new byte[maxLen + 1];
+        new Random(0).nextBytes(data);
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            try (MultipartUploadOutputStream out = new MultipartUploadOutputStream(storage, "t3", 1, 2, executor)) {
+                out.write(data, 0, maxLen);
+            }
+            Assert.assertArrayEquals(Arrays.copyOf(data, maxLen), storage.objects.get("t3"));
+            Assert.assertEquals(10000, storage.completedPartNum.get());
+
+            try (MultipartUploadOutputStream out = new MultipartUploadOutputStream(storage, "t4", 1, 2, executor)) {
+                out.write(data);
+                Assert.fail("Upload should exceed the part limit");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("10000 parts"));
+            }
+            Assert.assertFalse(storage.objects.containsKey("t4"));
+            Assert.assertTrue(storage.uploads.isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyFileTest() throws IOException {
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        new MultipartUploadOutputStream(storage, "empty", 1000, 2, executor).close();
+        executor.shutdown();
+        Assert.assertArrayEquals(new byte[0], storage.objects.get("empty"));
+    }
+
+    @Test
+    public void abortTest() {
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        storage.failPartNumber = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (MultipartUploadOutputStream out = new MultipartUploadOutputStream(storage, "t2", 100, 2, executor)) {
+            out.write(new byte[1000]);
+            Assert.fail("Upload should fail");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertFalse(storage.objects.containsKey("t2"));
+        Assert.assertTrue(storage.uploads.isEmpty());
+    }
+
+    @Test
+    public void compressedFileWriterTest() throws IOException {
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        byte[] data = "1,abc,2020-01-01\n2,中文,\\N\n".getBytes(StandardCharsets.UTF_8);
+        MultipartUploadFileWriter writer = new MultipartUploadFileWriter(storage, CompressMode.ZSTD,
+            StandardCharsets.UTF_8);
+        writer.nextFile("f0.zst");
+        writer.write(data);
+        writer.nextFile("f1.zst");
+        writer.write(data);
+        writer.write(data);
+        writer.finishLastFile();
+        writer.close();
+        Assert.assertArrayEquals(data, decompress(storage.objects.get("f0.zst")));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(data);
+        expected.write(data);
+        Assert.assertArrayEquals(expected.toByteArray(), decompress(storage.objects.get("f1.zst")));
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream in = IOUtil.createDecompressInputStream(new ByteArrayInputStream(compressed),
+            CompressMode.ZSTD)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
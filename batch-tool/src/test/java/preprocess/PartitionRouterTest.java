@@ -0,0 +1,160 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.db.AutoPartitionInfo;
+import model.db.FieldMetaInfo;
+import model.db.TableTopology;
+import org.junit.Assert;
+import org.junit.Test;
+import worker.util.PartitionRouter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PartitionRouterTest {
+
+    private static final String GENERAL_CI = "utf8mb4_general_ci";
+
+    @Test
+    public void rangeTest() {
+        PartitionRouter router = newRouter(AutoPartitionInfo.Method.RANGE, "bigint", null, 0,
+            "100", "200", "MAXVALUE");
+        Assert.assertEquals(0, router.route(row("-5")));
+        Assert.assertEquals(0, router.route(row("99")));
+        Assert.assertEquals(1, router.route(row("100")));
+        Assert.assertEquals(2, router.route(row("12345678901")));
+        Assert.assertEquals(-1, router.route(row("abc")));
+        Assert.assertEquals(-1, router.route(row(null)));
+    }
+
+    @Test
+    public void rangeColumnsStringTest() {
+        PartitionRouter router = newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "varchar", GENERAL_CI, 0,
+            "'g'", "'it''s'");
+        Assert.assertEquals(0, router.route(row("Apple")));
+        Assert.assertEquals(1, router.route(row("G  ")));
+        Assert.assertEquals(1, router.route(row("it")));
+        // general_ci 按大写字母的权重比较, '[' 排在所有字母之后
+        Assert.assertEquals(-1, router.route(row("[")));
+        // PAD SPACE: 制表符小于补齐的空格
+        Assert.assertEquals(0, router.route(row("G\t")));
+        Assert.assertEquals(-1, router.route(row("IT'S ")));
+        // 超出最大上界
+        Assert.assertEquals(-1, router.route(row("zoo")));
+        // 非 ASCII 字符串交由 CN 路由
+        Assert.assertEquals(-1, router.route(row("中文")));
+    }
+
+    @Test
+    public void rangeColumnsBinTest() {
+        PartitionRouter router = newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "varchar", "utf8mb4_bin", 0,
+            "'g'", "'it''s'", "MAXVALUE");
+        Assert.assertEquals(0, router.route(row("G")));
+        Assert.assertEquals(0, router.route(row("[")));
+        Assert.assertEquals(1, router.route(row("g ")));
+        Assert.assertEquals(1, router.route(row("it")));
+        Assert.assertEquals(2, router.route(row("中文")));
+        Assert.assertEquals(-1, router.route(row("\uD83D\uDE00")));
+    }
+
+    @Test
+    public void rangeColumnsDateTest() {
+        PartitionRouter router = newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "date", null, 0,
+            "'2020-01-01'", "'2021-01-01'");
+        Assert.assertEquals(0, router.route(row("2019-12-31")));
+        Assert.assertEquals(1, router.route(row("2020-1-5")));
+        Assert.assertEquals(1, router.route(row("2020-01-01")));
+        // 非法日期及其他格式交由 CN 路由
+        Assert.assertEquals(-1, router.route(row("2020-02-30")));
+        Assert.assertEquals(-1, router.route(row("20200105")));
+        Assert.assertEquals(-1, router.route(row("2020-01-05 10:00:00")));
+        Assert.assertEquals(-1, router.route(row("0000-00-00")));
+
+        router = newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "datetime", null, 0,
+            "'2020-01-01 00:00:00'", "MAXVALUE");
+        Assert.assertEquals(0, router.route(row("2019-12-31 23:59:59")));
+        Assert.assertEquals(1, router.route(row("2020-01-01")));
+        Assert.assertEquals(1, router.route(row("2020-1-1 0:0:0")));
+        // 超出列精度的小数秒会被舍入
+        Assert.assertEquals(-1, router.route(row("2019-12-31 23:59:59.5")));
+    }
+
+    @Test
+    public void rangeDecimalTest() {
+        PartitionRouter router = newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "decimal", null, 2,
+            "100.00", "MAXVALUE");
+        Assert.assertEquals(0, router.route(row("99.99")));
+        Assert.assertEquals(1, router.route(row("100")));
+        Assert.assertEquals(-1, router.route(row("99.995")));
+    }
+
+    @Test
+    public void listTest() {
+        PartitionRouter router = newRouter(AutoPartitionInfo.Method.LIST_COLUMNS, "varchar", GENERAL_CI, 0,
+            "'bj','sh'", "'hz', 'a,b'", "DEFAULT");
+        Assert.assertEquals(0, router.route(row("SH")));
+        Assert.assertEquals(0, router.route(row("sh  ")));
+        Assert.assertEquals(1, router.route(row("a,b")));
+        Assert.assertEquals(2, router.route(row("gz")));
+
+        router = newRouter(AutoPartitionInfo.Method.LIST, "int", null, 0, "1,3", "2,4");
+        Assert.assertEquals(1, router.route(row("4")));
+        Assert.assertEquals(-1, router.route(row("5")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void hashTest() {
+        newRouter(AutoPartitionInfo.Method.KEY, "bigint", null, 0,
+            "-4611686018427387902", "0", "4611686018427387904", "9223372036854775807");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedCollationTest() {
+        newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "varchar", "utf8mb4_0900_ai_ci", 0, "'g'");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedTypeTest() {
+        newRouter(AutoPartitionInfo.Method.RANGE_COLUMNS, "timestamp", null, 0, "'2020-01-01 00:00:00'");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedBoundTest() {
+        newRouter(AutoPartitionInfo.Method.RANGE, "int", null, 0, "TO_DAYS('2020-01-01')");
+    }
+
+    private static List<String> row(String key) {
+        return Arrays.asList("x", key);
+    }
+
+    private static PartitionRouter newRouter(AutoPartitionInfo.Method method, String dataType, String collation,
+                                             int scale, String... descriptions) {
+        FieldMetaInfo keyField = new FieldMetaInfo();
+        keyField.setName("k");
+        keyField.setType(dataType);
+        keyField.setIndex(1);
+        List<AutoPartitionInfo.Partition> partitions = new ArrayList<>();
+        for (int i = 0; i < descriptions.length; i++) {
+            partitions.add(new AutoPartitionInfo.Partition("p" + i, descriptions[i],
+                new TableTopology("g" + i, "t_" + i)));
+        }
+        return PartitionRouter.create(new AutoPartitionInfo("t", method, Arrays.asList(keyField),
+            Arrays.asList(new AutoPartitionInfo.ColumnType(dataType, collation, scale)), partitions));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import org.junit.Assert;
+import org.junit.Test;
+import worker.common.reader.RemoteBlockSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RemoteBlockSourceTest {
+
+    private static final int BLOCK_SIZE = 1000;
+    private static final int BLOCK_CAPACITY = 1100;
+
+    @Test
+    public void concurrentReadTest() throws Exception {
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        byte[] data = new byte[20500];
+        new Random(0).nextBytes(data);
+        storage.objects.put("t1_0", data);
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(4);
+        ExecutorService readerExecutor = Executors.newFixedThreadPool(3);
+        AtomicLong nextBlockIndex = new AtomicLong();
+        try (RemoteBlockSource source = new RemoteBlockSource(storage, "t1_0", BLOCK_SIZE, BLOCK_CAPACITY,
+            3, fetchExecutor)) {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(readerExecutor.submit(() -> {
+                    // 与 BlockReader 相同, 按递增的序号领取数据块
+                    int blockCount = 0;
+                    byte[] buffer = new byte[BLOCK_CAPACITY];
+                    while (true) {
+                        long pos = nextBlockIndex.getAndIncrement() * BLOCK_SIZE;
+                        int len = source.read(pos, buffer, buffer.length);
+                        if (len == -1) {
+                            return blockCount;
+                        }
+                        int expectedLen = (int) Math.min(BLOCK_CAPACITY, data.length - pos);
+                        Assert.assertEquals(expectedLen, len);
+                        Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) pos, (int) pos + len),
+                            Arrays.copyOf(buffer, len));
+                        blockCount++;
+                    }
+                }));
+            }
+            int totalBlocks = 0;
+            for (Future<Integer> reader : readers) {
+                totalBlocks += reader.get();
+            }
+            Assert.assertEquals(21, totalBlocks);
+            // 每个数据块只读取一次
+            Assert.assertEquals(21, storage.rangeReadCount.get());
+        } finally {
+            fetchExecutor.shutdown();
+            readerExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void retryTest() throws IOException {
+        InMemoryFileStorage storage = new InMemoryFileStorage();
+        byte[] data = new byte[1500];
+        new Random(1).nextBytes(data);
+        storage.objects.put("t1_1", data);
+        storage.failRangeReadCount.set(2);
+        ExecutorService fetchExecutor = Executors.newSingleThreadExecutor();
+        try (RemoteBlockSource source = new RemoteBlockSource(storage, "t1_1", BLOCK_SIZE, BLOCK_CAPACITY,
+            0, fetchExecutor)) {
+            byte[] buffer = new byte[BLOCK_CAPACITY];
+            Assert.assertEquals(BLOCK_CAPACITY, source.read(0, buffer, buffer.length));
+            Assert.assertEquals(500, source.read(BLOCK_SIZE, buffer, buffer.length));
+            Assert.assertEquals(-1, source.read(2 * BLOCK_SIZE, buffer, buffer.length));
+        } finally {
+            fetchExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import model.db.FieldMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import util.FileUtil;
+import worker.util.SortKeyEncoder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class SortKeyTest {
+
+    @Test
+    public void decimalOrderTest() {
+        SortKeyEncoder encoder = new SortKeyEncoder(Collections.singletonList(field(FieldMetaInfo.Type.FLOAT, 0)));
+        List<String> values = new ArrayList<>(Arrays.asList("0", "-0.0", "0.001", "-0.001", "1e3", "999.99",
+            "1000.0001", "-1.5E-2", "00012.500", "9223372036854775807", "18446744073709551615",
+            "-9223372036854775808", "123456789012345678901234567890.123456789"));
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            BigDecimal value = BigDecimal.valueOf(random.nextLong(), random.nextInt(20) - 5);
+            values.add(random.nextBoolean() ? value.toPlainString() : value.toString());
+        }
+        for (int i = 0; i < values.size(); i++) {
+            for (int j = i + 1; j < values.size(); j += 37) {
+                String v1 = values.get(i), v2 = values.get(j);
+                int expected = Integer.signum(new BigDecimal(v1).compareTo(new BigDecimal(v2)));
+                int actual = Integer.signum(SortKeyEncoder.compare(encoder.encode(row(v1)), encoder.encode(row(v2))));
+                Assert.assertEquals(v1 + " vs " + v2, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void bigintOrderTest() {
+        SortKeyEncoder encoder = new SortKeyEncoder(Collections.singletonList(field(FieldMetaInfo.Type.INT, 0)));
+        long[] values = {Long.MIN_VALUE, -3000000000L, -1, 0, 1, 2147483648L, Long.MAX_VALUE};
+        for (int i = 0; i + 1 < values.length; i++) {
+            Assert.assertTrue(SortKeyEncoder.compare(encoder.encode(row(String.valueOf(values[i]))),
+                encoder.encode(row(String.valueOf(values[i + 1])))) < 0);
+        }
+    }
+
+    @Test
+    public void timeOrderTest() {
+        SortKeyEncoder encoder = new SortKeyEncoder(Collections.singletonList(field(FieldMetaInfo.Type.DATE, 0)));
+        String[] values = {"-838:59:59", "-10:00:00", "-09:59:59.5", "00:00:00", "09:00:00", "99:00:00",
+            "100:00:00.000001", "838:59:59"};
+        for (int i = 0; i + 1 < values.length; i++) {
+            Assert.assertTrue(values[i] + " vs " + values[i + 1],
+                SortKeyEncoder.compare(encoder.encode(row(values[i])), encoder.encode(row(values[i + 1]))) < 0);
+        }
+        String[] datetimes = {"2020-01-01", "2020-01-01 00:00:00", "2020-01-01 00:00:00.5", "2021-12-31 23:59:59"};
+        for (int i = 0; i + 1 < datetimes.length; i++) {
+            Assert.assertTrue(SortKeyEncoder.compare(encoder.encode(row(datetimes[i])),
+                encoder.encode(row(datetimes[i + 1]))) < 0);
+        }
+    }
+
+    @Test
+    public void multiColumnTest() {
+        SortKeyEncoder encoder = new SortKeyEncoder(Arrays.asList(field(FieldMetaInfo.Type.STRING, 1),
+            field(FieldMetaInfo.Type.INT, 0)));
+        // NULL 最小, 两者均为 NULL 时继续比较下一个字段
+        Assert.assertTrue(compare(encoder, new String[] {"1", null}, new String[] {"0", ""}) < 0);
+        Assert.assertTrue(compare(encoder, new String[] {"1", null}, new String[] {"2", null}) < 0);
+        // 字符串是另一个字符串的前缀时
+        Assert.assertTrue(compare(encoder, new String[] {"9", "ab"}, new String[] {"1", "abc"}) < 0);
+        Assert.assertTrue(compare(encoder, new String[] {"9", "ab"}, new String[] {"1", "ab\0"}) < 0);
+        Assert.assertTrue(compare(encoder, new String[] {"1", "ab\0"}, new String[] {"0", "ab\1"}) < 0);
+        Assert.assertEquals(0, compare(encoder, new String[] {"10", "中文"}, new String[] {"10.0", "中文"}));
+    }
+
+    private static int compare(SortKeyEncoder encoder, String[] row1, String[] row2) {
+        return SortKeyEncoder.compare(encoder.encode(row(row1)), encoder.encode(row(row2)));
+    }
+
+    private static FieldMetaInfo field(FieldMetaInfo.Type type, int index) {
+        FieldMetaInfo fieldMetaInfo = new FieldMetaInfo();
+        fieldMetaInfo.setType(type);
+        fieldMetaInfo.setIndex(index);
+        return fieldMetaInfo;
+    }
+
+    private static byte[][] row(String... values) {
+        byte[][] data = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = values[i] == null ? FileUtil.NULL_ESC_BYTE : values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return data;
+    }
+}
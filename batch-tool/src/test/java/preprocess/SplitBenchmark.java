@@ -0,0 +1,152 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package preprocess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import util.ByteLineSplitter;
+import util.FileUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比按字符切分与按字节切分的吞吐
+ * mvn test-compile 后运行 main 方法, 或以测试 classpath 执行 org.openjdk.jmh.Main SplitBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SplitBenchmark {
+
+    private static final int LINE_COUNT = 10000;
+
+    @Param({"|", ","})
+    private String sep;
+
+    @Param({"false", "true"})
+    private boolean quoted;
+
+    private String[] lines;
+    private byte[] block;
+    private int[] lineOffsets;
+    private ByteLineSplitter byteSplitter;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        lines = new String[LINE_COUNT];
+        lineOffsets = new int[LINE_COUNT + 1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lines[i] = genLine(random);
+            byte[] bytes = (lines[i] + "\n").getBytes(StandardCharsets.UTF_8);
+            lineOffsets[i] = out.size();
+            out.write(bytes, 0, bytes.length);
+        }
+        lineOffsets[LINE_COUNT] = out.size();
+        block = out.toByteArray();
+        byteSplitter = new ByteLineSplitter(sep, StandardCharsets.UTF_8, false, false);
+    }
+
+    /**
+     * 类似 TPC-H lineitem 的一行
+     */
+    private String genLine(Random random) {
+        String comment = "carefully final deposits detect slyly agai";
+        if (quoted) {
+            comment = "\"" + comment.replace(" ", sep) + "\"";
+        }
+        return String.join(sep,
+            String.valueOf(random.nextInt(6000000)),
+            String.valueOf(random.nextInt(200000)),
+            String.valueOf(random.nextInt(10000)),
+            String.valueOf(random.nextInt(7)),
+            String.valueOf(random.nextInt(50)),
+            String.format("%.2f", random.nextDouble() * 100000),
+            "0.04", "0.02", "N", "O", "1996-03-13", "1996-02-12", "1996-03-22",
+            "DELIVER IN PERSON", "TRUCK", comment);
+    }
+
+    @Benchmark
+    public void stringSplit(Blackhole bh) {
+        for (String line : lines) {
+            List<String> values = FileUtil.split(line, sep, false, false);
+            bh.consume(values);
+        }
+    }
+
+    /**
+     * 原有路径: 先解码整行再切分
+     */
+    @Benchmark
+    public void decodeAndStringSplit(Blackhole bh) {
+        for (int i = 0; i < LINE_COUNT; i++) {
+            String line = new String(block, lineOffsets[i], lineOffsets[i + 1] - lineOffsets[i] - 1,
+                StandardCharsets.UTF_8);
+            List<String> values = FileUtil.split(line, sep, false, false);
+            bh.consume(values);
+        }
+    }
+
+    @Benchmark
+    public void byteSplit(Blackhole bh) {
+        for (int i = 0; i < LINE_COUNT; i++) {
+            List<String> values = byteSplitter.split(block, lineOffsets[i],
+                lineOffsets[i + 1] - lineOffsets[i] - 1, 16);
+            bh.consume(values);
+        }
+    }
+
+    /**
+     * 只定位字段边界
+     */
+    @Benchmark
+    public void byteSplitFields(Blackhole bh) {
+        for (int i = 0; i < LINE_COUNT; i++) {
+            bh.consume(byteSplitter.splitFields(block, lineOffsets[i],
+                lineOffsets[i + 1] - lineOffsets[i] - 1));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(SplitBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
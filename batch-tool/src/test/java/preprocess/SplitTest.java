@@ -17,9 +17,16 @@
 package preprocess;
 
 import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
 import org.junit.Test;
+import util.ByteLineSplitter;
 import util.FileUtil;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
 public class SplitTest {
 
     private static final String SEP = ",";
@@ -71,6 +78,84 @@ public class SplitTest {
         matchVals(values2);
     }
 
+    @Test
+    public void splitBytesTest() throws Exception {
+        ByteLineSplitter splitter = new ByteLineSplitter(SEP, StandardCharsets.UTF_8, false, false);
+        byte[] bytes = ("padding\n" + LINE).getBytes(StandardCharsets.UTF_8);
+        int offset = "padding\n".length();
+        List<String> values = splitter.split(bytes, offset, bytes.length - offset, ORIGIN_VALS.length);
+        matchVals(values.toArray(new String[0]));
+
+        ByteLineSplitter lastSepSplitter = new ByteLineSplitter(SEP, StandardCharsets.UTF_8, true, false);
+        byte[] lastSepBytes = (LINE + SEP).getBytes(StandardCharsets.UTF_8);
+        values = lastSepSplitter.split(lastSepBytes, 0, lastSepBytes.length, ORIGIN_VALS.length);
+        matchVals(values.toArray(new String[0]));
+    }
+
+    @Test
+    public void splitBytesSameAsStringTest() {
+        String[] lines = {"1,\u4e2d\u6587,abc", "1,2,", "\"a\",", "a\"b,c", "\u00e9||\u00e8||", "x,\"y\"\"z\""};
+        String[] seps = {",", "||", "\u0003", "\uff0c"};
+        for (String sep : seps) {
+            for (String rawLine : lines) {
+                String line = rawLine.replace(",", sep);
+                for (boolean hasEscapedQuote : new boolean[] {false, true}) {
+                    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    ByteLineSplitter splitter = new ByteLineSplitter(sep, StandardCharsets.UTF_8, false,
+                        hasEscapedQuote);
+                    Assert.assertEquals(line, splitResult(() -> FileUtil.split(line, sep, false, hasEscapedQuote)),
+                        splitResult(() -> splitter.split(bytes, 0, bytes.length, 4)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void splitBytesRandomTest() {
+        // 覆盖按字扫描与逐字节处理的边界
+        Random random = new Random(20211018L);
+        String[] tokens = {"a", "bc", "\u4e2d", "\"", "\"\"", ",", "||", "\uff0c", "0123456789"};
+        String[] seps = {",", "||", "\uff0c"};
+        for (int round = 0; round < 20000; round++) {
+            StringBuilder sb = new StringBuilder();
+            int tokenCount = random.nextInt(16);
+            for (int i = 0; i < tokenCount; i++) {
+                sb.append(tokens[random.nextInt(tokens.length)]);
+            }
+            String sep = seps[round % seps.length];
+            boolean hasEscapedQuote = random.nextBoolean();
+            boolean withLastSep = random.nextBoolean();
+            String line = withLastSep ? sb + sep : sb.toString();
+            byte[] bytes = ("#" + line + "#").getBytes(StandardCharsets.UTF_8);
+            ByteLineSplitter splitter = new ByteLineSplitter(sep, StandardCharsets.UTF_8, withLastSep,
+                hasEscapedQuote);
+            Assert.assertEquals(line, splitResult(() -> FileUtil.split(line, sep, withLastSep, hasEscapedQuote)),
+                splitResult(() -> splitter.split(bytes, 1, bytes.length - 2, 4)));
+        }
+    }
+
+    @Test
+    public void splitBytesBoundsTest() {
+        ByteLineSplitter splitter = new ByteLineSplitter(",", StandardCharsets.UTF_8, false, false);
+        byte[] bytes = "12345678,\"a,\"\"b\",,xyz".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(4, splitter.splitFields(bytes, 0, bytes.length));
+        Assert.assertEquals(0, splitter.getFieldStart(0));
+        Assert.assertEquals(8, splitter.getFieldEnd(0));
+        Assert.assertFalse(splitter.isFieldQuoted(0));
+        Assert.assertTrue(splitter.isFieldQuoted(1));
+        Assert.assertEquals("a,\"b", splitter.getField(1));
+        Assert.assertEquals("", splitter.getField(2));
+        Assert.assertEquals("xyz", splitter.getField(3));
+    }
+
+    private static String splitResult(Supplier<List<String>> splitter) {
+        try {
+            return splitter.get().toString();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
     private void matchVals(String[] vals) throws Exception {
         assert vals.length == EXPECTED_VALS.length;
         for (int i = 0; i < vals.length; i++) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright [2013-2021], Alibaba Group Holding Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tpch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import worker.tpch.generator.CustomerGenerator;
+import worker.tpch.generator.NationGenerator;
+import worker.tpch.generator.RegionGenerator;
+import worker.tpch.generator.TableRowGenerator;
+import worker.tpch.model.TpchRowBatch;
+import worker.tpch.model.TpchTableModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+public class TpchRowBatchTest {
+
+    private static final TpchRowBatch.ColumnType[] TYPES = {
+        TpchRowBatch.ColumnType.LONG, TpchRowBatch.ColumnType.DECIMAL,
+        TpchRowBatch.ColumnType.DATE, TpchRowBatch.ColumnType.TEXT};
+
+    @Test
+    public void testFormat() throws IOException {
+        TpchRowBatch batch = new TpchRowBatch(TYPES, 4);
+        batch.putLong(-12);
+        batch.putDecimal(-105);
+        batch.putDate((int) LocalDate.of(1992, 1, 2).toEpochDay());
+        batch.putText("abc");
+        batch.endRow();
+        batch.putLong(7);
+        batch.putDecimal(100000);
+        batch.putDate((int) LocalDate.of(1998, 12, 31).toEpochDay());
+        batch.beginText().append("x y");
+        batch.endText();
+        batch.endRow();
+
+        StringBuilder sql = new StringBuilder();
+        batch.appendSqlValues(sql, 0);
+        sql.append(',');
+        batch.appendSqlValues(sql, 1);
+        Assert.assertEquals("(-12,-1.05,\"1992-01-02\",\"abc\"),(7,1000.00,\"1998-12-31\",\"x y\")",
+            sql.toString());
+        Assert.assertEquals("-12|-1.05|1992-01-02|abc|\n7|1000.00|1998-12-31|x y|\n", toTbl(batch));
+
+        batch.clear();
+        Assert.assertTrue(batch.isEmpty());
+        Assert.assertEquals("", toTbl(batch));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncompleteRow() {
+        TpchRowBatch batch = new TpchRowBatch(TYPES, 4);
+        batch.putLong(1);
+        batch.endRow();
+    }
+
+    @Test
+    public void testSameAsDbgen() throws IOException {
+        Assert.assertEquals("0|AFRICA|lar deposits. blithely final packages cajole. regular waters are final "
+            + "requests. regular accounts are according to |", firstTblLine(new RegionGenerator(),
+            TpchTableModel.REGION));
+        Assert.assertEquals("0|ALGERIA|0| haggle. carefully final deposits detect slyly agai|",
+            firstTblLine(new NationGenerator(), TpchTableModel.NATION));
+    }
+
+    /**
+     * 按 CPU 核数切分后各分片拼接的结果与单个分片相同
+     */
+    @Test
+    public void testPartitionIndependent() throws IOException {
+        String whole = generateAll(new CustomerGenerator(1, 1, 1));
+        StringBuilder parts = new StringBuilder();
+        final int partCount = 7;
+        for (int part = 1; part <= partCount; part++) {
+            parts.append(generateAll(new CustomerGenerator(1, part, partCount)));
+        }
+        Assert.assertEquals(whole.length(), parts.length());
+        Assert.assertEquals(whole, parts.toString());
+    }
+
+    private static String generateAll(TableRowGenerator generator) throws IOException {
+        TpchRowBatch batch = new TpchRowBatch(TpchTableModel.CUSTOMER, 1000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (generator.hasNext()) {
+            batch.clear();
+            generator.fillBatch(batch);
+            batch.writeTbl(out);
+        }
+        return out.toString(StandardCharsets.US_ASCII.name());
+    }
+
+    private static String firstTblLine(TableRowGenerator generator, TpchTableModel table) throws IOException {
+        TpchRowBatch batch = new TpchRowBatch(table, 1);
+        generator.fillBatch(batch);
+        String tbl = toTbl(batch);
+        return tbl.substring(0, tbl.indexOf('\n'));
+    }
+
+    private static String toTbl(TpchRowBatch batch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batch.writeTbl(out);
+        return out.toString(StandardCharsets.US_ASCII.name());
+    }
+}
@@ -31,6 +31,22 @@ public class DefaultReport {
     private Double originMaxRT;
     @ExcelProperty("Maximum RT(us)")
     private Double maxRT;
+    @ExcelProperty("SrcDB P50 RT(us)")
+    private Double originP50RT;
+    @ExcelProperty("P50 RT(us)")
+    private Double p50RT;
+    @ExcelProperty("SrcDB P95 RT(us)")
+    private Double originP95RT;
+    @ExcelProperty("P95 RT(us)")
+    private Double p95RT;
+    @ExcelProperty("SrcDB P99 RT(us)")
+    private Double originP99RT;
+    @ExcelProperty("P99 RT(us)")
+    private Double p99RT;
+    @ExcelProperty("SrcDB P999 RT(us)")
+    private Double originP999RT;
+    @ExcelProperty("P999 RT(us)")
+    private Double p999RT;
     @ExcelProperty("schema")
     private String schema;
     @ExcelProperty("Sample Sql")
@@ -0,0 +1,26 @@
+package com.aliyun.gts.sniffer.common.entity;
+
+import com.alibaba.fastjson.JSONArray;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 时间轮调度模式下，读取线程解析出的一条待回放sql
+ */
+@Getter
+@Setter
+public class ReplayEvent {
+    private String sql;
+    //小写的 去除头部hint的sql
+    private String sql2;
+    private String db;
+    private String sqlId;
+    //TemplateStatsMap中的模板编号
+    private int templateId;
+    private long originExecTime;
+    private BaseSQLType sqlType;
+    private JSONArray parameter;
+    private String session;
+    //计划发送时间，相对调度器启动时间的毫秒数
+    private long dueTime;
+}
@@ -0,0 +1,22 @@
+package com.aliyun.gts.sniffer.common.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 二进制回放文件中的模板sql，同一条sql文本只记录一次
+ */
+@Getter
+@Setter
+public class ReplayTemplate {
+    private int id;
+    private String sqlId;
+    private String sql;
+    private BaseSQLType sqlType;
+    //小写的 去除头部hint的sql，回放时按模板计算一次
+    private String sql2;
+    //回放时是否跳过该模板
+    private boolean skip;
+    //TemplateStatsMap中的模板编号，回放时按模板计算一次
+    private int statsId;
+}
@@ -0,0 +1,203 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 只定位一行json中若干顶层字段的原始取值，不构建json树。
+ * 用于切分日志时读取session、schema，其余字段原样拷贝。
+ */
+public class JSONFieldExtractor {
+    private final byte[][] keys;
+
+    public JSONFieldExtractor(String... keys) {
+        this.keys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            this.keys[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 扫描buf[from,to)中的json对象，第i个字段取值的原始区间写入spans[2i]、spans[2i+1]，
+     * 字符串包含引号，字段不存在时为-1。所有字段都找到后提前返回。
+     */
+    public void extract(byte[] buf, int from, int to, int[] spans) {
+        Arrays.fill(spans, 0, keys.length * 2, -1);
+        int remain = keys.length;
+        int pos = skipBlank(buf, from, to);
+        if (pos >= to || buf[pos] != '{') {
+            throw new JSONException("not a json object, pos " + pos);
+        }
+        pos = skipBlank(buf, pos + 1, to);
+        if (pos < to && buf[pos] == '}') {
+            return;
+        }
+        while (pos < to) {
+            if (buf[pos] != '"') {
+                throw new JSONException("expect field name, pos " + pos);
+            }
+            int keyEnd = skipString(buf, pos, to);
+            int field = matchKey(buf, pos + 1, keyEnd - 1);
+            pos = skipBlank(buf, keyEnd, to);
+            if (pos >= to || buf[pos] != ':') {
+                throw new JSONException("expect ':', pos " + pos);
+            }
+            pos = skipBlank(buf, pos + 1, to);
+            int valueEnd = skipValue(buf, pos, to);
+            if (field >= 0 && spans[field * 2] < 0) {
+                spans[field * 2] = pos;
+                spans[field * 2 + 1] = valueEnd;
+                if (--remain == 0) {
+                    return;
+                }
+            }
+            pos = skipBlank(buf, valueEnd, to);
+            if (pos < to && buf[pos] == ',') {
+                pos = skipBlank(buf, pos + 1, to);
+            } else if (pos < to && buf[pos] == '}') {
+                return;
+            } else {
+                throw new JSONException("expect ',' or '}', pos " + pos);
+            }
+        }
+        throw new JSONException("unclosed json object");
+    }
+
+    /**
+     * 将原始取值还原为字符串，null字面量返回null，数字等原样返回
+     */
+    public static String decode(byte[] buf, int start, int end) {
+        if (start < 0) {
+            return null;
+        }
+        if (buf[start] != '"') {
+            String raw = new String(buf, start, end - start, StandardCharsets.UTF_8);
+            return raw.equals("null") ? null : raw;
+        }
+        for (int i = start + 1; i < end - 1; i++) {
+            if (buf[i] == '\\') {
+                return JSON.parseObject(new String(buf, start, end - start, StandardCharsets.UTF_8), String.class);
+            }
+        }
+        return new String(buf, start + 1, end - start - 2, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 取值的哈希，同一取值的不同转义写法结果一致
+     */
+    public static int hash(byte[] buf, int start, int end) {
+        if (start < 0) {
+            return 0;
+        }
+        if (buf[start] == '"') {
+            for (int i = start + 1; i < end - 1; i++) {
+                if (buf[i] == '\\') {
+                    byte[] b = decode(buf, start, end).getBytes(StandardCharsets.UTF_8);
+                    return fnv(b, 0, b.length);
+                }
+            }
+            return fnv(buf, start + 1, end - 1);
+        }
+        return fnv(buf, start, end);
+    }
+
+    private static int fnv(byte[] buf, int start, int end) {
+        //FNV-1a，再做一次murmur3的finalizer打散低位
+        int h = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            h ^= buf[i] & 0xff;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private int matchKey(byte[] buf, int start, int end) {
+        int len = end - start;
+        for (int i = 0; i < keys.length; i++) {
+            byte[] key = keys[i];
+            if (key.length != len) {
+                continue;
+            }
+            int j = 0;
+            while (j < len && buf[start + j] == key[j]) {
+                j++;
+            }
+            if (j == len) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipBlank(byte[] buf, int pos, int to) {
+        while (pos < to && (buf[pos] == ' ' || buf[pos] == '\t' || buf[pos] == '\r' || buf[pos] == '\n')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    //pos指向起始引号，返回结束引号的下一个位置
+    private static int skipString(byte[] buf, int pos, int to) {
+        pos++;
+        while (pos < to) {
+            byte b = buf[pos];
+            if (b == '\\') {
+                pos += 2;
+            } else if (b == '"') {
+                return pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        throw new JSONException("unclosed string");
+    }
+
+    private static int skipValue(byte[] buf, int pos, int to) {
+        if (pos >= to) {
+            throw new JSONException("missing value");
+        }
+        byte b = buf[pos];
+        if (b == '"') {
+            return skipString(buf, pos, to);
+        }
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            while (pos < to) {
+                b = buf[pos];
+                if (b == '"') {
+                    pos = skipString(buf, pos, to);
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        return pos + 1;
+                    }
+                }
+                pos++;
+            }
+            throw new JSONException("unclosed json value");
+        }
+        int start = pos;
+        while (pos < to) {
+            b = buf[pos];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw new JSONException("missing value, pos " + pos);
+        }
+        return pos;
+    }
+}
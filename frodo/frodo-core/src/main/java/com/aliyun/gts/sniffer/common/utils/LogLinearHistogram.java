@@ -0,0 +1,133 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+/**
+ * 对数线性直方图，小于64的值精确计数，更大的值每个2的幂区间等分成32格，相对误差约3%。
+ * 每个区间的计数数组按需分配，不是线程安全的，多线程统计时各自记录后合并。
+ */
+public class LogLinearHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_CNT = 1 << SUB_BUCKET_BITS;
+    //小于该值时每个值一格
+    private static final int LINEAR_MAX = SUB_BUCKET_CNT * 2;
+    private static final int CHUNK_CNT = 64 - SUB_BUCKET_BITS;
+
+    private final long[][] counts = new long[CHUNK_CNT][];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * 记录一个值，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int chunk;
+        int index;
+        if (value < LINEAR_MAX) {
+            chunk = 0;
+            index = (int) value;
+        } else {
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            chunk = exp - SUB_BUCKET_BITS;
+            index = (int) (value >>> (exp - SUB_BUCKET_BITS)) - SUB_BUCKET_CNT;
+        }
+        long[] c = counts[chunk];
+        if (c == null) {
+            c = new long[chunk == 0 ? LINEAR_MAX : SUB_BUCKET_CNT];
+            counts[chunk] = c;
+        }
+        c[index]++;
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * 合并另一个直方图的计数
+     */
+    public void merge(LogLinearHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int i = 0; i < CHUNK_CNT; i++) {
+            long[] o = other.counts[i];
+            if (o == null) {
+                continue;
+            }
+            if (counts[i] == null) {
+                counts[i] = new long[o.length];
+            }
+            long[] c = counts[i];
+            for (int j = 0; j < o.length; j++) {
+                c[j] += o[j];
+            }
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 返回百分位上的值，percentile取值[0,100]，没有数据时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        if (rank >= count) {
+            return max;
+        }
+        long seen = 0;
+        for (int i = 0; i < CHUNK_CNT; i++) {
+            long[] c = counts[i];
+            if (c == null) {
+                continue;
+            }
+            for (int j = 0; j < c.length; j++) {
+                seen += c[j];
+                if (seen >= rank) {
+                    long value = i == 0 ? j : middleValue(i, j);
+                    return Math.max(min, Math.min(max, value));
+                }
+            }
+        }
+        return max;
+    }
+
+    //格内取中间值
+    private static long middleValue(int chunk, int index) {
+        int shift = chunk;
+        long lower = (long) (SUB_BUCKET_CNT + index) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0d : (double) sum / count;
+    }
+}
@@ -0,0 +1,174 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import com.alibaba.fastjson.JSONArray;
+import com.aliyun.gts.sniffer.common.entity.BaseSQLType;
+import com.aliyun.gts.sniffer.common.entity.ReplayTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 读取ReplayFileWriter写出的二进制回放文件，文件按窗口映射到内存，
+ * 一条记录超出当前窗口时从该记录的起始位置重新映射。
+ */
+public class ReplayFileReader implements Closeable {
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+    private static final int HEADER_SIZE = ReplayFileWriter.MAGIC.length + 4;
+    private static final BaseSQLType[] SQL_TYPES = BaseSQLType.values();
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private byte[] bytes = new byte[1024];
+
+    private final List<ReplayTemplate> templates = new ArrayList<>();
+    private final List<String> schemas = new ArrayList<>();
+
+    //当前事件
+    private long startTime;
+    private long execTime;
+    private String session;
+    private String schema;
+    private ReplayTemplate template;
+    private JSONArray parameter;
+
+    public ReplayFileReader(String file) throws IOException {
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.close();
+            throw new IOException("not a replay file:" + file);
+        }
+        map(0, HEADER_SIZE);
+        byte[] magic = new byte[ReplayFileWriter.MAGIC.length];
+        window.get(magic);
+        if (!Arrays.equals(magic, ReplayFileWriter.MAGIC) || window.getInt() != ReplayFileWriter.VERSION) {
+            channel.close();
+            throw new IOException("not a replay file or version mismatch:" + file);
+        }
+    }
+
+    /**
+     * 读到下一条sql事件，途中的模板、schema定义记录直接生效，文件结束时返回false
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            long pos = windowStart + window.position();
+            if (pos + 4 > size) {
+                return false;
+            }
+            if (window.remaining() < 4) {
+                map(pos, 4);
+            }
+            int len = window.getInt();
+            if (pos + 4 + len > size) {
+                throw new IOException("truncated replay file at " + pos);
+            }
+            if (window.remaining() < len) {
+                map(pos + 4, len);
+            }
+            byte kind = window.get();
+            if (kind == ReplayFileWriter.EVENT) {
+                startTime = window.getLong();
+                execTime = window.getLong();
+                int schemaId = window.getInt();
+                schema = schemaId < 0 ? null : schemas.get(schemaId);
+                template = templates.get(window.getInt());
+                session = getString();
+                int paramCnt = window.getInt();
+                if (paramCnt < 0) {
+                    parameter = null;
+                } else {
+                    parameter = new JSONArray(paramCnt);
+                    for (int i = 0; i < paramCnt; i++) {
+                        parameter.add(getString());
+                    }
+                }
+                return true;
+            } else if (kind == ReplayFileWriter.TEMPLATE) {
+                ReplayTemplate t = new ReplayTemplate();
+                t.setId(window.getInt());
+                t.setSqlType(SQL_TYPES[window.get()]);
+                t.setSqlId(getString());
+                t.setSql(getString());
+                set(templates, t.getId(), t);
+            } else if (kind == ReplayFileWriter.SCHEMA) {
+                int id = window.getInt();
+                set(schemas, id, getString());
+            } else {
+                throw new IOException("unknown record type " + kind + " at " + pos);
+            }
+        }
+    }
+
+    /**
+     * 回到文件开头，用于循环回放
+     */
+    public void rewind() throws IOException {
+        templates.clear();
+        schemas.clear();
+        map(HEADER_SIZE, 0);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getExecTime() {
+        return execTime;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public ReplayTemplate getTemplate() {
+        return template;
+    }
+
+    public JSONArray getParameter() {
+        return parameter;
+    }
+
+    private static <T> void set(List<T> list, int id, T value) {
+        while (list.size() <= id) {
+            list.add(null);
+        }
+        list.set(id, value);
+    }
+
+    private String getString() {
+        int len = window.getInt();
+        if (len < 0) {
+            return null;
+        }
+        if (bytes.length < len) {
+            bytes = new byte[Math.max(len, bytes.length * 2)];
+        }
+        window.get(bytes, 0, len);
+        return new String(bytes, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private void map(long pos, int minLen) throws IOException {
+        windowStart = pos;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Math.max(WINDOW_SIZE, minLen), size - pos));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,139 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import com.alibaba.fastjson.JSONArray;
+import com.aliyun.gts.sniffer.common.entity.ReplayTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 二进制回放文件，文件头之后是若干记录，每条记录为：int长度 + byte类型 + 内容。
+ * 模板sql和schema在第一次使用前以定义记录写入，sql事件只记录其编号。
+ * 模板编号可以被后面的定义记录复用，读取时以最近一次定义为准。
+ */
+public class ReplayFileWriter implements Closeable {
+    public static final byte[] MAGIC = "FRODOBIN".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+    public static final byte TEMPLATE = 1;
+    public static final byte SCHEMA = 2;
+    public static final byte EVENT = 3;
+
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    //当前记录的内容，写完后连同长度一起拷贝到buffer
+    private ByteBuffer record = ByteBuffer.allocate(64 * 1024);
+
+    public ReplayFileWriter(String file) throws IOException {
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    public void writeTemplate(ReplayTemplate template) throws IOException {
+        record.clear();
+        record.put(TEMPLATE);
+        record.putInt(template.getId());
+        record.put((byte) template.getSqlType().ordinal());
+        putString(template.getSqlId());
+        putString(template.getSql());
+        flushRecord();
+    }
+
+    public void writeSchema(int id, String schema) throws IOException {
+        record.clear();
+        record.put(SCHEMA);
+        record.putInt(id);
+        putString(schema);
+        flushRecord();
+    }
+
+    /**
+     * @param startTime 采集时的开始时间，单位微秒
+     * @param execTime  源库执行耗时
+     * @param schemaId  schema编号，-1表示没有schema
+     */
+    public void writeEvent(long startTime, long execTime, String session, int schemaId, int templateId,
+                           JSONArray parameter) throws IOException {
+        record.clear();
+        record.put(EVENT);
+        record.putLong(startTime);
+        record.putLong(execTime);
+        record.putInt(schemaId);
+        record.putInt(templateId);
+        putString(session);
+        ensure(4);
+        if (parameter == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(parameter.size());
+            for (int i = 0; i < parameter.size(); i++) {
+                putString(parameter.getString(i));
+            }
+        }
+        flushRecord();
+    }
+
+    private void putString(String s) {
+        if (s == null) {
+            ensure(4);
+            record.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        record.putInt(bytes.length);
+        record.put(bytes);
+    }
+
+    private void ensure(int len) {
+        if (record.remaining() < len) {
+            ByteBuffer newRecord = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + len));
+            record.flip();
+            newRecord.put(record);
+            record = newRecord;
+        }
+    }
+
+    private void flushRecord() throws IOException {
+        record.flip();
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        buffer.putInt(record.remaining());
+        while (record.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(buffer.remaining(), record.remaining());
+            int limit = record.limit();
+            record.limit(record.position() + n);
+            buffer.put(record);
+            record.limit(limit);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import com.aliyun.gts.sniffer.core.Config;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.Weighers;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * sql指纹到模板sqlId的缓存，同一模板sql只需要druid解析一次。
+ * 按Config.sqlIdCacheSize限制条数，超出后淘汰最久未用的指纹，小于等于0时不缓存。
+ */
+public class SqlIdCache {
+    private static final ConcurrentLinkedHashMap<String, String> cache = new ConcurrentLinkedHashMap.Builder<String, String>()
+            .maximumWeightedCapacity(Math.max(1, Config.sqlIdCacheSize))
+            .weigher(Weighers.singleton())
+            .build();
+    private static final LongAdder hitCnt = new LongAdder();
+    private static final LongAdder missCnt = new LongAdder();
+
+    public static String get(String fingerprint) {
+        if (Config.sqlIdCacheSize <= 0) {
+            return null;
+        }
+        String sqlId = cache.get(fingerprint);
+        if (sqlId == null) {
+            missCnt.increment();
+        } else {
+            hitCnt.increment();
+        }
+        return sqlId;
+    }
+
+    public static void put(String fingerprint, String sqlId) {
+        if (Config.sqlIdCacheSize > 0) {
+            cache.put(fingerprint, sqlId);
+        }
+    }
+
+    public static long getHitCnt() {
+        return hitCnt.sum();
+    }
+
+    public static long getMissCnt() {
+        return missCnt.sum();
+    }
+
+    public static double getHitRatio() {
+        long hit = hitCnt.sum();
+        long total = hit + missCnt.sum();
+        return total == 0 ? 0d : (double) hit / total;
+    }
+
+    public static int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,100 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import com.aliyun.gts.sniffer.core.Config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 单个模板sql的回放统计，回放耗时和源库耗时各用一个直方图记录，计数、总和、最大最小值都从直方图取
+ */
+public class TemplateStats {
+    private final int id;
+    private final String sqlId;
+    private String sampleSql;
+    private final Set<String> schemas = new HashSet<>();
+    //错误信息最多保留Config.maxErrorMsgSize条
+    private final Set<String> errorMsgs = new HashSet<>();
+    private long errorCount = 0L;
+    //回放成功的耗时，单位微秒
+    private final LogLinearHistogram replayRT = new LogLinearHistogram();
+    //源库执行耗时
+    private final LogLinearHistogram originRT = new LogLinearHistogram();
+
+    public TemplateStats(int id, String sqlId) {
+        this.id = id;
+        this.sqlId = sqlId;
+    }
+
+    /**
+     * 记录一次回放失败，msg为null时只计数
+     */
+    public void addError(String msg) {
+        errorCount++;
+        if (msg != null && errorMsgs.size() < Config.maxErrorMsgSize) {
+            errorMsgs.add(msg);
+        }
+    }
+
+    /**
+     * 合并另一个线程的统计
+     */
+    public void merge(TemplateStats other) {
+        if (sampleSql == null) {
+            sampleSql = other.sampleSql;
+        }
+        schemas.addAll(other.schemas);
+        for (String msg : other.errorMsgs) {
+            if (errorMsgs.size() >= Config.maxErrorMsgSize) {
+                break;
+            }
+            errorMsgs.add(msg);
+        }
+        errorCount += other.errorCount;
+        replayRT.merge(other.replayRT);
+        originRT.merge(other.originRT);
+    }
+
+    /**
+     * 回放次数，包括成功和失败
+     */
+    public long getRequestCount() {
+        return replayRT.getCount() + errorCount;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getSqlId() {
+        return sqlId;
+    }
+
+    public String getSampleSql() {
+        return sampleSql;
+    }
+
+    public void setSampleSql(String sampleSql) {
+        this.sampleSql = sampleSql;
+    }
+
+    public Set<String> getSchemas() {
+        return schemas;
+    }
+
+    public Set<String> getErrorMsgs() {
+        return errorMsgs;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public LogLinearHistogram getReplayRT() {
+        return replayRT;
+    }
+
+    public LogLinearHistogram getOriginRT() {
+        return originRT;
+    }
+}
@@ -0,0 +1,99 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 以模板编号为key的开放寻址表，每个回放线程一个，只由该线程写入，报告时逐个合并，不需要加锁。
+ * 模板编号由sqlId全局分配，同一个sqlId在所有线程中编号相同。
+ */
+public class TemplateStatsMap {
+    private static final ConcurrentHashMap<String, Integer> TEMPLATE_ID_MAP = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_TEMPLATE_ID = new AtomicInteger();
+
+    private TemplateStats[] table = new TemplateStats[64];
+    private int size = 0;
+
+    /**
+     * 返回sqlId对应的模板编号，第一次出现时分配
+     */
+    public static int templateId(String sqlId) {
+        Integer id = TEMPLATE_ID_MAP.get(sqlId);
+        if (id != null) {
+            return id;
+        }
+        return TEMPLATE_ID_MAP.computeIfAbsent(sqlId, k -> NEXT_TEMPLATE_ID.getAndIncrement());
+    }
+
+    public TemplateStats get(int id) {
+        int mask = table.length - 1;
+        for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+            TemplateStats stats = table[i];
+            if (stats == null || stats.getId() == id) {
+                return stats;
+            }
+        }
+    }
+
+    public TemplateStats getOrCreate(int id, String sqlId) {
+        int mask = table.length - 1;
+        int i = slot(id, mask);
+        for (; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].getId() == id) {
+                return table[i];
+            }
+        }
+        TemplateStats stats = new TemplateStats(id, sqlId);
+        table[i] = stats;
+        //装载因子不超过0.5
+        if (++size * 2 > table.length) {
+            resize();
+        }
+        return stats;
+    }
+
+    /**
+     * 把另一个线程的统计合并进来
+     */
+    public void merge(TemplateStatsMap other) {
+        for (TemplateStats stats : other.table) {
+            if (stats != null) {
+                getOrCreate(stats.getId(), stats.getSqlId()).merge(stats);
+            }
+        }
+    }
+
+    public void forEach(Consumer<TemplateStats> consumer) {
+        for (TemplateStats stats : table) {
+            if (stats != null) {
+                consumer.accept(stats);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        TemplateStats[] old = table;
+        table = new TemplateStats[old.length * 2];
+        int mask = table.length - 1;
+        for (TemplateStats stats : old) {
+            if (stats == null) {
+                continue;
+            }
+            int i = slot(stats.getId(), mask);
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = stats;
+        }
+    }
+
+    private static int slot(int id, int mask) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
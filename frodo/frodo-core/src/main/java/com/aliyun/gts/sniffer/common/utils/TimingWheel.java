@@ -0,0 +1,125 @@
+package com.aliyun.gts.sniffer.common.utils;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮，最底层每格1个时间单位，上层每格为下层一圈，按需创建。
+ * 到期时间相同的元素按加入顺序到期，不是线程安全的，只能由一个线程使用。
+ */
+public class TimingWheel<T> {
+    private final int wheelSize;
+    private final Level<T> root;
+    private long currentTime;
+    private int size = 0;
+
+    public TimingWheel(int wheelSize, long startTime) {
+        this.wheelSize = wheelSize;
+        this.root = new Level<>(1, wheelSize);
+        this.currentTime = startTime;
+    }
+
+    /**
+     * 加入时间轮，deadline不晚于当前时间时返回false，由调用方立即处理
+     */
+    public boolean add(long deadline, T item) {
+        if (deadline <= currentTime) {
+            return false;
+        }
+        put(new Entry<>(deadline, item), false);
+        size++;
+        return true;
+    }
+
+    /**
+     * 推进到now，依次处理到期的元素
+     */
+    public void advance(long now, Consumer<T> expired) {
+        while (currentTime < now) {
+            if (size == 0) {
+                currentTime = now;
+                return;
+            }
+            long t = ++currentTime;
+            cascade(root.overflow, t);
+            ArrayDeque<Entry<T>> bucket = root.buckets[(int) (t % wheelSize)];
+            Entry<T> entry;
+            while ((entry = bucket.poll()) != null) {
+                size--;
+                expired.accept(entry.item);
+            }
+        }
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param first 放到格子的头部，用于从上层降下来的元素
+     */
+    private void put(Entry<T> entry, boolean first) {
+        Level<T> level = root;
+        while (true) {
+            long levelStart = currentTime / level.tick * level.tick;
+            if (entry.deadline < levelStart + level.tick * wheelSize) {
+                ArrayDeque<Entry<T>> bucket = level.buckets[(int) (entry.deadline / level.tick % wheelSize)];
+                if (first) {
+                    bucket.addFirst(entry);
+                } else {
+                    bucket.addLast(entry);
+                }
+                return;
+            }
+            if (level.overflow == null) {
+                level.overflow = new Level<>(level.tick * wheelSize, wheelSize);
+            }
+            level = level.overflow;
+        }
+    }
+
+    //t到达上层某一格的起点时，把这一格的元素放回下层
+    //越上层的元素比下层中到期时间相同的元素加入得越早，因此先处理较低的层，
+    //每层倒序取出放到下层格子的头部，保持整体的加入顺序；
+    //上层在t降下来的元素不会落入较低层在t处理的那一格
+    private void cascade(Level<T> level, long t) {
+        if (level == null || t % level.tick != 0) {
+            return;
+        }
+        ArrayDeque<Entry<T>> bucket = level.buckets[(int) (t / level.tick % wheelSize)];
+        Entry<T> entry;
+        while ((entry = bucket.pollLast()) != null) {
+            put(entry, true);
+        }
+        cascade(level.overflow, t);
+    }
+
+    private static class Entry<T> {
+        private final long deadline;
+        private final T item;
+
+        private Entry(long deadline, T item) {
+            this.deadline = deadline;
+            this.item = item;
+        }
+    }
+
+    private static class Level<T> {
+        private final long tick;
+        private final ArrayDeque<Entry<T>>[] buckets;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tick, int wheelSize) {
+            this.tick = tick;
+            this.buckets = new ArrayDeque[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+        }
+    }
+}
@@ -52,8 +52,7 @@ public class Util {
                 return HexUtil.to16MD5(sql);
             }else{
                 DbType dbtype = JdbcConstants.ORACLE;
-                String fs = ParameterizedOutputVisitorUtils.parameterize(sql,dbtype);
-                return HexUtil.to16MD5(fs);
+                return toParameterizedSqlId(sql,dbtype);
             }
         }catch (Exception e){
             return preSqlId;
@@ -67,8 +66,7 @@ public class Util {
                 return HexUtil.to16MD5(sql);
             }else{
                 DbType dbtype = JdbcConstants.ORACLE;
-                String fs = ParameterizedOutputVisitorUtils.parameterize(sql,dbtype);
-                return HexUtil.to16MD5(fs);
+                return toParameterizedSqlId(sql,dbtype);
             }
         }catch (Exception e){
             //如果解析失败，那么使用通用的解析方法
@@ -83,8 +81,7 @@ public class Util {
                 return HexUtil.to16MD5(sql);
             }else{
                 DbType dbtype = JdbcConstants.POLARDB;
-                String fs = ParameterizedOutputVisitorUtils.parameterize(sql,dbtype);
-                return HexUtil.to16MD5(fs);
+                return toParameterizedSqlId(sql,dbtype);
             }
         }catch (Exception e){
             //如果解析失败，那么使用通用的解析方法
@@ -99,8 +96,7 @@ public class Util {
                 return HexUtil.to16MD5(sql);
             }else{
                 DbType dbtype = JdbcConstants.MYSQL;
-                String fs = ParameterizedOutputVisitorUtils.parameterize(sql,dbtype);
-                return HexUtil.to16MD5(fs);
+                return toParameterizedSqlId(sql,dbtype);
             }
         }catch (Exception ignored){
             //如果解析失败，那么使用通用的解析方法
@@ -109,6 +105,29 @@ public class Util {
 
     }
 
+    /**
+     * druid参数化后取md5作为sqlId，结果按sql指纹缓存。
+     * 参数化结果里仍有常量时，sqlId和常量取值有关，不缓存。
+     */
+    private static String toParameterizedSqlId(String sql, DbType dbtype){
+        StringBuilder fp=new StringBuilder(sql.length()+8);
+        fp.append(dbtype.name()).append(':');
+        String key=null;
+        if(fingerprint(sql,dbtype,fp)>=0){
+            key=fp.toString();
+            String sqlId=SqlIdCache.get(key);
+            if(sqlId!=null){
+                return sqlId;
+            }
+        }
+        String fs = ParameterizedOutputVisitorUtils.parameterize(sql,dbtype);
+        String sqlId=HexUtil.to16MD5(fs);
+        if(key!=null && fingerprint(fs,dbtype,null)==0){
+            SqlIdCache.put(key,sqlId);
+        }
+        return sqlId;
+    }
+
     public static String toSqlId(String sql){
         try{
             // deparameterize 只做语法解析，不做语义解析，所以无法识别+ - 是正负号还是加减，直接替换成空格,减少同一个模板sql返回多个sqlid的概率
@@ -127,8 +146,7 @@ public class Util {
                 return HexUtil.to16MD5(sql);
             }else{
                 DbType dbtype = JdbcConstants.POSTGRESQL;
-                String fs = ParameterizedOutputVisitorUtils.parameterize(sql,dbtype);
-                return HexUtil.to16MD5(fs);
+                return toParameterizedSqlId(sql,dbtype);
             }
         }catch (Exception ignored){
 
@@ -461,6 +479,172 @@ public class Util {
         return sb;
     }
 
+    /**
+     * *
+     * 生成sql指纹：字符串、数字常量替换成?，注释以外的连续空白合并成一个空格，其余字符原样保留，
+     * 只有常量取值、空白不同的sql指纹相同。比deparameterize更快，且不会合并正负号。
+     * 只有mysql把双引号当作字符串、支持反斜杠转义和#注释。
+     * @param out 指纹输出，为null时只统计常量个数
+     * @return 常量个数，无法可靠识别常量时(例如字符串没有结束、oracle的q'[]'字符串)返回-1
+     */
+    public static int fingerprint(String sql, DbType dbtype, StringBuilder out){
+        boolean mysql=dbtype==DbType.mysql;
+        int cnt=0;
+        int n=sql.length();
+        int i=0;
+        boolean blank=false;
+        boolean started=false;
+        while(i<n){
+            char c=sql.charAt(i);
+            if(Character.isWhitespace(c)){
+                blank=true;
+                i++;
+                continue;
+            }
+            if(blank && started && out!=null){
+                out.append(' ');
+            }
+            blank=false;
+            started=true;
+            int j;
+            if(c=='\''||(c=='"'&&mysql)){
+                if(i>0 && (sql.charAt(i-1)=='q'||sql.charAt(i-1)=='Q') && dbtype==DbType.oracle){
+                    return -1;
+                }
+                //字符串常量，支持''转义，mysql还支持\'转义
+                j=i+1;
+                boolean closed=false;
+                while(j<n){
+                    char t=sql.charAt(j);
+                    if(t=='\\'&&mysql){
+                        j+=2;
+                    }else if(t==c){
+                        if(j+1<n && sql.charAt(j+1)==c){
+                            j+=2;
+                        }else{
+                            j++;
+                            closed=true;
+                            break;
+                        }
+                    }else{
+                        j++;
+                    }
+                }
+                if(!closed){
+                    return -1;
+                }
+                if(out!=null){
+                    out.append('?');
+                }
+                cnt++;
+            }else if(c=='`'||c=='"'){
+                //mysql的`以及其他数据库的"是标识符，原样保留
+                j=sql.indexOf(c,i+1);
+                j=j<0?n:j+1;
+                if(out!=null){
+                    out.append(sql,i,j);
+                }
+            }else if(c=='/' && i+1<n && sql.charAt(i+1)=='*'){
+                j=sql.indexOf("*/",i+2);
+                j=j<0?n:j+2;
+                if(out!=null){
+                    out.append(sql,i,j);
+                }
+            }else if((c=='#'&&mysql) || (c=='-' && i+1<n && sql.charAt(i+1)=='-')){
+                j=sql.indexOf('\n',i);
+                j=j<0?n:j;
+                if(out!=null){
+                    out.append(sql,i,j);
+                }
+            }else if(isNumberStart(sql,i)){
+                j=i+1;
+                while(j<n){
+                    char t=sql.charAt(j);
+                    if(isIdentifierChar(t)||t=='.'){
+                        j++;
+                    }else if((t=='+'||t=='-') && (sql.charAt(j-1)=='e'||sql.charAt(j-1)=='E')
+                            && !(sql.charAt(i)=='0' && j-i>1 && (sql.charAt(i+1)=='x'||sql.charAt(i+1)=='X'))){
+                        j++;
+                    }else{
+                        break;
+                    }
+                }
+                if(isNumber(sql,i,j)){
+                    if(out!=null){
+                        out.append('?');
+                    }
+                    cnt++;
+                }else if(out!=null){
+                    out.append(sql,i,j);
+                }
+            }else if(isIdentifierChar(c)){
+                j=i+1;
+                while(j<n && isIdentifierChar(sql.charAt(j))){
+                    j++;
+                }
+                if(out!=null){
+                    out.append(sql,i,j);
+                }
+            }else{
+                j=i+1;
+                if(out!=null){
+                    out.append(c);
+                }
+            }
+            i=j;
+        }
+        return cnt;
+    }
+
+    private static boolean isIdentifierChar(char c){
+        return (c>='a'&&c<='z')||(c>='A'&&c<='Z')||(c>='0'&&c<='9')||c=='_'||c=='$'||c>127;
+    }
+
+    private static boolean isNumberStart(String sql,int i){
+        char c=sql.charAt(i);
+        if(c>='0'&&c<='9'){
+            return true;
+        }
+        //.5 这类小数，排除 t.5col 这类限定名
+        return c=='.' && i+1<sql.length() && Character.isDigit(sql.charAt(i+1))
+                && (i==0 || !(isIdentifierChar(sql.charAt(i-1))||sql.charAt(i-1)=='`'));
+    }
+
+    //十进制整数、小数、科学计数法以及0x、0b开头的数字
+    private static boolean isNumber(String sql,int start,int end){
+        if(end-start>2 && sql.charAt(start)=='0'){
+            char t=Character.toLowerCase(sql.charAt(start+1));
+            if(t=='x'||t=='b'){
+                for(int k=start+2;k<end;k++){
+                    if(Character.digit(sql.charAt(k),t=='x'?16:2)<0){
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        boolean digit=false;
+        boolean dot=false;
+        boolean exp=false;
+        for(int k=start;k<end;k++){
+            char t=sql.charAt(k);
+            if(t>='0'&&t<='9'){
+                digit=true;
+            }else if(t=='.' && !dot && !exp){
+                dot=true;
+            }else if((t=='e'||t=='E') && digit && !exp){
+                exp=true;
+                digit=false;
+                if(k+1<end && (sql.charAt(k+1)=='+'||sql.charAt(k+1)=='-')){
+                    k++;
+                }
+            }else{
+                return false;
+            }
+        }
+        return digit;
+    }
+
     //对文本的双引号进行转义
     public static String escapeBy2Quote(String sql){
         char c;
@@ -37,6 +37,11 @@ public class Config implements Serializable{
     public static long maxConnectionExpiredMS=30*60*1000;//空闲连接超时时间，超过改时间需要检查链接是否断开
     public static boolean disableInsert2Replace=false;
     public static boolean skipShard=false;
+    public static int shardParallelism=Runtime.getRuntime().availableProcessors();//切分日志的并行度
+    public static int sqlIdCacheSize=65536;//sql指纹到sqlId的缓存条数，小于等于0时不缓存
+    public static String replayFormat="json";//json|binary，binary回放前先把分片编译成二进制文件
+    public static String scheduler="sleep";//sleep|wheel，wheel使用时间轮调度，由连接池按session顺序回放
+    public static int replayConnections=0;//wheel调度时的回放连接数，小于等于0时与并发数相同
     public static long longQueryTime=1000l;
     public static boolean enableStreamRead=false;
     public static HashSet<String> excludeSqlIdSet=new HashSet<String>();
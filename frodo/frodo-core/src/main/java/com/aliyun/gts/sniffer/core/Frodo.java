@@ -19,7 +19,9 @@ import com.aliyun.gts.sniffer.common.entity.DefaultReport;
 import com.aliyun.gts.sniffer.common.entity.ReportResult;
 import com.aliyun.gts.sniffer.common.utils.*;
 import com.aliyun.gts.sniffer.thread.*;
+import com.aliyun.gts.sniffer.thread.offlinereplay.BinaryConsumerThread;
 import com.aliyun.gts.sniffer.thread.offlinereplay.JSConsumerThreadV2;
+import com.aliyun.gts.sniffer.thread.offlinereplay.ScheduledConsumerThread;
 import org.apache.commons.cli.*;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Level;
@@ -36,7 +38,7 @@ public class Frodo {
     private static final Logger logger = LoggerFactory.getLogger(Frodo.class);
     public final static String version = "1.1.29";
     //    private static HashMap<Integer, JSCaptureThread> jsCaptureThreadMap=new HashMap<>();
-    private static HashMap<Integer, JSConsumerThreadV2> jsConsumerThreadMap = new HashMap<>();
+    private static HashMap<Integer, ConsumerThread> jsConsumerThreadMap = new HashMap<>();
     private static HashMap<Integer, String> fileShardMap = null;
     public static Long firstSqlStartTime = System.currentTimeMillis();
     public static Long procStartTime = System.currentTimeMillis();
@@ -46,21 +48,9 @@ public class Frodo {
     private static final Object stopCondition = new Object();
     public static final Object startCondition = new Object();
     private static MonitorThread monitorThread;
-    private static final HashMap<String, String> sqlList = new HashMap<>();
-    private static final HashMap<String, Long> curMaxExecTime = new HashMap<>();
-    private static final HashMap<String, Long> curSumExecTime = new HashMap<>();
-    private static final HashMap<String, Long> curMinExecTime = new HashMap<>();
-    private static final HashMap<String, Long> curReqSuccessCount = new HashMap<>();
-    private static final HashMap<String, Long> curReqCount = new HashMap<>();
-    private static final HashMap<String, Long> curReqErrorCount = new HashMap<>();
-    private static final HashMap<String, Set<String>> curReqErrorMsg = new HashMap<>();
-    private static final HashMap<String, Set<String>> curReqSchema = new HashMap<>();
-
-
-    private static final HashMap<String, Long> originMaxExecTime = new HashMap<>();
-    private static final HashMap<String, Long> originSumExecTime = new HashMap<>();
-    private static final HashMap<String, Long> originMinExecTime = new HashMap<>();
-    private static final HashMap<String, Long> originExecCount = new HashMap<>();
+    private static ReplayScheduler replayScheduler = null;
+    //所有线程合并后的模板sql统计
+    private static final TemplateStatsMap templateStats = new TemplateStatsMap();
 
     public static void main(String[] args) throws Exception {
         try {
@@ -98,14 +88,24 @@ public class Frodo {
             String filePath2 = "./run/" + Config.task + "/.shard" + i;
             fileShardMap.put(i, filePath2);
         }
+        boolean sharded = false;
         if (!Config.skipShard || needShardAndFilter()) {
             //进行SQL分片
             shardAndFilter();
+            sharded = true;
             logger.info("shard and filter done!");
         } else {
             readCnt = count();
             logger.info("skip shard and filter!");
         }
+        if (Config.replayFormat.equals("binary")) {
+            if (sharded || needCompile()) {
+                compileShards();
+                logger.info("compile shards done!");
+            } else {
+                logger.info("skip compile shards!");
+            }
+        }
         firstSqlStartTime=getFirstLogTime();
         if(firstSqlStartTime==null){
             logger.error("can not get first log time");
@@ -127,6 +127,9 @@ public class Frodo {
             }
             Thread.sleep(100);
         }
+        if (replayScheduler != null) {
+            replayScheduler.start();
+        }
         //控制线程同时启动
         synchronized (Frodo.startCondition) {
             Frodo.startCondition.notifyAll();
@@ -170,9 +173,12 @@ public class Frodo {
         }
         closeTimer.cancel();
 
-        for (JSConsumerThreadV2 thread : jsConsumerThreadMap.values()) {
+        for (ConsumerThread thread : jsConsumerThreadMap.values()) {
             thread.setRunning(false);
         }
+        if (replayScheduler != null) {
+            replayScheduler.stop();
+        }
 
 //        for(JSCaptureThread thread: jsCaptureThreadMap.values()){
 //            thread.setRunning(false);
@@ -180,6 +186,11 @@ public class Frodo {
         end = new Date();
         //统计输出结果
         aggregateRT(new ArrayList<>(jsConsumerThreadMap.values()));
+        logger.info(String.format("sqlId cache hit:%d,miss:%d,hit ratio:%.2f%%,size:%d", SqlIdCache.getHitCnt(),
+            SqlIdCache.getMissCnt(), SqlIdCache.getHitRatio() * 100, SqlIdCache.size()));
+        if (replayScheduler != null) {
+            logger.info(replayScheduler.getLagReport());
+        }
         Thread.sleep(100);
         logger.info("exit time:" + DateUtil.toChar(end));
         monitorThread.close();
@@ -189,7 +200,7 @@ public class Frodo {
 
     public static boolean isThreadDone() {
 
-        for (JSConsumerThreadV2 thread : jsConsumerThreadMap.values()) {
+        for (ConsumerThread thread : jsConsumerThreadMap.values()) {
             if (!thread.isClosed()) {
                 return false;
             }
@@ -227,25 +238,41 @@ public class Frodo {
         int total = 0;
         File[] files = folder.listFiles();
         for (File file : files) {
-            if (file.getName().contains(".shard")) {
+            if (file.getName().matches("\\.shard\\d+")) {
                 total++;
             }
         }
         return total != Config.sqlThreadCnt;
     }
 
+    //判断是否需要重新编译二进制回放文件
+    public static boolean needCompile() {
+        for (int i = 0; i < Config.sqlThreadCnt; i++) {
+            if (!new File(getBinaryShardFile(i)).exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String getBinaryShardFile(int shardId) {
+        return fileShardMap.get(shardId) + ".bin";
+    }
+
+    //把json分片编译成二进制回放文件
+    public static void compileShards() throws IOException {
+        List<String> jsonFiles = new ArrayList<>();
+        List<String> binaryFiles = new ArrayList<>();
+        for (int i = 0; i < Config.sqlThreadCnt; i++) {
+            jsonFiles.add(fileShardMap.get(i));
+            binaryFiles.add(getBinaryShardFile(i));
+        }
+        ReplayCompiler.compileAll(jsonFiles, binaryFiles, Config.shardParallelism);
+    }
+
     //当不重新分片的时候，计算总的行数，用于准确打印回放进度。
     public static long count() throws Exception {
-        Runtime runtime = Runtime.getRuntime();
-        Process process = runtime.exec("wc -l " + Config.replayJSONFilePath);
-        InputStream inStream = process.getInputStream();
-        InputStreamReader inReader = new InputStreamReader(inStream);
-        BufferedReader inBuffer = new BufferedReader(inReader);
-        process.waitFor();
-        String s;
-        s = inBuffer.readLine();
-        String[] arr = s.split("\\s+");
-        return Long.parseLong(arr[0]);
+        return ShardPreparer.countLines(Config.replayJSONFilePath, Config.shardParallelism);
     }
 
     //拆分文件，用于分片读取sql
@@ -259,76 +286,14 @@ public class Frodo {
                 file.delete();
             }
         }
-        HashMap<Integer, BufferedWriter> shardWriter = new HashMap<>();
         //根据新的线程数进行切分
+        List<String> shardFiles = new ArrayList<>();
         for (int i = 0; i < Config.sqlThreadCnt; i++) {
-            String filePath = "./run/" + Config.task + "/.shard" + i;
-            File file = new File(filePath);
-            if (file.exists()) {
-                file.delete();
-            }
-            file.createNewFile();
-            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(filePath, false));
-            shardWriter.put(i, bufferedWriter);
-        }
-        BufferedReader reader;
-        reader = new BufferedReader(new FileReader(Config.replayJSONFilePath), 20 * 1024 * 1024);
-
-        HashMap<String, Integer> sessionMap = new HashMap<>();
-        int sessionMapId = 0;
-        String line;
-        System.out.println("==============");
-        while (true) {
-            line = reader.readLine();
-            if (line == null) {
-                break;
-            }
-            if (StringUtils.isEmpty(line)) {
-                continue;
-            }
-            JSONObject sqlObject=null;
-            try{
-                sqlObject = JSONObject.parseObject(line);
-            }catch (Exception e){
-                logger.error(line);
-                throw e;
-            }
-
-            String s = sqlObject.getString("session");
-            String schema = sqlObject.getString("schema");
-            if (Config.schemaMap.size() != 0) {
-                if (Config.schemaMap.containsKey(schema)) {
-                    sqlObject.put("schema", Config.schemaMap.get(schema));
-                } else {
-                    continue;
-                }
-            }
-            int key;
-            if (Config.mode.equals("simulate")) {
-                if (sessionMap.containsKey(s)) {
-                    key = sessionMap.get(s);
-                } else {
-                    key = sessionMapId;
-                    sessionMapId++;
-                    sessionMap.put(s, key);
-                }
-            } else {
-                key = (int) (readCnt % Config.sqlThreadCnt);
-            }
-            BufferedWriter writer = shardWriter.get(key % Config.sqlThreadCnt);
-            writer.write(sqlObject.toJSONString());
-            writer.write("\n");
-            readCnt++;
-            if (readCnt % 100000 == 0) {
-                for (BufferedWriter w : shardWriter.values()) {
-                    w.flush();
-                }
-            }
-        }
-        for (BufferedWriter w : shardWriter.values()) {
-            w.flush();
-            w.close();
+            shardFiles.add(fileShardMap.get(i));
         }
+        ShardPreparer preparer = new ShardPreparer(Config.replayJSONFilePath, shardFiles, Config.shardParallelism,
+            Config.mode.equals("simulate"), Config.schemaMap);
+        readCnt = preparer.prepare();
     }
     public static Long getFirstLogTime() throws IOException{
         BufferedReader reader;
@@ -395,13 +360,32 @@ public class Frodo {
     public static void replayJSONFileV2() throws Exception {
         jsConsumerThreadMap = new HashMap<>();
         long timeDiff = BigDecimal.valueOf(System.currentTimeMillis() - firstSqlStartTime).multiply(BigDecimal.valueOf(Config.rateFactor)).longValue();
+        if (Config.scheduler.equals("wheel")) {
+            replayScheduler = new ReplayScheduler(Config.sqlThreadCnt);
+        }
         for (int i = 0; i < Config.sqlThreadCnt; i++) {
-            JSConsumerThreadV2 consumerThread = new JSConsumerThreadV2(fileShardMap.get(i));
-            consumerThread.setExecTimeDiff(timeDiff);
+            ConsumerThread consumerThread;
+            if (Config.replayFormat.equals("binary")) {
+                consumerThread = new BinaryConsumerThread(getBinaryShardFile(i), replayScheduler);
+            } else {
+                JSConsumerThreadV2 jsConsumerThread = new JSConsumerThreadV2(fileShardMap.get(i), replayScheduler);
+                jsConsumerThread.setExecTimeDiff(timeDiff);
+                consumerThread = jsConsumerThread;
+            }
             consumerThread.setName("consumer" + i);
             consumerThread.start();
             jsConsumerThreadMap.put(i, consumerThread);
         }
+        //时间轮调度时，分片线程只负责读取，由回放线程执行sql
+        if (replayScheduler != null) {
+            int connections = Config.replayConnections > 0 ? Config.replayConnections : Config.sqlThreadCnt;
+            for (int i = 0; i < connections; i++) {
+                ScheduledConsumerThread replayThread = new ScheduledConsumerThread(replayScheduler);
+                replayThread.setName("replay" + i);
+                replayThread.start();
+                jsConsumerThreadMap.put(Config.sqlThreadCnt + i, replayThread);
+            }
+        }
     }
 
     public static void startMonitorThread() {
@@ -487,6 +471,11 @@ public class Frodo {
         options.addOption(null, "exclude-sql-id", true, "排除哪些模板sql，多个sqlId以逗号分割");
         options.addOption(null, "generate-sql-id", false, "生成模板sql指纹ID");
         options.addOption(null, "skip-shard", false, "跳过日志切分，前提：没有参数变更，且第一次已经完整切分过一次日志");
+        options.addOption(null, "shard-parallelism", true, "切分日志的并行度，默认cpu核数");
+        options.addOption(null, "sql-id-cache-size", true, "sql指纹到sqlId的缓存条数，默认65536，0表示不缓存");
+        options.addOption(null, "replay-format", true, "json|binary，binary：回放前把分片编译成二进制文件，回放时不再解析json，默认json");
+        options.addOption(null, "scheduler", true, "sleep|wheel，wheel：按时间轮调度sql，由连接池按session顺序回放，默认sleep");
+        options.addOption(null, "replay-connections", true, "wheel调度时的回放连接数，默认与并发数相同");
         options.addOption(null, "enable-stream-read", false, "开启流式读取");
         options.addOption(null, "disable-transaction", false, "开启流式读取");
         options.addOption(null, "exclude-long-query-time", true, "开启流式读取");
@@ -546,6 +535,34 @@ public class Frodo {
             Config.skipShard = true;
             logger.info("skipShard:" + Config.skipShard);
         }
+        if (commandLine.hasOption("shard-parallelism")) {
+            Config.shardParallelism = Integer.parseInt(commandLine.getOptionValue("shard-parallelism"));
+            logger.info("shardParallelism:" + Config.shardParallelism);
+        }
+        if (commandLine.hasOption("sql-id-cache-size")) {
+            Config.sqlIdCacheSize = Integer.parseInt(commandLine.getOptionValue("sql-id-cache-size"));
+            logger.info("sqlIdCacheSize:" + Config.sqlIdCacheSize);
+        }
+        if (commandLine.hasOption("replay-format")) {
+            Config.replayFormat = commandLine.getOptionValue("replay-format");
+            if (!Config.replayFormat.equals("json") && !Config.replayFormat.equals("binary")) {
+                help("not valid args value:" + Config.replayFormat);
+                System.exit(1);
+            }
+            logger.info("replayFormat:" + Config.replayFormat);
+        }
+        if (commandLine.hasOption("scheduler")) {
+            Config.scheduler = commandLine.getOptionValue("scheduler");
+            if (!Config.scheduler.equals("sleep") && !Config.scheduler.equals("wheel")) {
+                help("not valid args value:" + Config.scheduler);
+                System.exit(1);
+            }
+            logger.info("scheduler:" + Config.scheduler);
+        }
+        if (commandLine.hasOption("replay-connections")) {
+            Config.replayConnections = Integer.parseInt(commandLine.getOptionValue("replay-connections"));
+            logger.info("replayConnections:" + Config.replayConnections);
+        }
         if (commandLine.hasOption("enable-stream-read")) {
             Config.enableStreamRead = true;
             logger.info("enableStreamRead:" + Config.enableStreamRead);
@@ -770,134 +787,9 @@ public class Frodo {
 
 
     private static void aggregateRT(Collection<ConsumerThread> threads) {
+        //每个线程的统计只由该线程写入，逐个合并即可，不需要加锁
         for (ConsumerThread thread : threads) {
-            sqlList.putAll(thread.getSqlList());
-            for (Map.Entry<String, Long> entry : thread.getSqlReplayRTNum().entrySet()) {
-                Long tmpReqSuccessCount = curReqSuccessCount.get(entry.getKey());
-
-                if (tmpReqSuccessCount == null) {
-                    tmpReqSuccessCount = entry.getValue();
-                } else {
-                    tmpReqSuccessCount += entry.getValue();
-                }
-                curReqSuccessCount.put(entry.getKey(), tmpReqSuccessCount);
-
-                Long tmpReqCount = curReqCount.get(entry.getKey());
-                if (tmpReqCount == null) {
-                    tmpReqCount = entry.getValue();
-                } else {
-                    tmpReqCount += entry.getValue();
-                }
-                curReqCount.put(entry.getKey(), tmpReqCount);
-            }
-            for (Map.Entry<String, Long> entry : thread.getSqlReplayErrorSum().entrySet()) {
-                Long tmpExecErrorCount = curReqErrorCount.get(entry.getKey());
-                if (tmpExecErrorCount == null) {
-                    tmpExecErrorCount = entry.getValue();
-                } else {
-                    tmpExecErrorCount += entry.getValue();
-                }
-                curReqErrorCount.put(entry.getKey(), tmpExecErrorCount);
-
-                Long tmpReqCount = curReqCount.get(entry.getKey());
-                if (tmpReqCount == null) {
-                    tmpReqCount = entry.getValue();
-                } else {
-                    tmpReqCount += entry.getValue();
-                }
-                curReqCount.put(entry.getKey(), tmpReqCount);
-            }
-            for (Map.Entry<String, Long> entry : thread.getSqlReplayRTSum().entrySet()) {
-                Long tmpSumExecTime = curSumExecTime.get(entry.getKey());
-                if (tmpSumExecTime == null) {
-                    tmpSumExecTime = entry.getValue();
-                } else {
-                    tmpSumExecTime += entry.getValue();
-                }
-                curSumExecTime.put(entry.getKey(), tmpSumExecTime);
-            }
-            for (Map.Entry<String, Set<String>> entry : thread.getSqlReplaySchema().entrySet()) {
-                Set<String> replaySchemaSet = curReqSchema.get(entry.getKey());
-                if (replaySchemaSet == null) {
-                    curReqSchema.put(entry.getKey(), entry.getValue());
-                } else {
-                    replaySchemaSet.addAll(entry.getValue());
-                }
-            }
-            for (Map.Entry<String, Set<String>> entry : thread.getSqlReplayErrorMsg().entrySet()) {
-                Set<String> errorMsg = curReqErrorMsg.get(entry.getKey());
-                if (errorMsg == null) {
-                    curReqErrorMsg.put(entry.getKey(), entry.getValue());
-                } else {
-                    //最多采样5条错误日志
-                    if (errorMsg.size() >= Config.maxErrorMsgSize) {
-                        continue;
-                    }
-                    errorMsg.addAll(entry.getValue());
-                }
-            }
-            for (Map.Entry<String, Long> entry : thread.getSqlReplayRTMax().entrySet()) {
-                Long tmpMaxExecTime = curMaxExecTime.get(entry.getKey());
-                if (tmpMaxExecTime == null) {
-                    tmpMaxExecTime = entry.getValue();
-                } else {
-                    if (tmpMaxExecTime < entry.getValue())
-                        tmpMaxExecTime = entry.getValue();
-                }
-                curMaxExecTime.put(entry.getKey(), tmpMaxExecTime);
-            }
-            for (Map.Entry<String, Long> entry : thread.getSqlReplayRTMin().entrySet()) {
-                Long tmpMinExecTime = curMinExecTime.get(entry.getKey());
-                if (tmpMinExecTime == null) {
-                    tmpMinExecTime = entry.getValue();
-                } else {
-                    if (tmpMinExecTime > entry.getValue())
-                        tmpMinExecTime = entry.getValue();
-                }
-                curMinExecTime.put(entry.getKey(), tmpMinExecTime);
-            }
-            //todo:stat origin exec time
-            for (Map.Entry<String, Long> entry : thread.getOriginMinExecTime().entrySet()) {
-                Long tmpMinExecTime = originMinExecTime.get(entry.getKey());
-                if (tmpMinExecTime == null) {
-                    tmpMinExecTime = entry.getValue();
-                } else {
-                    if (tmpMinExecTime > entry.getValue())
-                        tmpMinExecTime = entry.getValue();
-                }
-                originMinExecTime.put(entry.getKey(), tmpMinExecTime);
-            }
-
-            for (Map.Entry<String, Long> entry : thread.getOriginMaxExecTime().entrySet()) {
-                Long tmpMinExecTime = originMaxExecTime.get(entry.getKey());
-                if (tmpMinExecTime == null) {
-                    tmpMinExecTime = entry.getValue();
-                } else {
-                    if (tmpMinExecTime < entry.getValue())
-                        tmpMinExecTime = entry.getValue();
-                }
-                originMaxExecTime.put(entry.getKey(), tmpMinExecTime);
-            }
-
-            for (Map.Entry<String, Long> entry : thread.getOriginExecCount().entrySet()) {
-                Long tmpMinExecTime = originExecCount.get(entry.getKey());
-                if (tmpMinExecTime == null) {
-                    tmpMinExecTime = entry.getValue();
-                } else {
-                    tmpMinExecTime += entry.getValue();
-                }
-                originExecCount.put(entry.getKey(), tmpMinExecTime);
-            }
-
-            for (Map.Entry<String, Long> entry : thread.getOriginSumExecTime().entrySet()) {
-                Long tmpMinExecTime = originSumExecTime.get(entry.getKey());
-                if (tmpMinExecTime == null) {
-                    tmpMinExecTime = entry.getValue();
-                } else {
-                    tmpMinExecTime += entry.getValue();
-                }
-                originSumExecTime.put(entry.getKey(), tmpMinExecTime);
-            }
+            templateStats.merge(thread.getTemplateStats());
         }
         aggregateAndWrite();
     }
@@ -950,30 +842,41 @@ public class Frodo {
         if (execTime == 0) {
             execTime = 1;
         }
+        final double seconds = execTime;
         List<DefaultReport> reports = new ArrayList<>();
-        for (String s : originExecCount.keySet()) {
-            if (curReqCount.get(s) == null) {
-                continue;
+        templateStats.forEach(stats -> {
+            if (stats.getOriginRT().getCount() == 0 || stats.getRequestCount() == 0) {
+                return;
             }
+            LogLinearHistogram replayRT = stats.getReplayRT();
+            LogLinearHistogram originRT = stats.getOriginRT();
             DefaultReport report = new DefaultReport();
-            report.setSqlId(s);
-            report.setRequest(curReqCount.get(s) == null ? 0 : curReqCount.get(s));
-            report.setReqPerSecond(report.getRequest() / execTime);
-            report.setErrorReq(curReqErrorCount.get(s) == null ? 0 : curReqErrorCount.get(s));
-            report.setErrorReqPerSecond((curReqErrorCount.get(s) == null ? 0 : curReqErrorCount.get(s)) / execTime);
-            report.setOriginMinRT(originMinExecTime.get(s) * 1.0);
-            report.setMinRT((curMinExecTime.get(s) == null ? 0 : curMinExecTime.get(s)) * 1.0);
-            report.setOriginAvgRT(originSumExecTime.get(s) / originExecCount.get(s) * 1.0);
-            report.setAvgRT(curSumExecTime.get(s) == null ? 0 : curSumExecTime.get(s) * 1.0 / (curReqSuccessCount.get(s) == 0 ? 1 : curReqSuccessCount.get(s)));
-            report.setOriginMaxRT((originMaxExecTime.get(s) == null ? 0 : originMaxExecTime.get(s)) * 1.0);
-            report.setMaxRT((curMaxExecTime.get(s) == null ? 0 : curMaxExecTime.get(s)) * 1.0);
-            report.setSchema(getSchemaStr(curReqSchema.get(s)));
-            if (sqlList.get(s).length() > 10000) {
-                report.setSampleSql(sqlList.get(s).substring(0, 9997)+"...");
+            report.setSqlId(stats.getSqlId());
+            report.setRequest(stats.getRequestCount());
+            report.setReqPerSecond(report.getRequest() / seconds);
+            report.setErrorReq(stats.getErrorCount());
+            report.setErrorReqPerSecond(stats.getErrorCount() / seconds);
+            report.setOriginMinRT(originRT.getMin() * 1.0);
+            report.setMinRT(replayRT.getMin() * 1.0);
+            report.setOriginAvgRT(originRT.getMean());
+            report.setAvgRT(replayRT.getMean());
+            report.setOriginMaxRT(originRT.getMax() * 1.0);
+            report.setMaxRT(replayRT.getMax() * 1.0);
+            report.setOriginP50RT(originRT.getValueAtPercentile(50) * 1.0);
+            report.setP50RT(replayRT.getValueAtPercentile(50) * 1.0);
+            report.setOriginP95RT(originRT.getValueAtPercentile(95) * 1.0);
+            report.setP95RT(replayRT.getValueAtPercentile(95) * 1.0);
+            report.setOriginP99RT(originRT.getValueAtPercentile(99) * 1.0);
+            report.setP99RT(replayRT.getValueAtPercentile(99) * 1.0);
+            report.setOriginP999RT(originRT.getValueAtPercentile(99.9) * 1.0);
+            report.setP999RT(replayRT.getValueAtPercentile(99.9) * 1.0);
+            report.setSchema(getSchemaStr(stats.getSchemas()));
+            if (stats.getSampleSql().length() > 10000) {
+                report.setSampleSql(stats.getSampleSql().substring(0, 9997)+"...");
             } else {
-                report.setSampleSql(sqlList.get(s));
+                report.setSampleSql(stats.getSampleSql());
             }
-            report.setErrorMsg(getErrorMsg(curReqErrorMsg.get(s)));
+            report.setErrorMsg(getErrorMsg(stats.getErrorMsgs()));
 
 //            if (curReqErrorCount.get(s) != null && curReqErrorCount.get(s) > 0 && Config.enableSqlTransfer) {
 //                try {
@@ -1015,7 +918,7 @@ public class Frodo {
 //            }
 
             reports.add(report);
-        }
+        });
         return reports;
     }
 
@@ -1062,37 +965,24 @@ public class Frodo {
         reportResult.setSourceDbType(Config.sourceDB);
         reportResult.setDstDbType(Config.replayTo);
         reportResult.setExecTime((end.getTime() - begin.getTime()) / 1000);
-        reportResult.setSqlTemplateCnt(sqlList.size());
-        //success requests
-        Long tmp = 0L;
-        for (Long x : curReqCount.values()) {
-            tmp += x;
-        }
-
-        reportResult.setReqCnt(tmp);
-        //error requests
-        tmp = 0L;
-        for (Long x : curReqErrorCount.values()) {
-            tmp += x;
-        }
-        reportResult.setErrReqCnt(tmp);
-
-        //计算模板sql 成功率
-        tmp = 0L;
-        for (String sqlId : sqlList.keySet()) {
-            Long errNum = curReqErrorCount.get(sqlId);
-            if (errNum != null && errNum != 0) {
-                tmp++;
+        reportResult.setSqlTemplateCnt(templateStats.size());
+        long[] sums = new long[4];
+        templateStats.forEach(stats -> {
+            sums[0] += stats.getRequestCount();
+            sums[1] += stats.getErrorCount();
+            //计算模板sql 成功率
+            if (stats.getErrorCount() > 0) {
+                sums[2]++;
             }
-        }
-        reportResult.setSqlTemplateErrCnt(tmp);
-        reportResult.setSqlTemplateSuccessCnt(sqlList.size() - tmp);
-        reportResult.setSqlTemplateCompatibility((sqlList.size() - tmp) * 1.0 / sqlList.size());
-        //总的执行时间
-        tmp = 0L;
-        for (Long x : curSumExecTime.values()) {
-            tmp += x;
-        }
+            //总的执行时间
+            sums[3] += stats.getReplayRT().getSum();
+        });
+        reportResult.setReqCnt(sums[0]);
+        reportResult.setErrReqCnt(sums[1]);
+        reportResult.setSqlTemplateErrCnt(sums[2]);
+        reportResult.setSqlTemplateSuccessCnt(templateStats.size() - sums[2]);
+        reportResult.setSqlTemplateCompatibility((templateStats.size() - sums[2]) * 1.0 / templateStats.size());
+        long tmp = sums[3];
         reportResult.setSuccessReqCnt(reportResult.getReqCnt() - reportResult.getErrReqCnt());
         reportResult.setAvgReqTime(tmp * 1.0 / (reportResult.getSuccessReqCnt() == 0 ? 1 : reportResult.getSuccessReqCnt()));
         reportResult.setSuccessReqRatio(reportResult.getSuccessReqCnt() * 1.0 / (reportResult.getReqCnt() == 0 ? 1 : reportResult.getReqCnt()));
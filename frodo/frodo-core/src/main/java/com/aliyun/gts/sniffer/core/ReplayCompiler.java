@@ -0,0 +1,137 @@
+package com.aliyun.gts.sniffer.core;
+
+import com.alibaba.fastjson.JSONObject;
+import com.aliyun.gts.sniffer.common.entity.ReplayTemplate;
+import com.aliyun.gts.sniffer.common.utils.ReplayFileWriter;
+import com.aliyun.gts.sniffer.common.utils.Util;
+import com.aliyun.gts.sniffer.thread.ConsumerThread;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 把切分后的json日志编译成二进制回放文件，回放时不再解析json、计算sqlId。
+ * 模板按sql文本去重，最多保留MAX_TEMPLATE_CNT个，淘汰最久未用的模板并复用其编号，
+ * 因此不带参数的sql文本各不相同时，编译和回放的内存占用也是有界的。
+ */
+public class ReplayCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayCompiler.class);
+    private static final int MAX_TEMPLATE_CNT = 65536;
+
+    /**
+     * 并行编译多个分片
+     */
+    public static void compileAll(List<String> jsonFiles, List<String> binaryFiles, int parallelism)
+        throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < jsonFiles.size(); i++) {
+                String jsonFile = jsonFiles.get(i);
+                String binaryFile = binaryFiles.get(i);
+                futures.add(executor.submit(() -> compile(jsonFile, binaryFile)));
+            }
+            for (Future<Long> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 编译单个分片，返回写入的sql条数
+     */
+    public static long compile(String jsonFile, String binaryFile) throws IOException {
+        LinkedHashMap<String, ReplayTemplate> templateMap = new LinkedHashMap<>(16, 0.75f, true);
+        Map<String, Integer> schemaMap = new HashMap<>();
+        int nextTemplateId = 0;
+        long cnt = 0;
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8), 2 * 1024 * 1024);
+             ReplayFileWriter writer = new ReplayFileWriter(binaryFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isEmpty(line)) {
+                    continue;
+                }
+                JSONObject object;
+                try {
+                    object = JSONObject.parseObject(line);
+                } catch (Exception e) {
+                    logger.error(line);
+                    throw e;
+                }
+                if (object == null) {
+                    continue;
+                }
+                String sql = object.getString("convertSqlText");
+                if (sql == null) {
+                    continue;
+                }
+                ReplayTemplate template = templateMap.get(sql);
+                if (template == null) {
+                    template = new ReplayTemplate();
+                    if (templateMap.size() >= MAX_TEMPLATE_CNT) {
+                        Iterator<ReplayTemplate> it = templateMap.values().iterator();
+                        template.setId(it.next().getId());
+                        it.remove();
+                    } else {
+                        template.setId(nextTemplateId++);
+                    }
+                    template.setSql(sql);
+                    template.setSqlId(ConsumerThread.toSqlId(sql, object.getString("sqlId")));
+                    template.setSqlType(ConsumerThread.getSQLType(
+                        Util.trimHeaderHint(sql.toLowerCase(Locale.ROOT)).trim()));
+                    templateMap.put(sql, template);
+                    writer.writeTemplate(template);
+                }
+
+                String db = object.getString("schema");
+                //默认把schema转成小写。
+                if (db != null && !Config.diableLowerSchema) {
+                    db = db.toLowerCase(Locale.ROOT);
+                }
+                int schemaId = -1;
+                if (db != null) {
+                    Integer id = schemaMap.get(db);
+                    if (id == null) {
+                        id = schemaMap.size();
+                        schemaMap.put(db, id);
+                        writer.writeSchema(id, db);
+                    }
+                    schemaId = id;
+                }
+                writer.writeEvent(object.getLongValue("startTime"), object.getLongValue("execTime"),
+                    object.getString("session"), schemaId, template.getId(), object.getJSONArray("parameter"));
+                cnt++;
+            }
+        }
+        return cnt;
+    }
+}
@@ -0,0 +1,268 @@
+package com.aliyun.gts.sniffer.core;
+
+import com.aliyun.gts.sniffer.common.entity.ReplayEvent;
+import com.aliyun.gts.sniffer.common.utils.LogLinearHistogram;
+import com.aliyun.gts.sniffer.common.utils.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 时间轮回放调度器。读取线程解析出sql后按计划发送时间放入时间轮，由单独的调度线程在到期时放行，
+ * 放行的sql按session排队，回放线程从就绪队列取sql执行，同一个session同时只有一条sql在执行，
+ * 从而保持session内的顺序，一条慢sql也只阻塞它所在的session。
+ * 计划发送时间和实际放行、实际发送时间的差值分别记录到直方图，用来区分是回放端还是目标库跟不上。
+ */
+public class ReplayScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayScheduler.class);
+    private static final int WHEEL_SIZE = 512;
+    //读取线程最多提前多少毫秒把sql交给调度器
+    private static final long LOOKAHEAD_MS = 2000;
+    //已读取但还没执行完的sql上限
+    private static final int MAX_PENDING = 100000;
+    private static final long PARK_NANOS = 500_000L;
+
+    private final int readerCnt;
+    private final double rateFactor = Config.rateFactor;
+    private final boolean immediate = Config.circle || Config.rateFactor == 0.0f;
+    private final ConcurrentLinkedQueue<ReplayEvent> inbox = new ConcurrentLinkedQueue<>();
+    private final Semaphore pendingPermits = new Semaphore(MAX_PENDING);
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readyCondition = lock.newCondition();
+    //有sql在排队或正在执行的session
+    private final HashMap<Object, ArrayDeque<ReplayEvent>> sessionMap = new HashMap<>();
+    private final ArrayDeque<ArrayDeque<ReplayEvent>> readyQueue = new ArrayDeque<>();
+    private int finishedReaderCnt = 0;
+
+    //调度线程放行时间 - 计划发送时间，单位微秒
+    private final LogLinearHistogram releaseLag = new LogLinearHistogram();
+    //回放线程开始执行时间 - 计划发送时间，单位微秒，每个回放线程一个
+    private final List<LogLinearHistogram> sendLagList = new ArrayList<>();
+
+    private volatile boolean running = true;
+    private volatile long baseNanos = System.nanoTime();
+    private Thread dispatcher;
+
+    public ReplayScheduler(int readerCnt) {
+        this.readerCnt = readerCnt;
+    }
+
+    /**
+     * 开始计时并启动调度线程，需要在读取线程开始读取前调用
+     */
+    public void start() {
+        baseNanos = System.nanoTime();
+        dispatcher = new Thread(this::dispatch, "replay-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            LockSupport.unpark(dispatcher);
+            try {
+                dispatcher.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            readyCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 根据采集时的开始时间(毫秒)计算计划发送时间
+     */
+    public long getDueTime(long startTime) {
+        if (immediate) {
+            return 0L;
+        }
+        return (long) ((startTime - Frodo.firstSqlStartTime) * rateFactor);
+    }
+
+    public long nowMillis() {
+        return (System.nanoTime() - baseNanos) / 1_000_000L;
+    }
+
+    public long nowMicros() {
+        return (System.nanoTime() - baseNanos) / 1_000L;
+    }
+
+    /**
+     * 读取线程调用，距离计划发送时间太远或者积压太多时阻塞，调度器停止后丢弃
+     */
+    public void schedule(ReplayEvent event) {
+        try {
+            long wait = event.getDueTime() - nowMillis() - LOOKAHEAD_MS;
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            while (!pendingPermits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        pending.incrementAndGet();
+        inbox.add(event);
+    }
+
+    /**
+     * 读取线程读完后调用
+     */
+    public void finishReader() {
+        lock.lock();
+        try {
+            finishedReaderCnt++;
+            readyCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 回放线程取下一条可执行的sql，超时返回null
+     */
+    public ReplayEvent poll(long timeoutMills) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMills);
+        lock.lock();
+        try {
+            while (true) {
+                ArrayDeque<ReplayEvent> queue = readyQueue.poll();
+                if (queue != null) {
+                    return queue.peek();
+                }
+                if (!running || isFinished() || nanos <= 0) {
+                    return null;
+                }
+                nanos = readyCondition.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 回放线程执行完一条sql后调用，该session还有sql时重新放入就绪队列
+     */
+    public void done(ReplayEvent event) {
+        Object key = sessionKey(event);
+        lock.lock();
+        try {
+            ArrayDeque<ReplayEvent> queue = sessionMap.get(key);
+            queue.poll();
+            if (queue.isEmpty()) {
+                sessionMap.remove(key);
+            } else {
+                readyQueue.add(queue);
+                readyCondition.signal();
+            }
+            if (pending.decrementAndGet() == 0 && finishedReaderCnt == readerCnt) {
+                readyCondition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        pendingPermits.release();
+    }
+
+    /**
+     * 所有读取线程都已读完，且读出的sql都已执行完
+     */
+    public boolean isFinished() {
+        lock.lock();
+        try {
+            return finishedReaderCnt == readerCnt && pending.get() == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public LogLinearHistogram newSendLagHistogram() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        synchronized (sendLagList) {
+            sendLagList.add(histogram);
+        }
+        return histogram;
+    }
+
+    public String getLagReport() {
+        LogLinearHistogram sendLag = new LogLinearHistogram();
+        synchronized (sendLagList) {
+            for (LogLinearHistogram histogram : sendLagList) {
+                sendLag.merge(histogram);
+            }
+        }
+        return "replay lag(us),release:" + format(releaseLag) + ";send:" + format(sendLag);
+    }
+
+    private static String format(LogLinearHistogram histogram) {
+        return String.format("count:%d,p50:%d,p99:%d,p999:%d,max:%d", histogram.getCount(),
+            histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+            histogram.getValueAtPercentile(99.9), histogram.getMax());
+    }
+
+    private void dispatch() {
+        TimingWheel<ReplayEvent> wheel = new TimingWheel<>(WHEEL_SIZE, 0L);
+        try {
+            while (running) {
+                wheel.advance(nowMillis(), this::release);
+                ReplayEvent event;
+                while ((event = inbox.poll()) != null) {
+                    if (!wheel.add(event.getDueTime(), event)) {
+                        release(event);
+                    }
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        } catch (Exception e) {
+            logger.error("replay dispatcher exit!!!", e);
+        }
+    }
+
+    private void release(ReplayEvent event) {
+        releaseLag.record(nowMicros() - event.getDueTime() * 1000L);
+        Object key = sessionKey(event);
+        lock.lock();
+        try {
+            ArrayDeque<ReplayEvent> queue = sessionMap.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                sessionMap.put(key, queue);
+                queue.add(event);
+                readyQueue.add(queue);
+                readyCondition.signal();
+            } else {
+                queue.add(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //没有session的sql之间不保证顺序
+    private static Object sessionKey(ReplayEvent event) {
+        return event.getSession() == null ? event : event.getSession();
+    }
+}
@@ -0,0 +1,335 @@
+package com.aliyun.gts.sniffer.core;
+
+import com.alibaba.fastjson.JSON;
+import com.aliyun.gts.sniffer.common.utils.JSONFieldExtractor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 并行切分、过滤回放日志。
+ * 日志按换行对齐切成若干数据块，由多个线程只解析session、schema字段后分到各个分片，
+ * 再由调用线程按数据块顺序写入分片文件，分片内的sql顺序与原日志一致。
+ * simulate模式按session哈希分片，同一个session总在同一个分片。
+ */
+public class ShardPreparer {
+    private static final Logger logger = LoggerFactory.getLogger(ShardPreparer.class);
+    //每个数据块的大小
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    //数据块的最后一行超出块尾时，每次多读的大小
+    private static final int CHUNK_EXTEND_SIZE = 64 * 1024;
+    //所有分片写缓冲的总大小
+    private static final int TOTAL_WRITE_BUFFER_SIZE = 128 * 1024 * 1024;
+    private static final int MIN_WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final String file;
+    private final List<String> shardFiles;
+    private final int parallelism;
+    private final boolean simulate;
+    private final Map<String, byte[]> schemaMap = new HashMap<>();
+    private final ThreadLocal<byte[]> readBuffer = new ThreadLocal<>();
+
+    public ShardPreparer(String file, List<String> shardFiles, int parallelism, boolean simulate,
+                         Map<String, String> schemaMap) {
+        this.file = file;
+        this.shardFiles = shardFiles;
+        this.parallelism = Math.max(1, parallelism);
+        this.simulate = simulate;
+        for (Map.Entry<String, String> entry : schemaMap.entrySet()) {
+            this.schemaMap.put(entry.getKey(), JSON.toJSONString(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 切分日志，返回写入分片的sql条数
+     */
+    public long prepare() throws IOException {
+        int shardCnt = shardFiles.size();
+        int writeBufferSize = Math.max(MIN_WRITE_BUFFER_SIZE,
+            Math.min(MAX_WRITE_BUFFER_SIZE, TOTAL_WRITE_BUFFER_SIZE / shardCnt));
+        FileChannel[] writers = new FileChannel[shardCnt];
+        ByteBuffer[] writeBuffers = new ByteBuffer[shardCnt];
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "shard-prepare");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long total = 0L;
+        try (FileChannel reader = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            for (int i = 0; i < shardCnt; i++) {
+                writers[i] = FileChannel.open(Paths.get(shardFiles.get(i)), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                writeBuffers[i] = ByteBuffer.allocateDirect(writeBufferSize);
+            }
+            long size = reader.size();
+            long chunkCnt = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            //限制在途的数据块数，避免读得太快占满内存
+            ArrayDeque<Future<ShardChunk>> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < chunkCnt || !pending.isEmpty()) {
+                while (next < chunkCnt && pending.size() < parallelism * 2) {
+                    long chunkId = next++;
+                    pending.add(executor.submit(() -> shardChunk(reader, size, chunkId, shardCnt)));
+                }
+                ShardChunk chunk = getChunk(pending.poll());
+                for (int i = 0; i < shardCnt; i++) {
+                    write(writers[i], writeBuffers[i], chunk.data[i], chunk.length[i]);
+                }
+                total += chunk.lineCnt;
+            }
+            for (int i = 0; i < shardCnt; i++) {
+                flush(writers[i], writeBuffers[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+            for (FileChannel writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 并行统计文件行数，与wc -l一致
+     */
+    public static long countLines(String file, int parallelism) throws IOException {
+        parallelism = Math.max(1, parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (FileChannel reader = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = reader.size();
+            long rangeSize = Math.max(CHUNK_SIZE, (size + parallelism - 1) / parallelism);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (long start = 0; start < size; start += rangeSize) {
+                long begin = start;
+                long end = Math.min(size, start + rangeSize);
+                futures.add(executor.submit(() -> {
+                    ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+                    byte[] array = buffer.array();
+                    long cnt = 0;
+                    long pos = begin;
+                    while (pos < end) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+                        int n = reader.read(buffer, pos);
+                        if (n < 0) {
+                            break;
+                        }
+                        for (int i = 0; i < n; i++) {
+                            if (array[i] == '\n') {
+                                cnt++;
+                            }
+                        }
+                        pos += n;
+                    }
+                    return cnt;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ShardChunk getChunk(Future<ShardChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 处理起始位置落在[chunkId*CHUNK_SIZE,(chunkId+1)*CHUNK_SIZE)内的所有行
+     */
+    private ShardChunk shardChunk(FileChannel reader, long size, long chunkId, int shardCnt) throws IOException {
+        long start = chunkId * CHUNK_SIZE;
+        long end = Math.min(size, start + CHUNK_SIZE);
+        //多读前一个字节，用于判断块首是否恰好是行首
+        long readStart = start == 0 ? 0 : start - 1;
+        byte[] buf = readBuffer.get();
+        if (buf == null) {
+            buf = new byte[CHUNK_SIZE + 1 + CHUNK_EXTEND_SIZE];
+        }
+        int len = read(reader, buf, 0, readStart, (int) (end - readStart));
+        //最后一行没有结束时继续读到换行为止，换行之后的内容属于下一个数据块
+        int scan = len;
+        while (len > 0 && buf[len - 1] != '\n' && readStart + len < size) {
+            if (buf.length - len < CHUNK_EXTEND_SIZE) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int n = read(reader, buf, len, readStart + len,
+                (int) Math.min(CHUNK_EXTEND_SIZE, size - readStart - len));
+            if (n == 0) {
+                break;
+            }
+            len += n;
+            while (scan < len && buf[scan] != '\n') {
+                scan++;
+            }
+            if (scan < len) {
+                len = scan + 1;
+                break;
+            }
+        }
+        readBuffer.set(buf);
+
+        int pos = 0;
+        if (start != 0) {
+            while (pos < len && buf[pos] != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+        ShardChunk chunk = new ShardChunk(shardCnt, Math.max(1024, len / shardCnt));
+        JSONFieldExtractor extractor = new JSONFieldExtractor("session", "schema");
+        int[] spans = new int[4];
+        long seq = chunkId;
+        while (pos < len) {
+            int lineEnd = pos;
+            while (lineEnd < len && buf[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > pos && buf[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > pos) {
+                try {
+                    extractor.extract(buf, pos, lineEnd, spans);
+                } catch (RuntimeException e) {
+                    logger.error(new String(buf, pos, lineEnd - pos, StandardCharsets.UTF_8));
+                    throw e;
+                }
+                byte[] schema = null;
+                if (schemaMap.size() != 0) {
+                    schema = schemaMap.get(JSONFieldExtractor.decode(buf, spans[2], spans[3]));
+                    if (schema == null) {
+                        pos = next;
+                        continue;
+                    }
+                }
+                int shard;
+                if (simulate) {
+                    shard = (JSONFieldExtractor.hash(buf, spans[0], spans[1]) & Integer.MAX_VALUE) % shardCnt;
+                } else {
+                    shard = (int) (seq % shardCnt);
+                }
+                seq++;
+                if (schema == null) {
+                    chunk.append(shard, buf, pos, lineEnd - pos);
+                } else {
+                    chunk.append(shard, buf, pos, spans[2] - pos);
+                    chunk.append(shard, schema, 0, schema.length);
+                    chunk.append(shard, buf, spans[3], lineEnd - spans[3]);
+                }
+                chunk.append(shard, (byte) '\n');
+                chunk.lineCnt++;
+            }
+            pos = next;
+        }
+        return chunk;
+    }
+
+    private static int read(FileChannel reader, byte[] buf, int offset, long position, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(buf, offset, len);
+        while (buffer.hasRemaining()) {
+            if (reader.read(buffer, position + buffer.position() - offset) < 0) {
+                break;
+            }
+        }
+        return buffer.position() - offset;
+    }
+
+    private static void write(FileChannel writer, ByteBuffer buffer, byte[] data, int len) throws IOException {
+        int offset = 0;
+        while (offset < len) {
+            if (!buffer.hasRemaining()) {
+                flush(writer, buffer);
+            }
+            int n = Math.min(buffer.remaining(), len - offset);
+            buffer.put(data, offset, n);
+            offset += n;
+        }
+    }
+
+    private static void flush(FileChannel writer, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            writer.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    //一个数据块切分后各个分片的内容
+    private static class ShardChunk {
+        private final byte[][] data;
+        private final int[] length;
+        private final int initialSize;
+        private long lineCnt = 0;
+
+        private ShardChunk(int shardCnt, int initialSize) {
+            data = new byte[shardCnt][];
+            length = new int[shardCnt];
+            for (int i = 0; i < shardCnt; i++) {
+                data[i] = new byte[0];
+            }
+            this.initialSize = initialSize;
+        }
+
+        private void ensure(int shard, int more) {
+            byte[] b = data[shard];
+            int need = length[shard] + more;
+            if (need > b.length) {
+                data[shard] = Arrays.copyOf(b, Math.max(need, Math.max(initialSize, b.length * 2)));
+            }
+        }
+
+        private void append(int shard, byte[] src, int offset, int len) {
+            ensure(shard, len);
+            System.arraycopy(src, offset, data[shard], length[shard], len);
+            length[shard] += len;
+        }
+
+        private void append(int shard, byte b) {
+            ensure(shard, 1);
+            data[shard][length[shard]++] = b;
+        }
+    }
+}
@@ -4,16 +4,16 @@ import com.alibaba.fastjson.JSONArray;
 import com.aliyun.gts.sniffer.common.entity.BaseSQLType;
 import com.aliyun.gts.sniffer.common.utils.JDBCWrapper;
 import com.aliyun.gts.sniffer.common.utils.MysqlGLUtil;
+import com.aliyun.gts.sniffer.common.utils.TemplateStats;
+import com.aliyun.gts.sniffer.common.utils.TemplateStatsMap;
+import com.aliyun.gts.sniffer.common.utils.Util;
 import com.aliyun.gts.sniffer.core.Config;
 import org.apache.log4j.FileAppender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Locale;
-import java.util.Set;
 
 public class ConsumerThread extends Thread{
     protected boolean skipSet=true;
@@ -63,44 +63,11 @@ public class ConsumerThread extends Thread{
         fileAppender.activateOptions();
 
     }
-    public HashMap<String, String> getSqlList() {
-        return sqlList;
-    }
-
-    private final HashMap<String,String> sqlList=new HashMap<>();
-
-    private final HashMap<String,Long> sqlReplayRTMax=new HashMap<String, Long>();
-    private final HashMap<String,Long> sqlReplayRTMin=new HashMap<String, Long>();
-    private final HashMap<String,Long> sqlReplayRTNum=new HashMap<String, Long>();
-    private final HashMap<String,Long> sqlReplayRTSum=new HashMap<String, Long>();
-    private final HashMap<String,Long> sqlReplayErrorSum=new HashMap<String, Long>();
-    private final HashMap<String,Set<String>> sqlReplaySchema=new HashMap<>();
-
-    private final HashMap<String,Long> originMaxExecTime=new HashMap<>();
-    private final HashMap<String,Long> originSumExecTime=new HashMap<>();
-    private final HashMap<String,Long> originMinExecTime=new HashMap<>();
-    private final HashMap<String,Long> originExecCount=new HashMap<>();
+    //每个模板sql的回放统计，只由本线程写入
+    private final TemplateStatsMap templateStats=new TemplateStatsMap();
 
-    private final HashMap<String, Set<String>> sqlReplayErrorMsg=new HashMap<>();
-
-    public HashMap<String, Set<String>> getSqlReplayErrorMsg() {
-        return sqlReplayErrorMsg;
-    }
-
-    public HashMap<String, Long> getOriginMaxExecTime() {
-        return originMaxExecTime;
-    }
-
-    public HashMap<String, Long> getOriginSumExecTime() {
-        return originSumExecTime;
-    }
-
-    public HashMap<String, Long> getOriginMinExecTime() {
-        return originMinExecTime;
-    }
-
-    public HashMap<String, Long> getOriginExecCount() {
-        return originExecCount;
+    public TemplateStatsMap getTemplateStats() {
+        return templateStats;
     }
 
     protected long requests= 0L;
@@ -120,74 +87,10 @@ public class ConsumerThread extends Thread{
         return rtSum;
     }
 
-    public HashMap<String, Long> getSqlReplayRTMax() {
-        return sqlReplayRTMax;
-    }
-
-    public HashMap<String, Long> getSqlReplayRTMin() {
-        return sqlReplayRTMin;
-    }
-
-    public HashMap<String, Long> getSqlReplayRTNum() {
-        return sqlReplayRTNum;
-    }
-
-    public HashMap<String, Long> getSqlReplayRTSum() {
-        return sqlReplayRTSum;
-    }
-
-    public HashMap<String, Long> getSqlReplayErrorSum() {
-        return sqlReplayErrorSum;
-    }
-
-
     public void close(){
         running=false;
     }
 
-    private void applyOriginExecTime(String sqlId,Long execTime){
-        Long tmpMaxExecTime=originMaxExecTime.get(sqlId);
-        Long tmpSumExecTime=originSumExecTime.get(sqlId);
-        Long tmpMinExecTime=originMinExecTime.get(sqlId);
-        Long tmpExecCount=originExecCount.get(sqlId);
-        if(tmpMaxExecTime==null){
-            tmpMaxExecTime=execTime;
-        }else{
-            if(tmpMaxExecTime<execTime){
-                tmpMaxExecTime=execTime;
-            }
-        }
-
-        if(tmpSumExecTime==null){
-            tmpSumExecTime=execTime;
-        }else{
-            tmpSumExecTime+=execTime;
-        }
-
-        if(tmpExecCount==null){
-            tmpExecCount= 1L;
-        }else{
-            tmpExecCount++;
-        }
-
-        if(tmpMinExecTime==null){
-            tmpMinExecTime=execTime;
-        }else{
-            if(tmpMinExecTime>execTime){
-                tmpMinExecTime=execTime;
-            }
-        }
-        originMaxExecTime.put(sqlId,tmpMaxExecTime);
-        originMinExecTime.put(sqlId,tmpMinExecTime);
-        originSumExecTime.put(sqlId,tmpSumExecTime);
-        originExecCount.put(sqlId,tmpExecCount);
-
-    }
-
-    public HashMap<String, Set<String>> getSqlReplaySchema() {
-        return sqlReplaySchema;
-    }
-
     /**
      * *
      * @param sql 原始sql
@@ -197,8 +100,16 @@ public class ConsumerThread extends Thread{
      * @param originExecTime
      */
     protected void apply(String sql, String sql2, String db, String sqlId, long originExecTime, BaseSQLType sqlType, JSONArray parameter){
-        if(!sqlList.containsKey(sqlId)){
-            sqlList.put(sqlId,sql);
+        apply(sql, sql2, db, sqlId, TemplateStatsMap.templateId(sqlId), originExecTime, sqlType, parameter);
+    }
+
+    /**
+     * @param templateId TemplateStatsMap.templateId(sqlId)，调用方可以按模板缓存
+     */
+    protected void apply(String sql, String sql2, String db, String sqlId, int templateId, long originExecTime, BaseSQLType sqlType, JSONArray parameter){
+        TemplateStats stats=templateStats.getOrCreate(templateId,sqlId);
+        if(stats.getSampleSql()==null){
+            stats.setSampleSql(sql);
         }
         if(!Config.disableInsert2Replace && (Config.replayTo.equals("polarx")||Config.replayTo.equals("mysql"))) {
             if(sql2.toLowerCase(Locale.ROOT).startsWith("insert")
@@ -207,24 +118,16 @@ public class ConsumerThread extends Thread{
             }
         }
 
-        if(!sqlReplaySchema.containsKey(sqlId)){
-            Set<String> schemaSet=new HashSet<>();
-            schemaSet.add(db);
-            sqlReplaySchema.put(sqlId,schemaSet);
-        }else{
-            sqlReplaySchema.get(sqlId).add(db);
-        }
+        stats.getSchemas().add(db);
         //统计原始sql在源库的执行时间
-        applyOriginExecTime(sqlId,originExecTime);
+        stats.getOriginRT().record(originExecTime);
         for (int i = 0; i< Config.enlarge; i++){
             try{
                 requests++;
                 //如果sql已经报过错了，且开启了跳过sql报错开关，不重复回放已报错sql
-                if(sqlReplayErrorSum.get(sqlId)!=null && Config.skipDupliErrorSql){
-                    long x=sqlReplayErrorSum.get(sqlId);
-                    x++;
+                if(stats.getErrorCount()>0 && Config.skipDupliErrorSql){
+                    stats.addError(null);
                     errors++;
-                    sqlReplayErrorSum.put(sqlId,x);
                     continue;
                 }
                 //mysql:use db
@@ -241,9 +144,10 @@ public class ConsumerThread extends Thread{
                 if(rt>Config.excludeLongQueryTime && Config.excludeLongQueryTime>0){
                     return;
                 }
-                applyRT(sqlId,rt);
+                stats.getReplayRT().record(rt);
+                rtSum+=rt;
             }catch (Exception e){
-                applyErrorSum(sqlId,e);
+                stats.addError(e.getMessage());
                 if(parameter==null){
                     sqlErrorLogger.error("sql apply failed,sqlId:"+sqlId+",schema:"+db+",sql:"+sql+"\n paramter:",e);
                 }else{
@@ -267,78 +171,22 @@ public class ConsumerThread extends Thread{
         }
     }
 
-    protected void applyRT(String sqlId,long rt){
-        applySum(sqlId,rt);
-        applyNum(sqlId,rt);
-        applyMax(sqlId,rt);
-        applyMin(sqlId,rt);
-        rtSum+=rt;
-    }
-    private void applyNum(String sqlId,long rt){
-        Long x=sqlReplayRTNum.get(sqlId);
-        if(x==null){
-            x= 1L;
-        }else{
-            x++;
-        }
-        sqlReplayRTNum.put(sqlId,x);
-
-    }
-    private void applySum(String sqlId,long rt){
-        Long x=sqlReplayRTSum.get(sqlId);
-        if(x==null){
-            x=rt;
-        }else{
-            x+=rt;
-        }
-        sqlReplayRTSum.put(sqlId,x);
-    }
-
-    private void applyErrorSum(String sqlId,Exception e){
-        Long x=sqlReplayErrorSum.get(sqlId);
-        if(x==null){
-            x= 1L;
-        }else{
-            x++;
-        }
-        sqlReplayErrorSum.put(sqlId,x);
-        Set<String> errorSet=this.sqlReplayErrorMsg.get(sqlId);
-        if(errorSet==null){
-            errorSet= new HashSet<>();
-            errorSet.add(e.getMessage());
-            sqlReplayErrorMsg.put(sqlId,errorSet);
-        }else{
-            //单条模板sql 错误信息最多5条
-            if(errorSet.size()>=Config.maxErrorMsgSize){
-                logger.debug(sqlId+" error msg count >5,skip!!!");
-                return;
-            }
-            errorSet.add(e.getMessage());
+    /**
+     * 按源库类型重新计算模板sqlId，sqlId为采集时记录的值
+     */
+    public static String toSqlId(String sql, String sqlId){
+        if (Config.sourceDB.equals("oracle")) {
+            sqlId = Util.toOracleSqlId(sql, sqlId);
         }
-    }
 
-    private void applyMin(String sqlId,long rt){
-        Long x=sqlReplayRTMin.get(sqlId);
-        if(x==null){
-            x=rt;
-        }else{
-            if(x>rt){
-                x=rt;
-            }
+        if (Config.sourceDB.equals("polarx") || Config.sourceDB.equals("mysql") || sqlId == null) {
+            sqlId = Util.toPolarXSqlId(sql);
         }
-        sqlReplayRTMin.put(sqlId,x);
-    }
 
-    private void applyMax(String sqlId,long rt){
-        Long x=sqlReplayRTMax.get(sqlId);
-        if(x==null){
-            x=rt;
-        }else{
-            if(x<rt){
-                x=rt;
-            }
+        if (Config.sourceDB.equals("postgresql") || sqlId == null) {
+            sqlId = Util.toPostgresqlSqlId(sql);
         }
-        sqlReplayRTMax.put(sqlId,x);
+        return sqlId;
     }
 
     protected boolean filterDefault(String sql){
@@ -364,7 +212,7 @@ public class ConsumerThread extends Thread{
         return false;
     }
 
-    protected BaseSQLType getSQLType(String sql){
+    public static BaseSQLType getSQLType(String sql){
         //filter DQL
         if(sql.startsWith("select")){
             return BaseSQLType.DQL;
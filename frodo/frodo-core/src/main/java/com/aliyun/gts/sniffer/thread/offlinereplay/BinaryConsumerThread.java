@@ -0,0 +1,154 @@
+package com.aliyun.gts.sniffer.thread.offlinereplay;
+
+import com.aliyun.gts.sniffer.common.entity.ReplayEvent;
+import com.aliyun.gts.sniffer.common.entity.ReplayTemplate;
+import com.aliyun.gts.sniffer.common.utils.MysqlWrapper;
+import com.aliyun.gts.sniffer.common.utils.ReplayFileReader;
+import com.aliyun.gts.sniffer.common.utils.TemplateStatsMap;
+import com.aliyun.gts.sniffer.common.utils.Util;
+import com.aliyun.gts.sniffer.core.Config;
+import com.aliyun.gts.sniffer.core.Frodo;
+import com.aliyun.gts.sniffer.core.ReplayScheduler;
+import com.aliyun.gts.sniffer.thread.ConsumerThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * 回放ReplayCompiler编译出的二进制文件，模板sql的过滤、类型判断按模板只做一次
+ */
+public class BinaryConsumerThread extends ConsumerThread {
+    private final Logger logger = LoggerFactory.getLogger(BinaryConsumerThread.class);
+    private final String file;
+    private final ReplayScheduler scheduler;
+
+    public BinaryConsumerThread(String file) throws SQLException {
+        this(file, null);
+    }
+
+    /**
+     * scheduler不为空时只读取、过滤sql，交给调度器放行后由回放线程执行，不创建连接
+     */
+    public BinaryConsumerThread(String file, ReplayScheduler scheduler) throws SQLException {
+        this.file = file;
+        this.scheduler = scheduler;
+        if (scheduler != null) {
+            return;
+        }
+        if (Config.replayTo.equals("mysql")) {
+            String url = "jdbc:mysql://" + Config.host + ":" + Config.port;
+            jdbcWrapper = new MysqlWrapper(url, Config.username, Config.password, Config.database);
+        } else if (Config.replayTo.equals("polarx")) {
+            String url = "jdbc:mysql://" + Config.host + ":" + Config.port;
+            jdbcWrapper = new MysqlWrapper(url, Config.username, Config.password, Config.database);
+        } else {
+            throw new RuntimeException("not support db type:" + Config.replayTo);
+        }
+    }
+
+    public void close() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        logger.info("consumer thread " + Thread.currentThread().getName() + " created!");
+        ReplayFileReader reader;
+        try {
+            reader = new ReplayFileReader(file);
+            synchronized (Frodo.startCondition) {
+                this.ready = true;
+                Frodo.startCondition.wait();
+            }
+        } catch (Exception e) {
+            logger.error("consumer thread " + Thread.currentThread().getName() + " start failed!", e);
+            return;
+        }
+        logger.info("consumer thread " + Thread.currentThread().getName() + " start!");
+        try {
+            while (running) {
+                if (!reader.next()) {
+                    if (Config.circle && running) {
+                        reader.rewind();
+                        continue;
+                    }
+                    break;
+                }
+                try {
+                    applyEvent(reader);
+                } catch (Exception e) {
+                    logger.error("apply sql failed", e);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("thread exit!!!", e);
+        } finally {
+            try {
+                reader.close();
+            } catch (Exception ignored) {
+
+            }
+        }
+        delay = 0L;
+        closed = true;
+        if (scheduler != null) {
+            scheduler.finishReader();
+        }
+        logger.info("consumer thread " + Thread.currentThread().getName() + " closed!");
+        if (jdbcWrapper != null) {
+            jdbcWrapper.close();
+        }
+    }
+
+    private void applyEvent(ReplayFileReader reader) {
+        ReplayTemplate template = reader.getTemplate();
+        //模板第一次出现时判断是否需要跳过
+        if (template.getSql2() == null) {
+            String sql2 = Util.trimHeaderHint(template.getSql().toLowerCase(Locale.ROOT)).trim();
+            template.setSql2(sql2);
+            template.setStatsId(TemplateStatsMap.templateId(template.getSqlId()));
+            template.setSkip(sql2.startsWith("begin") || sql2.startsWith("commit")
+                || sql2.startsWith("rollback") || sql2.startsWith("start")
+                || Config.excludeSqlIdSet.contains(template.getSqlId())
+                || filterDefault(sql2) || !filterSQL(sql2, template.getSqlType()));
+        }
+        if (template.isSkip()) {
+            skipRequestCnt++;
+            return;
+        }
+        //单位毫秒
+        long startTime = reader.getStartTime() / 1000;
+        if (scheduler != null) {
+            ReplayEvent event = new ReplayEvent();
+            event.setSql(template.getSql());
+            event.setSql2(template.getSql2());
+            event.setDb(reader.getSchema());
+            event.setSqlId(template.getSqlId());
+            event.setTemplateId(template.getStatsId());
+            event.setOriginExecTime(reader.getExecTime());
+            event.setSqlType(template.getSqlType());
+            event.setParameter(reader.getParameter());
+            event.setSession(reader.getSession());
+            event.setDueTime(scheduler.getDueTime(startTime));
+            scheduler.schedule(event);
+            return;
+        }
+        long actTimeDiff = BigDecimal.valueOf(startTime - Frodo.firstSqlStartTime).multiply(BigDecimal.valueOf(Config.rateFactor)).longValue() -
+            BigDecimal.valueOf(System.currentTimeMillis() - Frodo.procStartTime).longValue();
+        if (actTimeDiff > 0 && !Config.circle && Config.rateFactor != 0.0f) {
+            try {
+                Thread.sleep(actTimeDiff);
+                actTimeDiff = BigDecimal.valueOf(startTime - Frodo.firstSqlStartTime).multiply(BigDecimal.valueOf(Config.rateFactor)).longValue() -
+                    BigDecimal.valueOf(System.currentTimeMillis() - Frodo.procStartTime).longValue();
+            } catch (InterruptedException ignored) {
+
+            }
+        }
+        delay = actTimeDiff * -1;
+        apply(template.getSql(), template.getSql2(), reader.getSchema(), template.getSqlId(), template.getStatsId(), reader.getExecTime(),
+            template.getSqlType(), reader.getParameter());
+    }
+}
@@ -4,16 +4,20 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.aliyun.gts.sniffer.common.entity.BaseSQLType;
+import com.aliyun.gts.sniffer.common.entity.ReplayEvent;
 import com.aliyun.gts.sniffer.common.utils.*;
 import com.aliyun.gts.sniffer.core.Config;
 import com.aliyun.gts.sniffer.core.Frodo;
+import com.aliyun.gts.sniffer.core.ReplayScheduler;
 import com.aliyun.gts.sniffer.thread.ConsumerThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.Locale;
 
@@ -22,13 +26,25 @@ public class JSConsumerThreadV2 extends ConsumerThread {
     //计算json文件中的第一条sql的执行时间和当前时间的差值，用于模拟实际速度重放sql
     private long execTimeDiff = 0L;
     private final String file;
+    private final ReplayScheduler scheduler;
 
     public void setExecTimeDiff(long execTimeDiff) {
         this.execTimeDiff = execTimeDiff;
     }
 
     public JSConsumerThreadV2(String file) throws SQLException {
+        this(file, null);
+    }
+
+    /**
+     * scheduler不为空时只读取、过滤sql，交给调度器放行后由回放线程执行，不创建连接
+     */
+    public JSConsumerThreadV2(String file, ReplayScheduler scheduler) throws SQLException {
         this.file = file;
+        this.scheduler = scheduler;
+        if (scheduler != null) {
+            return;
+        }
         if (Config.replayTo.equals("mysql")) {
             String url = "jdbc:mysql://" + Config.host + ":" + Config.port;
             jdbcWrapper = new MysqlWrapper(url, Config.username, Config.password, Config.database);
@@ -51,7 +67,7 @@ public class JSConsumerThreadV2 extends ConsumerThread {
         BufferedReader reader;
         try {
             //2MB的缓冲区，提前创建
-            reader = new BufferedReader(new FileReader(file), 2 * 1024 * 1024);
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 2 * 1024 * 1024);
             synchronized (Frodo.startCondition) {
                 this.ready = true;
                 Frodo.startCondition.wait();
@@ -70,7 +86,7 @@ public class JSConsumerThreadV2 extends ConsumerThread {
                     reader.close();
                     if (Config.circle && running) {
                         reader.close();
-                        reader = new BufferedReader(new FileReader(file));
+                        reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
                         continue;
                     }
                     break;
@@ -86,8 +102,13 @@ public class JSConsumerThreadV2 extends ConsumerThread {
         }
         delay = 0L;
         closed = true;
+        if (scheduler != null) {
+            scheduler.finishReader();
+        }
         logger.info("consumer thread " + Thread.currentThread().getName() + " closed!");
-        jdbcWrapper.close();
+        if (jdbcWrapper != null) {
+            jdbcWrapper.close();
+        }
     }
 
     private void applyJSONSql(String sqlJSON) {
@@ -102,19 +123,8 @@ public class JSConsumerThreadV2 extends ConsumerThread {
         if (!Config.diableLowerSchema) {
             db = db.toLowerCase(Locale.ROOT);
         }
-        String sqlId = object.getString("sqlId");
         long originExecTime = object.getLong("execTime");
-        if (Config.sourceDB.equals("oracle")) {
-            sqlId = Util.toOracleSqlId(sql, sqlId);
-        }
-
-        if (Config.sourceDB.equals("polarx") || Config.sourceDB.equals("mysql") || sqlId == null) {
-            sqlId = Util.toPolarXSqlId(sql);
-        }
-
-        if (Config.sourceDB.equals("postgresql") || sqlId == null) {
-            sqlId = Util.toPostgresqlSqlId(sql);
-        }
+        String sqlId = toSqlId(sql, object.getString("sqlId"));
 
         //全小写，方便处理，同时去除select头部的hint，避免hint影响sql语句类型判断
         String sql2 = Util.trimHeaderHint(sql.toLowerCase(Locale.ROOT)).trim();
@@ -144,6 +154,21 @@ public class JSConsumerThreadV2 extends ConsumerThread {
         }
         //单位毫秒
         long startTime = object.getLong("startTime") / 1000;
+        if (scheduler != null) {
+            ReplayEvent event = new ReplayEvent();
+            event.setSql(sql);
+            event.setSql2(sql2);
+            event.setDb(db);
+            event.setSqlId(sqlId);
+            event.setTemplateId(TemplateStatsMap.templateId(sqlId));
+            event.setOriginExecTime(originExecTime);
+            event.setSqlType(sqlType);
+            event.setParameter(parameter);
+            event.setSession(object.getString("session"));
+            event.setDueTime(scheduler.getDueTime(startTime));
+            scheduler.schedule(event);
+            return;
+        }
         //计算预计执行时间和当前执行时间的差值。
 //        long a = BigDecimal.valueOf(System.currentTimeMillis() - startTime).multiply(BigDecimal.valueOf(Config.rateFactor)).longValue();
 //        long actTimeDiff = execTimeDiff - a;
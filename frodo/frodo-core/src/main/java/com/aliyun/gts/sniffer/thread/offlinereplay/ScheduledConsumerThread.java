@@ -0,0 +1,74 @@
+package com.aliyun.gts.sniffer.thread.offlinereplay;
+
+import com.aliyun.gts.sniffer.common.entity.ReplayEvent;
+import com.aliyun.gts.sniffer.common.utils.LogLinearHistogram;
+import com.aliyun.gts.sniffer.common.utils.MysqlWrapper;
+import com.aliyun.gts.sniffer.core.Config;
+import com.aliyun.gts.sniffer.core.ReplayScheduler;
+import com.aliyun.gts.sniffer.thread.ConsumerThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+
+/**
+ * 时间轮调度模式下的回放线程，每个线程持有一个连接，执行ReplayScheduler放行的sql
+ */
+public class ScheduledConsumerThread extends ConsumerThread {
+    private final Logger logger = LoggerFactory.getLogger(ScheduledConsumerThread.class);
+    private final ReplayScheduler scheduler;
+    private final LogLinearHistogram sendLag;
+
+    public ScheduledConsumerThread(ReplayScheduler scheduler) throws SQLException {
+        this.scheduler = scheduler;
+        this.sendLag = scheduler.newSendLagHistogram();
+        if (Config.replayTo.equals("mysql")) {
+            String url = "jdbc:mysql://" + Config.host + ":" + Config.port;
+            jdbcWrapper = new MysqlWrapper(url, Config.username, Config.password, Config.database);
+        } else if (Config.replayTo.equals("polarx")) {
+            String url = "jdbc:mysql://" + Config.host + ":" + Config.port;
+            jdbcWrapper = new MysqlWrapper(url, Config.username, Config.password, Config.database);
+        } else {
+            throw new RuntimeException("not support db type:" + Config.replayTo);
+        }
+        //不读取文件，sql由调度器放行，无需等待启动信号
+        this.ready = true;
+    }
+
+    public void close() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        logger.info("replay thread " + Thread.currentThread().getName() + " start!");
+        try {
+            while (running) {
+                ReplayEvent event = scheduler.poll(100);
+                if (event == null) {
+                    if (scheduler.isFinished()) {
+                        break;
+                    }
+                    continue;
+                }
+                long lag = scheduler.nowMicros() - event.getDueTime() * 1000L;
+                sendLag.record(lag);
+                delay = lag / 1000;
+                try {
+                    apply(event.getSql(), event.getSql2(), event.getDb(), event.getSqlId(), event.getTemplateId(), event.getOriginExecTime(),
+                        event.getSqlType(), event.getParameter());
+                } catch (Exception e) {
+                    logger.error("apply sql failed", e);
+                } finally {
+                    scheduler.done(event);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("thread exit!!!", e);
+        }
+        delay = 0L;
+        closed = true;
+        logger.info("replay thread " + Thread.currentThread().getName() + " closed!");
+        jdbcWrapper.close();
+    }
+}
@@ -0,0 +1,55 @@
+package com.aliyun.gts;
+
+import com.aliyun.gts.sniffer.common.entity.BaseSQLType;
+import com.aliyun.gts.sniffer.common.utils.ReplayFileReader;
+import com.aliyun.gts.sniffer.core.Config;
+import com.aliyun.gts.sniffer.core.ReplayCompiler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ReplayFileTest {
+    @Test
+    public void testCompile() throws Exception {
+        Config.sourceDB = "mysql";
+        File dir = Files.createTempDirectory("frodo-replay").toFile();
+        File json = new File(dir, ".shard0");
+        File bin = new File(dir, ".shard0.bin");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("{\"convertSqlText\":\"select * from t where id=?\",\"schema\":\"DB").append(i % 2)
+                .append("\",\"session\":\"s").append(i % 7).append("\",\"startTime\":").append(1000000L + i)
+                .append(",\"execTime\":").append(i).append(",\"parameter\":[").append(i).append("]}\n");
+        }
+        sb.append("{\"convertSqlText\":\"update t set c='中文' where id=1\",\"session\":\"s0\",\"startTime\":2000000,\"execTime\":5}\n");
+        Files.write(json.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals(ReplayCompiler.compile(json.getPath(), bin.getPath()), 1001);
+        Assert.assertTrue(bin.length() < json.length());
+
+        try (ReplayFileReader reader = new ReplayFileReader(bin.getPath())) {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 1000; i++) {
+                    Assert.assertTrue(reader.next());
+                    Assert.assertEquals(reader.getTemplate().getSql(), "select * from t where id=?");
+                    Assert.assertEquals(reader.getTemplate().getSqlType(), BaseSQLType.DQL);
+                    Assert.assertEquals(reader.getSchema(), "db" + (i % 2));
+                    Assert.assertEquals(reader.getSession(), "s" + (i % 7));
+                    Assert.assertEquals(reader.getStartTime(), 1000000L + i);
+                    Assert.assertEquals(reader.getExecTime(), i);
+                    Assert.assertEquals(reader.getParameter().getString(0), String.valueOf(i));
+                }
+                Assert.assertTrue(reader.next());
+                Assert.assertEquals(reader.getTemplate().getSql(), "update t set c='中文' where id=1");
+                Assert.assertEquals(reader.getTemplate().getSqlType(), BaseSQLType.DML);
+                Assert.assertNull(reader.getSchema());
+                Assert.assertNull(reader.getParameter());
+                Assert.assertFalse(reader.next());
+                reader.rewind();
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.aliyun.gts;
 
+import com.alibaba.druid.DbType;
+import com.aliyun.gts.sniffer.common.utils.SqlIdCache;
 import com.aliyun.gts.sniffer.common.utils.Util;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 public class SQLTest {
@@ -11,5 +14,34 @@ public class SQLTest {
         System.out.println(sql2);
     }
 
+    private String fingerprint(String sql, DbType dbType){
+        StringBuilder sb=new StringBuilder();
+        Util.fingerprint(sql,dbType,sb);
+        return sb.toString();
+    }
+
+    @Test
+    public void testFingerprint(){
+        Assert.assertEquals(fingerprint("  select a,t1.b from `t 1` where id = -12.5e-3 and  c='it''s \\' ok' and d=0x1F /* x  1 */ limit 10",DbType.mysql),
+                "select a,t1.b from `t 1` where id = -? and c=? and d=? /* x  1 */ limit ?");
+        Assert.assertEquals(fingerprint("select \"A\" from t where c='a\\' and d=.5",DbType.oracle),
+                "select \"A\" from t where c=? and d=?");
+        Assert.assertEquals(Util.fingerprint("select 'abc",DbType.mysql,null),-1);
+        Assert.assertEquals(Util.fingerprint("select q'[it's]' from dual",DbType.oracle,null),-1);
+    }
+
+    @Test
+    public void testSqlIdCache(){
+        long miss=SqlIdCache.getMissCnt();
+        long hit=SqlIdCache.getHitCnt();
+        String id1=Util.toPolarXSqlId("select a from t where id=1 and c='x'");
+        String id2=Util.toPolarXSqlId("select a from t  where id=2 and c='y'");
+        Assert.assertEquals(id1,id2);
+        Assert.assertEquals(SqlIdCache.getMissCnt()-miss,1);
+        Assert.assertEquals(SqlIdCache.getHitCnt()-hit,1);
+        //druid保留了order by后的常量，sqlId与常量取值有关，不能缓存
+        Assert.assertNotEquals(Util.toPolarXSqlId("select a from t order by 1"),Util.toPolarXSqlId("select a from t order by 2"));
+    }
+
 
 }
@@ -0,0 +1,72 @@
+package com.aliyun.gts;
+
+import com.alibaba.fastjson.JSONObject;
+import com.aliyun.gts.sniffer.common.utils.JSONFieldExtractor;
+import com.aliyun.gts.sniffer.core.ShardPreparer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+public class ShardPreparerTest {
+    @Test
+    public void testExtract() {
+        byte[] line = "{\"sql\":\"select '{\\\"session\\\":1}'\",\"args\":[{\"schema\":\"x\"}],\"schema\":\"db\\u0031\",\"session\":123}"
+            .getBytes(StandardCharsets.UTF_8);
+        JSONFieldExtractor extractor = new JSONFieldExtractor("session", "schema");
+        int[] spans = new int[4];
+        extractor.extract(line, 0, line.length, spans);
+        Assert.assertEquals(JSONFieldExtractor.decode(line, spans[0], spans[1]), "123");
+        Assert.assertEquals(JSONFieldExtractor.decode(line, spans[2], spans[3]), "db1");
+
+        byte[] escaped = "\"db\\u0031\"".getBytes(StandardCharsets.UTF_8);
+        byte[] plain = "\"db1\"".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(JSONFieldExtractor.hash(escaped, 0, escaped.length),
+            JSONFieldExtractor.hash(plain, 0, plain.length));
+    }
+
+    @Test
+    public void testPrepare() throws Exception {
+        File dir = Files.createTempDirectory("frodo-shard").toFile();
+        File input = new File(dir, "in.json");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 250000; i++) {
+            sb.append("{\"session\":\"s").append(i % 37).append("\",\"schema\":\"")
+                .append(i % 3 == 0 ? "skip" : "src").append("\",\"seq\":").append(i).append("}\n");
+            if (i % 1000 == 0) {
+                sb.append("\n");
+            }
+        }
+        //超过一个数据块，覆盖块边界的行
+        Files.write(input.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(new File(dir, ".shard" + i).getPath());
+        }
+        Map<String, String> schemaMap = new HashMap<>();
+        schemaMap.put("src", "dst");
+
+        long cnt = new ShardPreparer(input.getPath(), shards, 3, true, schemaMap).prepare();
+        Assert.assertEquals(cnt, 250000 - 83334);
+        Assert.assertEquals(ShardPreparer.countLines(input.getPath(), 3), 250000 + 250);
+
+        Map<String, Integer> sessionShard = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            int lastSeq = -1;
+            for (String line : Files.readAllLines(new File(shards.get(i)).toPath(), StandardCharsets.UTF_8)) {
+                JSONObject object = JSONObject.parseObject(line);
+                Assert.assertEquals(object.getString("schema"), "dst");
+                Integer shard = sessionShard.put(object.getString("session"), i);
+                Assert.assertTrue(shard == null || shard == i);
+                Assert.assertTrue(object.getIntValue("seq") > lastSeq);
+                lastSeq = object.getIntValue("seq");
+                total++;
+            }
+        }
+        Assert.assertEquals(total, cnt);
+    }
+}
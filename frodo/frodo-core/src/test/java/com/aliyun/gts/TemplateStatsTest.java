@@ -0,0 +1,56 @@
+package com.aliyun.gts;
+
+import com.aliyun.gts.sniffer.common.utils.TemplateStats;
+import com.aliyun.gts.sniffer.common.utils.TemplateStatsMap;
+import com.aliyun.gts.sniffer.core.Config;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TemplateStatsTest {
+    @Test
+    public void testMerge() {
+        Assert.assertEquals(TemplateStatsMap.templateId("merge-a"), TemplateStatsMap.templateId("merge-a"));
+        Assert.assertNotEquals(TemplateStatsMap.templateId("merge-a"), TemplateStatsMap.templateId("merge-b"));
+
+        //模拟两个线程各自统计，超过初始容量触发扩容
+        TemplateStatsMap[] threads = {new TemplateStatsMap(), new TemplateStatsMap()};
+        int templateCnt = 1000;
+        for (int t = 0; t < threads.length; t++) {
+            for (int i = 0; i < templateCnt; i++) {
+                String sqlId = "merge-" + i;
+                TemplateStats stats = threads[t].getOrCreate(TemplateStatsMap.templateId(sqlId), sqlId);
+                stats.setSampleSql("select " + i);
+                stats.getSchemas().add("db" + t);
+                for (int v = 1; v <= 100; v++) {
+                    stats.getReplayRT().record(v * (i + 1));
+                    stats.getOriginRT().record(v);
+                }
+                for (int e = 0; e < Config.maxErrorMsgSize; e++) {
+                    stats.addError("error " + t + "-" + e);
+                }
+                stats.addError(null);
+            }
+            Assert.assertEquals(threads[t].size(), templateCnt);
+        }
+
+        TemplateStatsMap merged = new TemplateStatsMap();
+        for (TemplateStatsMap map : threads) {
+            merged.merge(map);
+        }
+        Assert.assertEquals(merged.size(), templateCnt);
+        for (int i = 0; i < templateCnt; i++) {
+            String sqlId = "merge-" + i;
+            TemplateStats stats = merged.get(TemplateStatsMap.templateId(sqlId));
+            Assert.assertEquals(stats.getSqlId(), sqlId);
+            Assert.assertEquals(stats.getSampleSql(), "select " + i);
+            Assert.assertEquals(stats.getSchemas().size(), 2);
+            Assert.assertEquals(stats.getErrorCount(), 2L * (Config.maxErrorMsgSize + 1));
+            Assert.assertEquals(stats.getErrorMsgs().size(), Config.maxErrorMsgSize);
+            Assert.assertEquals(stats.getReplayRT().getCount(), 200);
+            Assert.assertEquals(stats.getRequestCount(), 200 + stats.getErrorCount());
+            Assert.assertEquals(stats.getReplayRT().getMax(), 100L * (i + 1));
+            Assert.assertEquals(stats.getOriginRT().getValueAtPercentile(50), 50);
+        }
+        Assert.assertNull(merged.get(TemplateStatsMap.templateId("merge-missing")));
+    }
+}
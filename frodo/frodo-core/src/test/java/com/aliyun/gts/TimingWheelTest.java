@@ -0,0 +1,111 @@
+package com.aliyun.gts;
+
+import com.aliyun.gts.sniffer.common.utils.LogLinearHistogram;
+import com.aliyun.gts.sniffer.common.utils.TimingWheel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TimingWheelTest {
+    @Test
+    public void testAdvance() {
+        TimingWheel<long[]> wheel = new TimingWheel<>(8, 0L);
+        Random random = new Random(1);
+        int cnt = 20000;
+        for (int i = 0; i < cnt; i++) {
+            //跨越多层时间轮
+            long deadline = 1 + random.nextInt(8 * 8 * 8 * 3);
+            Assert.assertTrue(wheel.add(deadline, new long[]{deadline, i}));
+        }
+        Assert.assertFalse(wheel.add(0L, new long[]{0, -1}));
+
+        List<long[]> expired = new ArrayList<>();
+        long now = 0;
+        while (wheel.size() > 0) {
+            long last = now;
+            now += 1 + random.nextInt(50);
+            int from = expired.size();
+            wheel.advance(now, expired::add);
+            for (int i = from; i < expired.size(); i++) {
+                long deadline = expired.get(i)[0];
+                Assert.assertTrue(deadline > last && deadline <= now);
+            }
+        }
+        Assert.assertEquals(expired.size(), cnt);
+        //同一时刻的元素按加入顺序到期
+        for (int i = 1; i < cnt; i++) {
+            long[] prev = expired.get(i - 1);
+            long[] cur = expired.get(i);
+            Assert.assertTrue(prev[0] < cur[0] || (prev[0] == cur[0] && prev[1] < cur[1]));
+        }
+        //空闲时直接跳到当前时间
+        wheel.advance(1000000L, expired::add);
+        Assert.assertEquals(wheel.getCurrentTime(), 1000000L);
+        Assert.assertTrue(wheel.add(1000001L, new long[]{1000001L, 0}));
+        wheel.advance(1000001L, expired::add);
+        Assert.assertEquals(expired.size(), cnt + 1);
+    }
+
+    @Test
+    public void testInterleavedOrder() {
+        //先加入的A在上层，后加入的B、C在下层，降层后仍按加入顺序到期
+        TimingWheel<String> wheel = new TimingWheel<>(8, 0L);
+        List<String> expired = new ArrayList<>();
+        Assert.assertTrue(wheel.add(100L, "A"));
+        wheel.advance(70L, expired::add);
+        Assert.assertTrue(wheel.add(100L, "B"));
+        wheel.advance(98L, expired::add);
+        Assert.assertTrue(wheel.add(100L, "C"));
+        wheel.advance(100L, expired::add);
+        Assert.assertEquals(expired, Arrays.asList("A", "B", "C"));
+
+        //加入与推进交替进行，到期顺序与(到期时间, 加入顺序)一致
+        Random random = new Random(2);
+        TimingWheel<long[]> seqWheel = new TimingWheel<>(8, 0L);
+        List<long[]> expiredItems = new ArrayList<>();
+        long now = 0;
+        int seq = 0;
+        for (int round = 0; round < 2000; round++) {
+            for (int i = random.nextInt(20); i > 0; i--) {
+                //到期时间集中在少数几个值上，跨越层边界
+                long deadline = now + 1 + random.nextInt(4) * 37 + random.nextInt(2) * 300;
+                deadline = deadline / 10 * 10 + 10;
+                Assert.assertTrue(seqWheel.add(deadline, new long[]{deadline, seq++}));
+            }
+            now += random.nextInt(30);
+            seqWheel.advance(now, expiredItems::add);
+        }
+        seqWheel.advance(Long.MAX_VALUE / 2, expiredItems::add);
+        Assert.assertEquals(expiredItems.size(), seq);
+        for (int i = 1; i < expiredItems.size(); i++) {
+            long[] prev = expiredItems.get(i - 1);
+            long[] cur = expiredItems.get(i);
+            Assert.assertTrue(prev[0] < cur[0] || (prev[0] == cur[0] && prev[1] < cur[1]));
+        }
+    }
+
+    @Test
+    public void testHistogram() {
+        LogLinearHistogram a = new LogLinearHistogram();
+        LogLinearHistogram b = new LogLinearHistogram();
+        for (long v = 1; v <= 100000; v++) {
+            (v % 2 == 0 ? a : b).record(v);
+        }
+        a.merge(b);
+        Assert.assertEquals(a.getCount(), 100000);
+        Assert.assertEquals(a.getMin(), 1);
+        Assert.assertEquals(a.getMax(), 100000);
+        Assert.assertEquals(a.getSum(), 100000L * 100001 / 2);
+        double[] percentiles = {1, 50, 90, 99, 99.9};
+        for (double p : percentiles) {
+            double expect = p * 1000;
+            Assert.assertTrue(Math.abs(a.getValueAtPercentile(p) - expect) / expect < 0.04, "p" + p);
+        }
+        Assert.assertEquals(a.getValueAtPercentile(100), 100000);
+        Assert.assertEquals(new LogLinearHistogram().getValueAtPercentile(99), 0);
+    }
+}